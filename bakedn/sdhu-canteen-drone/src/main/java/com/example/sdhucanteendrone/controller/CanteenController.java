@@ -1,14 +1,22 @@
 package com.example.sdhucanteendrone.controller;
 
+import com.example.sdhucanteendrone.Common.BizException;
 import com.example.sdhucanteendrone.Common.Result;
 import com.example.sdhucanteendrone.dto.CanteenDto;
+import com.example.sdhucanteendrone.dto.OrderDto;
 import com.example.sdhucanteendrone.entity.enums.CanteenOpenStatus;
 import com.example.sdhucanteendrone.service.CanteenService;
+import com.example.sdhucanteendrone.service.ContentVersionService;
+import com.example.sdhucanteendrone.service.DeliveryEtaService;
+import com.example.sdhucanteendrone.service.RouteService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+
+import java.util.List;
 
 /**
  * 食堂管理相关接口
@@ -22,33 +30,74 @@ import org.springframework.web.bind.annotation.*;
 public class CanteenController {
 
     private final CanteenService canteenService;
+    private final RouteService routeService;
+    private final DeliveryEtaService deliveryEtaService;
+    private final ContentVersionService contentVersionService;
 
     // ================================================================
     // 公共接口：列表 + 详情
     // ================================================================
 
     /**
-     * 查询食堂列表（支持按状态过滤、分页）
+     * 查询食堂列表（支持按状态过滤、分页），支持 If-None-Match
      */
     @GetMapping
     public Result<Page<CanteenDto.CanteenSummary>> listCanteens(
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "10") int size,
-            @RequestParam(required = false) CanteenOpenStatus status
+            @RequestParam(required = false) CanteenOpenStatus status,
+            WebRequest request
     ) {
+        // 先取 ETag 再查库，见 ContentVersionService
+        if (request.checkNotModified(contentVersionService.canteenListETag())) {
+            return null;
+        }
         Page<CanteenDto.CanteenSummary> resultPage =
                 canteenService.listCanteens(status, PageRequest.of(page, size));
         return Result.success(resultPage);
     }
 
     /**
-     * 获取指定食堂详情
+     * 获取指定食堂详情，支持 If-None-Match
      */
     @GetMapping("/{id}")
-    public Result<CanteenDto.CanteenDetail> getCanteenById(@PathVariable("id") Long canteenId) {
+    public Result<CanteenDto.CanteenDetail> getCanteenById(@PathVariable("id") Long canteenId,
+                                                           WebRequest request) {
+        if (request.checkNotModified(contentVersionService.canteenETag(canteenId))) {
+            return null;
+        }
         return Result.success(canteenService.getCanteenDetail(canteenId));
     }
 
+    /**
+     * 从食堂到收货地址所在楼栋的航线和预计送达耗时
+     */
+    @GetMapping("/{id}/route")
+    public Result<CanteenDto.RoutePlan> getRoute(@PathVariable("id") Long canteenId,
+                                                 @RequestParam("address") String address) {
+        CanteenDto.RoutePlan plan = routeService.plan(canteenId, address);
+        if (plan == null) {
+            throw BizException.notFound("无法规划航线：航路图中没有该食堂或楼栋，或两者之间不可达");
+        }
+        return Result.success(plan);
+    }
+
+    /**
+     * 食堂出餐 / 配送耗时统计（按小时段）
+     */
+    @GetMapping("/{id}/eta-stats")
+    public Result<List<OrderDto.EtaBucket>> getEtaStats(@PathVariable("id") Long canteenId) {
+        return Result.success(deliveryEtaService.buckets(canteenId));
+    }
+
+    /**
+     * 航路图与航线缓存统计
+     */
+    @GetMapping("/routes/stats")
+    public Result<CanteenDto.RouteStats> getRouteStats() {
+        return Result.success(routeService.stats());
+    }
+
     // ============================================================
     // 后台管理：新增/修改/状态
     // ============================================================
@@ -102,11 +151,15 @@ public class CanteenController {
     // ============================================================
 
     /**
-     * 查询食堂管理员列表
+     * 查询食堂管理员列表，支持 If-None-Match
      */
     @GetMapping("/{id}/managers")
     public Result<CanteenDto.CanteenManagerList> listCanteenManagers(
-            @PathVariable("id") Long canteenId) {
+            @PathVariable("id") Long canteenId,
+            WebRequest request) {
+        if (request.checkNotModified(contentVersionService.canteenETag(canteenId))) {
+            return null;
+        }
         return Result.success(
                 canteenService.listCanteenManagers(canteenId)
         );
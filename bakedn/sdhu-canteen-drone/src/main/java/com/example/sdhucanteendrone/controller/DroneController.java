@@ -1,15 +1,28 @@
 package com.example.sdhucanteendrone.controller;
 
+import com.example.sdhucanteendrone.Common.BizException;
 import com.example.sdhucanteendrone.Common.Result;
+import com.example.sdhucanteendrone.dto.CanteenDto;
 import com.example.sdhucanteendrone.dto.DroneDto;
 import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.service.CanteenService;
+import com.example.sdhucanteendrone.service.ChargingService;
+import com.example.sdhucanteendrone.service.DroneDispatchService;
 import com.example.sdhucanteendrone.service.DroneService;
+import com.example.sdhucanteendrone.service.DroneTelemetryService;
+import com.example.sdhucanteendrone.service.DroneTrackStore;
+import com.example.sdhucanteendrone.service.MissionService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
 /**
  * 无人机管理相关接口
  *
@@ -22,6 +35,14 @@ import org.springframework.web.bind.annotation.*;
 public class DroneController {
 
     private final DroneService droneService;
+    private final DroneDispatchService droneDispatchService;
+    private final CanteenService canteenService;
+    private final DroneTelemetryService droneTelemetryService;
+    private final DroneTrackStore droneTrackStore;
+    private final MissionService missionService;
+    private final ChargingService chargingService;
+
+    private static final int MAX_TRACK_POINTS = 10_000;
 
     /**
      * 分页查询无人机列表（按状态过滤）
@@ -37,6 +58,34 @@ public class DroneController {
         return Result.success(resultPage);
     }
 
+    /**
+     * 查询离某点最近的 k 架空闲无人机
+     *
+     * - 传 lat + lng，或传 canteenId（使用食堂坐标）
+     * - minBattery / minPayloadKg 用于过滤电量和载重不足的无人机
+     */
+    @GetMapping("/nearest")
+    public Result<List<DroneDto.NearbyDrone>> findNearestIdle(
+            @RequestParam(required = false) Double lat,
+            @RequestParam(required = false) Double lng,
+            @RequestParam(required = false) Long canteenId,
+            @RequestParam(defaultValue = "5") int k,
+            @RequestParam(defaultValue = "0") int minBattery,
+            @RequestParam(defaultValue = "0") double minPayloadKg) {
+        if (canteenId != null) {
+            CanteenDto.CanteenDetail canteen = canteenService.getCanteenDetail(canteenId);
+            if (canteen.getLatitude() == null || canteen.getLongitude() == null) {
+                throw BizException.badRequest("该食堂未设置经纬度");
+            }
+            lat = canteen.getLatitude();
+            lng = canteen.getLongitude();
+        }
+        if (lat == null || lng == null) {
+            throw BizException.badRequest("请提供 lat/lng 或 canteenId");
+        }
+        return Result.success(droneService.findNearestIdle(lat, lng, k, minBattery, minPayloadKg));
+    }
+
     /**
      * 获取无人机详情
      */
@@ -65,7 +114,7 @@ public class DroneController {
     }
 
     /**
-     * 修改无人机状态（IDLE / IN_MISSION / MAINTENANCE）
+     * 修改无人机状态（IDLE / IN_MISSION / MAINTENANCE；RESERVED 只能通过指派订单进入，CHARGING 由充电调度设置）
      */
     @PatchMapping("/{id}/status")
     public Result<Void> changeDroneStatus(
@@ -80,4 +129,104 @@ public class DroneController {
         droneService.deleteDrone(droneId);
         return Result.success();
     }
+
+    /**
+     * 批量上报遥测（电量 / 位置），按无人机合并后定时回写数据库
+     */
+    @PostMapping("/telemetry")
+    public Result<DroneDto.TelemetryIngestResult> ingestTelemetry(
+            @RequestBody DroneDto.TelemetryBatchReq req) {
+        return Result.success(droneTelemetryService.ingest(req.getFrames()));
+    }
+
+    /**
+     * 无人机实时遥测（内存中的最新值）
+     */
+    @GetMapping("/{id}/telemetry")
+    public Result<DroneDto.DroneTelemetry> getTelemetry(@PathVariable("id") Long droneId) {
+        DroneDto.DroneTelemetry telemetry = droneTelemetryService.getLatest(droneId);
+        if (telemetry == null) {
+            throw BizException.notFound("该无人机暂无遥测数据");
+        }
+        return Result.success(telemetry);
+    }
+
+    /**
+     * 飞行轨迹回放：[from, to] 内的轨迹点，按时间升序
+     *
+     * - from 默认为 to 之前 1 小时，to 默认为当前时间
+     * - limit 最大 10000
+     */
+    @GetMapping("/{id}/track")
+    public Result<List<DroneDto.TrackPoint>> getTrack(
+            @PathVariable("id") Long droneId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant to,
+            @RequestParam(defaultValue = "1000") int limit) {
+        if (limit <= 0 || limit > MAX_TRACK_POINTS) {
+            throw BizException.badRequest("limit 必须在 1~" + MAX_TRACK_POINTS + " 之间");
+        }
+        Instant end = to == null ? Instant.now() : to;
+        Instant start = from == null ? end.minus(Duration.ofHours(1)) : from;
+        if (start.isAfter(end)) {
+            throw BizException.badRequest("from 不能晚于 to");
+        }
+        return Result.success(droneTrackStore.query(droneId, start, end, limit));
+    }
+
+    /**
+     * 遥测接入统计：收帧数、丢弃数、回写行数
+     */
+    @GetMapping("/telemetry/stats")
+    public Result<DroneDto.TelemetryStats> getTelemetryStats() {
+        return Result.success(droneTelemetryService.stats());
+    }
+
+    /**
+     * 手动合单起飞：一架空闲无人机承运同一食堂、同一目的地的多个已打包订单
+     */
+    @PostMapping("/missions")
+    public Result<DroneDto.MissionDetail> launchMission(@RequestBody DroneDto.MissionLaunchReq req) {
+        return Result.success(missionService.launch(req.getDroneId(), req.getOrderIds()));
+    }
+
+    /**
+     * 合单任务详情：承运的订单、剩余未送达数
+     */
+    @GetMapping("/missions/{id}")
+    public Result<DroneDto.MissionDetail> getMission(@PathVariable("id") Long missionId) {
+        return Result.success(missionService.getMission(missionId));
+    }
+
+    /**
+     * 手动触发一轮自动派机（平时由定时任务执行），返回本轮派出的订单数
+     */
+    @PostMapping("/dispatch/run")
+    public Result<Integer> runDispatch() {
+        return Result.success(droneDispatchService.dispatchOnce());
+    }
+
+    /**
+     * 自动派机统计：派出数量、失败次数、派机延迟分位数
+     */
+    @GetMapping("/dispatch/stats")
+    public Result<DroneDto.DispatchStats> getDispatchStats() {
+        return Result.success(droneDispatchService.stats());
+    }
+
+    /**
+     * 手动触发一轮充电调度（平时由定时任务执行）
+     */
+    @PostMapping("/charging/run")
+    public Result<DroneDto.ChargingStatus> runCharging() {
+        return Result.success(chargingService.scheduleOnce());
+    }
+
+    /**
+     * 充电桩占用情况与需求预测
+     */
+    @GetMapping("/charging")
+    public Result<DroneDto.ChargingStatus> getChargingStatus() {
+        return Result.success(chargingService.status());
+    }
 }
@@ -3,12 +3,25 @@ package com.example.sdhucanteendrone.controller;
 import com.example.sdhucanteendrone.Common.Result;
 import com.example.sdhucanteendrone.dto.MenuDto;
 import com.example.sdhucanteendrone.entity.enums.FoodShelfStatus;
+import com.example.sdhucanteendrone.entity.enums.MenuFileFormat;
+import com.example.sdhucanteendrone.service.ContentVersionService;
 import com.example.sdhucanteendrone.service.MenuService;
+import com.example.sdhucanteendrone.service.MenuSnapshotService;
+import com.example.sdhucanteendrone.service.MenuTransferService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
 
 /**
  * 菜单（分类 + 菜品）相关接口
@@ -22,17 +35,41 @@ import org.springframework.web.bind.annotation.*;
 public class MenuController {
 
     private final MenuService menuService;
+    private final MenuSnapshotService menuSnapshotService;
+    private final ContentVersionService contentVersionService;
+    private final MenuTransferService menuTransferService;
+
+    /**
+     * 整份菜单（分类按 sort 排序，上架菜品按分类分组，带版本号）
+     *
+     * 直接返回内存快照，不查库；菜单有变化时版本号加一。
+     * 支持 If-None-Match：菜单未变化时返回 304。
+     */
+    @GetMapping
+    public Result<MenuDto.MenuSnapshot> getMenu(@PathVariable("canteenId") Long canteenId,
+                                                WebRequest request) {
+        if (request.checkNotModified(contentVersionService.menuETag(canteenId))) {
+            return null;
+        }
+        return Result.success(
+                menuSnapshotService.get(canteenId)
+        );
+    }
 
     // ============================================================
     // 分类管理
     // ============================================================
 
     /**
-     * 获取指定食堂的全部分类列表（按 sort 排序）
+     * 获取指定食堂的全部分类列表（按 sort 排序），支持 If-None-Match
      */
     @GetMapping("/categories")
     public Result<MenuDto.CategoryList> listCategories(
-            @PathVariable("canteenId") Long canteenId) {
+            @PathVariable("canteenId") Long canteenId,
+            WebRequest request) {
+        if (request.checkNotModified(contentVersionService.menuETag(canteenId))) {
+            return null;
+        }
         return Result.success(
                 menuService.listCategories(canteenId)
         );
@@ -160,4 +197,51 @@ public class MenuController {
         menuService.updateFoodStock(canteenId, foodId, stock);
         return Result.success();
     }
+
+    /**
+     * 开启 / 关闭限时抢购（爆款菜品的库存拆分片扣减）
+     */
+    @PatchMapping("/foods/{foodId}/flash-sale")
+    public Result<Void> changeFoodFlashSale(
+            @PathVariable("canteenId") Long canteenId,
+            @PathVariable("foodId") Long foodId,
+            @RequestParam("enabled") boolean enabled) {
+        menuService.changeFoodFlashSale(canteenId, foodId, enabled);
+        return Result.success();
+    }
+
+    // ============================================================
+    // 批量导入 / 导出
+    // ============================================================
+
+    /**
+     * 批量导入分类和菜品（请求体为 CSV 或 JSON 数组，边读边写，只新增不修改）
+     *
+     * CSV 表头：category,categorySort,name,priceCent,stock,weightGrams,onShelf,imageUrl,description
+     */
+    @PostMapping("/import")
+    public Result<MenuDto.ImportReport> importMenu(
+            @PathVariable("canteenId") Long canteenId,
+            @RequestParam(defaultValue = "CSV") MenuFileFormat format,
+            InputStream body) {
+        return Result.success(
+                menuTransferService.importMenu(canteenId, format, body)
+        );
+    }
+
+    /**
+     * 导出分类和菜品（流式输出，格式与导入相同，可直接再导入到其它食堂）
+     */
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportMenu(
+            @PathVariable("canteenId") Long canteenId,
+            @RequestParam(defaultValue = "CSV") MenuFileFormat format) {
+        StreamingResponseBody body = menuTransferService.exportMenu(canteenId, format);
+        boolean csv = format == MenuFileFormat.CSV;
+        String filename = "menu-" + canteenId + (csv ? ".csv" : ".json");
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment().filename(filename).build().toString())
+                .body(body);
+    }
 }
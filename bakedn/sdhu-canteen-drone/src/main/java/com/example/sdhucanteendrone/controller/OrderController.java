@@ -4,12 +4,19 @@ import com.example.sdhucanteendrone.Common.Result;
 import com.example.sdhucanteendrone.dto.OrderDto;
 import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
 import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.service.KitchenBoardService;
+import com.example.sdhucanteendrone.service.OrderDetailCache;
+import com.example.sdhucanteendrone.service.OrderEventStreamService;
+import com.example.sdhucanteendrone.service.OrderIdempotencyService;
 import com.example.sdhucanteendrone.service.OrderService;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 /**
  * 订单相关接口
@@ -24,6 +31,10 @@ import org.springframework.web.bind.annotation.*;
 public class OrderController {
 
     private final OrderService orderService;
+    private final OrderIdempotencyService orderIdempotencyService;
+    private final OrderDetailCache orderDetailCache;
+    private final OrderEventStreamService orderEventStreamService;
+    private final KitchenBoardService kitchenBoardService;
 
     // ============================================================
     // 顾客侧：下单 & 查询自己的订单
@@ -31,11 +42,13 @@ public class OrderController {
 
     /**
      * 创建订单（顾客下单）
+     * 携带 Idempotency-Key 请求头时，同一 key 的重复提交只会创建一单
      */
     @PostMapping
     public Result<OrderDto.OrderDetail> createOrder(
+            @RequestHeader(value = "Idempotency-Key", required = false) String idempotencyKey,
             @Valid @RequestBody OrderDto.OrderCreateReq req) {
-        OrderDto.OrderDetail detail = orderService.createOrder(req);
+        OrderDto.OrderDetail detail = orderIdempotencyService.createOrder(idempotencyKey, req);
         return Result.success(detail);
     }
 
@@ -63,6 +76,20 @@ public class OrderController {
         return Result.success(resultPage);
     }
 
+    /**
+     * 获取“当前用户”的订单列表（游标分页，不统计总数）
+     * 首页不传 cursor，之后传上一页返回的 nextCursor
+     */
+    @GetMapping("/self/cursor")
+    public Result<OrderDto.OrderCursorPage> listMyOrdersByCursor(
+            @RequestParam("userId") Long userId,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        return Result.success(orderService.listCustomerOrdersByCursor(userId, status, cursor, size));
+    }
+
     /**
      * 顾客取消订单（如订单仍在 PENDING/CONFIRMED，可允许取消）
      */
@@ -93,6 +120,27 @@ public class OrderController {
         return Result.success(resultPage);
     }
 
+    /**
+     * 食堂查看本食堂的订单列表（游标分页，深翻页不变慢）
+     */
+    @GetMapping("/by-canteen/{canteenId}/cursor")
+    public Result<OrderDto.OrderCursorPage> listCanteenOrdersByCursor(
+            @PathVariable("canteenId") Long canteenId,
+            @RequestParam(required = false) OrderStatus status,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "10") int size
+    ) {
+        return Result.success(orderService.listCanteenOrdersByCursor(canteenId, status, cursor, size));
+    }
+
+    /**
+     * 食堂后厨看板：本食堂全部进行中的订单（待处理 / 已确认 / 已打包），直接从内存返回
+     */
+    @GetMapping("/by-canteen/{canteenId}/board")
+    public Result<OrderDto.KitchenBoard> getKitchenBoard(@PathVariable("canteenId") Long canteenId) {
+        return Result.success(kitchenBoardService.getBoard(canteenId));
+    }
+
     /**
      * 更新订单状态（食堂操作：确认/打包/发货/完成/拒单等）
      */
@@ -105,6 +153,16 @@ public class OrderController {
         return Result.success();
     }
 
+    /**
+     * 批量更新订单状态（食堂高峰期一次确认 / 打包多个订单）
+     * 整批在一个事务内完成，按订单逐个返回成功或失败原因
+     */
+    @PostMapping("/bulk-status")
+    public Result<OrderDto.BulkStatusResult> bulkUpdateOrderStatus(
+            @RequestBody OrderDto.BulkStatusReq req) {
+        return Result.success(orderService.bulkUpdateOrderStatus(req));
+    }
+
     // ============================================================
     // 时间轴 / 事件
     // ============================================================
@@ -118,6 +176,20 @@ public class OrderController {
         return Result.success(orderService.getOrderTimeline(orderId));
     }
 
+    /**
+     * 订阅订单状态变化（SSE），代替轮询详情 / 时间轴
+     * 先推送已有事件，之后每条新状态事件推送一次（event: status，id 为事件 id），订单终态后连接关闭
+     * 断线重连时浏览器会自动带上 Last-Event-ID，只补发其后的事件
+     * 订单已终态且没有漏掉的事件时返回 204，EventSource 收到 204 后不再重连
+     */
+    @GetMapping(value = "/{id}/events", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamOrderEvents(
+            @PathVariable("id") Long orderId,
+            @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        SseEmitter emitter = orderEventStreamService.subscribe(orderId, lastEventId);
+        return emitter == null ? ResponseEntity.noContent().build() : ResponseEntity.ok(emitter);
+    }
+
     // ============================================================
     // 配送方式相关（可选）
     // ============================================================
@@ -167,4 +239,16 @@ public class OrderController {
         return Result.success();
     }
 
+    // ============================================================
+    // 运维
+    // ============================================================
+
+    /**
+     * 订单详情缓存的命中 / 未命中 / 淘汰统计
+     */
+    @GetMapping("/detail-cache/stats")
+    public Result<OrderDto.OrderDetailCacheStats> getDetailCacheStats() {
+        return Result.success(orderDetailCache.stats());
+    }
+
 }
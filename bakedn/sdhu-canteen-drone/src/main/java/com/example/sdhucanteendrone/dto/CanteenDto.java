@@ -22,6 +22,8 @@ public class CanteenDto {
         private Long id;
         private String name;
         private String location;
+        private Double latitude;
+        private Double longitude;
         private CanteenOpenStatus openStatus;
     }
 
@@ -34,6 +36,8 @@ public class CanteenDto {
         private Long id;
         private String name;
         private String location;
+        private Double latitude;
+        private Double longitude;
         private CanteenOpenStatus openStatus;
 
         private LocalDateTime createdAt;
@@ -50,6 +54,8 @@ public class CanteenDto {
     public static class CanteenCreateReq {
         private String name;
         private String location;
+        private Double latitude;
+        private Double longitude;
     }
 
     // ============================================================
@@ -60,6 +66,8 @@ public class CanteenDto {
     public static class CanteenUpdateReq {
         private String name;
         private String location;
+        private Double latitude;
+        private Double longitude;
         private CanteenOpenStatus openStatus; // 可选，也可以在独立接口中修改
     }
 
@@ -84,4 +92,34 @@ public class CanteenDto {
         private Long canteenId;
         private List<CanteenManagerInfo> managers;
     }
+
+    // ============================================================
+    // 航路规划
+    // ============================================================
+
+    @Data
+    public static class RoutePlan {
+        private Long canteenId;
+        /** 航路图中登记的楼栋（由配送地址归并） */
+        private String destination;
+        /** 依次经过的航点 */
+        private List<String> waypoints;
+        private double distanceMeters;
+        /** 预计飞行时间（秒），含起降 */
+        private int etaSeconds;
+    }
+
+    @Data
+    public static class RouteStats {
+        private boolean loaded;
+        private int nodes;
+        private int edges;
+        private int noFlyEdges;
+        /** 已预计算最短路树的食堂 */
+        private List<Long> precomputedCanteens;
+        private long tableHits;
+        private long cacheHits;
+        private long cacheMisses;
+        private int cacheSize;
+    }
 }
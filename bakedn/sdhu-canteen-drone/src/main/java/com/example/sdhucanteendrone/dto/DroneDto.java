@@ -1,9 +1,11 @@
 package com.example.sdhucanteendrone.dto;
 
 import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.entity.enums.MissionStatus;
 import lombok.Data;
 
 import java.time.Instant;
+import java.util.List;
 
 /**
  * 无人机相关 DTO
@@ -21,12 +23,15 @@ public class DroneDto {
         private Long id;
         /** 无人机唯一编号，例如 DRN-001 */
         private String code;
-        /** 状态：IDLE / IN_MISSION / MAINTENANCE */
+        /** 状态：IDLE / RESERVED / IN_MISSION / MAINTENANCE / CHARGING */
         private DroneStatus status;
         /** 当前电量（0-100） */
         private Integer battery;
         /** 当前位置描述 */
         private String location;
+        /** 当前经纬度 */
+        private Double latitude;
+        private Double longitude;
         private Instant createdAt;
         private Instant updatedAt;
     }
@@ -42,10 +47,190 @@ public class DroneDto {
         private DroneStatus status;
         private Integer battery;
         private String location;
+        private Double latitude;
+        private Double longitude;
         private Instant createdAt;
         private Instant updatedAt;
     }
 
+    // ============================================================
+    // 就近空闲无人机（NearbyDrone）
+    // ============================================================
+
+    @Data
+    public static class NearbyDrone {
+        private Long id;
+        private String code;
+        private Integer battery;
+        private Double maxPayloadKg;
+        private Double latitude;
+        private Double longitude;
+        /** 与查询点的直线距离（米） */
+        private double distanceMeters;
+    }
+
+    // ============================================================
+    // 自动派机统计（DispatchStats）
+    // ============================================================
+
+    @Data
+    public static class DispatchStats {
+        /** 累计派出的订单数 */
+        private long dispatched;
+        /** 累计派机失败次数（并发冲突、无人机被占用等） */
+        private long failed;
+        /** 累计起飞次数（合单算一次） */
+        private long flights;
+        /** 其中合单起飞的次数与承运的订单数 */
+        private long missions;
+        private long batchedOrders;
+        /** 参与统计的最近样本数 */
+        private int samples;
+        /** 派机延迟（订单打包完成 → 无人机起飞）分位数，毫秒 */
+        private Long p50Ms;
+        private Long p90Ms;
+        private Long p99Ms;
+        private Long maxMs;
+        private Instant lastRunAt;
+    }
+
+    // ============================================================
+    // 充电调度（ChargingStatus / ChargingPad）
+    // ============================================================
+
+    @Data
+    public static class ChargingStatus {
+        /** 预测的无人机订单速率（单/小时） */
+        private double forecastPerHour;
+        /** 按预测需要的可派无人机数（含执行任务中的） */
+        private int requiredDrones;
+        /** 当前可派无人机数：空闲且电量达标的 + 执行任务中的 */
+        private int dispatchableDrones;
+        /** 累计送去充电 / 结束充电的次数 */
+        private long started;
+        private long released;
+        private List<ChargingPad> pads;
+        private Instant lastRunAt;
+    }
+
+    @Data
+    public static class ChargingPad {
+        private String padId;
+        private int slots;
+        /** 正在该充电桩上充电的无人机 */
+        private List<Long> droneIds;
+    }
+
+    // ============================================================
+    // 遥测上报（TelemetryFrame / TelemetryBatchReq）
+    // ============================================================
+
+    @Data
+    public static class TelemetryFrame {
+        private Long droneId;
+        /** 电量（0-100），可选 */
+        private Integer battery;
+        /** 经纬度，可选，需同时提供 */
+        private Double latitude;
+        private Double longitude;
+        /** 位置描述，可选 */
+        private String location;
+        /** 正在配送的订单，可选，记入飞行轨迹 */
+        private Long orderId;
+        /** 机载时间；为空时取服务端收到的时间 */
+        private Instant reportedAt;
+    }
+
+    @Data
+    public static class TelemetryBatchReq {
+        private List<TelemetryFrame> frames;
+    }
+
+    @Data
+    public static class TelemetryIngestResult {
+        /** 被采纳的帧数 */
+        private int accepted;
+        /** 比已有数据更旧而被丢弃的帧数 */
+        private int stale;
+        /** 无人机不存在或字段非法而被拒绝的帧数 */
+        private int rejected;
+    }
+
+    // ============================================================
+    // 无人机实时状态（DroneTelemetry，来自内存）
+    // ============================================================
+
+    @Data
+    public static class DroneTelemetry {
+        private Long droneId;
+        private Integer battery;
+        private Double latitude;
+        private Double longitude;
+        private String location;
+        private Instant reportedAt;
+        private Instant receivedAt;
+        /** 是否已回写到 drones 表 */
+        private boolean flushed;
+    }
+
+    @Data
+    public static class TelemetryStats {
+        /** 累计收到的帧数 */
+        private long framesReceived;
+        private long framesStale;
+        private long framesRejected;
+        /** 累计回写的行数 / 回写次数 */
+        private long rowsFlushed;
+        private long flushes;
+        /** 内存中跟踪的无人机数 / 待回写的无人机数 */
+        private int trackedDrones;
+        private int pendingDrones;
+        private Instant lastFlushAt;
+    }
+
+    // ============================================================
+    // 飞行轨迹点（TrackPoint）
+    // ============================================================
+
+    @Data
+    public static class TrackPoint {
+        private Instant timestamp;
+        /** 未上报位置时为空 */
+        private Double latitude;
+        private Double longitude;
+        /** 未上报电量时为空 */
+        private Integer battery;
+        /** 当时正在配送的订单，无则为空 */
+        private Long orderId;
+    }
+
+    // ============================================================
+    // 合单配送任务（MissionLaunchReq / MissionDetail）
+    // ============================================================
+
+    @Data
+    public static class MissionLaunchReq {
+        private Long droneId;
+        /** 同一食堂、同一目的地、已打包的无人机订单 */
+        private List<Long> orderIds;
+    }
+
+    @Data
+    public static class MissionDetail {
+        private Long id;
+        private Long droneId;
+        private Long canteenId;
+        private String destination;
+        private MissionStatus status;
+        private List<Long> orderIds;
+        private Integer orderCount;
+        /** 尚未送达的订单数 */
+        private Integer remainingOrders;
+        private Double payloadKg;
+        private Instant createdAt;
+        private Instant completedAt;
+    }
+
     // ============================================================
     // 创建无人机请求（DroneCreateReq）
     // ============================================================
@@ -58,6 +243,8 @@ public class DroneDto {
         private Integer battery;
         private DroneStatus status;
         private String location;
+        private Double latitude;
+        private Double longitude;
         private String note;
     }
 
@@ -81,11 +268,15 @@ public class DroneDto {
         /** 电量（百分比 0–100），可选 */
         private Integer battery;
 
-        /** 无人机当前状态（IDLE / IN_MISSION / MAINTENANCE） */
+        /** 无人机当前状态（IDLE / IN_MISSION / MAINTENANCE / CHARGING） */
         private DroneStatus status;
 
         /** 备注信息，可选 */
         private String note;
+
+        /** 当前经纬度，可选 */
+        private Double latitude;
+        private Double longitude;
     }
 
 }
@@ -1,6 +1,8 @@
 package com.example.sdhucanteendrone.dto;
 
 import lombok.Data;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -107,7 +109,17 @@ public class MenuDto {
          */
         private Boolean onShelf;
 
+        /**
+         * 是否限时抢购，对应 foods.flash_sale
+         */
+        private Boolean flashSale;
+
         private String imageUrl;
+
+        /**
+         * 单份重量（克），对应 foods.weight_grams，可为空
+         */
+        private Integer weightGrams;
     }
 
     /**
@@ -125,7 +137,9 @@ public class MenuDto {
         private Integer priceCent;
         private Integer stock;
         private Boolean onShelf;
+        private Boolean flashSale;
         private String imageUrl;
+        private Integer weightGrams;
 
         private LocalDateTime createdAt;
         private LocalDateTime updatedAt;
@@ -151,6 +165,11 @@ public class MenuDto {
 
         private String imageUrl;
 
+        /**
+         * 单份重量（克），可选；用于无人机合单时估算载重
+         */
+        private Integer weightGrams;
+
         /**
          * 是否上架；可不传则在 Service 中默认 true
          */
@@ -170,5 +189,86 @@ public class MenuDto {
 
         private String imageUrl;
         private Boolean onShelf;
+        private Integer weightGrams;
+    }
+
+    // ============================================================
+    // 菜单快照
+    // ============================================================
+
+    /**
+     * 某食堂的整份菜单（只含上架菜品），构建后不再修改，多个请求共享同一实例。
+     * <p>
+     * version 每次菜单变化后加一；库存变化频繁且以内存账本为准，不放进快照（stock 为空）。
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class MenuSnapshot {
+        private final Long canteenId;
+        private final long version;
+        private final LocalDateTime builtAt;
+        /**
+         * 分类按 sort 排序，未分类的菜品放在最后一组（categoryId 为空）
+         */
+        private final List<MenuSection> sections;
+    }
+
+    /**
+     * 菜单中的一个分类及其菜品。
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public static class MenuSection {
+        private final Long categoryId;
+        private final String categoryName;
+        private final Integer sort;
+        private final List<FoodSummary> foods;
+    }
+
+    // ============================================================
+    // 批量导入 / 导出
+    // ============================================================
+
+    /**
+     * 导入 / 导出的一行。
+     * <p>
+     * name 为空的行只声明分类（用于导出 / 导入没有菜品的分类）；
+     * category 为空表示未分类，分类不存在时按 category + categorySort 自动创建。
+     */
+    @Data
+    public static class MenuRow {
+        private String category;
+        private Integer categorySort;
+        private String name;
+        private Integer priceCent;
+        private Integer stock;
+        private Integer weightGrams;
+        private Boolean onShelf;
+        private String imageUrl;
+        private String description;
+    }
+
+    /**
+     * 导入结果：逐行校验，不合法的行跳过并记录原因，其余照常写入。
+     */
+    @Data
+    public static class ImportReport {
+        private int createdCategories;
+        private int createdFoods;
+        private int skippedRows;
+        /**
+         * 跳过原因，最多返回前 100 条
+         */
+        private List<ImportError> errors;
+    }
+
+    @Data
+    public static class ImportError {
+        /**
+         * CSV 为文件中的行号（表头为第 1 行），JSON 为数组中的序号（从 1 开始）
+         */
+        private long row;
+        private String name;
+        private String message;
     }
 }
@@ -1,6 +1,7 @@
 package com.example.sdhucanteendrone.dto;
 
 import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.EtaPhase;
 import com.example.sdhucanteendrone.entity.enums.OrderStatus;
 import lombok.Data;
 
@@ -58,6 +59,43 @@ public class OrderDto {
         private LocalDateTime updatedAt;
     }
 
+    // ============================================================
+    // 订单列表（游标分页）
+    // ============================================================
+
+    /**
+     * keyset 分页结果：不返回总数，翻下一页时把 nextCursor 原样传回即可。
+     */
+    @Data
+    public static class OrderCursorPage {
+        private List<OrderSummary> items;
+
+        /**
+         * 下一页游标（不透明字符串），没有更多数据时为 null
+         */
+        private String nextCursor;
+
+        private boolean hasMore;
+    }
+
+    // ============================================================
+    // 食堂后厨看板（进行中的订单）
+    // ============================================================
+
+    @Data
+    public static class KitchenBoard {
+        private Long canteenId;
+
+        /**
+         * 按下单先后排列
+         */
+        private List<OrderSummary> pending;
+        private List<OrderSummary> confirmed;
+        private List<OrderSummary> packed;
+
+        private int total;
+    }
+
     // ============================================================
     // 订单详情
     // ============================================================
@@ -85,6 +123,18 @@ public class OrderDto {
         private String deliveryAddress;  // 配送地址
         private String otpCode;          // 取餐码（若有）
 
+        /**
+         * 无人机订单按航路图估算的航线长度（米）和飞行时间（秒）；无法规划时为空
+         */
+        private Double routeDistanceMeters;
+        private Integer etaSeconds;
+
+        /**
+         * 按历史耗时预测的打包完成 / 送达时间；已打包后不再给出打包预测，终态时都为空
+         */
+        private LocalDateTime predictedReadyAt;
+        private LocalDateTime predictedDeliveredAt;
+
         private LocalDateTime createdAt;
         private LocalDateTime updatedAt;
 
@@ -99,6 +149,33 @@ public class OrderDto {
         private List<OrderStatusEvent> timeline;
     }
 
+    // ============================================================
+    // 订单详情缓存统计
+    // ============================================================
+
+    @Data
+    public static class OrderDetailCacheStats {
+        private long hits;
+        private long misses;
+        private long evictions;       // 超出容量或过期被移除
+        private long invalidations;   // 订单变化导致的失效
+        private int size;
+        private int maxEntries;
+        private double hitRate;
+    }
+
+    /**
+     * ETA 统计桶：某食堂某阶段在某小时段（null 为全天）的耗时分布
+     */
+    @Data
+    public static class EtaBucket {
+        private EtaPhase phase;
+        private Integer hour;
+        private long samples;
+        private double meanSeconds;
+        private double p90Seconds;
+    }
+
     // ============================================================
     // 订单明细项（对标 order_items）
     // ============================================================
@@ -190,6 +267,46 @@ public class OrderDto {
         private String reason;
     }
 
+    // ============================================================
+    // 批量修改订单状态（食堂批量确认 / 打包）
+    // ============================================================
+
+    @Data
+    public static class BulkStatusReq {
+        /**
+         * 待修改的订单 id（单次最多 200 个）
+         */
+        private List<Long> orderIds;
+
+        /**
+         * 目标状态
+         */
+        private OrderStatus status;
+
+        /**
+         * 备注，写入每条状态事件
+         */
+        private String note;
+    }
+
+    @Data
+    public static class BulkStatusResult {
+        private int succeeded;
+        private int failed;
+
+        /**
+         * 按请求中的顺序逐个返回结果
+         */
+        private List<BulkStatusItem> results;
+    }
+
+    @Data
+    public static class BulkStatusItem {
+        private Long orderId;
+        private boolean success;
+        private String message;   // 失败原因，成功时为 null
+    }
+
     // ============================================================
     // 订单时间轴（状态流转）
     // ============================================================
@@ -23,6 +23,13 @@ public class Canteen {
     @Column(nullable = false, length = 255)
     private String location;
 
+    // 经纬度（WGS84），无人机从这里取餐
+    @Column(name = "latitude")
+    private Double latitude;
+
+    @Column(name = "longitude")
+    private Double longitude;
+
     // 对应 SQL: open_status ENUM('OPEN','CLOSED') NOT NULL
     @Enumerated(EnumType.STRING)
     @Column(name = "open_status", nullable = false, length = 20)
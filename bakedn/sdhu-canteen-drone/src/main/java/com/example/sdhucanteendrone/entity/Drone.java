@@ -3,11 +3,14 @@ package com.example.sdhucanteendrone.entity;
 import com.example.sdhucanteendrone.entity.enums.DroneStatus;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.Instant;
 
 @Data
 @Entity
+// 只更新改动过的列：电量 / 位置由遥测批量回写，修改状态时不会把它们覆盖回旧值
+@DynamicUpdate
 @Table(name = "drones")
 public class Drone {
 
@@ -43,4 +46,27 @@ public class Drone {
 
     @Column(name = "location" , length = 255)
     private String location;
+
+    // 经纬度（WGS84），用于就近选机；未上报位置时为空
+    @Column(name = "latitude")
+    private Double latitude;
+
+    @Column(name = "longitude")
+    private Double longitude;
+
+    // 预占 / 执行中的订单；空闲时为空。只通过 DroneRepository 的条件更新修改
+    @Column(name = "current_order_id")
+    private Long currentOrderId;
+
+    // 执行中的合单任务；与 currentOrderId 互斥，同样只通过条件更新修改
+    @Column(name = "current_mission_id")
+    private Long currentMissionId;
+
+    // 预占时间，用于释放超时未起飞的预占
+    @Column(name = "reserved_at")
+    private Instant reservedAt;
+
+    // 充电中占用的充电桩；只在 CHARGING 状态下有值，同样只通过条件更新修改
+    @Column(name = "charging_pad", length = 32)
+    private String chargingPad;
 }
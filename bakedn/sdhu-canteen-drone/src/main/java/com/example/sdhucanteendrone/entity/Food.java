@@ -25,7 +25,9 @@ public class Food {
     @Column(name = "price_cent", nullable = false)
     private Integer priceCent;
 
-    @Column(nullable = false)
+    // 库存由内存账本回写（FoodBatchRepository.batchAddStock）或管理端按绝对值设置（updateStockByCanteenIdAndId），
+    // 实体整行保存时不写该列，避免把读到的旧值盖回去
+    @Column(nullable = false, updatable = false)
     private Integer stock;
 
     @Column(name = "on_shelf", nullable = false)
@@ -37,6 +39,14 @@ public class Food {
     @Column(name = "image_url", length = 255)
     private String imageUrl;
 
+    // 单份重量（克），用于估算无人机载重；为空时按默认每份重量估算
+    @Column(name = "weight_grams")
+    private Integer weightGrams;
+
+    // 是否限时抢购（爆款）：内存库存拆成多个分片扣减；为空视为否
+    @Column(name = "flash_sale")
+    private Boolean flashSale;
+
     @Column(name = "created_at", updatable = false)
     private Instant createdAt;
 
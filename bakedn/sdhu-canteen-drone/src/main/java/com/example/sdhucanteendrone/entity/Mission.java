@@ -0,0 +1,58 @@
+package com.example.sdhucanteendrone.entity;
+
+import com.example.sdhucanteendrone.entity.enums.MissionStatus;
+import jakarta.persistence.*;
+import lombok.Data;
+import org.hibernate.annotations.DynamicUpdate;
+
+import java.time.Instant;
+
+/**
+ * 一次无人机配送任务：同一食堂、同一目的地的若干订单合并成一次起飞。
+ */
+@Data
+@Entity
+@DynamicUpdate
+@Table(name = "missions", indexes = {
+        @Index(name = "idx_missions_drone_status", columnList = "drone_id, status")
+})
+public class Mission {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "drone_id", nullable = false)
+    private Long droneId;
+
+    @Column(name = "canteen_id", nullable = false)
+    private Long canteenId;
+
+    // 目的地（楼栋），由订单地址归并得到
+    @Column(name = "destination", length = 255)
+    private String destination;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    private MissionStatus status;
+
+    @Column(name = "order_count", nullable = false)
+    private Integer orderCount;
+
+    // 尚未送达的订单数；只通过 MissionRepository 的条件更新递减
+    @Column(name = "remaining_orders", nullable = false)
+    private Integer remainingOrders;
+
+    // 起飞时估算的总载重
+    @Column(name = "payload_kg", nullable = false)
+    private Double payloadKg;
+
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+}
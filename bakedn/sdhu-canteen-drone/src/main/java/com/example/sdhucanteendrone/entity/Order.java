@@ -4,12 +4,20 @@ import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
 import com.example.sdhucanteendrone.entity.enums.OrderStatus;
 import jakarta.persistence.*;
 import lombok.Data;
+import org.hibernate.annotations.DynamicUpdate;
 
 import java.time.Instant;
 
 @Data
 @Entity
-@Table(name = "orders")
+// 只更新改动过的列：修改配送方式 / 指派无人机时不会把 status 覆盖回旧值
+@DynamicUpdate
+@Table(name = "orders", indexes = {
+        // 订单列表按 (created_at, id) 倒序做 keyset 分页
+        @Index(name = "idx_orders_customer_created", columnList = "customer_id, created_at, id"),
+        @Index(name = "idx_orders_canteen_created", columnList = "canteen_id, created_at, id"),
+        @Index(name = "idx_orders_canteen_status_created", columnList = "canteen_id, status, created_at, id")
+})
 public class Order {
 
     @Id
@@ -48,6 +56,10 @@ public class Order {
     @Column(name = "drone_id")
     private Long droneId;
 
+    // 合单配送时所属的任务；单独起飞的订单为空
+    @Column(name = "mission_id")
+    private Long missionId;
+
     @Column(name = "created_at", updatable = false)
     private Instant createdAt;
 
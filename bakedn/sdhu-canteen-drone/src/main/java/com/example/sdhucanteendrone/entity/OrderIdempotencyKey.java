@@ -0,0 +1,35 @@
+package com.example.sdhucanteendrone.entity;
+
+import jakarta.persistence.*;
+import lombok.Data;
+
+import java.time.Instant;
+
+/**
+ * 下单幂等键（Idempotency-Key）落库记录，用于进程重启 / 多实例时的兜底去重。
+ */
+@Data
+@Entity
+@Table(name = "order_idempotency_keys", indexes = {
+        @Index(name = "idx_idempotency_created", columnList = "created_at")
+})
+public class OrderIdempotencyKey {
+
+    // 存储格式：customerId:客户端传入的 key，避免不同用户的 key 相互冲突
+    @Id
+    @Column(name = "idem_key", length = 100)
+    private String key;
+
+    @Column(name = "customer_id", nullable = false)
+    private Long customerId;
+
+    @Column(name = "order_id", nullable = false)
+    private Long orderId;
+
+    // 首次请求体的 SHA-256：同一个 key 换了请求内容时拒绝重放；旧记录为 null，不校验
+    @Column(name = "request_hash", length = 64)
+    private String requestHash;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+}
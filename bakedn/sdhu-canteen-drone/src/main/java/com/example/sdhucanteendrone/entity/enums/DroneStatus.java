@@ -1,5 +1,11 @@
 package com.example.sdhucanteendrone.entity.enums;
 
 public enum DroneStatus {
-    IDLE, IN_MISSION, MAINTENANCE
+    IDLE,
+    /** 已被某个订单预占、尚未起飞 */
+    RESERVED,
+    IN_MISSION,
+    MAINTENANCE,
+    /** 在充电桩上充电，由充电调度进入 / 退出，不参与派单 */
+    CHARGING
 }
@@ -0,0 +1,11 @@
+package com.example.sdhucanteendrone.entity.enums;
+
+/**
+ * ETA 统计的阶段
+ */
+public enum EtaPhase {
+    /** 出餐：PENDING → PACKED */
+    PREP,
+    /** 配送：SHIPPED → DELIVERED */
+    DELIVERY
+}
@@ -0,0 +1,11 @@
+package com.example.sdhucanteendrone.entity.enums;
+
+/**
+ * 菜单批量导入 / 导出的文件格式。
+ */
+public enum MenuFileFormat {
+    /** 首行为表头的 CSV（UTF-8，导出时带 BOM 方便 Excel 打开） */
+    CSV,
+    /** 由 MenuRow 对象组成的 JSON 数组 */
+    JSON
+}
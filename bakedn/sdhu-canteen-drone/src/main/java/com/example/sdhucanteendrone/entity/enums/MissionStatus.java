@@ -0,0 +1,11 @@
+package com.example.sdhucanteendrone.entity.enums;
+
+/**
+ * 无人机配送任务（一次起飞，可承运多个订单）的状态。
+ */
+public enum MissionStatus {
+    /** 已起飞，尚有订单未送达 */
+    IN_FLIGHT,
+    /** 全部订单已送达，无人机已释放 */
+    COMPLETED
+}
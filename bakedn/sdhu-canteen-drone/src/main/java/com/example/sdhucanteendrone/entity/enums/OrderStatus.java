@@ -12,6 +12,22 @@ public enum OrderStatus {
 
     private final String label;
 
+    /**
+     * 允许流转到的目标状态，按 ordinal 存成位图，校验时不分配对象
+     */
+    private int allowedTargets;
+
+    static {
+        // 状态流转表：
+        // PENDING → CONFIRMED → PACKED → SHIPPED → DELIVERED → COMPLETED
+        // 出餐（SHIPPED）之前都可以取消
+        allow(PENDING, CONFIRMED, CANCELED);
+        allow(CONFIRMED, PACKED, CANCELED);
+        allow(PACKED, SHIPPED, CANCELED);
+        allow(SHIPPED, DELIVERED);
+        allow(DELIVERED, COMPLETED);
+    }
+
     OrderStatus(String label) {
         this.label = label;
     }
@@ -19,4 +35,24 @@ public enum OrderStatus {
     public String getLabel() {
         return label;
     }
-}
\ No newline at end of file
+
+    /**
+     * 是否允许从当前状态流转到 target
+     */
+    public boolean canTransitionTo(OrderStatus target) {
+        return target != null && (allowedTargets & (1 << target.ordinal())) != 0;
+    }
+
+    /**
+     * 终态：不能再流转到任何状态
+     */
+    public boolean isTerminal() {
+        return allowedTargets == 0;
+    }
+
+    private static void allow(OrderStatus from, OrderStatus... targets) {
+        for (OrderStatus to : targets) {
+            from.allowedTargets |= 1 << to.ordinal();
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.sdhucanteendrone.repository;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 无人机 drones 表的 JDBC 批量写入。
+ */
+@Repository
+@RequiredArgsConstructor
+public class DroneBatchRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    // 遥测里没带的字段保持原值
+    private static final String UPDATE_TELEMETRY_SQL = """
+            update drones
+               set battery = coalesce(?, battery),
+                   latitude = coalesce(?, latitude),
+                   longitude = coalesce(?, longitude),
+                   location = coalesce(?, location),
+                   updated_at = ?
+             where id = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 一架无人机待回写的最新遥测。
+     */
+    public record TelemetryRow(Long droneId, Integer battery, Double latitude, Double longitude,
+                               String location) {
+    }
+
+    /**
+     * 批量回写电量与位置，每架无人机一行。
+     * <p>
+     * updated_at 记服务端回写时间，与其它写 drones 的路径一致；设备上报时间（设备时钟，可能偏差或乱序）
+     * 只保留在遥测快照里，不写进 updated_at。
+     */
+    public void batchUpdateTelemetry(List<TelemetryRow> rows, Instant flushedAt) {
+        if (rows.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(UPDATE_TELEMETRY_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setObject(1, row.battery(), Types.INTEGER);
+            ps.setObject(2, row.latitude(), Types.DOUBLE);
+            ps.setObject(3, row.longitude(), Types.DOUBLE);
+            ps.setObject(4, row.location(), Types.VARCHAR);
+            ps.setTimestamp(5, Timestamp.from(flushedAt));
+            ps.setLong(6, row.droneId());
+        });
+    }
+}
@@ -10,6 +10,10 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
 /**
  * 无人机 drones 表对应的 Repository。
  */
@@ -21,16 +25,156 @@ public interface DroneRepository extends JpaRepository<Drone, Long> {
      */
     Page<Drone> findByStatus(DroneStatus status, Pageable pageable);
 
+    /**
+     * 查询某状态下电量不低于指定值的无人机（调度选机用）。
+     */
+    List<Drone> findByStatusAndBatteryGreaterThanEqual(DroneStatus status, Integer battery);
+
+    /**
+     * 查询若干状态下的无人机（充电调度用）。
+     */
+    List<Drone> findByStatusIn(Collection<DroneStatus> statuses);
+
+    long countByStatusIn(Collection<DroneStatus> statuses);
+
     /**
      * 判断无人机编号是否已存在。
      */
     boolean existsByCode(String code);
 
     /**
-     * 更新无人机状态。
+     * 预占超时的无人机（用于释放）。
+     */
+    List<Drone> findByStatusAndReservedAtBefore(DroneStatus status, Instant reservedAt);
+
+    // ========== 订单绑定（条件更新，代替读-改-写） ==========
+
+    /**
+     * 仅当无人机当前为 from 状态且未绑定订单 / 任务时，改为 to 状态并绑定 orderId。
+     *
+     * @return 1 表示预占成功；0 表示无人机不存在或已被其它订单占用
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Drone d
+               set d.status = :to, d.currentOrderId = :orderId, d.reservedAt = :now, d.updatedAt = :now
+             where d.id = :id and d.status = :from
+               and d.currentOrderId is null and d.currentMissionId is null
+            """)
+    int bindOrder(@Param("id") Long id,
+                  @Param("from") DroneStatus from,
+                  @Param("to") DroneStatus to,
+                  @Param("orderId") Long orderId,
+                  @Param("now") Instant now);
+
+    /**
+     * 仅当无人机当前为 from 状态且绑定的是 orderId 时改为 to 状态，绑定保持不变。
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Drone d set d.status = :to, d.updatedAt = :now
+             where d.id = :id and d.status = :from and d.currentOrderId = :orderId
+            """)
+    int advanceBoundOrder(@Param("id") Long id,
+                          @Param("orderId") Long orderId,
+                          @Param("from") DroneStatus from,
+                          @Param("to") DroneStatus to,
+                          @Param("now") Instant now);
+
+    /**
+     * 仅当无人机当前为 from 状态且绑定的是 orderId 时改为 to 状态并解除绑定。
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Drone d
+               set d.status = :to, d.currentOrderId = null, d.reservedAt = null, d.updatedAt = :now
+             where d.id = :id and d.status = :from and d.currentOrderId = :orderId
+            """)
+    int unbindOrder(@Param("id") Long id,
+                    @Param("orderId") Long orderId,
+                    @Param("from") DroneStatus from,
+                    @Param("to") DroneStatus to,
+                    @Param("now") Instant now);
+
+    // ========== 合单任务绑定 ==========
+
+    /**
+     * 仅当无人机当前为 from 状态且未绑定订单 / 任务时，改为 to 状态并绑定 missionId。
+     *
+     * @return 1 表示成功；0 表示无人机不存在或已被占用
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Drone d
+               set d.status = :to, d.currentMissionId = :missionId, d.updatedAt = :now
+             where d.id = :id and d.status = :from
+               and d.currentOrderId is null and d.currentMissionId is null
+            """)
+    int bindMission(@Param("id") Long id,
+                    @Param("from") DroneStatus from,
+                    @Param("to") DroneStatus to,
+                    @Param("missionId") Long missionId,
+                    @Param("now") Instant now);
+
+    /**
+     * 仅当无人机当前为 from 状态且执行的是 missionId 时改为 to 状态并解除绑定。
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Drone d set d.status = :to, d.currentMissionId = null, d.updatedAt = :now
+             where d.id = :id and d.status = :from and d.currentMissionId = :missionId
+            """)
+    int unbindMission(@Param("id") Long id,
+                      @Param("missionId") Long missionId,
+                      @Param("from") DroneStatus from,
+                      @Param("to") DroneStatus to,
+                      @Param("now") Instant now);
+
+    // ========== 充电 ==========
+
+    /**
+     * 仅当无人机空闲且未绑定订单 / 任务时，改为 CHARGING 并占用充电桩 pad。
+     *
+     * @return 1 表示成功；0 表示无人机已被派单或状态已变化
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Drone d set d.status = :charging, d.chargingPad = :pad, d.updatedAt = :now
+             where d.id = :id and d.status = :idle
+               and d.currentOrderId is null and d.currentMissionId is null
+            """)
+    int startCharging(@Param("id") Long id,
+                      @Param("pad") String pad,
+                      @Param("idle") DroneStatus idle,
+                      @Param("charging") DroneStatus charging,
+                      @Param("now") Instant now);
+
+    /**
+     * 仅当无人机仍在充电时改回空闲并释放充电桩。
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Drone d set d.status = :idle, d.chargingPad = null, d.updatedAt = :now
+             where d.id = :id and d.status = :charging
+            """)
+    int finishCharging(@Param("id") Long id,
+                       @Param("charging") DroneStatus charging,
+                       @Param("idle") DroneStatus idle,
+                       @Param("now") Instant now);
+
+    /**
+     * 手动修改状态：仅当无人机仍为 from 状态时改为 to，同时释放充电桩、解除订单 / 任务绑定。
+     * 离开 RESERVED / IN_MISSION 后绑定已无意义，不清掉的话 bindOrder / bindMission 永远不会成功。
      */
-    @Modifying
-    @Query("update Drone d set d.status = :status where d.id = :id")
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Drone d
+               set d.status = :to, d.chargingPad = null, d.currentOrderId = null,
+                   d.currentMissionId = null, d.reservedAt = null, d.updatedAt = :now
+             where d.id = :id and d.status = :from
+            """)
     int updateStatusById(@Param("id") Long id,
-                         @Param("status") DroneStatus status);
+                         @Param("from") DroneStatus from,
+                         @Param("to") DroneStatus to,
+                         @Param("now") Instant now);
 }
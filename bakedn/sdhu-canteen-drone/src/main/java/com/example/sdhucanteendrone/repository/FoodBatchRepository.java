@@ -0,0 +1,168 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.Food;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * 菜品 foods 表的 JDBC 批量写入 / 流式读取。
+ */
+@Repository
+@RequiredArgsConstructor
+public class FoodBatchRepository {
+
+    private static final int BATCH_SIZE = 500;
+
+    private static final String ADD_STOCK_SQL =
+            "update foods set stock = greatest(stock + ?, 0) where id = ?";
+
+    private static final String INSERT_FOOD_SQL = """
+            insert into foods (name, category_id, canteen_id, price_cent, stock, on_shelf, description,
+                               image_url, weight_grams, created_at, updated_at)
+            values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String STREAM_FOODS_SQL = """
+            select id, name, category_id, canteen_id, price_cent, stock, on_shelf, description,
+                   image_url, weight_grams
+            from foods
+            where canteen_id = ?
+            order by id
+            """;
+
+    /**
+     * 旧库存触发器：挂在 order_items / orders 上、动作里改 foods.stock 的触发器
+     * （与 sql/drop_stock_triggers.sql 的查询条件相同；刷新订单金额的触发器不改 foods，不受影响）
+     */
+    private static final String FIND_STOCK_TRIGGERS_SQL = """
+            select trigger_name from information_schema.triggers
+            where trigger_schema = database()
+              and event_object_table in ('order_items', 'orders')
+              and lower(action_statement) like '%foods%'
+              and lower(action_statement) like '%stock%'
+            order by trigger_name
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 流式读取的 fetch size。MySQL Connector/J 只有 Integer.MIN_VALUE 时才逐行从服务端读取，
+     * 否则会把整个结果集读进内存；换用其它数据库时改成正数。
+     */
+    @Value("${canteen.menu.export-fetch-size:-2147483648}")
+    private int streamFetchSize = Integer.MIN_VALUE;
+
+    /**
+     * 批量累加库存（delta 为负表示扣减），结果不小于 0。
+     *
+     * @param deltas foodId -> 库存净变化量
+     */
+    public void batchAddStock(Map<Long, Integer> deltas) {
+        if (deltas.isEmpty()) {
+            return;
+        }
+        List<Map.Entry<Long, Integer>> rows = new ArrayList<>(deltas.entrySet());
+        jdbcTemplate.batchUpdate(ADD_STOCK_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setInt(1, row.getValue());
+            ps.setLong(2, row.getKey());
+        });
+    }
+
+    /**
+     * 批量插入菜品，并把生成的主键回填到每个 food 上（菜品变化事件需要 id）。
+     * <p>
+     * 与 JPA 共用同一个事务 / 连接，调用方需处于 @Transactional 中。
+     */
+    public void batchInsertFoods(List<Food> foods) {
+        for (int from = 0; from < foods.size(); from += BATCH_SIZE) {
+            List<Food> chunk = foods.subList(from, Math.min(from + BATCH_SIZE, foods.size()));
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(
+                    con -> con.prepareStatement(INSERT_FOOD_SQL, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            Food f = chunk.get(i);
+                            ps.setString(1, f.getName());
+                            ps.setObject(2, f.getCategoryId());
+                            ps.setLong(3, f.getCanteenId());
+                            ps.setInt(4, f.getPriceCent());
+                            ps.setInt(5, f.getStock());
+                            ps.setBoolean(6, f.getOnShelf());
+                            ps.setString(7, f.getDescription());
+                            ps.setString(8, f.getImageUrl());
+                            ps.setObject(9, f.getWeightGrams());
+                            ps.setTimestamp(10, toTimestamp(f.getCreatedAt()));
+                            ps.setTimestamp(11, toTimestamp(f.getUpdatedAt()));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return chunk.size();
+                        }
+                    },
+                    keyHolder);
+
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < chunk.size() && i < keys.size(); i++) {
+                // 不同驱动返回的列名不同（GENERATED_KEY / ID），只取第一列
+                Object key = keys.get(i).values().iterator().next();
+                chunk.get(i).setId(((Number) key).longValue());
+            }
+        }
+    }
+
+    /**
+     * 按 id 顺序逐行读取某食堂的全部菜品（数据库游标），不会把整个菜单读进内存。
+     * <p>
+     * 读取期间一直占用一个连接，consumer 中不要再访问数据库。
+     */
+    public void streamFoods(Long canteenId, Consumer<Food> consumer) {
+        jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(STREAM_FOODS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            ps.setFetchSize(streamFetchSize);
+            ps.setLong(1, canteenId);
+            return ps;
+        }, rs -> {
+            Food f = new Food();
+            f.setId(rs.getLong("id"));
+            f.setName(rs.getString("name"));
+            f.setCategoryId(rs.getObject("category_id", Long.class));
+            f.setCanteenId(rs.getLong("canteen_id"));
+            f.setPriceCent(rs.getInt("price_cent"));
+            f.setStock(rs.getInt("stock"));
+            f.setOnShelf(rs.getBoolean("on_shelf"));
+            f.setDescription(rs.getString("description"));
+            f.setImageUrl(rs.getString("image_url"));
+            f.setWeightGrams(rs.getObject("weight_grams", Integer.class));
+            consumer.accept(f);
+        });
+    }
+
+    /**
+     * 查询当前库中仍存在的旧库存触发器名（见 {@link #FIND_STOCK_TRIGGERS_SQL}）。
+     */
+    public List<String> findStockTriggers() {
+        return jdbcTemplate.queryForList(FIND_STOCK_TRIGGERS_SQL, String.class);
+    }
+
+    private Timestamp toTimestamp(Instant instant) {
+        return Timestamp.from(instant == null ? Instant.now() : instant);
+    }
+}
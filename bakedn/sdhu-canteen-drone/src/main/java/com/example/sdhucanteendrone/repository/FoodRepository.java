@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -27,6 +28,17 @@ public interface FoodRepository extends JpaRepository<Food, Long> {
      */
     boolean existsByCanteenIdAndName(Long canteenId, String name);
 
+    /**
+     * 查询某个食堂下全部菜品名称（批量导入时在内存中做重名校验）。
+     */
+    @Query("select f.name from Food f where f.canteenId = :canteenId")
+    List<String> findNamesByCanteenId(@Param("canteenId") Long canteenId);
+
+    /**
+     * 查询某个食堂下全部上架菜品（构建菜单快照用）。
+     */
+    List<Food> findByCanteenIdAndOnShelfTrue(Long canteenId);
+
     /**
      * 查询某个食堂下指定名称的菜品。
      */
@@ -39,6 +51,7 @@ public interface FoodRepository extends JpaRepository<Food, Long> {
      * - canteenId 必填
      * - categoryId / onShelf 可为 null 表示不按该条件过滤
      * - keyword 为空字符串表示不过滤
+     * - 前导通配的 like 用不上索引；带关键字的搜索平时走 FoodSearchIndex，这里只在无关键字或索引未加载时使用
      */
     @Query("""
            select f from Food f
@@ -62,6 +75,15 @@ public interface FoodRepository extends JpaRepository<Food, Long> {
                                       @Param("foodId") Long foodId,
                                       @Param("onShelf") Boolean onShelf);
 
+    /**
+     * 更新菜品的限时抢购标记。
+     */
+    @Modifying
+    @Query("update Food f set f.flashSale = :flashSale where f.canteenId = :canteenId and f.id = :foodId")
+    int updateFlashSaleByCanteenIdAndId(@Param("canteenId") Long canteenId,
+                                        @Param("foodId") Long foodId,
+                                        @Param("flashSale") Boolean flashSale);
+
     /**
      * 更新菜品库存。
      */
@@ -0,0 +1,51 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.Mission;
+import com.example.sdhucanteendrone.entity.enums.MissionStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * 配送任务 missions 表对应的 Repository。
+ */
+@Repository
+public interface MissionRepository extends JpaRepository<Mission, Long> {
+
+    /**
+     * 任务中的一单送达：未送达数减一。
+     * <p>
+     * 条件更新会锁住任务行，同一任务的几单同时送达时按顺序递减，
+     * 最后一个事务一定能读到 0。
+     *
+     * @return 1 表示成功；0 表示任务不存在、已结束或计数已为 0
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Mission m set m.remainingOrders = m.remainingOrders - 1, m.updatedAt = :now
+             where m.id = :id and m.status = :status and m.remainingOrders > 0
+            """)
+    int decrementRemaining(@Param("id") Long id,
+                           @Param("status") MissionStatus status,
+                           @Param("now") Instant now);
+
+    @Query("select m.remainingOrders from Mission m where m.id = :id")
+    Integer findRemainingOrders(@Param("id") Long id);
+
+    /**
+     * 仅当任务当前为 from 状态时改为 to 状态并记录结束时间。
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Mission m set m.status = :to, m.completedAt = :now, m.updatedAt = :now
+             where m.id = :id and m.status = :from
+            """)
+    int complete(@Param("id") Long id,
+                 @Param("from") MissionStatus from,
+                 @Param("to") MissionStatus to,
+                 @Param("now") Instant now);
+}
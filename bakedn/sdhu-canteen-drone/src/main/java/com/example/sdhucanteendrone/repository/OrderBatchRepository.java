@@ -0,0 +1,150 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.OrderItem;
+import com.example.sdhucanteendrone.entity.OrderStatusEvent;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Repository;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 订单明细 / 状态事件的 JDBC 批量写入。
+ *
+ * 说明：
+ * - OrderItem、OrderStatusEvent 使用 IDENTITY 主键，Hibernate 无法对其做 JDBC batch，
+ *   所以下单等批量写场景改走 JdbcTemplate.batchUpdate
+ * - 与 JPA 共用同一个事务 / 连接，调用方需处于 @Transactional 中
+ * - MySQL 需要在连接串上开启 rewriteBatchedStatements 才会合并为多值 insert
+ *   （update 合并为一次多语句请求，仍按语句返回各自的影响行数）
+ */
+@Repository
+@RequiredArgsConstructor
+public class OrderBatchRepository {
+
+    /** 单批最多写入的行数 */
+    private static final int BATCH_SIZE = 500;
+
+    private static final String INSERT_ITEM_SQL = """
+            insert into order_items (order_id, food_id, food_name, unit_price, qty, created_at)
+            values (?, ?, ?, ?, ?, ?)
+            """;
+
+    private static final String INSERT_EVENT_SQL = """
+            insert into order_status_events (order_id, code, occurred_at, note, created_at)
+            values (?, ?, ?, ?, ?)
+            """;
+
+    private static final String COMPARE_AND_SET_STATUS_SQL = """
+            update orders set status = ?, updated_at = ?
+            where id = ? and status = ?
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * 批量插入订单明细（subtotal 为数据库生成列，不写入）。
+     */
+    public void batchInsertItems(List<OrderItem> items) {
+        if (items.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(INSERT_ITEM_SQL, items, BATCH_SIZE, (ps, item) -> {
+            ps.setLong(1, item.getOrderId());
+            ps.setLong(2, item.getFoodId());
+            ps.setString(3, item.getFoodName());
+            ps.setInt(4, item.getUnitPrice());
+            ps.setInt(5, item.getQuantity());
+            ps.setTimestamp(6, toTimestamp(item.getCreatedAt()));
+        });
+    }
+
+    /**
+     * 批量插入订单状态事件，并把生成的主键回填到每个 event 上
+     * （SSE 推送用事件 id 做 Last-Event-ID）。
+     */
+    public void batchInsertStatusEvents(List<OrderStatusEvent> events) {
+        for (int from = 0; from < events.size(); from += BATCH_SIZE) {
+            List<OrderStatusEvent> chunk = events.subList(from, Math.min(from + BATCH_SIZE, events.size()));
+            KeyHolder keyHolder = new GeneratedKeyHolder();
+            jdbcTemplate.batchUpdate(
+                    con -> con.prepareStatement(INSERT_EVENT_SQL, new String[]{"id"}),
+                    new BatchPreparedStatementSetter() {
+                        @Override
+                        public void setValues(PreparedStatement ps, int i) throws SQLException {
+                            OrderStatusEvent e = chunk.get(i);
+                            ps.setLong(1, e.getOrderId());
+                            ps.setString(2, e.getCode().name());
+                            ps.setTimestamp(3, toTimestamp(e.getOccurredAt()));
+                            ps.setString(4, e.getNote());
+                            ps.setTimestamp(5, toTimestamp(e.getCreatedAt()));
+                        }
+
+                        @Override
+                        public int getBatchSize() {
+                            return chunk.size();
+                        }
+                    },
+                    keyHolder);
+
+            List<Map<String, Object>> keys = keyHolder.getKeyList();
+            for (int i = 0; i < chunk.size() && i < keys.size(); i++) {
+                // 不同驱动返回的列名不同（GENERATED_KEY / ID），只取第一列
+                Object key = keys.get(i).values().iterator().next();
+                chunk.get(i).setId(((Number) key).longValue());
+            }
+        }
+    }
+
+    /**
+     * 批量条件更新订单状态：每个订单一条 {@code update ... where id = ? and status = ?}，
+     * 整批一次发出，不加行锁。
+     * <p>
+     * 每条语句的影响行数就是该订单的结果：1 表示改成功；0 表示订单当前已不是预期状态
+     * （读取之后被并发修改），与单个订单的 {@link OrderRepository#compareAndSetStatus} 语义相同。
+     * 不经过持久化上下文，调用方不要再依赖已加载实体上的 status。
+     *
+     * @param current orderId -> 预期的当前状态
+     * @return 实际改到的订单 id
+     */
+    public Set<Long> batchCompareAndSetStatus(Map<Long, OrderStatus> current, OrderStatus to, Instant now) {
+        Set<Long> updated = new HashSet<>();
+        if (current.isEmpty()) {
+            return updated;
+        }
+        List<Map.Entry<Long, OrderStatus>> rows = new ArrayList<>(current.entrySet());
+        Timestamp ts = toTimestamp(now);
+        int[][] counts = jdbcTemplate.batchUpdate(COMPARE_AND_SET_STATUS_SQL, rows, BATCH_SIZE, (ps, row) -> {
+            ps.setString(1, to.name());
+            ps.setTimestamp(2, ts);
+            ps.setLong(3, row.getKey());
+            ps.setString(4, row.getValue().name());
+        });
+        int i = 0;
+        for (int[] chunk : counts) {
+            for (int count : chunk) {
+                if (count == 1) {
+                    updated.add(rows.get(i).getKey());
+                }
+                i++;
+            }
+        }
+        return updated;
+    }
+
+    private Timestamp toTimestamp(Instant instant) {
+        return Timestamp.from(instant == null ? Instant.now() : instant);
+    }
+}
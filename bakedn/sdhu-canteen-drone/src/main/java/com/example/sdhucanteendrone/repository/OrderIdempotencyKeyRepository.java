@@ -0,0 +1,40 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.OrderIdempotencyKey;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+
+/**
+ * 下单幂等键 order_idempotency_keys 对应的 Repository。
+ */
+@Repository
+public interface OrderIdempotencyKeyRepository extends JpaRepository<OrderIdempotencyKey, String> {
+
+    /**
+     * 直接插入幂等键（主键冲突即说明同一个 key 已被其它请求占用）。
+     */
+    @Modifying
+    @Query(value = """
+            insert into order_idempotency_keys (idem_key, customer_id, order_id, request_hash, created_at)
+            values (:key, :customerId, :orderId, :requestHash, :createdAt)
+            """, nativeQuery = true)
+    int insertKey(@Param("key") String key,
+                  @Param("customerId") Long customerId,
+                  @Param("orderId") Long orderId,
+                  @Param("requestHash") String requestHash,
+                  @Param("createdAt") Instant createdAt);
+
+    /**
+     * 删除过期的幂等键。
+     *
+     * @return 删除的行数
+     */
+    @Modifying
+    @Query("delete from OrderIdempotencyKey k where k.createdAt < :before")
+    int deleteByCreatedAtBefore(@Param("before") Instant before);
+}
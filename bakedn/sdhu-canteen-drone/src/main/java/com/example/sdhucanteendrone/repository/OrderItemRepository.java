@@ -6,6 +6,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 
 /**
@@ -29,4 +30,18 @@ public interface OrderItemRepository extends JpaRepository<OrderItem, Long> {
      */
     @Query("select coalesce(sum(oi.quantity), 0) from OrderItem oi where oi.orderId = :orderId")
     int sumQtyByOrderId(@Param("orderId") Long orderId);
+
+    /**
+     * 批量估算订单重量（克）：sum(份数 × 单份重量)，菜品未填重量时按 defaultGrams 计。
+     */
+    @Query("""
+            select oi.orderId as orderId,
+                   sum(oi.quantity * coalesce(f.weightGrams, :defaultGrams)) as weightGrams
+            from OrderItem oi
+            left join Food f on f.id = oi.foodId
+            where oi.orderId in :orderIds
+            group by oi.orderId
+            """)
+    List<OrderWeightView> sumWeightGramsByOrderIdIn(@Param("orderIds") Collection<Long> orderIds,
+                                                    @Param("defaultGrams") int defaultGrams);
 }
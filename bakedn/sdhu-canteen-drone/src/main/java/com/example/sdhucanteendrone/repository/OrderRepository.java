@@ -1,18 +1,146 @@
 package com.example.sdhucanteendrone.repository;
 
 import com.example.sdhucanteendrone.entity.Order;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
 import com.example.sdhucanteendrone.entity.enums.OrderStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 /**
  * 订单主表 orders 对应的 Repository。
  */
 @Repository
 public interface OrderRepository extends JpaRepository<Order, Long> {
 
+    /**
+     * 列表页投影的公共 select 部分：
+     * - 顾客名 / 食堂名通过 left join 取出
+     * - 首个菜品名、总份数通过标量子查询取出
+     * 这样一页订单只需要一条查询（外加一条 count），不再逐行回表。
+     */
+    String SUMMARY_SELECT = """
+            select o.id as id,
+                   o.customerId as customerId,
+                   u.displayName as customerName,
+                   o.canteenId as canteenId,
+                   c.name as canteenName,
+                   o.status as status,
+                   o.deliverMethod as deliverMethod,
+                   o.amountTotal as amountTotal,
+                   o.address as address,
+                   (select fi.foodName from OrderItem fi
+                     where fi.id = (select min(mi.id) from OrderItem mi where mi.orderId = o.id)) as firstFoodName,
+                   (select coalesce(sum(si.quantity), 0) from OrderItem si where si.orderId = o.id) as totalItemCount,
+                   o.createdAt as createdAt,
+                   o.updatedAt as updatedAt
+            from Order o
+            left join User u on u.id = o.customerId
+            left join Canteen c on c.id = o.canteenId
+            """;
+
+    /**
+     * 单个订单的列表页投影。
+     */
+    @Query(SUMMARY_SELECT + "where o.id = :id")
+    Optional<OrderSummaryView> findOrderSummaryById(@Param("id") Long id);
+
+    /**
+     * 按状态取出全部订单的列表页投影（按 id 升序，即下单先后）。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.status in :statuses
+            order by o.id
+            """)
+    List<OrderSummaryView> findOrderSummariesByStatusIn(@Param("statuses") Collection<OrderStatus> statuses);
+
+    // ========== 状态流转（条件更新，代替读-改-写） ==========
+
+    /**
+     * 仅当订单当前仍为 from 状态时改为 to 状态。
+     *
+     * @return 1 表示成功；0 表示订单不存在或状态已被其它请求修改
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Order o set o.status = :to, o.updatedAt = :now
+            where o.id = :id and o.status = :from
+            """)
+    int compareAndSetStatus(@Param("id") Long id,
+                            @Param("from") OrderStatus from,
+                            @Param("to") OrderStatus to,
+                            @Param("now") Instant now);
+
+    /**
+     * 仅当订单尚未指派无人机时绑定 droneId。
+     *
+     * @return 1 表示成功；0 表示订单不存在或已指派了无人机
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Order o set o.droneId = :droneId, o.updatedAt = :now
+            where o.id = :id and o.droneId is null
+            """)
+    int assignDroneIfUnassigned(@Param("id") Long id,
+                                @Param("droneId") Long droneId,
+                                @Param("now") Instant now);
+
+    /**
+     * 仅当订单绑定的仍是 droneId 时解除绑定。
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Order o set o.droneId = null, o.updatedAt = :now
+            where o.id = :id and o.droneId = :droneId
+            """)
+    int unassignDrone(@Param("id") Long id,
+                      @Param("droneId") Long droneId,
+                      @Param("now") Instant now);
+
+    /**
+     * 合单起飞：仅当订单仍为 status 状态且尚未指派无人机时，一次绑定无人机和任务。
+     *
+     * @return 实际绑定的行数；小于 ids 数量说明有订单已被并发修改
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("""
+            update Order o set o.droneId = :droneId, o.missionId = :missionId, o.updatedAt = :now
+            where o.id in :ids and o.status = :status and o.droneId is null
+            """)
+    int assignMissionIfUnassigned(@Param("ids") Collection<Long> ids,
+                                  @Param("status") OrderStatus status,
+                                  @Param("droneId") Long droneId,
+                                  @Param("missionId") Long missionId,
+                                  @Param("now") Instant now);
+
+    /**
+     * 查询某个任务承运的订单 id。
+     */
+    @Query("select o.id from Order o where o.missionId = :missionId order by o.id")
+    List<Long> findIdsByMissionId(@Param("missionId") Long missionId);
+
+    /**
+     * 等待派机的订单：指定状态 + 配送方式且尚未指派无人机，按进入该状态的先后排列。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.status = :status
+              and o.deliverMethod = :method
+              and o.droneId is null
+            order by o.updatedAt, o.id
+            """)
+    List<OrderSummaryView> findUndispatchedOrderSummaries(@Param("status") OrderStatus status,
+                                                          @Param("method") DeliverMethod method,
+                                                          Pageable limit);
+
     // ========== 顾客维度 ==========
 
     /**
@@ -27,6 +155,84 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
                                                               OrderStatus status,
                                                               Pageable pageable);
 
+    /**
+     * 顾客订单列表页（单条查询返回列表所需全部字段）。
+     *
+     * status 为 null 表示不按状态过滤。
+     */
+    @Query(value = SUMMARY_SELECT + """
+            where o.customerId = :customerId
+              and (:status is null or o.status = :status)
+            order by o.createdAt desc, o.id desc
+            """,
+            countQuery = """
+            select count(o) from Order o
+            where o.customerId = :customerId
+              and (:status is null or o.status = :status)
+            """)
+    Page<OrderSummaryView> findCustomerOrderSummaries(@Param("customerId") Long customerId,
+                                                      @Param("status") OrderStatus status,
+                                                      Pageable pageable);
+
+    // 顾客订单列表（keyset 分页）：按 (createdAt, id) 倒序，不做 count，条数由 pageable 的 size 控制。
+    // 首页 / 翻页 × 是否按状态过滤各一条查询，不用 (:x is null or ...) 的写法，
+    // 每条都能直接走 (customer_id, created_at, id) 索引的范围扫描。
+    // created_at 为空的历史行没有游标位置，不参与游标分页（下单时总会写入 created_at）。
+
+    /**
+     * 顾客订单列表第一页。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.customerId = :customerId
+              and o.createdAt is not null
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummaryView> findCustomerOrderSummariesFirst(@Param("customerId") Long customerId,
+                                                           Pageable limit);
+
+    /**
+     * 顾客订单列表第一页（按状态过滤）。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.customerId = :customerId
+              and o.status = :status
+              and o.createdAt is not null
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummaryView> findCustomerOrderSummariesFirstByStatus(@Param("customerId") Long customerId,
+                                                                   @Param("status") OrderStatus status,
+                                                                   Pageable limit);
+
+    /**
+     * 顾客订单列表：游标 (cursorCreatedAt, cursorId) 之后的一页。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.customerId = :customerId
+              and (o.createdAt < :cursorCreatedAt
+                   or (o.createdAt = :cursorCreatedAt and o.id < :cursorId))
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummaryView> findCustomerOrderSummariesAfter(@Param("customerId") Long customerId,
+                                                           @Param("cursorCreatedAt") Instant cursorCreatedAt,
+                                                           @Param("cursorId") Long cursorId,
+                                                           Pageable limit);
+
+    /**
+     * 顾客订单列表：游标之后的一页（按状态过滤）。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.customerId = :customerId
+              and o.status = :status
+              and (o.createdAt < :cursorCreatedAt
+                   or (o.createdAt = :cursorCreatedAt and o.id < :cursorId))
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummaryView> findCustomerOrderSummariesAfterByStatus(@Param("customerId") Long customerId,
+                                                                   @Param("status") OrderStatus status,
+                                                                   @Param("cursorCreatedAt") Instant cursorCreatedAt,
+                                                                   @Param("cursorId") Long cursorId,
+                                                                   Pageable limit);
+
     // ========== 食堂维度 ==========
 
     /**
@@ -40,4 +246,91 @@ public interface OrderRepository extends JpaRepository<Order, Long> {
     Page<Order> findByCanteenIdAndStatusOrderByCreatedAtDesc(Long canteenId,
                                                              OrderStatus status,
                                                              Pageable pageable);
+
+    /**
+     * 食堂订单列表页（单条查询返回列表所需全部字段）。
+     *
+     * status 为 null 表示不按状态过滤。
+     */
+    @Query(value = SUMMARY_SELECT + """
+            where o.canteenId = :canteenId
+              and (:status is null or o.status = :status)
+            order by o.createdAt desc, o.id desc
+            """,
+            countQuery = """
+            select count(o) from Order o
+            where o.canteenId = :canteenId
+              and (:status is null or o.status = :status)
+            """)
+    Page<OrderSummaryView> findCanteenOrderSummaries(@Param("canteenId") Long canteenId,
+                                                     @Param("status") OrderStatus status,
+                                                     Pageable pageable);
+
+    // 食堂订单列表（keyset 分页），规则同顾客订单列表；
+    // 按状态过滤时走 (canteen_id, status, created_at, id) 索引。
+
+    /**
+     * 食堂订单列表第一页。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.canteenId = :canteenId
+              and o.createdAt is not null
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummaryView> findCanteenOrderSummariesFirst(@Param("canteenId") Long canteenId,
+                                                          Pageable limit);
+
+    /**
+     * 食堂订单列表第一页（按状态过滤）。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.canteenId = :canteenId
+              and o.status = :status
+              and o.createdAt is not null
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummaryView> findCanteenOrderSummariesFirstByStatus(@Param("canteenId") Long canteenId,
+                                                                  @Param("status") OrderStatus status,
+                                                                  Pageable limit);
+
+    /**
+     * 食堂订单列表：游标 (cursorCreatedAt, cursorId) 之后的一页。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.canteenId = :canteenId
+              and (o.createdAt < :cursorCreatedAt
+                   or (o.createdAt = :cursorCreatedAt and o.id < :cursorId))
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummaryView> findCanteenOrderSummariesAfter(@Param("canteenId") Long canteenId,
+                                                          @Param("cursorCreatedAt") Instant cursorCreatedAt,
+                                                          @Param("cursorId") Long cursorId,
+                                                          Pageable limit);
+
+    /**
+     * 食堂订单列表：游标之后的一页（按状态过滤）。
+     */
+    @Query(SUMMARY_SELECT + """
+            where o.canteenId = :canteenId
+              and o.status = :status
+              and (o.createdAt < :cursorCreatedAt
+                   or (o.createdAt = :cursorCreatedAt and o.id < :cursorId))
+            order by o.createdAt desc, o.id desc
+            """)
+    List<OrderSummaryView> findCanteenOrderSummariesAfterByStatus(@Param("canteenId") Long canteenId,
+                                                                  @Param("status") OrderStatus status,
+                                                                  @Param("cursorCreatedAt") Instant cursorCreatedAt,
+                                                                  @Param("cursorId") Long cursorId,
+                                                                  Pageable limit);
+
+    /**
+     * [from, to) 之间新下的、指定配送方式的订单数（充电调度预测需求用）。
+     */
+    @Query("""
+            select count(o) from Order o
+            where o.deliverMethod = :method and o.createdAt >= :from and o.createdAt < :to
+            """)
+    long countCreatedBetween(@Param("method") DeliverMethod method,
+                             @Param("from") Instant from,
+                             @Param("to") Instant to);
 }
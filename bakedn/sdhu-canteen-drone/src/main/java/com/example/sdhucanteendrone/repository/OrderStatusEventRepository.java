@@ -1,10 +1,16 @@
 package com.example.sdhucanteendrone.repository;
 
 import com.example.sdhucanteendrone.entity.OrderStatusEvent;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 /**
  * 订单状态事件 order_status_events 对应的 Repository。
@@ -16,4 +22,39 @@ public interface OrderStatusEventRepository extends JpaRepository<OrderStatusEve
      * 按时间升序查询某个订单的状态事件，用于时间轴展示。
      */
     List<OrderStatusEvent> findByOrderIdOrderByOccurredAtAsc(Long orderId);
+
+    /**
+     * 某个订单最早一次进入指定状态的事件。
+     */
+    Optional<OrderStatusEvent> findFirstByOrderIdAndCodeOrderByOccurredAtAsc(Long orderId, OrderStatus code);
+
+    /**
+     * 一段时间以来指定状态的事件（带食堂），按发生时间升序。
+     */
+    @Query("""
+            select e.orderId as orderId, o.canteenId as canteenId,
+                   e.code as code, e.occurredAt as occurredAt
+            from OrderStatusEvent e, Order o
+            where o.id = e.orderId
+              and e.code in :codes
+              and e.occurredAt >= :since
+            order by e.occurredAt asc, e.id asc
+            """)
+    List<StatusTransitionView> findTransitionsSince(@Param("codes") Collection<OrderStatus> codes,
+                                                    @Param("since") Instant since);
+
+    /**
+     * 一批订单最近一次进入 code 状态的时间（一条查询）。
+     * <p>
+     * 以状态事件为准，不用 orders.updated_at：之后对订单的任何修改（改配送方式、释放预占等）
+     * 都会刷新 updated_at。
+     */
+    @Query("""
+            select e.orderId as orderId, max(e.occurredAt) as occurredAt
+            from OrderStatusEvent e
+            where e.orderId in :orderIds and e.code = :code
+            group by e.orderId
+            """)
+    List<StatusReachedView> findReachedAt(@Param("orderIds") Collection<Long> orderIds,
+                                          @Param("code") OrderStatus code);
 }
@@ -0,0 +1,42 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+
+import java.time.Instant;
+
+/**
+ * 订单列表页投影（一条 SQL 同时取出顾客名、食堂名、首个菜品名、总份数）。
+ *
+ * 由 OrderRepository 中的 *Summaries 查询返回，Service 层再映射为 OrderDto.OrderSummary。
+ */
+public interface OrderSummaryView {
+
+    Long getId();
+
+    Long getCustomerId();
+
+    String getCustomerName();
+
+    Long getCanteenId();
+
+    String getCanteenName();
+
+    OrderStatus getStatus();
+
+    DeliverMethod getDeliverMethod();
+
+    Integer getAmountTotal();
+
+    String getAddress();
+
+    /** 第一条明细的菜名（按明细 id 升序） */
+    String getFirstFoodName();
+
+    /** 明细总份数 sum(qty)，无明细时为 0 */
+    Number getTotalItemCount();
+
+    Instant getCreatedAt();
+
+    Instant getUpdatedAt();
+}
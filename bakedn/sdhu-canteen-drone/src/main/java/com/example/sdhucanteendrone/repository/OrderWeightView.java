@@ -0,0 +1,13 @@
+package com.example.sdhucanteendrone.repository;
+
+/**
+ * 订单估算重量投影（克）。
+ *
+ * 由 OrderItemRepository#sumWeightGramsByOrderIdIn 返回，合单装载时使用。
+ */
+public interface OrderWeightView {
+
+    Long getOrderId();
+
+    Long getWeightGrams();
+}
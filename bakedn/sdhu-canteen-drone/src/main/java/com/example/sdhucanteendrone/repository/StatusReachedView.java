@@ -0,0 +1,15 @@
+package com.example.sdhucanteendrone.repository;
+
+import java.time.Instant;
+
+/**
+ * 订单进入某个状态的时间投影。
+ *
+ * 由 OrderStatusEventRepository#findReachedAt 返回，派机用来计算等待时长。
+ */
+public interface StatusReachedView {
+
+    Long getOrderId();
+
+    Instant getOccurredAt();
+}
@@ -0,0 +1,21 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+
+import java.time.Instant;
+
+/**
+ * 状态事件 + 所属食堂投影。
+ *
+ * 由 OrderStatusEventRepository#findTransitionsSince 返回，启动时预热 ETA 统计使用。
+ */
+public interface StatusTransitionView {
+
+    Long getOrderId();
+
+    Long getCanteenId();
+
+    OrderStatus getCode();
+
+    Instant getOccurredAt();
+}
@@ -0,0 +1,21 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+
+/**
+ * 充电调度：管理充电桩的充电位，按最近的订单速率预测需求，
+ * 在有富余时把低电量的空闲无人机轮流送去充电（CHARGING 状态不参与派单），
+ * 需求上来时让电量够用的提前下桩。
+ */
+public interface ChargingService {
+
+    /**
+     * 执行一轮充电调度，返回调度后的状态。
+     */
+    DroneDto.ChargingStatus scheduleOnce();
+
+    /**
+     * 各充电桩占用情况与最近一轮的需求预测。
+     */
+    DroneDto.ChargingStatus status();
+}
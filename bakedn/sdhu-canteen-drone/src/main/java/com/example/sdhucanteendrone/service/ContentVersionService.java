@@ -0,0 +1,27 @@
+package com.example.sdhucanteendrone.service;
+
+/**
+ * 读接口的内容版本号，用于生成 ETag 做条件请求（If-None-Match → 304）。
+ * <p>
+ * 版本号由写操作递增（而不是对响应体做哈希），只读内存，判断 304 时不查库。
+ * ETag 中带启动时间戳，重启后计数器归零也不会与重启前发出的 ETag 撞上。
+ * <p>
+ * 调用方必须先取 ETag 再读数据：这样读到的数据只会比 ETag 新，最坏多返回一次 200，不会让客户端缓存旧数据。
+ */
+public interface ContentVersionService {
+
+    /**
+     * 某食堂菜单（整份菜单、分类列表）的 ETag。
+     */
+    String menuETag(Long canteenId);
+
+    /**
+     * 某食堂详情（含管理员列表）的 ETag。
+     */
+    String canteenETag(Long canteenId);
+
+    /**
+     * 食堂列表的 ETag，任一食堂变化都会改变。
+     */
+    String canteenListETag();
+}
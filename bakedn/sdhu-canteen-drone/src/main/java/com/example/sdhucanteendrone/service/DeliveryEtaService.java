@@ -0,0 +1,37 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 出餐 / 配送耗时预测。
+ * <p>
+ * 按 食堂 × 小时段 维护指数衰减的耗时统计，订单状态事件提交后增量更新，不回扫历史：
+ * - 出餐：PENDING → PACKED
+ * - 配送：SHIPPED → DELIVERED
+ * 某个小时段样本不足时退回该食堂全天的统计，仍不足时使用默认值。
+ */
+public interface DeliveryEtaService {
+
+    /**
+     * 预计打包完成时间。
+     *
+     * @param pendingAt 下单时间
+     */
+    Instant predictReadyAt(Long canteenId, Instant pendingAt);
+
+    /**
+     * 预计送达时间。
+     *
+     * @param departAt        起飞时间；尚未起飞时传打包完成（或预计打包完成）时间
+     * @param routeEtaSeconds 航路规划给出的飞行时间，没有统计数据时兜底；可为 null
+     */
+    Instant predictDeliveredAt(Long canteenId, Instant departAt, Integer routeEtaSeconds);
+
+    /**
+     * 食堂各阶段、各小时段的统计（hour 为 null 表示全天）。
+     */
+    List<OrderDto.EtaBucket> buckets(Long canteenId);
+}
@@ -0,0 +1,23 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+
+/**
+ * 自动派机：把已打包、待无人机配送的订单匹配给空闲无人机，并直接起飞。
+ * <p>
+ * 代替人工逐单调用 assign-drone / start-delivery；定时执行，也可手动触发一轮。
+ */
+public interface DroneDispatchService {
+
+    /**
+     * 执行一轮派机。
+     *
+     * @return 本轮派出的订单数
+     */
+    int dispatchOnce();
+
+    /**
+     * 派机数量与延迟分位数。
+     */
+    DroneDto.DispatchStats stats();
+}
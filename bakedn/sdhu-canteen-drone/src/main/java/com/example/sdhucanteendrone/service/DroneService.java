@@ -5,12 +5,20 @@ import com.example.sdhucanteendrone.entity.enums.DroneStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.List;
+
 public interface DroneService {
 
     Page<DroneDto.DroneSummary> listDrones(DroneStatus status, Pageable pageable);
 
     DroneDto.DroneDetail getDroneDetail(Long droneId);
 
+    /**
+     * 离指定经纬度最近的 k 架空闲无人机（按距离升序）。
+     */
+    List<DroneDto.NearbyDrone> findNearestIdle(double latitude, double longitude, int k,
+                                              int minBattery, double minPayloadKg);
+
     DroneDto.DroneDetail createDrone(DroneDto.DroneCreateReq req);
 
     DroneDto.DroneDetail updateDrone(Long droneId, DroneDto.DroneUpdateReq req);
@@ -0,0 +1,57 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.entity.Drone;
+
+import java.util.List;
+
+/**
+ * 空闲无人机的内存空间索引，回答"离某点最近的 k 架空闲无人机"。
+ * <p>
+ * 只收录状态为 IDLE 且有经纬度的无人机，随无人机变化增量维护。
+ */
+public interface DroneSpatialIndex {
+
+    /**
+     * 查询离 (latitude, longitude) 最近的 k 架空闲无人机，按距离升序。
+     *
+     * @param minBattery   电量下限（含）
+     * @param minPayloadKg 载重下限（含）
+     */
+    List<Nearby> nearestIdle(double latitude, double longitude, int k, int minBattery, double minPayloadKg);
+
+    /**
+     * 当前索引中的无人机数。
+     */
+    int size();
+
+    /**
+     * 收录或更新一架无人机；非空闲或没有经纬度的从索引中移除。
+     */
+    void upsert(Drone drone);
+
+    void remove(Long droneId);
+
+    /**
+     * 用遥测数据更新已收录无人机的电量和位置；为 null 的字段保持原值，不在索引中的忽略。
+     */
+    void updatePosition(Long droneId, Integer battery, Double latitude, Double longitude);
+
+    /**
+     * 两点间球面距离（米，haversine）。
+     */
+    static double distanceMeters(double lat1, double lng1, double lat2, double lng2) {
+        double dLat = Math.toRadians(lat2 - lat1);
+        double dLng = Math.toRadians(lng2 - lng1);
+        double a = Math.sin(dLat / 2) * Math.sin(dLat / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(dLng / 2) * Math.sin(dLng / 2);
+        return 2 * 6_371_000 * Math.asin(Math.min(1, Math.sqrt(a)));
+    }
+
+    /**
+     * 查询结果：索引中保存的无人机快照及距离。
+     */
+    record Nearby(Long droneId, String code, int battery, double maxPayloadKg,
+                  double latitude, double longitude, double distanceMeters) {
+    }
+}
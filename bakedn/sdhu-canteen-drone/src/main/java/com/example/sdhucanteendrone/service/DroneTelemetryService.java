@@ -0,0 +1,34 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+
+import java.util.List;
+
+/**
+ * 无人机遥测接入（内存最新值 + 定时批量回写 drones）。
+ * <p>
+ * - 上报的帧按无人机合并，只保留最新一份电量 / 位置，乱序到达的旧帧直接丢弃
+ * - 实时状态从内存读取，不查库
+ * - 定时任务把有变化的无人机批量回写到 drones.battery / latitude / longitude / location
+ */
+public interface DroneTelemetryService {
+
+    /**
+     * 接收一批遥测帧。
+     */
+    DroneDto.TelemetryIngestResult ingest(List<DroneDto.TelemetryFrame> frames);
+
+    /**
+     * 内存中的最新遥测；该无人机尚未上报过时返回 null。
+     */
+    DroneDto.DroneTelemetry getLatest(Long droneId);
+
+    /**
+     * 把有变化的无人机批量回写到数据库。
+     *
+     * @return 本次回写的无人机数
+     */
+    int flush();
+
+    DroneDto.TelemetryStats stats();
+}
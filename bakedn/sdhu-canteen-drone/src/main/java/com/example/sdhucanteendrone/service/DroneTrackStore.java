@@ -0,0 +1,37 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * 无人机飞行轨迹存储（按无人机分目录、只追加的内存映射分段文件）。
+ * <p>
+ * 轨迹点来自遥测接入；同一架无人机的轨迹点按时间递增写入，
+ * 查询时在分段内二分定位起点，只把命中的记录读进堆。
+ */
+public interface DroneTrackStore {
+
+    /**
+     * 追加一个轨迹点；比该无人机最后一个点更早的点会被忽略。
+     *
+     * @param latitude  为 null 表示未知
+     * @param battery   为 null 表示未知
+     * @param orderId   为 null 表示当时没有配送任务
+     */
+    void append(Long droneId, Instant timestamp, Double latitude, Double longitude,
+                Integer battery, Long orderId);
+
+    /**
+     * 查询 [from, to] 内的轨迹点，按时间升序，最多 limit 个。
+     */
+    List<DroneDto.TrackPoint> query(Long droneId, Instant from, Instant to, int limit);
+
+    /**
+     * 删除早于保留期的分段文件。
+     *
+     * @return 删除的文件数
+     */
+    int purgeExpired();
+}
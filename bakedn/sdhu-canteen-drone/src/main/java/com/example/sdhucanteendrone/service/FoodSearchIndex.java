@@ -0,0 +1,41 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.entity.Food;
+
+import java.util.List;
+
+/**
+ * 菜品搜索的内存倒排索引，代替 like '%关键字%' 全表扫描。
+ * <p>
+ * 菜名、描述按字符切成单字 + 双字（中文菜名同样适用），另外收录菜名的拼音首字母（如 "fqcd" 命中"番茄炒蛋"）。
+ * 启动时全量加载，之后随菜品变化增量维护；加载完成前调用方应退回 SQL 查询。
+ */
+public interface FoodSearchIndex {
+
+    /**
+     * 是否已完成启动加载。
+     */
+    boolean isReady();
+
+    /**
+     * 按关键字搜索某食堂的菜品，按相关度排序：
+     * 菜名完全相同 > 菜名前缀 > 菜名包含 > 拼音首字母前缀 > 拼音首字母包含 > 描述包含。
+     *
+     * @param categoryId 为 null 表示不按分类过滤
+     * @param onShelf    为 null 表示不按上下架过滤
+     * @return 菜品 id 列表
+     */
+    List<Long> search(Long canteenId, String keyword, Long categoryId, Boolean onShelf);
+
+    /**
+     * 收录或更新一个菜品。
+     */
+    void upsert(Food food);
+
+    void remove(Long foodId);
+
+    /**
+     * 当前收录的菜品数。
+     */
+    int size();
+}
@@ -0,0 +1,22 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+
+/**
+ * 食堂后厨看板：各食堂进行中（待处理 / 已确认 / 已打包）的订单队列。
+ * <p>
+ * 看板常驻内存，启动时从 orders 表加载一次，之后随订单变化增量维护，
+ * 读取时不访问数据库。
+ */
+public interface KitchenBoardService {
+
+    /**
+     * 获取某个食堂当前的全部进行中订单。
+     */
+    OrderDto.KitchenBoard getBoard(Long canteenId);
+
+    /**
+     * 从数据库重建全部看板。
+     */
+    void rebuild();
+}
@@ -34,4 +34,6 @@ public interface MenuService {
     void changeFoodShelfStatus(Long canteenId, Long foodId, FoodShelfStatus status);
 
     void updateFoodStock(Long canteenId, Long foodId, Integer stock);
+
+    void changeFoodFlashSale(Long canteenId, Long foodId, boolean enabled);
 }
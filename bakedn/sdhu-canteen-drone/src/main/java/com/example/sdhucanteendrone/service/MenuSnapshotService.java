@@ -0,0 +1,31 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.MenuDto;
+
+/**
+ * 按食堂缓存的整份菜单快照（分类按 sort 排好、上架菜品按分类分组）。
+ * <p>
+ * - 首次读取时构建，之后直接返回同一个不可变对象，读路径不查库
+ * - 菜单写操作提交后（MenuChangedEvent）整份重建并原子替换，版本号加一
+ */
+public interface MenuSnapshotService {
+
+    /**
+     * 读取某食堂当前的菜单快照；食堂不存在时抛出 404。
+     * <p>
+     * 返回的快照及其中的菜品对象为多个请求共享，调用方不能修改。
+     */
+    MenuDto.MenuSnapshot get(Long canteenId);
+
+    /**
+     * 某食堂菜单的当前版本号，只读内存、不触发构建。
+     * <p>
+     * 先取版本号再 get，拿到的快照版本不会低于它（期间菜单变化则更高）。
+     */
+    long currentVersion(Long canteenId);
+
+    /**
+     * 丢弃某食堂的快照，下次读取时重建。
+     */
+    void invalidate(Long canteenId);
+}
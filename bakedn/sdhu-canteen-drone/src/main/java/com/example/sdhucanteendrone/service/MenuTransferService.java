@@ -0,0 +1,30 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.MenuDto;
+import com.example.sdhucanteendrone.entity.enums.MenuFileFormat;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.InputStream;
+
+/**
+ * 菜单（分类 + 菜品）批量导入 / 导出，行格式见 MenuDto.MenuRow。
+ * <p>
+ * - 导入：边读边校验，重名校验在内存中对照预先加载的菜品名完成，菜品按 JDBC batch 写入
+ * - 导出：分类一次读出，菜品用数据库游标逐行写到响应流，整个菜单不会同时放在内存里
+ */
+public interface MenuTransferService {
+
+    /**
+     * 导入菜单，只新增不修改：已存在的分类直接引用，已存在（或文件内重复）的菜品名跳过。
+     * <p>
+     * 逐行校验，不合法的行跳过并写进报告；文件格式错误（引号未闭合、JSON 语法错误等）整体回滚。
+     */
+    MenuDto.ImportReport importMenu(Long canteenId, MenuFileFormat format, InputStream in);
+
+    /**
+     * 导出菜单：先输出只有分类的行（按 sort 排序），再按 id 顺序输出全部菜品（含下架的）。
+     * <p>
+     * 食堂不存在时立即抛出 404，不会返回半截文件。
+     */
+    StreamingResponseBody exportMenu(Long canteenId, MenuFileFormat format);
+}
@@ -0,0 +1,27 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 合单配送：一架无人机一次起飞承运同一食堂、同一目的地的多个订单。
+ */
+public interface MissionService {
+
+    /**
+     * 合单起飞：在同一个事务里占用无人机、绑定订单并把订单改为配送中。
+     * 任何一步失败都会整体回滚。
+     */
+    DroneDto.MissionDetail launch(Long droneId, List<Long> orderIds);
+
+    DroneDto.MissionDetail getMission(Long missionId);
+
+    /**
+     * 估算订单重量（kg）：菜品单份重量 × 份数，未填重量的菜品按默认每份重量计。
+     * 没有明细的订单不在结果中。
+     */
+    Map<Long, Double> estimatePayloadKg(Collection<Long> orderIds);
+}
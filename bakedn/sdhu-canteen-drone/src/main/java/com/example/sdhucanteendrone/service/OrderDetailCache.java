@@ -0,0 +1,31 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+
+import java.util.function.Function;
+
+/**
+ * 订单详情读缓存（组装好的 OrderDetail 快照，按订单 id 缓存）。
+ * <p>
+ * - 首次读取时加载并缓存，条数有上限（LRU 淘汰），并有过期时间兜底
+ * - 订单变化提交后（OrderChangedEvent）失效对应条目
+ */
+public interface OrderDetailCache {
+
+    /**
+     * 读取缓存，未命中时调用 loader 加载并放入缓存。
+     * <p>
+     * 加载期间若有订单被失效，本次结果只返回不缓存，避免把旧快照写回。
+     */
+    OrderDto.OrderDetail getOrLoad(Long orderId, Function<Long, OrderDto.OrderDetail> loader);
+
+    /**
+     * 失效某个订单的缓存。
+     */
+    void invalidate(Long orderId);
+
+    /**
+     * 命中 / 未命中 / 淘汰等统计。
+     */
+    OrderDto.OrderDetailCacheStats stats();
+}
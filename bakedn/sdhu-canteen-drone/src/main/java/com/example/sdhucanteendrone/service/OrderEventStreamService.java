@@ -0,0 +1,26 @@
+package com.example.sdhucanteendrone.service;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+/**
+ * 订单状态推送（Server-Sent Events）。
+ * <p>
+ * 客户端订阅某个订单后，先收到已有的状态事件，之后每提交一条新的状态事件就推送一条，
+ * 订单进入终态（已送达 / 已完成 / 已取消）后服务端主动关闭连接。
+ */
+public interface OrderEventStreamService {
+
+    /**
+     * 订阅订单状态事件。
+     *
+     * @param orderId     订单 id
+     * @param lastEventId 断线重连时浏览器带上的 Last-Event-ID，只补发其后的事件；首次订阅传 null
+     * @return SSE 连接；订单已终态且没有需要补发的事件时返回 null（不登记订阅，调用方应回 204）
+     */
+    SseEmitter subscribe(Long orderId, Long lastEventId);
+
+    /**
+     * 当前在线的订阅连接数。
+     */
+    int subscriberCount();
+}
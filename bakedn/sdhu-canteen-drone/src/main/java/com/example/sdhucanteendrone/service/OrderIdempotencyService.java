@@ -0,0 +1,22 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+
+/**
+ * 下单幂等处理（Idempotency-Key）。
+ * <p>
+ * 同一用户使用同一个 key 重复提交时，只会创建一次订单：
+ * - 首个请求正常下单，后续重放直接返回首单的 OrderDetail
+ * - 首个请求尚未完成时，并发的重复请求会等待其结果，而不是再下一单
+ */
+public interface OrderIdempotencyService {
+
+    /**
+     * 带幂等键下单；key 为空时等同于普通下单。
+     *
+     * @param idempotencyKey 请求头 Idempotency-Key
+     * @param req            下单请求
+     * @return 订单详情（重放时为首次创建的订单）
+     */
+    OrderDto.OrderDetail createOrder(String idempotencyKey, OrderDto.OrderCreateReq req);
+}
@@ -6,20 +6,44 @@ import com.example.sdhucanteendrone.entity.enums.OrderStatus;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 public interface OrderService {
 
     OrderDto.OrderDetail createOrder(OrderDto.OrderCreateReq req);
 
+    /**
+     * 下单并在同一事务内登记幂等键及请求指纹（idempotencyKey 为 null 时不登记）。
+     */
+    OrderDto.OrderDetail createOrder(OrderDto.OrderCreateReq req, String idempotencyKey, String requestHash);
+
     OrderDto.OrderDetail getOrderDetail(Long orderId);
 
     Page<OrderDto.OrderSummary> listCustomerOrders(Long customerId, OrderStatus status, Pageable pageable);
 
     Page<OrderDto.OrderSummary> listCanteenOrders(Long canteenId, OrderStatus status, Pageable pageable);
 
+    OrderDto.OrderCursorPage listCustomerOrdersByCursor(Long customerId, OrderStatus status, String cursor, int size);
+
+    OrderDto.OrderCursorPage listCanteenOrdersByCursor(Long canteenId, OrderStatus status, String cursor, int size);
+
+    Optional<OrderDto.OrderSummary> findOrderSummary(Long orderId);
+
+    List<OrderDto.OrderSummary> listOrdersByStatus(Collection<OrderStatus> statuses);
+
     void cancelOrder(Long orderId, String reason);
 
     void updateOrderStatus(Long orderId, OrderStatus status, String note);
 
+    OrderDto.BulkStatusResult bulkUpdateOrderStatus(OrderDto.BulkStatusReq req);
+
+    /**
+     * 合单任务起飞：已绑定任务的订单批量改为 SHIPPED（无人机已由调用方占用）。
+     */
+    OrderDto.BulkStatusResult shipMissionOrders(List<Long> orderIds, String note);
+
     OrderDto.OrderTimeline getOrderTimeline(Long orderId);
 
     void changeDeliveryMethod(Long orderId, DeliverMethod method);
@@ -29,4 +53,11 @@ public interface OrderService {
     void startDelivery(Long orderId);
 
     void markDelivered(Long orderId);
+
+    /**
+     * 释放订单对无人机的预占（RESERVED -> IDLE）并解除订单上的绑定。
+     *
+     * @return false 表示预占已不存在（已起飞、已释放或改绑其它订单）
+     */
+    boolean releaseDroneReservation(Long orderId, Long droneId);
 }
@@ -0,0 +1,23 @@
+package com.example.sdhucanteendrone.service;
+
+import com.example.sdhucanteendrone.dto.CanteenDto;
+
+/**
+ * 校园航路规划：按航路图计算食堂到配送地址（楼栋）的最短航线和预计飞行时间。
+ * <p>
+ * 航路图从配置的文件加载，禁飞航段不参与规划。
+ */
+public interface RouteService {
+
+    /**
+     * 食堂到配送地址的航线。
+     *
+     * @return 食堂或楼栋未登记到航路图、或两者之间不可达时返回 null
+     */
+    CanteenDto.RoutePlan plan(Long canteenId, String address);
+
+    /**
+     * 路径缓存 / 预计算表命中统计。
+     */
+    CanteenDto.RouteStats stats();
+}
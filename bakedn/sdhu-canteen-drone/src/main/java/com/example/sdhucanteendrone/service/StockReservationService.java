@@ -0,0 +1,55 @@
+package com.example.sdhucanteendrone.service;
+
+import java.util.Map;
+
+/**
+ * 菜品库存预占（内存账本 + 定时回写 foods.stock）。
+ * <p>
+ * - 下单时在内存中原子扣减，库存不足直接拒绝，不再依赖数据库行锁
+ * - 取消订单时归还库存
+ * - 净变化量由定时任务批量回写到 foods.stock
+ */
+public interface StockReservationService {
+
+    /**
+     * 按菜品预占库存（全部成功或全部不扣）。
+     * <p>
+     * 若当前处于事务中，事务回滚时会自动归还本次预占。
+     *
+     * @param quantities foodId -> 份数
+     * @return 成功返回 null；库存不足时返回第一个不足的 foodId
+     */
+    Long tryReserve(Map<Long, Integer> quantities);
+
+    /**
+     * 归还库存；若当前处于事务中，则在事务提交后才归还。
+     *
+     * @param quantities foodId -> 份数
+     */
+    void release(Map<Long, Integer> quantities);
+
+    /**
+     * 管理端直接修改库存时，用新值覆盖内存账本（处于事务中时在提交后生效）。
+     * <p>
+     * 须在写 foods.stock 之前调用：从调用起到事务结束暂停回写，避免回写的净变化量叠加到新值上。
+     */
+    void resetStock(Long foodId, int stock);
+
+    /**
+     * 开启 / 关闭限时抢购：抢购期间余量拆成多个分片并发扣减，关闭后合并回单个计数器
+     * （处于事务中时在提交后生效）。
+     */
+    void setFlashSale(Long foodId, boolean enabled);
+
+    /**
+     * 查询内存中的可用库存；尚未加载时返回 null。
+     */
+    Integer getAvailable(Long foodId);
+
+    /**
+     * 把累计的净变化量批量回写到 foods.stock。
+     *
+     * @return 本次回写的菜品数
+     */
+    int flush();
+}
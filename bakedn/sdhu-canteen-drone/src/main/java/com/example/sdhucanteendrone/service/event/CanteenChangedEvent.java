@@ -0,0 +1,14 @@
+package com.example.sdhucanteendrone.service.event;
+
+import lombok.Data;
+
+/**
+ * 食堂信息发生变化（新增、修改、营业状态、管理员增删、删除）。
+ * <p>
+ * 只带 id，监听方在事务提交后按需重新读取。
+ */
+@Data
+public class CanteenChangedEvent {
+
+    private final Long canteenId;
+}
@@ -0,0 +1,14 @@
+package com.example.sdhucanteendrone.service.event;
+
+import lombok.Data;
+
+/**
+ * 无人机发生变化（新增、修改、状态流转、删除）。
+ * <p>
+ * 只带 id，监听方在事务提交后按 id 重新读取最新数据；读不到说明已被删除。
+ */
+@Data
+public class DroneChangedEvent {
+
+    private final Long droneId;
+}
@@ -0,0 +1,19 @@
+package com.example.sdhucanteendrone.service.event;
+
+import com.example.sdhucanteendrone.entity.Food;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 菜单批量导入新增了一批菜品。
+ * <p>
+ * 与 FoodChangedEvent 不同，直接带上已写库（已回填 id）的菜品对象：导入动辄上千行，
+ * 监听方按 id 逐个回查代价太高，而这些菜品在导入事务里刚创建，内存中的就是最新数据。
+ */
+@Data
+public class FoodsImportedEvent {
+
+    private final Long canteenId;
+    private final List<Food> foods;
+}
@@ -0,0 +1,14 @@
+package com.example.sdhucanteendrone.service.event;
+
+import lombok.Data;
+
+/**
+ * 某个食堂的菜单发生变化（分类增删改、菜品新增 / 修改 / 上下架、食堂删除）。
+ * <p>
+ * 只带食堂 id，监听方在事务提交后重新读取该食堂的菜单。
+ */
+@Data
+public class MenuChangedEvent {
+
+    private final Long canteenId;
+}
@@ -0,0 +1,28 @@
+package com.example.sdhucanteendrone.service.event;
+
+import com.example.sdhucanteendrone.entity.OrderStatusEvent;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import lombok.Data;
+
+/**
+ * 订单发生变化（下单、状态流转、指派无人机、修改配送方式等）。
+ * <p>
+ * 由 OrderServiceImpl 在写操作中发布，监听方一律使用
+ * {@code @TransactionalEventListener(phase = AFTER_COMMIT)}，只处理已提交的变化。
+ */
+@Data
+public class OrderChangedEvent {
+
+    private final Long orderId;
+    private final Long customerId;
+    private final Long canteenId;
+
+    /** 变化前的状态；新下单时为 null */
+    private final OrderStatus previousStatus;
+
+    /** 变化后的状态 */
+    private final OrderStatus status;
+
+    /** 本次写入的状态事件；不涉及状态变化时为 null */
+    private final OrderStatusEvent statusEvent;
+}
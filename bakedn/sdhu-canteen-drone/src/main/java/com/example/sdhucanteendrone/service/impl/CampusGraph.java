@@ -0,0 +1,328 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.service.DroneSpatialIndex;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * 校园航路图（不可变）：航点 + 双向航段，航段长度按两端经纬度的球面距离计算。
+ * <p>
+ * 邻接表压缩存储（CSR）：offsets[i] ~ offsets[i + 1] 为航点 i 的出边。
+ * 禁飞航段在构建时剔除，不参与任何路径计算。
+ * <p>
+ * 文件格式（# 开头为注释）：
+ * <pre>
+ * node    &lt;航点&gt; &lt;纬度&gt; &lt;经度&gt; [名称]
+ * edge    &lt;航点&gt; &lt;航点&gt;
+ * nofly   &lt;航点&gt; &lt;航点&gt;
+ * canteen &lt;食堂 id&gt; &lt;航点&gt;
+ * place   &lt;楼栋&gt; &lt;航点&gt;
+ * </pre>
+ */
+final class CampusGraph {
+
+    private final String[] ids;
+    private final double[] lat;
+    private final double[] lng;
+    private final int[] offsets;
+    private final int[] targets;
+    private final double[] weights;
+    private final Map<String, Integer> index;
+    private final Map<Long, Integer> canteens;
+    private final Map<String, Integer> places;
+    private final int noFlyEdges;
+
+    private CampusGraph(Builder b) {
+        int n = b.ids.size();
+        this.ids = b.ids.toArray(String[]::new);
+        this.lat = Arrays.copyOf(b.lat, n);
+        this.lng = Arrays.copyOf(b.lng, n);
+        this.index = Map.copyOf(b.index);
+        this.canteens = Map.copyOf(b.canteens);
+        this.places = Map.copyOf(b.places);
+
+        int[] degree = new int[n + 1];
+        for (int[] e : b.edges) {
+            if (b.noFly.contains(edgeKey(e[0], e[1]))) {
+                continue;
+            }
+            degree[e[0]]++;
+            degree[e[1]]++;
+        }
+        this.noFlyEdges = b.noFly.size();
+        this.offsets = new int[n + 1];
+        for (int i = 0; i < n; i++) {
+            offsets[i + 1] = offsets[i] + degree[i];
+        }
+        this.targets = new int[offsets[n]];
+        this.weights = new double[offsets[n]];
+        int[] fill = Arrays.copyOf(offsets, n);
+        for (int[] e : b.edges) {
+            if (b.noFly.contains(edgeKey(e[0], e[1]))) {
+                continue;
+            }
+            double w = distance(e[0], e[1]);
+            targets[fill[e[0]]] = e[1];
+            weights[fill[e[0]]++] = w;
+            targets[fill[e[1]]] = e[0];
+            weights[fill[e[1]]++] = w;
+        }
+    }
+
+    // ============================================================
+    // 查询
+    // ============================================================
+
+    int size() {
+        return ids.length;
+    }
+
+    int edgeCount() {
+        return targets.length / 2;
+    }
+
+    int noFlyEdgeCount() {
+        return noFlyEdges;
+    }
+
+    String id(int node) {
+        return ids[node];
+    }
+
+    /** 食堂对应的航点，未登记返回 -1 */
+    int canteenNode(Long canteenId) {
+        return canteens.getOrDefault(canteenId, -1);
+    }
+
+    /** 楼栋对应的航点，未登记返回 -1 */
+    int placeNode(String place) {
+        return places.getOrDefault(place, -1);
+    }
+
+    Iterable<Long> canteenIds() {
+        return canteens.keySet();
+    }
+
+    /**
+     * A* 最短路，启发函数为到终点的球面直线距离（不会高估，结果与 Dijkstra 一致）。
+     *
+     * @return 不可达时返回 null
+     */
+    Path shortestPath(int from, int to) {
+        int n = ids.length;
+        double[] g = new double[n];
+        Arrays.fill(g, Double.POSITIVE_INFINITY);
+        int[] prev = new int[n];
+        Arrays.fill(prev, -1);
+        boolean[] closed = new boolean[n];
+
+        PriorityQueue<QueueEntry> open = new PriorityQueue<>();
+        g[from] = 0;
+        open.add(new QueueEntry(from, distance(from, to)));
+        while (!open.isEmpty()) {
+            int u = open.poll().node();
+            if (closed[u]) {
+                continue;
+            }
+            if (u == to) {
+                return path(prev, g[to], to);
+            }
+            closed[u] = true;
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = targets[k];
+                double candidate = g[u] + weights[k];
+                if (!closed[v] && candidate < g[v]) {
+                    g[v] = candidate;
+                    prev[v] = u;
+                    open.add(new QueueEntry(v, candidate + distance(v, to)));
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 单源 Dijkstra，得到从 from 出发到所有航点的最短路树（预计算热门食堂用）。
+     */
+    Tree shortestPathTree(int from) {
+        int n = ids.length;
+        double[] dist = new double[n];
+        Arrays.fill(dist, Double.POSITIVE_INFINITY);
+        int[] prev = new int[n];
+        Arrays.fill(prev, -1);
+
+        PriorityQueue<QueueEntry> queue = new PriorityQueue<>();
+        dist[from] = 0;
+        queue.add(new QueueEntry(from, 0));
+        while (!queue.isEmpty()) {
+            QueueEntry e = queue.poll();
+            int u = e.node();
+            if (e.priority() > dist[u]) {
+                continue;
+            }
+            for (int k = offsets[u]; k < offsets[u + 1]; k++) {
+                int v = targets[k];
+                double candidate = dist[u] + weights[k];
+                if (candidate < dist[v]) {
+                    dist[v] = candidate;
+                    prev[v] = u;
+                    queue.add(new QueueEntry(v, candidate));
+                }
+            }
+        }
+        return new Tree(dist, prev);
+    }
+
+    /**
+     * 从最短路树中取出到 to 的路径，不可达返回 null。
+     */
+    Path pathFrom(Tree tree, int to) {
+        if (Double.isInfinite(tree.dist()[to])) {
+            return null;
+        }
+        return path(tree.prev(), tree.dist()[to], to);
+    }
+
+    private Path path(int[] prev, double meters, int to) {
+        int length = 0;
+        for (int v = to; v != -1; v = prev[v]) {
+            length++;
+        }
+        int[] nodes = new int[length];
+        for (int v = to, i = length - 1; v != -1; v = prev[v], i--) {
+            nodes[i] = v;
+        }
+        return new Path(nodes, meters);
+    }
+
+    private double distance(int a, int b) {
+        return DroneSpatialIndex.distanceMeters(lat[a], lng[a], lat[b], lng[b]);
+    }
+
+    private static long edgeKey(int a, int b) {
+        return a < b ? ((long) a << 32) | b : ((long) b << 32) | a;
+    }
+
+    // ============================================================
+    // 构建
+    // ============================================================
+
+    static CampusGraph parse(BufferedReader reader) throws IOException {
+        Builder b = new Builder();
+        String line;
+        int lineNo = 0;
+        while ((line = reader.readLine()) != null) {
+            lineNo++;
+            String s = line.strip();
+            if (s.isEmpty() || s.startsWith("#")) {
+                continue;
+            }
+            String[] f = s.split("\\s+");
+            try {
+                switch (f[0]) {
+                    case "node" -> b.node(f[1], Double.parseDouble(f[2]), Double.parseDouble(f[3]));
+                    case "edge" -> b.edge(f[1], f[2]);
+                    case "nofly" -> b.noFly(f[1], f[2]);
+                    case "canteen" -> b.canteen(Long.parseLong(f[1]), f[2]);
+                    case "place" -> b.place(f[1], f[2]);
+                    default -> throw new IllegalArgumentException("未知指令 " + f[0]);
+                }
+            } catch (RuntimeException e) {
+                throw new IllegalArgumentException("航路图第 " + lineNo + " 行格式错误: " + s + "（" + e.getMessage() + "）", e);
+            }
+        }
+        return b.build();
+    }
+
+    static final class Builder {
+
+        private final List<String> ids = new ArrayList<>();
+        private double[] lat = new double[64];
+        private double[] lng = new double[64];
+        private final Map<String, Integer> index = new HashMap<>();
+        private final List<int[]> edges = new ArrayList<>();
+        private final Set<Long> noFly = new HashSet<>();
+        private final Map<Long, Integer> canteens = new HashMap<>();
+        private final Map<String, Integer> places = new HashMap<>();
+
+        Builder node(String id, double latitude, double longitude) {
+            if (index.containsKey(id)) {
+                throw new IllegalArgumentException("航点重复: " + id);
+            }
+            int i = ids.size();
+            if (i == lat.length) {
+                lat = Arrays.copyOf(lat, i * 2);
+                lng = Arrays.copyOf(lng, i * 2);
+            }
+            ids.add(id);
+            lat[i] = latitude;
+            lng[i] = longitude;
+            index.put(id, i);
+            return this;
+        }
+
+        Builder edge(String a, String b) {
+            edges.add(new int[]{node(a), node(b)});
+            return this;
+        }
+
+        /** 禁飞航段：两端之间的航段（无论是否另有 edge 声明）都不可通行 */
+        Builder noFly(String a, String b) {
+            int x = node(a);
+            int y = node(b);
+            edges.add(new int[]{x, y});
+            noFly.add(edgeKey(x, y));
+            return this;
+        }
+
+        Builder canteen(Long canteenId, String node) {
+            canteens.put(canteenId, node(node));
+            return this;
+        }
+
+        Builder place(String place, String node) {
+            places.put(place, node(node));
+            return this;
+        }
+
+        CampusGraph build() {
+            return new CampusGraph(this);
+        }
+
+        private int node(String id) {
+            Integer i = index.get(id);
+            if (i == null) {
+                throw new IllegalArgumentException("未定义的航点: " + id);
+            }
+            return i;
+        }
+    }
+
+    // ============================================================
+    // 结果类型
+    // ============================================================
+
+    /** 一条路径：依次经过的航点下标和总长度（米） */
+    record Path(int[] nodes, double meters) {
+    }
+
+    /** 单源最短路树 */
+    record Tree(double[] dist, int[] prev) {
+    }
+
+    private record QueueEntry(int node, double priority) implements Comparable<QueueEntry> {
+        @Override
+        public int compareTo(QueueEntry o) {
+            return Double.compare(priority, o.priority);
+        }
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.CanteenDto;
+import com.example.sdhucanteendrone.service.RouteService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 基于校园航路图的航线规划。
+ * <p>
+ * 查询顺序：
+ * 1. 热门食堂启动时各跑一次单源 Dijkstra，到任意楼栋的路径直接从最短路树取出
+ * 2. 其它食堂查 LRU 缓存（key 为 食堂 + 楼栋，不可达也缓存）
+ * 3. 未命中时 A* 计算后写入缓存
+ * <p>
+ * 航路图和预计算表放在一个不可变对象里整体替换；A* 在锁外计算，锁内只做 map 操作。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class CampusRouteServiceImpl implements RouteService {
+
+    private final ResourceLoader resourceLoader;
+
+    private volatile Routing routing;
+
+    private final Object lock = new Object();
+    private final Map<String, CampusGraph.Path> cache = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CampusGraph.Path> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private final LongAdder tableHits = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+
+    @Value("${canteen.route.graph-file:classpath:campus/waypoints.txt}")
+    private String graphFile = "classpath:campus/waypoints.txt";
+
+    @Value("${canteen.route.cache-size:1024}")
+    private int cacheSize = 1024;
+
+    /** 预计算最短路树的食堂；为空时航路图里登记的食堂全部预计算 */
+    @Value("${canteen.route.hot-canteens:}")
+    private List<Long> hotCanteens = List.of();
+
+    @Value("${canteen.route.speed-mps:12}")
+    private double speedMps = 12;
+
+    /** 起飞、降落、投递的固定耗时（秒） */
+    @Value("${canteen.route.overhead-seconds:60}")
+    private int overheadSeconds = 60;
+
+    // ============================================================
+    // 加载
+    // ============================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Resource resource = resourceLoader.getResource(graphFile);
+        if (!resource.exists()) {
+            log.warn("航路图 {} 不存在，订单将不提供航线和 ETA", graphFile);
+            return;
+        }
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            load(CampusGraph.parse(reader));
+        } catch (IOException | IllegalArgumentException e) {
+            log.error("加载航路图 {} 失败: {}", graphFile, e.getMessage());
+        }
+    }
+
+    /**
+     * 替换航路图并重建预计算表，旧缓存作废。
+     */
+    void load(CampusGraph graph) {
+        long start = System.nanoTime();
+        Map<Long, CampusGraph.Tree> tables = new HashMap<>();
+        Iterable<Long> canteens = hotCanteens.isEmpty() ? graph.canteenIds() : hotCanteens;
+        for (Long canteenId : canteens) {
+            int node = graph.canteenNode(canteenId);
+            if (node >= 0) {
+                tables.put(canteenId, graph.shortestPathTree(node));
+            }
+        }
+        synchronized (lock) {
+            routing = new Routing(graph, tables);
+            cache.clear();
+        }
+        log.info("航路图已加载：{} 个航点，{} 条航段（禁飞 {}），预计算食堂 {}，耗时 {} ms",
+                graph.size(), graph.edgeCount(), graph.noFlyEdgeCount(), tables.keySet(),
+                (System.nanoTime() - start) / 1_000_000);
+    }
+
+    // ============================================================
+    // 查询
+    // ============================================================
+
+    @Override
+    public CanteenDto.RoutePlan plan(Long canteenId, String address) {
+        Routing r = routing;
+        if (r == null || canteenId == null) {
+            return null;
+        }
+        String destination = MissionPlanner.destinationKey(address);
+        int from = r.graph().canteenNode(canteenId);
+        int to = r.graph().placeNode(destination);
+        if (from < 0 || to < 0) {
+            return null;
+        }
+
+        CampusGraph.Path path = findPath(r, canteenId, from, destination, to);
+        if (path == null) {
+            return null;
+        }
+        CanteenDto.RoutePlan plan = new CanteenDto.RoutePlan();
+        plan.setCanteenId(canteenId);
+        plan.setDestination(destination);
+        List<String> waypoints = new ArrayList<>(path.nodes().length);
+        for (int node : path.nodes()) {
+            waypoints.add(r.graph().id(node));
+        }
+        plan.setWaypoints(waypoints);
+        plan.setDistanceMeters(Math.round(path.meters() * 10) / 10.0);
+        plan.setEtaSeconds((int) Math.round(path.meters() / speedMps) + overheadSeconds);
+        return plan;
+    }
+
+    private CampusGraph.Path findPath(Routing r, Long canteenId, int from, String destination, int to) {
+        CampusGraph.Tree table = r.tables().get(canteenId);
+        if (table != null) {
+            tableHits.increment();
+            return r.graph().pathFrom(table, to);
+        }
+
+        String key = canteenId + "|" + destination;
+        synchronized (lock) {
+            if (cache.containsKey(key)) {
+                cacheHits.increment();
+                return cache.get(key);
+            }
+        }
+        cacheMisses.increment();
+        CampusGraph.Path path = r.graph().shortestPath(from, to);
+        synchronized (lock) {
+            // 计算期间航路图被替换时不写入，避免旧图的结果混进新缓存
+            if (routing == r) {
+                cache.put(key, path);
+            }
+        }
+        return path;
+    }
+
+    @Override
+    public CanteenDto.RouteStats stats() {
+        CanteenDto.RouteStats stats = new CanteenDto.RouteStats();
+        Routing r = routing;
+        stats.setLoaded(r != null);
+        if (r != null) {
+            stats.setNodes(r.graph().size());
+            stats.setEdges(r.graph().edgeCount());
+            stats.setNoFlyEdges(r.graph().noFlyEdgeCount());
+            stats.setPrecomputedCanteens(r.tables().keySet().stream().sorted().toList());
+        }
+        stats.setTableHits(tableHits.sum());
+        stats.setCacheHits(cacheHits.sum());
+        stats.setCacheMisses(cacheMisses.sum());
+        synchronized (lock) {
+            stats.setCacheSize(cache.size());
+        }
+        return stats;
+    }
+
+    private record Routing(CampusGraph graph, Map<Long, CampusGraph.Tree> tables) {
+    }
+}
@@ -11,7 +11,10 @@ import com.example.sdhucanteendrone.repository.CanteenManagerRepository;
 import com.example.sdhucanteendrone.repository.CanteenRepository;
 import com.example.sdhucanteendrone.repository.UserRepository;
 import com.example.sdhucanteendrone.service.CanteenService;
+import com.example.sdhucanteendrone.service.event.CanteenChangedEvent;
+import com.example.sdhucanteendrone.service.event.MenuChangedEvent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
@@ -31,6 +34,7 @@ public class CanteenServiceImpl implements CanteenService {
     private final CanteenRepository canteenRepository;
     private final CanteenManagerRepository canteenManagerRepository;
     private final UserRepository userRepository;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ============================================================
     // 食堂列表 / 详情
@@ -70,11 +74,16 @@ public class CanteenServiceImpl implements CanteenService {
         Canteen c = new Canteen();
         c.setName(req.getName());
         c.setLocation(req.getLocation());
+        c.setLatitude(req.getLatitude());
+        c.setLongitude(req.getLongitude());
         c.setOpenStatus(CanteenOpenStatus.OPEN);
         c.setCreatedAt(Instant.now());
         c.setUpdatedAt(Instant.now());
 
         Canteen saved = canteenRepository.save(c);
+        eventPublisher.publishEvent(new CanteenChangedEvent(saved.getId()));
+        // 业务异常也以 200 返回并带 ETag，新建后菜单版本也要变，避免客户端拿着"食堂不存在"的 ETag 一直 304
+        eventPublisher.publishEvent(new MenuChangedEvent(saved.getId()));
         CanteenDto.CanteenDetail dto = toDetail(saved);
         dto.setManagers(List.of());
 
@@ -99,10 +108,13 @@ public class CanteenServiceImpl implements CanteenService {
         }
 
         if (req.getLocation() != null) c.setLocation(req.getLocation());
+        if (req.getLatitude() != null) c.setLatitude(req.getLatitude());
+        if (req.getLongitude() != null) c.setLongitude(req.getLongitude());
         if (req.getOpenStatus() != null) c.setOpenStatus(req.getOpenStatus());
 
         c.setUpdatedAt(Instant.now());
         Canteen saved = canteenRepository.save(c);
+        eventPublisher.publishEvent(new CanteenChangedEvent(canteenId));
 
         CanteenDto.CanteenDetail dto = toDetail(saved);
         dto.setManagers(loadManagers(canteenId));
@@ -121,6 +133,9 @@ public class CanteenServiceImpl implements CanteenService {
 
         // 执行删除
         canteenRepository.delete(c);
+        // 丢弃该食堂的菜单快照
+        eventPublisher.publishEvent(new MenuChangedEvent(canteenId));
+        eventPublisher.publishEvent(new CanteenChangedEvent(canteenId));
     }
 
     @Override
@@ -130,6 +145,7 @@ public class CanteenServiceImpl implements CanteenService {
         if (updated == 0) {
             throw BizException.notFound("食堂不存在");
         }
+        eventPublisher.publishEvent(new CanteenChangedEvent(canteenId));
     }
 
     // ============================================================
@@ -172,6 +188,7 @@ public class CanteenServiceImpl implements CanteenService {
         cm.setUserId(userId);
 
         canteenManagerRepository.save(cm);
+        eventPublisher.publishEvent(new CanteenChangedEvent(canteenId));
     }
 
     @Override
@@ -181,6 +198,7 @@ public class CanteenServiceImpl implements CanteenService {
         if (deleted == 0) {
             throw BizException.notFound("管理员记录不存在");
         }
+        eventPublisher.publishEvent(new CanteenChangedEvent(canteenId));
     }
 
     // ============================================================
@@ -192,6 +210,8 @@ public class CanteenServiceImpl implements CanteenService {
         dto.setId(c.getId());
         dto.setName(c.getName());
         dto.setLocation(c.getLocation());
+        dto.setLatitude(c.getLatitude());
+        dto.setLongitude(c.getLongitude());
         dto.setOpenStatus(c.getOpenStatus());
         return dto;
     }
@@ -201,6 +221,8 @@ public class CanteenServiceImpl implements CanteenService {
         dto.setId(c.getId());
         dto.setName(c.getName());
         dto.setLocation(c.getLocation());
+        dto.setLatitude(c.getLatitude());
+        dto.setLongitude(c.getLongitude());
         dto.setOpenStatus(c.getOpenStatus());
         dto.setCreatedAt(toLocalDateTime(c.getCreatedAt()));
         dto.setUpdatedAt(toLocalDateTime(c.getUpdatedAt()));
@@ -0,0 +1,97 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 充电轮换规则（充电调度与仿真共用）。
+ * <p>
+ * 思路：需求低谷时把电量偏低的空闲无人机轮流送去充电，高峰到来时机队尽量满电；
+ * 高峰期可派无人机不够时，充电中电量已够用的提前下桩。
+ * 需要多少架可派无人机按 Little 定律估算：预测订单速率 × 单次飞行耗时 × 余量。
+ */
+final class ChargingPlanner {
+
+    private ChargingPlanner() {
+    }
+
+    /**
+     * @param minBattery    低于该电量不能派单（与自动派机一致）
+     * @param rotateBelow   低于该电量的空闲无人机在有富余时送去充电
+     * @param chargeTarget  充到该电量下桩
+     * @param peakReleaseAt 可派无人机不足时，充到该电量即可提前下桩
+     * @param flightMinutes 一次配送（往返）的平均耗时
+     * @param headroom      需求估算的余量系数
+     */
+    record Policy(int minBattery, int rotateBelow, int chargeTarget, int peakReleaseAt,
+                  double flightMinutes, double headroom) {
+    }
+
+    record DroneState(Long id, int battery) {
+    }
+
+    /**
+     * 订单速率预测（单/小时）：最近一个窗口的速率，需求上升时按线性趋势外推一个窗口。
+     */
+    static double forecastPerHour(long recentOrders, long previousOrders, double windowMinutes) {
+        double recent = recentOrders * 60.0 / windowMinutes;
+        double previous = previousOrders * 60.0 / windowMinutes;
+        return Math.max(recent, 2 * recent - previous);
+    }
+
+    /**
+     * 满足预测需求所需的可派无人机数（含正在执行任务的）。
+     */
+    static int requiredDrones(double ordersPerHour, Policy policy) {
+        if (ordersPerHour <= 0) {
+            return 0;
+        }
+        return (int) Math.ceil(ordersPerHour * policy.flightMinutes() / 60.0 * policy.headroom());
+    }
+
+    /**
+     * 挑选送去充电的空闲无人机，按电量从低到高：
+     * - 电量低于 minBattery 的本来就派不出去，有空位就充
+     * - 低于 rotateBelow 的只在送走之后可派无人机仍不少于 required 时才充
+     *
+     * @param dispatchable 当前可派无人机数（空闲且电量达标的 + 执行任务中的）
+     */
+    static List<DroneState> toCharge(List<DroneState> idle, int freeSlots, int dispatchable, int required,
+                                     Policy policy) {
+        List<DroneState> sorted = new ArrayList<>(idle);
+        sorted.sort(Comparator.comparingInt(DroneState::battery));
+        List<DroneState> picked = new ArrayList<>();
+        for (DroneState d : sorted) {
+            if (picked.size() >= freeSlots || d.battery() >= policy.rotateBelow()) {
+                break;
+            }
+            if (d.battery() < policy.minBattery()) {
+                picked.add(d);
+            } else if (dispatchable - 1 >= required) {
+                picked.add(d);
+                dispatchable--;
+            }
+        }
+        return picked;
+    }
+
+    /**
+     * 挑选结束充电的无人机：充满的全部下桩；可派无人机不足时，电量高的优先提前下桩。
+     */
+    static List<DroneState> toRelease(List<DroneState> charging, int dispatchable, int required, Policy policy) {
+        List<DroneState> sorted = new ArrayList<>(charging);
+        sorted.sort(Comparator.comparingInt(DroneState::battery).reversed());
+        List<DroneState> picked = new ArrayList<>();
+        for (DroneState d : sorted) {
+            if (d.battery() >= policy.chargeTarget()) {
+                picked.add(d);
+                dispatchable++;
+            } else if (dispatchable < required && d.battery() >= policy.peakReleaseAt()) {
+                picked.add(d);
+                dispatchable++;
+            }
+        }
+        return picked;
+    }
+}
@@ -0,0 +1,262 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+import com.example.sdhucanteendrone.entity.Drone;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.repository.DroneRepository;
+import com.example.sdhucanteendrone.repository.OrderRepository;
+import com.example.sdhucanteendrone.service.ChargingService;
+import com.example.sdhucanteendrone.service.event.DroneChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * 定时充电调度，规则见 ChargingPlanner。
+ * <p>
+ * 每一轮：
+ * 1. 读出空闲 / 充电中的无人机，统计执行任务中的无人机数
+ * 2. 用最近两个窗口的无人机订单数预测需求，换算成需要的可派无人机数
+ * 3. 先让充满的（以及不够用时电量已够的）下桩，再把低电量的空闲无人机送上有空位的充电桩
+ * <p>
+ * 充电桩占用记录在 drones.charging_pad 上，重启后无需恢复内存状态；
+ * 进出充电都是带前置状态的条件 update，与派单并发时以先提交的为准。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class ChargingServiceImpl implements ChargingService {
+
+    private final DroneRepository droneRepository;
+    private final OrderRepository orderRepository;
+    private final PlatformTransactionManager transactionManager;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final AtomicLong started = new AtomicLong();
+    private final AtomicLong released = new AtomicLong();
+    private volatile DroneDto.ChargingStatus lastStatus;
+
+    @Value("${canteen.charging.enabled:true}")
+    private boolean enabled = true;
+
+    /** 充电桩及其充电位数，格式 "桩编号=位数"，逗号分隔 */
+    @Value("${canteen.charging.pads:PAD-1=2}")
+    private List<String> pads = List.of("PAD-1=2");
+
+    @Value("${canteen.dispatch.min-battery:30}")
+    private int minBattery = 30;
+
+    @Value("${canteen.charging.rotate-below:60}")
+    private int rotateBelow = 60;
+
+    @Value("${canteen.charging.charge-target:95}")
+    private int chargeTarget = 95;
+
+    @Value("${canteen.charging.peak-release-at:70}")
+    private int peakReleaseAt = 70;
+
+    @Value("${canteen.charging.flight-minutes:15}")
+    private double flightMinutes = 15;
+
+    @Value("${canteen.charging.headroom:1.2}")
+    private double headroom = 1.2;
+
+    @Value("${canteen.charging.window-minutes:15}")
+    private int windowMinutes = 15;
+
+    // ============================================================
+    // 调度
+    // ============================================================
+
+    @Scheduled(fixedDelayString = "${canteen.charging.interval-ms:30000}")
+    public void scheduledRun() {
+        if (enabled) {
+            scheduleOnce();
+        }
+    }
+
+    @Override
+    public DroneDto.ChargingStatus scheduleOnce() {
+        // 与定时任务撞上时直接返回上一轮的结果
+        if (!runLock.tryLock()) {
+            return status();
+        }
+        try {
+            return doSchedule(Instant.now());
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private DroneDto.ChargingStatus doSchedule(Instant now) {
+        ChargingPlanner.Policy policy = new ChargingPlanner.Policy(minBattery, rotateBelow, chargeTarget,
+                peakReleaseAt, flightMinutes, headroom);
+        Map<String, Integer> slots = padSlots();
+
+        Duration window = Duration.ofMinutes(windowMinutes);
+        long recent = orderRepository.countCreatedBetween(DeliverMethod.DRONE, now.minus(window), now);
+        long previous = orderRepository.countCreatedBetween(DeliverMethod.DRONE,
+                now.minus(window.multipliedBy(2)), now.minus(window));
+        double forecast = ChargingPlanner.forecastPerHour(recent, previous, windowMinutes);
+        int required = ChargingPlanner.requiredDrones(forecast, policy);
+
+        int dispatchable = (int) droneRepository.countByStatusIn(List.of(DroneStatus.RESERVED, DroneStatus.IN_MISSION));
+        List<ChargingPlanner.DroneState> idle = new ArrayList<>();
+        List<ChargingPlanner.DroneState> charging = new ArrayList<>();
+        Map<String, List<Long>> occupancy = new LinkedHashMap<>();
+        slots.keySet().forEach(pad -> occupancy.put(pad, new ArrayList<>()));
+        for (Drone d : droneRepository.findByStatusIn(List.of(DroneStatus.IDLE, DroneStatus.CHARGING))) {
+            int battery = d.getBattery() == null ? 0 : d.getBattery();
+            if (d.getStatus() == DroneStatus.CHARGING) {
+                charging.add(new ChargingPlanner.DroneState(d.getId(), battery));
+                // 配置里已删掉的充电桩也照样记上，等这些无人机下桩
+                occupancy.computeIfAbsent(String.valueOf(d.getChargingPad()), k -> new ArrayList<>()).add(d.getId());
+            } else if (d.getCurrentOrderId() == null && d.getCurrentMissionId() == null) {
+                idle.add(new ChargingPlanner.DroneState(d.getId(), battery));
+                if (battery >= minBattery) {
+                    dispatchable++;
+                }
+            }
+        }
+
+        int releasedNow = 0;
+        for (ChargingPlanner.DroneState d : ChargingPlanner.toRelease(charging, dispatchable, required, policy)) {
+            if (update(d.id(), () -> droneRepository.finishCharging(d.id(), DroneStatus.CHARGING,
+                    DroneStatus.IDLE, now))) {
+                occupancy.values().forEach(ids -> ids.remove(d.id()));
+                dispatchable++;
+                releasedNow++;
+            }
+        }
+
+        int freeSlots = 0;
+        for (Map.Entry<String, Integer> pad : slots.entrySet()) {
+            freeSlots += Math.max(0, pad.getValue() - occupancy.get(pad.getKey()).size());
+        }
+        int startedNow = 0;
+        for (ChargingPlanner.DroneState d : ChargingPlanner.toCharge(idle, freeSlots, dispatchable, required, policy)) {
+            String pad = freePad(slots, occupancy);
+            if (pad == null) {
+                break;
+            }
+            if (update(d.id(), () -> droneRepository.startCharging(d.id(), pad, DroneStatus.IDLE,
+                    DroneStatus.CHARGING, now))) {
+                occupancy.get(pad).add(d.id());
+                if (d.battery() >= minBattery) {
+                    dispatchable--;
+                }
+                startedNow++;
+            }
+        }
+        started.addAndGet(startedNow);
+        released.addAndGet(releasedNow);
+        if (startedNow > 0 || releasedNow > 0) {
+            log.info("充电调度：预测 {} 单/小时，需要 {} 架，可派 {} 架；上桩 {} 架，下桩 {} 架",
+                    Math.round(forecast), required, dispatchable, startedNow, releasedNow);
+        }
+
+        DroneDto.ChargingStatus status = new DroneDto.ChargingStatus();
+        status.setForecastPerHour(Math.round(forecast * 10) / 10.0);
+        status.setRequiredDrones(required);
+        status.setDispatchableDrones(dispatchable);
+        status.setPads(toPads(slots, occupancy));
+        status.setLastRunAt(now);
+        lastStatus = status;
+        return status();
+    }
+
+    /**
+     * 单架无人机进出充电各自一个事务，提交后通知空间索引等监听方。
+     */
+    private boolean update(Long droneId, Supplier<Integer> conditionalUpdate) {
+        Boolean ok = new TransactionTemplate(transactionManager).execute(s -> {
+            if (conditionalUpdate.get() == 0) {
+                // 无人机刚被派单或被手动改了状态
+                return false;
+            }
+            eventPublisher.publishEvent(new DroneChangedEvent(droneId));
+            return true;
+        });
+        return Boolean.TRUE.equals(ok);
+    }
+
+    private String freePad(Map<String, Integer> slots, Map<String, List<Long>> occupancy) {
+        for (Map.Entry<String, Integer> pad : slots.entrySet()) {
+            if (occupancy.get(pad.getKey()).size() < pad.getValue()) {
+                return pad.getKey();
+            }
+        }
+        return null;
+    }
+
+    private Map<String, Integer> padSlots() {
+        Map<String, Integer> slots = new LinkedHashMap<>();
+        for (String pad : pads) {
+            String s = pad.strip();
+            if (s.isEmpty()) {
+                continue;
+            }
+            int eq = s.indexOf('=');
+            try {
+                slots.put(eq < 0 ? s : s.substring(0, eq).strip(),
+                        eq < 0 ? 1 : Integer.parseInt(s.substring(eq + 1).strip()));
+            } catch (NumberFormatException e) {
+                log.warn("充电桩配置 {} 格式错误，应为 桩编号=位数", s);
+            }
+        }
+        return slots;
+    }
+
+    // ============================================================
+    // 状态
+    // ============================================================
+
+    @Override
+    public DroneDto.ChargingStatus status() {
+        DroneDto.ChargingStatus last = lastStatus;
+        DroneDto.ChargingStatus status = new DroneDto.ChargingStatus();
+        if (last != null) {
+            status.setForecastPerHour(last.getForecastPerHour());
+            status.setRequiredDrones(last.getRequiredDrones());
+            status.setDispatchableDrones(last.getDispatchableDrones());
+            status.setPads(last.getPads());
+            status.setLastRunAt(last.getLastRunAt());
+        } else {
+            Map<String, List<Long>> empty = new LinkedHashMap<>();
+            padSlots().keySet().forEach(pad -> empty.put(pad, List.of()));
+            status.setPads(toPads(padSlots(), empty));
+        }
+        status.setStarted(started.get());
+        status.setReleased(released.get());
+        return status;
+    }
+
+    private List<DroneDto.ChargingPad> toPads(Map<String, Integer> slots, Map<String, List<Long>> occupancy) {
+        List<DroneDto.ChargingPad> result = new ArrayList<>();
+        occupancy.forEach((padId, droneIds) -> {
+            DroneDto.ChargingPad pad = new DroneDto.ChargingPad();
+            pad.setPadId(padId);
+            pad.setSlots(slots.getOrDefault(padId, 0));
+            pad.setDroneIds(List.copyOf(droneIds));
+            result.add(pad);
+        });
+        return result;
+    }
+}
@@ -0,0 +1,57 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.service.ContentVersionService;
+import com.example.sdhucanteendrone.service.MenuSnapshotService;
+import com.example.sdhucanteendrone.service.event.CanteenChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 菜单版本直接用菜单快照的版本号（与快照的失效在同一处递增，不会出现新 ETag 配旧快照）；
+ * 食堂详情 / 列表的版本在写事务提交后递增，读接口本身不缓存，先取 ETag 后查库即可保证一致。
+ */
+@Service
+@RequiredArgsConstructor
+public class ContentVersionServiceImpl implements ContentVersionService {
+
+    private final MenuSnapshotService menuSnapshotService;
+
+    private final String bootEpoch = Long.toString(System.currentTimeMillis(), 36);
+    private final Map<Long, AtomicLong> canteenVersions = new ConcurrentHashMap<>();
+    private final AtomicLong canteenListVersion = new AtomicLong();
+
+    @Override
+    public String menuETag(Long canteenId) {
+        return etag("m", canteenId, menuSnapshotService.currentVersion(canteenId));
+    }
+
+    @Override
+    public String canteenETag(Long canteenId) {
+        AtomicLong v = canteenVersions.get(canteenId);
+        return etag("c", canteenId, v == null ? 0 : v.get());
+    }
+
+    @Override
+    public String canteenListETag() {
+        return etag("cl", 0L, canteenListVersion.get());
+    }
+
+    /**
+     * 食堂写事务提交后递增版本号，之后的请求拿到新 ETag。
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onCanteenChanged(CanteenChangedEvent event) {
+        canteenVersions.computeIfAbsent(event.getCanteenId(), k -> new AtomicLong()).incrementAndGet();
+        canteenListVersion.incrementAndGet();
+    }
+
+    private String etag(String kind, Long id, long version) {
+        return "\"" + kind + "-" + bootEpoch + "-" + id + "-" + version + "\"";
+    }
+}
@@ -0,0 +1,45 @@
+package com.example.sdhucanteendrone.service.impl;
+
+/**
+ * 指数衰减的均值 / 方差（每个样本按权重 alpha 计入，旧样本的影响按 (1 - alpha)^n 衰减）。
+ * <p>
+ * 样本数不足 1 / alpha 时按算术平均计入，避免冷启动时被第一个样本主导。
+ * 分位数按正态近似：mean + z * stddev。
+ */
+final class DecayedStats {
+
+    /** 标准正态分布 90 分位 */
+    static final double Z_P90 = 1.2816;
+
+    private final double alpha;
+    private long count;
+    private double mean;
+    private double variance;
+
+    DecayedStats(double alpha) {
+        if (alpha <= 0 || alpha > 1) {
+            throw new IllegalArgumentException("alpha 必须在 (0, 1] 之间: " + alpha);
+        }
+        this.alpha = alpha;
+    }
+
+    synchronized void add(double x) {
+        count++;
+        double a = Math.max(alpha, 1.0 / count);
+        double diff = x - mean;
+        double increment = a * diff;
+        mean += increment;
+        variance = (1 - a) * (variance + diff * increment);
+    }
+
+    synchronized Snapshot snapshot() {
+        return new Snapshot(count, mean, Math.sqrt(variance));
+    }
+
+    record Snapshot(long count, double mean, double stddev) {
+
+        double quantile(double z) {
+            return Math.max(0, mean + z * stddev);
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.entity.OrderStatusEvent;
+import com.example.sdhucanteendrone.entity.enums.EtaPhase;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.repository.OrderStatusEventRepository;
+import com.example.sdhucanteendrone.repository.StatusTransitionView;
+import com.example.sdhucanteendrone.service.DeliveryEtaService;
+import com.example.sdhucanteendrone.service.event.OrderChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于内存统计的 ETA 预测。
+ * <p>
+ * 每个 (食堂, 阶段, 小时段) 一个 DecayedStats，另有 hour = ALL_DAY 的全天统计；
+ * 小时段取阶段开始时刻（下单 / 起飞）的本地小时。
+ * 订单进入 PACKED / DELIVERED 并提交后，按单查一次该阶段的开始事件，得到一个耗时样本。
+ * 启动时从最近 warmup-days 天的状态事件预热一次，之后只做增量更新。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DeliveryEtaServiceImpl implements DeliveryEtaService {
+
+    /** 全天统计使用的小时段 */
+    private static final int ALL_DAY = -1;
+
+    private final OrderStatusEventRepository statusEventRepository;
+
+    private final Map<Key, DecayedStats> stats = new ConcurrentHashMap<>();
+
+    /** 每个新样本的权重，约等于只看最近 1 / alpha 单 */
+    @Value("${canteen.eta.alpha:0.05}")
+    private double alpha = 0.05;
+
+    /** 小时段样本少于该值时改用全天统计 */
+    @Value("${canteen.eta.min-samples:5}")
+    private int minSamples = 5;
+
+    @Value("${canteen.eta.default-prep-minutes:15}")
+    private int defaultPrepMinutes = 15;
+
+    @Value("${canteen.eta.default-delivery-minutes:10}")
+    private int defaultDeliveryMinutes = 10;
+
+    /** 超过该时长的样本视为异常（隔夜未处理等），不计入统计 */
+    @Value("${canteen.eta.max-sample-minutes:240}")
+    private int maxSampleMinutes = 240;
+
+    @Value("${canteen.eta.warmup-days:14}")
+    private int warmupDays = 14;
+
+    // ============================================================
+    // 预热 + 增量更新
+    // ============================================================
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            Instant since = Instant.now().minus(Duration.ofDays(warmupDays));
+            List<StatusTransitionView> rows = statusEventRepository.findTransitionsSince(
+                    List.of(OrderStatus.PENDING, OrderStatus.PACKED, OrderStatus.SHIPPED, OrderStatus.DELIVERED),
+                    since);
+            int samples = warmUp(rows);
+            log.info("ETA 统计已预热：最近 {} 天 {} 个样本", warmupDays, samples);
+        } catch (RuntimeException e) {
+            // 预热失败不影响启动：没有统计时使用默认值，之后随新订单逐步积累
+            log.warn("ETA 统计预热失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 按时间顺序回放状态事件，把每单的 开始 → 结束 配成样本。
+     */
+    int warmUp(List<StatusTransitionView> rows) {
+        Map<Long, Instant> pendingAt = new HashMap<>();
+        Map<Long, Instant> shippedAt = new HashMap<>();
+        int samples = 0;
+        for (StatusTransitionView row : rows) {
+            Long orderId = row.getOrderId();
+            switch (row.getCode()) {
+                case PENDING -> pendingAt.putIfAbsent(orderId, row.getOccurredAt());
+                case SHIPPED -> shippedAt.putIfAbsent(orderId, row.getOccurredAt());
+                case PACKED -> {
+                    Instant start = pendingAt.remove(orderId);
+                    if (start != null && record(row.getCanteenId(), EtaPhase.PREP, start, row.getOccurredAt())) {
+                        samples++;
+                    }
+                }
+                case DELIVERED -> {
+                    Instant start = shippedAt.remove(orderId);
+                    if (start != null && record(row.getCanteenId(), EtaPhase.DELIVERY, start, row.getOccurredAt())) {
+                        samples++;
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+        return samples;
+    }
+
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        OrderStatusEvent end = event.getStatusEvent();
+        if (end == null || event.getCanteenId() == null) {
+            return;
+        }
+        EtaPhase phase;
+        OrderStatus startCode;
+        if (end.getCode() == OrderStatus.PACKED) {
+            phase = EtaPhase.PREP;
+            startCode = OrderStatus.PENDING;
+        } else if (end.getCode() == OrderStatus.DELIVERED) {
+            phase = EtaPhase.DELIVERY;
+            startCode = OrderStatus.SHIPPED;
+        } else {
+            return;
+        }
+        statusEventRepository.findFirstByOrderIdAndCodeOrderByOccurredAtAsc(event.getOrderId(), startCode)
+                .ifPresent(start -> record(event.getCanteenId(), phase, start.getOccurredAt(), end.getOccurredAt()));
+    }
+
+    /**
+     * 记入一个样本，同时计入小时段和全天统计；异常样本返回 false。
+     */
+    boolean record(Long canteenId, EtaPhase phase, Instant start, Instant end) {
+        if (start == null || end == null) {
+            return false;
+        }
+        long seconds = Duration.between(start, end).getSeconds();
+        if (seconds < 0 || seconds > maxSampleMinutes * 60L) {
+            return false;
+        }
+        stats.computeIfAbsent(new Key(canteenId, phase, hourOf(start)), k -> new DecayedStats(alpha)).add(seconds);
+        stats.computeIfAbsent(new Key(canteenId, phase, ALL_DAY), k -> new DecayedStats(alpha)).add(seconds);
+        return true;
+    }
+
+    // ============================================================
+    // 预测
+    // ============================================================
+
+    @Override
+    public Instant predictReadyAt(Long canteenId, Instant pendingAt) {
+        if (pendingAt == null) {
+            return null;
+        }
+        Double seconds = expectedSeconds(canteenId, EtaPhase.PREP, pendingAt);
+        return pendingAt.plusSeconds(seconds != null ? Math.round(seconds) : defaultPrepMinutes * 60L);
+    }
+
+    @Override
+    public Instant predictDeliveredAt(Long canteenId, Instant departAt, Integer routeEtaSeconds) {
+        if (departAt == null) {
+            return null;
+        }
+        Double seconds = expectedSeconds(canteenId, EtaPhase.DELIVERY, departAt);
+        if (seconds != null) {
+            return departAt.plusSeconds(Math.round(seconds));
+        }
+        return departAt.plusSeconds(routeEtaSeconds != null ? routeEtaSeconds : defaultDeliveryMinutes * 60L);
+    }
+
+    private Double expectedSeconds(Long canteenId, EtaPhase phase, Instant start) {
+        for (int hour : new int[]{hourOf(start), ALL_DAY}) {
+            DecayedStats s = stats.get(new Key(canteenId, phase, hour));
+            if (s != null) {
+                DecayedStats.Snapshot snapshot = s.snapshot();
+                if (snapshot.count() >= minSamples) {
+                    return snapshot.mean();
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public List<OrderDto.EtaBucket> buckets(Long canteenId) {
+        List<OrderDto.EtaBucket> result = new ArrayList<>();
+        stats.forEach((key, s) -> {
+            if (!key.canteenId().equals(canteenId)) {
+                return;
+            }
+            DecayedStats.Snapshot snapshot = s.snapshot();
+            OrderDto.EtaBucket bucket = new OrderDto.EtaBucket();
+            bucket.setPhase(key.phase());
+            bucket.setHour(key.hour() == ALL_DAY ? null : key.hour());
+            bucket.setSamples(snapshot.count());
+            bucket.setMeanSeconds(Math.round(snapshot.mean()));
+            bucket.setP90Seconds(Math.round(snapshot.quantile(DecayedStats.Z_P90)));
+            result.add(bucket);
+        });
+        result.sort(Comparator.comparing(OrderDto.EtaBucket::getPhase)
+                .thenComparing(b -> b.getHour() == null ? ALL_DAY : b.getHour()));
+        return result;
+    }
+
+    private int hourOf(Instant instant) {
+        return instant.atZone(ZoneId.systemDefault()).getHour();
+    }
+
+    private record Key(Long canteenId, EtaPhase phase, int hour) {
+    }
+}
@@ -0,0 +1,442 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+import com.example.sdhucanteendrone.entity.Canteen;
+import com.example.sdhucanteendrone.entity.Drone;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.repository.CanteenRepository;
+import com.example.sdhucanteendrone.repository.DroneRepository;
+import com.example.sdhucanteendrone.repository.OrderRepository;
+import com.example.sdhucanteendrone.repository.OrderStatusEventRepository;
+import com.example.sdhucanteendrone.repository.OrderSummaryView;
+import com.example.sdhucanteendrone.repository.StatusReachedView;
+import com.example.sdhucanteendrone.service.DroneDispatchService;
+import com.example.sdhucanteendrone.service.DroneSpatialIndex;
+import com.example.sdhucanteendrone.service.MissionService;
+import com.example.sdhucanteendrone.service.OrderService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+
+/**
+ * 自动派机。
+ * <p>
+ * 每一轮：
+ * 1. 取出最早打包完成、尚未指派无人机的 DRONE 订单（一条查询，带总份数）
+ * 2. 逐单取候选无人机：食堂有经纬度时从空间索引取离食堂最近、电量和载重达标的几架空闲无人机；
+ *    没有经纬度的食堂才查库取出全部电量达标的空闲无人机（每轮最多查一次）
+ * 3. 候选中挑选：离食堂近的优先，其次载重贴合、电量高的优先
+ * 4. 在同一个事务里调用 OrderService 的 assignDrone + startDelivery，复用原有校验和状态流转
+ * <p>
+ * 开启合单（canteen.mission.batching-enabled）后，同一食堂、同一目的地的订单在等待窗口内
+ * 攒成一次起飞，按无人机最大载重和单数上限装载，由 MissionService 在一个事务里完成。
+ * <p>
+ * 单个订单派机失败（并发冲突、无人机已被占用等）只记录并跳过，下一轮重试。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DroneDispatchServiceImpl implements DroneDispatchService {
+
+    private static final int LATENCY_SAMPLES = 1024;
+
+    private final OrderService orderService;
+    private final OrderRepository orderRepository;
+    private final OrderStatusEventRepository statusEventRepository;
+    private final DroneRepository droneRepository;
+    private final CanteenRepository canteenRepository;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final MissionService missionService;
+    private final PlatformTransactionManager transactionManager;
+
+    private final ReentrantLock runLock = new ReentrantLock();
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong flights = new AtomicLong();
+    private final AtomicLong missions = new AtomicLong();
+    private final AtomicLong batchedOrders = new AtomicLong();
+    private final LatencyWindow latencies = new LatencyWindow(LATENCY_SAMPLES);
+    private volatile Instant lastRunAt;
+
+    @Value("${canteen.dispatch.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${canteen.dispatch.batch-size:50}")
+    private int batchSize = 50;
+
+    @Value("${canteen.dispatch.min-battery:30}")
+    private int minBattery = 30;
+
+    @Value("${canteen.dispatch.portion-weight-kg:0.5}")
+    private double portionWeightKg = 0.5;
+
+    @Value("${canteen.dispatch.distance-bucket-m:200}")
+    private double distanceBucketMeters = 200;
+
+    @Value("${canteen.dispatch.candidates-per-flight:16}")
+    private int candidatesPerFlight = 16;
+
+    @Value("${canteen.mission.batching-enabled:false}")
+    private boolean batchingEnabled = false;
+
+    @Value("${canteen.mission.max-orders:4}")
+    private int maxOrdersPerMission = 4;
+
+    @Value("${canteen.mission.batch-window-ms:60000}")
+    private long batchWindowMs = 60_000;
+
+    @Value("${canteen.dispatch.reservation-timeout-ms:300000}")
+    private long reservationTimeoutMs = 300_000;
+
+    // ============================================================
+    // 派机
+    // ============================================================
+
+    @Scheduled(fixedDelayString = "${canteen.dispatch.interval-ms:2000}")
+    public void scheduledDispatch() {
+        if (enabled) {
+            dispatchOnce();
+        }
+    }
+
+    @Override
+    public int dispatchOnce() {
+        // 上一轮还没跑完（手动触发与定时任务撞上）就跳过
+        if (!runLock.tryLock()) {
+            return 0;
+        }
+        try {
+            lastRunAt = Instant.now();
+            return doDispatch();
+        } finally {
+            runLock.unlock();
+        }
+    }
+
+    private int doDispatch() {
+        List<OrderSummaryView> orders = orderRepository.findUndispatchedOrderSummaries(
+                OrderStatus.PACKED, DeliverMethod.DRONE, PageRequest.of(0, batchSize));
+        if (orders.isEmpty()) {
+            return 0;
+        }
+        Map<Long, Canteen> canteens = canteenRepository.findAllById(
+                        orders.stream().map(OrderSummaryView::getCanteenId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Canteen::getId, Function.identity()));
+
+        Map<Long, Double> weights = new HashMap<>(missionService.estimatePayloadKg(
+                orders.stream().map(OrderSummaryView::getId).toList()));
+        ToDoubleFunction<OrderSummaryView> weightKg = o -> weights.computeIfAbsent(o.getId(),
+                id -> estimatePayloadKg(o));
+        int maxOrders = batchingEnabled ? Math.max(1, maxOrdersPerMission) : 1;
+
+        // 进入 PACKED 的时间取自状态事件（一条查询），合单等待窗口和派机延迟都从这里算
+        Map<Long, Instant> packedAt = statusEventRepository.findReachedAt(
+                        orders.stream().map(OrderSummaryView::getId).toList(), OrderStatus.PACKED)
+                .stream()
+                .collect(Collectors.toMap(StatusReachedView::getOrderId, StatusReachedView::getOccurredAt));
+
+        // 同一食堂、同一目的地的订单为一组，组内保持进入 PACKED 的先后
+        Map<String, List<OrderSummaryView>> groups = orders.stream().collect(Collectors.groupingBy(
+                this::groupKey, LinkedHashMap::new, Collectors.toCollection(ArrayList::new)));
+
+        Instant now = Instant.now();
+        int count = 0;
+        // 本轮已派出（无论成败）的无人机，不再参与匹配
+        Set<Long> used = new HashSet<>();
+        // 没有经纬度的食堂才用到：全部电量达标的空闲无人机，本轮第一次用到时查库
+        List<Drone> scanned = null;
+        // 仍按全局先后顺序处理：每次取最早的一单，连同它所在组里可以顺路带上的订单一起起飞
+        for (OrderSummaryView head : orders) {
+            List<OrderSummaryView> pending = groups.get(groupKey(head));
+            if (pending.isEmpty() || pending.get(0) != head) {
+                // 已随前面的航班起飞，或本组本轮已放弃
+                continue;
+            }
+            Canteen canteen = canteens.get(head.getCanteenId());
+            double headKg = weightKg.applyAsDouble(head);
+            List<Drone> idle;
+            if (hasCoordinates(canteen)) {
+                idle = nearestIdle(canteen, headKg, used);
+            } else {
+                if (scanned == null) {
+                    scanned = droneRepository.findByStatusAndBatteryGreaterThanEqual(DroneStatus.IDLE, minBattery);
+                }
+                idle = scanned.stream()
+                        .filter(d -> !used.contains(d.getId()))
+                        .filter(d -> d.getMaxPayloadKg() != null && d.getMaxPayloadKg() >= headKg)
+                        .toList();
+            }
+            if (idle.isEmpty()) {
+                // 当前没有载重足够的空闲无人机，留给后续轮次
+                pending.remove(0);
+                continue;
+            }
+            double largest = idle.stream().mapToDouble(Drone::getMaxPayloadKg).max().orElse(0);
+            if (maxOrders > 1 && !readyToFly(pending, weightKg, largest, maxOrders, packedAt, now)) {
+                // 等待窗口内再凑几单；组内其余订单更晚，一并等待
+                pending.clear();
+                continue;
+            }
+
+            // 按整组的计划载重挑机，载重贴合的优先；至少要装得下队首订单
+            double wantedKg = Math.max(headKg,
+                    Math.min(largest, MissionPlanner.plannedKg(pending, weightKg, maxOrders)));
+            Drone drone = pickDrone(idle, canteen, wantedKg);
+            List<OrderSummaryView> flight = MissionPlanner.fill(pending, weightKg, drone.getMaxPayloadKg(), maxOrders);
+            pending.removeAll(flight);
+            // 无论成败，这架无人机本轮都不再参与匹配
+            used.add(drone.getId());
+
+            if (launch(drone, flight)) {
+                count += flight.size();
+                for (OrderSummaryView order : flight) {
+                    Instant packed = packedAt.get(order.getId());
+                    if (packed != null) {
+                        latencies.record(Duration.between(packed, Instant.now()).toMillis());
+                    }
+                }
+            }
+        }
+        if (count > 0) {
+            log.info("本轮自动派机 {} 单", count);
+        }
+        return count;
+    }
+
+    /**
+     * 从空间索引取离食堂最近、电量和载重达标、本轮还没用过的空闲无人机。
+     * 多取 used.size() 架，抵掉本轮已派出但索引还没来得及移除的。
+     */
+    private List<Drone> nearestIdle(Canteen canteen, double minPayloadKg, Set<Long> used) {
+        List<DroneSpatialIndex.Nearby> nearby = droneSpatialIndex.nearestIdle(
+                canteen.getLatitude(), canteen.getLongitude(), candidatesPerFlight + used.size(),
+                minBattery, minPayloadKg);
+        List<Drone> idle = new ArrayList<>(nearby.size());
+        for (DroneSpatialIndex.Nearby n : nearby) {
+            if (!used.contains(n.droneId())) {
+                idle.add(toDrone(n));
+            }
+        }
+        return idle;
+    }
+
+    private static boolean hasCoordinates(Canteen canteen) {
+        return canteen != null && canteen.getLatitude() != null && canteen.getLongitude() != null;
+    }
+
+    /**
+     * 索引中的快照转成派机用的无人机对象（只用于挑选；起飞时的条件更新会再校验状态）。
+     */
+    private static Drone toDrone(DroneSpatialIndex.Nearby n) {
+        Drone d = new Drone();
+        d.setId(n.droneId());
+        d.setCode(n.code());
+        d.setBattery(n.battery());
+        d.setMaxPayloadKg(n.maxPayloadKg());
+        d.setLatitude(n.latitude());
+        d.setLongitude(n.longitude());
+        d.setStatus(DroneStatus.IDLE);
+        return d;
+    }
+
+    /**
+     * 一次起飞：单个订单复用 OrderService 的 assignDrone + startDelivery，多个订单走合单任务。
+     */
+    private boolean launch(Drone drone, List<OrderSummaryView> flight) {
+        try {
+            if (flight.size() == 1) {
+                Long orderId = flight.get(0).getId();
+                new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                    orderService.assignDrone(orderId, drone.getId());
+                    orderService.startDelivery(orderId);
+                });
+            } else {
+                missionService.launch(drone.getId(), flight.stream().map(OrderSummaryView::getId).toList());
+                missions.incrementAndGet();
+                batchedOrders.addAndGet(flight.size());
+            }
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            log.warn("订单 {} 派机失败（无人机 {}）: {}",
+                    flight.stream().map(OrderSummaryView::getId).toList(), drone.getCode(), e.getMessage());
+            return false;
+        }
+        flights.incrementAndGet();
+        dispatched.addAndGet(flight.size());
+        return true;
+    }
+
+    /**
+     * 合单等待：组内最早的订单已等满窗口，或者已凑够单数 / 载重，就可以起飞。
+     */
+    private boolean readyToFly(List<OrderSummaryView> pending, ToDoubleFunction<OrderSummaryView> weightKg,
+                               double largestKg, int maxOrders, Map<Long, Instant> packedAt, Instant now) {
+        if (pending.size() >= maxOrders) {
+            return true;
+        }
+        if (MissionPlanner.plannedKg(pending, weightKg, maxOrders) >= largestKg) {
+            return true;
+        }
+        Instant packed = packedAt.get(pending.get(0).getId());
+        return packed == null || !packed.plusMillis(batchWindowMs).isAfter(now);
+    }
+
+    private String groupKey(OrderSummaryView order) {
+        return order.getCanteenId() + "|" + MissionPlanner.destinationKey(order.getAddress());
+    }
+
+    /**
+     * 载重足够的无人机中：离食堂近的优先，其次载重最贴合的优先（大飞机留给重单），
+     * 最后电量高的优先。
+     */
+    private Drone pickDrone(List<Drone> idle, Canteen canteen, double payloadKg) {
+        return idle.stream()
+                .filter(d -> d.getMaxPayloadKg() != null && d.getMaxPayloadKg() >= payloadKg)
+                .min(Comparator.<Drone>comparingDouble(d -> distanceRank(d, canteen))
+                        .thenComparing(Drone::getMaxPayloadKg)
+                        .thenComparing(Drone::getBattery, Comparator.reverseOrder())
+                        .thenComparing(Drone::getId))
+                .orElse(null);
+    }
+
+    /**
+     * 距离等级：
+     * - 无人机和食堂都有经纬度时，取实际距离（米），按 distanceBucketMeters 分档，
+     *   同一档内再比较载重和电量，避免几米之差压过载重匹配
+     * - 否则退回文字位置比较：停在该食堂的记 0，其余排在所有有坐标的无人机之后
+     */
+    private double distanceRank(Drone drone, Canteen canteen) {
+        if (canteen == null) {
+            return Double.MAX_VALUE;
+        }
+        if (drone.getLatitude() != null && drone.getLongitude() != null
+                && canteen.getLatitude() != null && canteen.getLongitude() != null) {
+            double meters = DroneSpatialIndex.distanceMeters(canteen.getLatitude(), canteen.getLongitude(),
+                    drone.getLatitude(), drone.getLongitude());
+            return Math.floor(meters / distanceBucketMeters);
+        }
+        if (drone.getLocation() != null
+                && (Objects.equals(drone.getLocation(), canteen.getLocation())
+                || Objects.equals(drone.getLocation(), canteen.getName()))) {
+            return 0;
+        }
+        return Double.MAX_VALUE;
+    }
+
+    /**
+     * 订单重量估算（菜品没有明细重量时的兜底）：总份数 × 每份重量。
+     */
+    private double estimatePayloadKg(OrderSummaryView order) {
+        int portions = order.getTotalItemCount() == null ? 0 : order.getTotalItemCount().intValue();
+        return portions * portionWeightKg;
+    }
+
+    // ============================================================
+    // 预占超时
+    // ============================================================
+
+    /**
+     * 释放预占后迟迟没有起飞的无人机（例如手动指派后订单一直没有出餐）。
+     *
+     * @return 释放的无人机数
+     */
+    @Scheduled(fixedDelayString = "${canteen.dispatch.reservation-check-ms:30000}")
+    public int releaseExpiredReservations() {
+        Instant cutoff = Instant.now().minusMillis(reservationTimeoutMs);
+        int released = 0;
+        for (Drone drone : droneRepository.findByStatusAndReservedAtBefore(DroneStatus.RESERVED, cutoff)) {
+            try {
+                if (orderService.releaseDroneReservation(drone.getCurrentOrderId(), drone.getId())) {
+                    released++;
+                }
+            } catch (RuntimeException e) {
+                log.warn("释放无人机 {} 的预占失败: {}", drone.getCode(), e.getMessage());
+            }
+        }
+        if (released > 0) {
+            log.info("已释放超时预占的无人机 {} 架", released);
+        }
+        return released;
+    }
+
+    // ============================================================
+    // 统计
+    // ============================================================
+
+    @Override
+    public DroneDto.DispatchStats stats() {
+        DroneDto.DispatchStats stats = new DroneDto.DispatchStats();
+        stats.setDispatched(dispatched.get());
+        stats.setFailed(failed.get());
+        stats.setFlights(flights.get());
+        stats.setMissions(missions.get());
+        stats.setBatchedOrders(batchedOrders.get());
+        stats.setLastRunAt(lastRunAt);
+
+        long[] samples = latencies.snapshot();
+        stats.setSamples(samples.length);
+        if (samples.length > 0) {
+            Arrays.sort(samples);
+            stats.setP50Ms(percentile(samples, 0.50));
+            stats.setP90Ms(percentile(samples, 0.90));
+            stats.setP99Ms(percentile(samples, 0.99));
+            stats.setMaxMs(samples[samples.length - 1]);
+        }
+        return stats;
+    }
+
+    private long percentile(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+
+    /**
+     * 最近 N 个延迟样本的环形缓冲区。
+     */
+    private static final class LatencyWindow {
+
+        private final long[] samples;
+        private int next;
+        private int size;
+
+        private LatencyWindow(int capacity) {
+            this.samples = new long[capacity];
+        }
+
+        private synchronized void record(long value) {
+            samples[next] = value;
+            next = (next + 1) % samples.length;
+            size = Math.min(size + 1, samples.length);
+        }
+
+        private synchronized long[] snapshot() {
+            return Arrays.copyOf(samples, size);
+        }
+    }
+}
@@ -6,20 +6,36 @@ import com.example.sdhucanteendrone.entity.Drone;
 import com.example.sdhucanteendrone.entity.enums.DroneStatus;
 import com.example.sdhucanteendrone.repository.DroneRepository;
 import com.example.sdhucanteendrone.service.DroneService;
+import com.example.sdhucanteendrone.service.DroneSpatialIndex;
+import com.example.sdhucanteendrone.service.DroneTelemetryService;
+import com.example.sdhucanteendrone.service.OrderService;
+import com.example.sdhucanteendrone.service.event.DroneChangedEvent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 @Transactional(readOnly = true)
 public class DroneServiceImpl implements DroneService {
 
+    /**
+     * 就近查询单次返回的最大数量。
+     */
+    private static final int MAX_NEAREST = 100;
+
     private final DroneRepository droneRepository;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final DroneTelemetryService droneTelemetryService;
+    private final OrderService orderService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ============================================================
     // 查询
@@ -40,7 +56,36 @@ public class DroneServiceImpl implements DroneService {
     public DroneDto.DroneDetail getDroneDetail(Long droneId) {
         Drone d = droneRepository.findById(droneId)
                 .orElseThrow(() -> BizException.notFound("无人机不存在"));
-        return toDetail(d);
+        DroneDto.DroneDetail dto = toDetail(d);
+
+        // 电量 / 位置以内存中的最新遥测为准（数据库按回写周期滞后）
+        DroneDto.DroneTelemetry t = droneTelemetryService.getLatest(droneId);
+        if (t != null) {
+            if (t.getBattery() != null) {
+                dto.setBattery(t.getBattery());
+            }
+            if (t.getLatitude() != null) {
+                dto.setLatitude(t.getLatitude());
+                dto.setLongitude(t.getLongitude());
+            }
+            if (t.getLocation() != null) {
+                dto.setLocation(t.getLocation());
+            }
+        }
+        return dto;
+    }
+
+    @Override
+    public List<DroneDto.NearbyDrone> findNearestIdle(double latitude, double longitude, int k,
+                                                     int minBattery, double minPayloadKg) {
+        validateCoordinates(latitude, longitude);
+        if (k <= 0 || k > MAX_NEAREST) {
+            throw BizException.badRequest("k 必须在 1~" + MAX_NEAREST + " 之间");
+        }
+        return droneSpatialIndex.nearestIdle(latitude, longitude, k, minBattery, minPayloadKg)
+                .stream()
+                .map(this::toNearby)
+                .toList();
     }
 
     // ============================================================
@@ -72,13 +117,19 @@ public class DroneServiceImpl implements DroneService {
         d.setModel(req.getModel());
         d.setMaxPayloadKg(req.getMaxPayloadKg());
         d.setBattery(req.getBattery());
+        checkManualStatus(req.getStatus());
         d.setStatus(req.getStatus() == null ? DroneStatus.IDLE : req.getStatus());
         d.setNote(req.getNote());
         d.setCreatedAt(Instant.now());
         d.setUpdatedAt(Instant.now());
         d.setLocation(req.getLocation());
+        if (req.getLatitude() != null || req.getLongitude() != null) {
+            setCoordinates(d, req.getLatitude(), req.getLongitude());
+        }
 
-        return toDetail(droneRepository.save(d));
+        Drone saved = droneRepository.save(d);
+        eventPublisher.publishEvent(new DroneChangedEvent(saved.getId()));
+        return toDetail(saved);
     }
 
     @Override
@@ -87,6 +138,15 @@ public class DroneServiceImpl implements DroneService {
         Drone d = droneRepository.findById(droneId)
                 .orElseThrow(() -> BizException.notFound("无人机不存在"));
 
+        if (req.getStatus() != null) {
+            checkManualStatus(req.getStatus());
+            if (applyManualStatus(d, req.getStatus())) {
+                // 条件更新会清空持久化上下文，重新读取后再改其它字段，避免把旧的绑定写回去
+                d = droneRepository.findById(droneId)
+                        .orElseThrow(() -> BizException.notFound("无人机不存在"));
+            }
+        }
+
         if (req.getCode() != null && !req.getCode().isBlank()
                 && !req.getCode().equals(d.getCode())) {
             if (droneRepository.existsByCode(req.getCode())) {
@@ -95,20 +155,91 @@ public class DroneServiceImpl implements DroneService {
             d.setCode(req.getCode());
         }
 
-        if (req.getStatus() != null) {
-            d.setStatus(req.getStatus());
+        if (req.getLatitude() != null || req.getLongitude() != null) {
+            setCoordinates(d, req.getLatitude(), req.getLongitude());
         }
 
         d.setUpdatedAt(Instant.now());
-        return toDetail(droneRepository.save(d));
+        Drone saved = droneRepository.save(d);
+        eventPublisher.publishEvent(new DroneChangedEvent(droneId));
+        return toDetail(saved);
     }
 
     @Override
     @Transactional
     public void changeDroneStatus(Long droneId, DroneStatus status) {
-        int updated = droneRepository.updateStatusById(droneId, status);
-        if (updated == 0) {
-            throw BizException.notFound("无人机不存在");
+        checkManualStatus(status);
+        Drone d = droneRepository.findById(droneId)
+                .orElseThrow(() -> BizException.notFound("无人机不存在"));
+        applyManualStatus(d, status);
+    }
+
+    // ============================================================
+    // 工具方法：状态
+    // ============================================================
+
+    /**
+     * 手动修改状态并解除原有绑定。
+     * <p>
+     * 离开 RESERVED 时先释放被预占的订单（订单可以重新指派）；离开 IN_MISSION 时
+     * 已起飞的订单 / 任务不动，之后送达时不会再改这架无人机。
+     *
+     * @return false 表示状态未变化，没有执行任何修改
+     */
+    private boolean applyManualStatus(Drone d, DroneStatus status) {
+        DroneStatus from = d.getStatus();
+        if (from == status) {
+            return false;
+        }
+        Long droneId = d.getId();
+        if (from == DroneStatus.RESERVED && d.getCurrentOrderId() != null) {
+            // 无人机一侧 RESERVED -> IDLE 也由它完成，并发布变更事件
+            if (!orderService.releaseDroneReservation(d.getCurrentOrderId(), droneId)) {
+                throw new BizException(HttpStatus.CONFLICT, "无人机状态已变化，请刷新后重试");
+            }
+            from = DroneStatus.IDLE;
+            if (status == DroneStatus.IDLE) {
+                return true;
+            }
+        }
+        if (droneRepository.updateStatusById(droneId, from, status, Instant.now()) == 0) {
+            throw new BizException(HttpStatus.CONFLICT, "无人机状态已变化，请刷新后重试");
+        }
+        eventPublisher.publishEvent(new DroneChangedEvent(droneId));
+        return true;
+    }
+
+    // ============================================================
+    // 工具方法：坐标
+    // ============================================================
+
+    /**
+     * 预占、充电状态由派单和充电调度维护，不能手动设置。
+     */
+    private void checkManualStatus(DroneStatus status) {
+        if (status == DroneStatus.RESERVED) {
+            throw BizException.badRequest("预占状态只能通过指派订单设置");
+        }
+        if (status == DroneStatus.CHARGING) {
+            throw BizException.badRequest("充电状态由充电调度设置");
+        }
+    }
+
+    /**
+     * 经纬度必须成对出现。
+     */
+    private void setCoordinates(Drone d, Double latitude, Double longitude) {
+        if (latitude == null || longitude == null) {
+            throw BizException.badRequest("经纬度需同时提供");
+        }
+        validateCoordinates(latitude, longitude);
+        d.setLatitude(latitude);
+        d.setLongitude(longitude);
+    }
+
+    private void validateCoordinates(double latitude, double longitude) {
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw BizException.badRequest("经纬度超出范围");
         }
     }
 
@@ -123,6 +254,8 @@ public class DroneServiceImpl implements DroneService {
         dto.setStatus(d.getStatus());
         dto.setCreatedAt(d.getCreatedAt());
         dto.setUpdatedAt(d.getUpdatedAt());
+        dto.setLatitude(d.getLatitude());
+        dto.setLongitude(d.getLongitude());
         return dto;
     }
 
@@ -135,6 +268,20 @@ public class DroneServiceImpl implements DroneService {
         dto.setUpdatedAt(d.getUpdatedAt());
         dto.setLocation(d.getLocation());
         dto.setBattery(d.getBattery());
+        dto.setLatitude(d.getLatitude());
+        dto.setLongitude(d.getLongitude());
+        return dto;
+    }
+
+    private DroneDto.NearbyDrone toNearby(DroneSpatialIndex.Nearby n) {
+        DroneDto.NearbyDrone dto = new DroneDto.NearbyDrone();
+        dto.setId(n.droneId());
+        dto.setCode(n.code());
+        dto.setBattery(n.battery());
+        dto.setMaxPayloadKg(n.maxPayloadKg());
+        dto.setLatitude(n.latitude());
+        dto.setLongitude(n.longitude());
+        dto.setDistanceMeters(n.distanceMeters());
         return dto;
     }
 
@@ -148,11 +295,13 @@ public class DroneServiceImpl implements DroneService {
         // 这里可以做更多校验，例如：
         // 不能删除正在执行任务的无人机
         Drone drone = droneRepository.findById(droneId).get();
-        if (drone.getStatus() == DroneStatus.IN_MISSION) {
+        if (drone.getStatus() == DroneStatus.IN_MISSION || drone.getStatus() == DroneStatus.RESERVED
+                || drone.getCurrentOrderId() != null || drone.getCurrentMissionId() != null) {
             throw BizException.badRequest("当前无人机正在执行任务，无法删除");
         }
 
         droneRepository.deleteById(droneId);
+        eventPublisher.publishEvent(new DroneChangedEvent(droneId));
     }
 
 }
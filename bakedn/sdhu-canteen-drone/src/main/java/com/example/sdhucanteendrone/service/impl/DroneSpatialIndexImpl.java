@@ -0,0 +1,338 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.entity.Drone;
+import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.repository.DroneRepository;
+import com.example.sdhucanteendrone.service.DroneSpatialIndex;
+import com.example.sdhucanteendrone.service.event.DroneChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 均匀网格实现的空闲无人机索引。
+ * <p>
+ * 经纬度按参考纬度做等距投影换算成米，再按 cellSizeMeters 划分网格；
+ * 查询时从所在格子开始一圈一圈向外扩，已找到 k 个且第 k 近的距离不超过
+ * 下一圈可能的最近距离时停止。每一圈只扫与已占用范围相交的部分，查询点离机群很远时
+ * 直接从离它最近的一圈开始；已占用范围比占用格子数大得多（无人机很分散）时
+ * 改为直接遍历占用的格子。校园范围内投影误差可以忽略。
+ * <p>
+ * 读多写少，使用读写锁；写入来自无人机变化事件（事务提交后）。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DroneSpatialIndexImpl implements DroneSpatialIndex {
+
+    private static final double METERS_PER_DEGREE = 111_320.0;
+
+    /** 已占用范围面积超过占用格子数的这个倍数时，直接遍历占用格子 */
+    private static final int SPARSE_FACTOR = 4;
+
+    private final DroneRepository droneRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Entry> entries = new HashMap<>();
+    private final Map<Long, List<Entry>> cells = new HashMap<>();
+
+    // 已占用格子的范围，用于判断何时已扫完全部格子；移除边界上的最后一架时重新计算
+    private int minCx = Integer.MAX_VALUE;
+    private int maxCx = Integer.MIN_VALUE;
+    private int minCy = Integer.MAX_VALUE;
+    private int maxCy = Integer.MIN_VALUE;
+
+    @Value("${canteen.geo.cell-size-m:100}")
+    private double cellSizeMeters = 100;
+
+    @Value("${canteen.geo.reference-latitude:36.0}")
+    private double referenceLatitude = 36.0;
+
+    // ============================================================
+    // 查询
+    // ============================================================
+
+    @Override
+    public List<Nearby> nearestIdle(double latitude, double longitude, int k,
+                                    int minBattery, double minPayloadKg) {
+        if (k <= 0) {
+            return List.of();
+        }
+        double qx = projectX(longitude);
+        double qy = projectY(latitude);
+        int cx = cellOf(qx);
+        int cy = cellOf(qy);
+
+        // 大顶堆：堆顶是目前第 k 近的候选
+        PriorityQueue<Candidate> best = new PriorityQueue<>(k + 1,
+                Comparator.comparingDouble(Candidate::distanceSq).reversed());
+
+        lock.readLock().lock();
+        try {
+            if (entries.isEmpty()) {
+                return List.of();
+            }
+            long area = (long) (maxCx - minCx + 1) * (maxCy - minCy + 1);
+            if (area > (long) cells.size() * SPARSE_FACTOR) {
+                cells.values().forEach(cell -> scanEntries(cell, qx, qy, k, minBattery, minPayloadKg, best));
+            } else {
+                // 已占用范围外的圈不含任何无人机：从第一个与之相交的圈扫到完全覆盖它的圈
+                int fromRing = Math.max(0, Math.max(Math.max(minCx - cx, cx - maxCx), Math.max(minCy - cy, cy - maxCy)));
+                int toRing = Math.max(Math.max(Math.abs(cx - minCx), Math.abs(cx - maxCx)),
+                        Math.max(Math.abs(cy - minCy), Math.abs(cy - maxCy)));
+                for (int r = fromRing; r <= toRing; r++) {
+                    scanRing(cx, cy, r, qx, qy, k, minBattery, minPayloadKg, best);
+
+                    // 下一圈里的点离查询点至少 r 个格子
+                    double nextRingMin = r * cellSizeMeters;
+                    if (best.size() == k && best.peek().distanceSq() <= nextRingMin * nextRingMin) {
+                        break;
+                    }
+                }
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        List<Nearby> result = new ArrayList<>(best.size());
+        while (!best.isEmpty()) {
+            Entry e = best.poll().entry();
+            result.add(new Nearby(e.droneId, e.code, e.battery, e.maxPayloadKg, e.latitude, e.longitude,
+                    DroneSpatialIndex.distanceMeters(latitude, longitude, e.latitude, e.longitude)));
+        }
+        // 堆里弹出是由远到近
+        Collections.reverse(result);
+        return result;
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void scanRing(int cx, int cy, int r, double qx, double qy, int k,
+                          int minBattery, double minPayloadKg, PriorityQueue<Candidate> best) {
+        if (r == 0) {
+            scanCell(cx, cy, qx, qy, k, minBattery, minPayloadKg, best);
+            return;
+        }
+        // 上下两行、左右两列，都只取落在已占用范围内的部分
+        int x0 = Math.max(cx - r, minCx);
+        int x1 = Math.min(cx + r, maxCx);
+        for (int y : new int[]{cy - r, cy + r}) {
+            if (y >= minCy && y <= maxCy) {
+                for (int x = x0; x <= x1; x++) {
+                    scanCell(x, y, qx, qy, k, minBattery, minPayloadKg, best);
+                }
+            }
+        }
+        int y0 = Math.max(cy - r + 1, minCy);
+        int y1 = Math.min(cy + r - 1, maxCy);
+        for (int x : new int[]{cx - r, cx + r}) {
+            if (x >= minCx && x <= maxCx) {
+                for (int y = y0; y <= y1; y++) {
+                    scanCell(x, y, qx, qy, k, minBattery, minPayloadKg, best);
+                }
+            }
+        }
+    }
+
+    private void scanCell(int cx, int cy, double qx, double qy, int k,
+                          int minBattery, double minPayloadKg, PriorityQueue<Candidate> best) {
+        List<Entry> cell = cells.get(cellKey(cx, cy));
+        if (cell != null) {
+            scanEntries(cell, qx, qy, k, minBattery, minPayloadKg, best);
+        }
+    }
+
+    private void scanEntries(List<Entry> cell, double qx, double qy, int k,
+                             int minBattery, double minPayloadKg, PriorityQueue<Candidate> best) {
+        for (Entry e : cell) {
+            if (e.battery < minBattery || e.maxPayloadKg < minPayloadKg) {
+                continue;
+            }
+            double dx = e.x - qx;
+            double dy = e.y - qy;
+            double d2 = dx * dx + dy * dy;
+            if (best.size() < k) {
+                best.add(new Candidate(e, d2));
+            } else if (d2 < best.peek().distanceSq()) {
+                best.poll();
+                best.add(new Candidate(e, d2));
+            }
+        }
+    }
+
+    // ============================================================
+    // 维护
+    // ============================================================
+
+    @Override
+    public void upsert(Drone drone) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(drone.getId());
+            if (drone.getStatus() != DroneStatus.IDLE || drone.getCurrentOrderId() != null
+                    || drone.getCurrentMissionId() != null
+                    || drone.getLatitude() == null || drone.getLongitude() == null) {
+                return;
+            }
+            insertInternal(drone.getId(), drone.getCode(),
+                    drone.getBattery() == null ? 0 : drone.getBattery(),
+                    drone.getMaxPayloadKg() == null ? 0 : drone.getMaxPayloadKg(),
+                    drone.getLatitude(), drone.getLongitude());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void updatePosition(Long droneId, Integer battery, Double latitude, Double longitude) {
+        lock.writeLock().lock();
+        try {
+            Entry old = entries.get(droneId);
+            if (old == null) {
+                return;
+            }
+            removeInternal(droneId);
+            insertInternal(droneId, old.code,
+                    battery == null ? old.battery : battery,
+                    old.maxPayloadKg,
+                    latitude == null ? old.latitude : latitude,
+                    longitude == null ? old.longitude : longitude);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long droneId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(droneId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        List<Drone> drones = droneRepository.findAll();
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            cells.clear();
+            minCx = minCy = Integer.MAX_VALUE;
+            maxCx = maxCy = Integer.MIN_VALUE;
+            drones.forEach(this::upsert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("无人机空间索引已加载，空闲且有坐标的无人机 {} 架", size());
+    }
+
+    /**
+     * 无人机变化提交后按 id 重新读取，读不到说明已删除。
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onDroneChanged(DroneChangedEvent event) {
+        droneRepository.findById(event.getDroneId())
+                .ifPresentOrElse(this::upsert, () -> remove(event.getDroneId()));
+    }
+
+    private void insertInternal(Long droneId, String code, int battery, double maxPayloadKg,
+                                double latitude, double longitude) {
+        double x = projectX(longitude);
+        double y = projectY(latitude);
+        int cx = cellOf(x);
+        int cy = cellOf(y);
+        Entry e = new Entry(droneId, code, battery, maxPayloadKg, latitude, longitude, x, y, cellKey(cx, cy));
+        entries.put(droneId, e);
+        cells.computeIfAbsent(e.cell, key -> new ArrayList<>()).add(e);
+        minCx = Math.min(minCx, cx);
+        maxCx = Math.max(maxCx, cx);
+        minCy = Math.min(minCy, cy);
+        maxCy = Math.max(maxCy, cy);
+    }
+
+    private void removeInternal(Long droneId) {
+        Entry old = entries.remove(droneId);
+        if (old == null) {
+            return;
+        }
+        List<Entry> cell = cells.get(old.cell);
+        if (cell != null) {
+            cell.remove(old);
+            if (cell.isEmpty()) {
+                cells.remove(old.cell);
+                int cx = (int) (old.cell >> 32);
+                int cy = (int) old.cell;
+                if (cx == minCx || cx == maxCx || cy == minCy || cy == maxCy) {
+                    recomputeBounds();
+                }
+            }
+        }
+    }
+
+    /**
+     * 边界上的格子空了：按剩余占用格子重新计算范围（否则一次漂移的坐标会让范围永久变大）。
+     */
+    private void recomputeBounds() {
+        minCx = minCy = Integer.MAX_VALUE;
+        maxCx = maxCy = Integer.MIN_VALUE;
+        for (long key : cells.keySet()) {
+            int cx = (int) (key >> 32);
+            int cy = (int) key;
+            minCx = Math.min(minCx, cx);
+            maxCx = Math.max(maxCx, cx);
+            minCy = Math.min(minCy, cy);
+            maxCy = Math.max(maxCy, cy);
+        }
+    }
+
+    // ============================================================
+    // 坐标换算
+    // ============================================================
+
+    private double projectX(double longitude) {
+        return longitude * METERS_PER_DEGREE * Math.cos(Math.toRadians(referenceLatitude));
+    }
+
+    private double projectY(double latitude) {
+        return latitude * METERS_PER_DEGREE;
+    }
+
+    private int cellOf(double meters) {
+        return (int) Math.floor(meters / cellSizeMeters);
+    }
+
+    private static long cellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    private record Entry(Long droneId, String code, int battery, double maxPayloadKg,
+                         double latitude, double longitude, double x, double y, long cell) {
+    }
+
+    private record Candidate(Entry entry, double distanceSq) {
+    }
+}
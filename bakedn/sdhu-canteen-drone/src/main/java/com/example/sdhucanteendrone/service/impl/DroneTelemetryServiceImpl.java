@@ -0,0 +1,262 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.DroneDto;
+import com.example.sdhucanteendrone.repository.DroneBatchRepository;
+import com.example.sdhucanteendrone.repository.DroneRepository;
+import com.example.sdhucanteendrone.service.DroneSpatialIndex;
+import com.example.sdhucanteendrone.service.DroneTelemetryService;
+import com.example.sdhucanteendrone.service.DroneTrackStore;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 遥测接入。
+ * <p>
+ * 每架无人机一个槽位：latest 为合并后的最新快照（CAS 替换，无锁），
+ * dirty 表示有尚未回写的变化。上报线程先替换快照再置 dirty，
+ * 回写线程先清 dirty 再读快照，因此不会漏掉任何一次变化；
+ * 同一架无人机在两次回写之间的多帧只会产生一行 update。
+ * <p>
+ * 本类不开启事务，回写走 JDBC 批量 update。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class DroneTelemetryServiceImpl implements DroneTelemetryService {
+
+    private final DroneRepository droneRepository;
+    private final DroneBatchRepository droneBatchRepository;
+    private final DroneSpatialIndex droneSpatialIndex;
+    private final DroneTrackStore droneTrackStore;
+
+    private final ConcurrentHashMap<Long, Slot> slots = new ConcurrentHashMap<>();
+
+    private final LongAdder framesReceived = new LongAdder();
+    private final LongAdder framesStale = new LongAdder();
+    private final LongAdder framesRejected = new LongAdder();
+    private final LongAdder rowsFlushed = new LongAdder();
+    private final LongAdder flushes = new LongAdder();
+    private volatile Instant lastFlushAt;
+
+    @Value("${canteen.telemetry.max-batch-frames:1000}")
+    private int maxBatchFrames = 1000;
+
+    /**
+     * 上报时间最多允许比服务器时间超前多少毫秒（时钟偏差）；更超前的帧直接拒绝，
+     * 否则之后所有正常帧都会被当作旧帧丢掉，轨迹也再也写不进去
+     */
+    @Value("${canteen.telemetry.max-clock-skew-ms:5000}")
+    private long maxClockSkewMs = 5000;
+
+    // ============================================================
+    // 接收
+    // ============================================================
+
+    @Override
+    public DroneDto.TelemetryIngestResult ingest(List<DroneDto.TelemetryFrame> frames) {
+        if (frames == null || frames.isEmpty()) {
+            throw BizException.badRequest("遥测帧不能为空");
+        }
+        if (frames.size() > maxBatchFrames) {
+            throw BizException.badRequest("单批最多 " + maxBatchFrames + " 帧");
+        }
+
+        Instant now = Instant.now();
+        DroneDto.TelemetryIngestResult result = new DroneDto.TelemetryIngestResult();
+        for (DroneDto.TelemetryFrame frame : frames) {
+            framesReceived.increment();
+            Slot slot = isValid(frame, now) ? slot(frame.getDroneId()) : null;
+            if (slot == null) {
+                framesRejected.increment();
+                result.setRejected(result.getRejected() + 1);
+                continue;
+            }
+            Snapshot accepted = slot.offer(frame, now);
+            if (accepted != null) {
+                result.setAccepted(result.getAccepted() + 1);
+                // 轨迹记录合并后的完整位置 / 电量，乱序的旧帧不进轨迹
+                droneTrackStore.append(frame.getDroneId(), accepted.reportedAt, accepted.latitude,
+                        accepted.longitude, accepted.battery, frame.getOrderId());
+            } else {
+                framesStale.increment();
+                result.setStale(result.getStale() + 1);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public DroneDto.DroneTelemetry getLatest(Long droneId) {
+        Slot slot = slots.get(droneId);
+        if (slot == null) {
+            return null;
+        }
+        Snapshot s = slot.latest.get();
+        DroneDto.DroneTelemetry dto = new DroneDto.DroneTelemetry();
+        dto.setDroneId(droneId);
+        dto.setBattery(s.battery);
+        dto.setLatitude(s.latitude);
+        dto.setLongitude(s.longitude);
+        dto.setLocation(s.location);
+        dto.setReportedAt(s.reportedAt);
+        dto.setReceivedAt(s.receivedAt);
+        dto.setFlushed(!slot.dirty.get());
+        return dto;
+    }
+
+    // ============================================================
+    // 回写数据库
+    // ============================================================
+
+    @Override
+    @Scheduled(fixedDelayString = "${canteen.telemetry.flush-interval-ms:1000}")
+    public int flush() {
+        List<DroneBatchRepository.TelemetryRow> rows = new ArrayList<>();
+        List<Slot> taken = new ArrayList<>();
+        slots.forEach((droneId, slot) -> {
+            if (slot.dirty.getAndSet(false)) {
+                Snapshot s = slot.latest.get();
+                rows.add(new DroneBatchRepository.TelemetryRow(
+                        droneId, s.battery, s.latitude, s.longitude, s.location));
+                taken.add(slot);
+            }
+        });
+        if (rows.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            droneBatchRepository.batchUpdateTelemetry(rows, Instant.now());
+        } catch (RuntimeException ex) {
+            // 回写失败：重新标记，下一轮重试（届时取到的是更新的快照）
+            taken.forEach(slot -> slot.dirty.set(true));
+            log.warn("遥测回写失败，将在下一轮重试: {}", ex.getMessage());
+            return 0;
+        }
+
+        // 空闲无人机的位置变化同步到空间索引，按回写频率批量更新即可
+        rows.forEach(r -> droneSpatialIndex.updatePosition(r.droneId(), r.battery(), r.latitude(), r.longitude()));
+
+        rowsFlushed.add(rows.size());
+        flushes.increment();
+        lastFlushAt = Instant.now();
+        return rows.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // ============================================================
+    // 统计
+    // ============================================================
+
+    @Override
+    public DroneDto.TelemetryStats stats() {
+        DroneDto.TelemetryStats stats = new DroneDto.TelemetryStats();
+        stats.setFramesReceived(framesReceived.sum());
+        stats.setFramesStale(framesStale.sum());
+        stats.setFramesRejected(framesRejected.sum());
+        stats.setRowsFlushed(rowsFlushed.sum());
+        stats.setFlushes(flushes.sum());
+        stats.setTrackedDrones(slots.size());
+        stats.setPendingDrones((int) slots.values().stream().filter(s -> s.dirty.get()).count());
+        stats.setLastFlushAt(lastFlushAt);
+        return stats;
+    }
+
+    // ============================================================
+    // 工具方法
+    // ============================================================
+
+    private boolean isValid(DroneDto.TelemetryFrame frame, Instant receivedAt) {
+        if (frame == null || frame.getDroneId() == null) {
+            return false;
+        }
+        if (frame.getReportedAt() != null && frame.getReportedAt().isAfter(receivedAt.plusMillis(maxClockSkewMs))) {
+            return false;
+        }
+        if (frame.getBattery() != null && (frame.getBattery() < 0 || frame.getBattery() > 100)) {
+            return false;
+        }
+        if ((frame.getLatitude() == null) != (frame.getLongitude() == null)) {
+            return false;
+        }
+        if (frame.getLatitude() != null
+                && (Math.abs(frame.getLatitude()) > 90 || Math.abs(frame.getLongitude()) > 180)) {
+            return false;
+        }
+        return frame.getLocation() == null || frame.getLocation().length() <= 255;
+    }
+
+    /**
+     * 取无人机的槽位；第一次上报时确认无人机存在，不存在返回 null。
+     */
+    private Slot slot(Long droneId) {
+        Slot slot = slots.get(droneId);
+        if (slot != null) {
+            return slot;
+        }
+        // 不在 computeIfAbsent 里查库，避免持有 map 内部锁做 IO
+        if (!droneRepository.existsById(droneId)) {
+            return null;
+        }
+        return slots.computeIfAbsent(droneId, id -> new Slot());
+    }
+
+    private static final class Slot {
+
+        private final AtomicReference<Snapshot> latest = new AtomicReference<>(Snapshot.EMPTY);
+        private final AtomicBoolean dirty = new AtomicBoolean();
+
+        /**
+         * 合并一帧，返回合并后的快照；比当前快照旧的帧返回 null。
+         */
+        private Snapshot offer(DroneDto.TelemetryFrame frame, Instant receivedAt) {
+            Instant reportedAt = frame.getReportedAt() == null ? receivedAt : frame.getReportedAt();
+            Snapshot current;
+            Snapshot next;
+            do {
+                current = latest.get();
+                if (current.reportedAt != null && reportedAt.isBefore(current.reportedAt)) {
+                    return null;
+                }
+                next = current.merge(frame, reportedAt, receivedAt);
+            } while (!latest.compareAndSet(current, next));
+            dirty.set(true);
+            return next;
+        }
+    }
+
+    /**
+     * 合并后的最新遥测；帧里没带的字段沿用上一份。
+     */
+    private record Snapshot(Integer battery, Double latitude, Double longitude, String location,
+                            Instant reportedAt, Instant receivedAt) {
+
+        private static final Snapshot EMPTY = new Snapshot(null, null, null, null, null, null);
+
+        private Snapshot merge(DroneDto.TelemetryFrame f, Instant reportedAt, Instant receivedAt) {
+            return new Snapshot(
+                    f.getBattery() != null ? f.getBattery() : battery,
+                    f.getLatitude() != null ? f.getLatitude() : latitude,
+                    f.getLongitude() != null ? f.getLongitude() : longitude,
+                    f.getLocation() != null ? f.getLocation() : location,
+                    reportedAt, receivedAt);
+        }
+    }
+}
@@ -0,0 +1,458 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.DroneDto;
+import com.example.sdhucanteendrone.service.DroneTrackStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * 基于内存映射文件的飞行轨迹存储。
+ * <p>
+ * 目录结构：{dir}/{droneId}/{第一条记录的毫秒时间戳}.seg，每个分段文件大小固定：
+ * <pre>
+ * 文件头 16 字节：magic(int) | 记录长度(int) | 记录数(int) | 保留(int)
+ * 记录   40 字节：时间戳毫秒(long) | 纬度(double) | 经度(double) | 订单 id(long) | 电量(int) | 保留(int)
+ * </pre>
+ * 未知的经纬度记为 NaN，未知电量记为 -1，无订单记为 0。
+ * <p>
+ * 每架无人机同时只有一个可写分段（写满后滚动到新文件），先写记录再更新文件头的记录数，
+ * 进程异常退出时最多丢掉最后一条。同一架无人机的读写在同一把锁下进行。
+ * 查询直接在映射区上二分定位，只有命中的记录会被转成对象。
+ * <p>
+ * 只有写入会登记无人机、打开可写映射；查询和过期清理遇到没有写入过的无人机时只读映射分段，
+ * 不留下任何状态。
+ */
+@Slf4j
+@Service
+public class DroneTrackStoreImpl implements DroneTrackStore {
+
+    private static final int MAGIC = 0x54524B31; // "TRK1"
+    private static final int HEADER_BYTES = 16;
+    private static final int RECORD_BYTES = 40;
+    private static final int COUNT_OFFSET = 8;
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final Pattern SEGMENT_NAME = Pattern.compile("\\d{1,19}\\.seg");
+
+    private final ConcurrentHashMap<Long, DroneTrack> tracks = new ConcurrentHashMap<>();
+
+    @Value("${canteen.track.enabled:true}")
+    private boolean enabled = true;
+
+    @Value("${canteen.track.dir:data/tracks}")
+    private String dir = "data/tracks";
+
+    @Value("${canteen.track.segment-bytes:1048576}")
+    private int segmentBytes = 1 << 20;
+
+    @Value("${canteen.track.retention-hours:72}")
+    private long retentionHours = 72;
+
+    @Value("${canteen.track.idle-close-minutes:10}")
+    private long idleCloseMinutes = 10;
+
+    // ============================================================
+    // 写入 / 查询
+    // ============================================================
+
+    @Override
+    public void append(Long droneId, Instant timestamp, Double latitude, Double longitude,
+                       Integer battery, Long orderId) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            track(droneId).append(timestamp.toEpochMilli(),
+                    latitude == null ? Double.NaN : latitude,
+                    longitude == null ? Double.NaN : longitude,
+                    battery == null ? -1 : battery,
+                    orderId == null ? 0 : orderId);
+        } catch (IOException | UncheckedIOException e) {
+            // 轨迹只用于事后排查，写失败不影响遥测接入
+            log.warn("无人机 {} 轨迹写入失败: {}", droneId, e.getMessage());
+        }
+    }
+
+    @Override
+    public List<DroneDto.TrackPoint> query(Long droneId, Instant from, Instant to, int limit) {
+        List<DroneDto.TrackPoint> result = new ArrayList<>();
+        if (limit <= 0 || from.isAfter(to)) {
+            return result;
+        }
+        try {
+            DroneTrack t = tracks.get(droneId);
+            if (t != null) {
+                t.query(from.toEpochMilli(), to.toEpochMilli(), limit, result);
+            } else {
+                scan(listSegments(Paths.get(dir, String.valueOf(droneId))), null, null, 0,
+                        from.toEpochMilli(), to.toEpochMilli(), limit, result);
+            }
+        } catch (IOException | UncheckedIOException e) {
+            log.warn("无人机 {} 轨迹读取失败: {}", droneId, e.getMessage());
+            throw BizException.internalError("轨迹读取失败");
+        }
+        return result;
+    }
+
+    // ============================================================
+    // 保留期清理
+    // ============================================================
+
+    @Scheduled(fixedDelayString = "${canteen.track.purge-interval-ms:600000}")
+    public void maintain() {
+        // 长时间没有上报的无人机释放可写映射，下次上报时再打开
+        long idleBefore = System.currentTimeMillis() - Duration.ofMinutes(idleCloseMinutes).toMillis();
+        tracks.values().forEach(t -> t.closeIfIdle(idleBefore));
+        int deleted = purgeExpired();
+        if (deleted > 0) {
+            log.info("已清理过期轨迹分段 {} 个", deleted);
+        }
+    }
+
+    @Override
+    public int purgeExpired() {
+        Path root = Paths.get(dir);
+        if (!Files.isDirectory(root)) {
+            return 0;
+        }
+        long cutoff = Instant.now().minus(Duration.ofHours(retentionHours)).toEpochMilli();
+        List<Long> droneIds = new ArrayList<>();
+        try (Stream<Path> dirs = Files.list(root)) {
+            dirs.map(p -> p.getFileName().toString())
+                    .filter(name -> name.chars().allMatch(Character::isDigit))
+                    .forEach(name -> droneIds.add(Long.parseLong(name)));
+        } catch (IOException e) {
+            log.warn("轨迹目录读取失败: {}", e.getMessage());
+            return 0;
+        }
+
+        int deleted = 0;
+        for (Long droneId : droneIds) {
+            try {
+                deleted += purge(droneId, cutoff);
+            } catch (UncheckedIOException e) {
+                log.warn("无人机 {} 轨迹清理失败: {}", droneId, e.getMessage());
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 已登记的无人机在自己的锁下清理（跳过可写分段）；未登记的和查询一样走静态只读路径，
+     * 不登记、不打开可写映射。compute 占住这个 key，清理期间同一架无人机的首次写入会等清理结束。
+     */
+    private int purge(Long droneId, long cutoff) {
+        int[] deleted = new int[1];
+        tracks.compute(droneId, (id, t) -> {
+            try {
+                deleted[0] = t != null ? t.purge(cutoff)
+                        : purgeSegments(Paths.get(dir, String.valueOf(id)), null, cutoff);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return t;
+        });
+        return deleted[0];
+    }
+
+    @PreDestroy
+    public void close() {
+        tracks.values().forEach(DroneTrack::close);
+    }
+
+    // ============================================================
+    // 工具方法
+    // ============================================================
+
+    private DroneTrack track(Long droneId) {
+        return tracks.computeIfAbsent(droneId, id -> new DroneTrack(Paths.get(dir, String.valueOf(id))));
+    }
+
+    private static int capacityOf(ByteBuffer buf) {
+        return (buf.capacity() - HEADER_BYTES) / RECORD_BYTES;
+    }
+
+    private static long timestampAt(ByteBuffer buf, int index) {
+        return buf.getLong(HEADER_BYTES + index * RECORD_BYTES);
+    }
+
+    /**
+     * 第一条时间戳不小于 from 的记录下标。
+     */
+    private static int lowerBound(ByteBuffer buf, int count, long from) {
+        int lo = 0;
+        int hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (timestampAt(buf, mid) < from) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private static DroneDto.TrackPoint readPoint(ByteBuffer buf, int index) {
+        int pos = HEADER_BYTES + index * RECORD_BYTES;
+        double lat = buf.getDouble(pos + 8);
+        double lng = buf.getDouble(pos + 16);
+        long orderId = buf.getLong(pos + 24);
+        int battery = buf.getInt(pos + 32);
+
+        DroneDto.TrackPoint p = new DroneDto.TrackPoint();
+        p.setTimestamp(Instant.ofEpochMilli(buf.getLong(pos)));
+        p.setLatitude(Double.isNaN(lat) ? null : lat);
+        p.setLongitude(Double.isNaN(lng) ? null : lng);
+        p.setOrderId(orderId == 0 ? null : orderId);
+        p.setBattery(battery < 0 ? null : battery);
+        return p;
+    }
+
+    /**
+     * 映射一个分段文件并校验文件头；文件损坏时返回 null。
+     */
+    private static MappedByteBuffer map(Path path, FileChannel.MapMode mode) throws IOException {
+        StandardOpenOption[] options = mode == FileChannel.MapMode.READ_WRITE
+                ? new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE}
+                : new StandardOpenOption[]{StandardOpenOption.READ};
+        try (FileChannel ch = FileChannel.open(path, options)) {
+            if (ch.size() < HEADER_BYTES + RECORD_BYTES) {
+                log.warn("轨迹分段 {} 长度异常，已跳过", path);
+                return null;
+            }
+            MappedByteBuffer buf = ch.map(mode, 0, ch.size());
+            if (buf.getInt(0) != MAGIC || buf.getInt(4) != RECORD_BYTES) {
+                log.warn("轨迹分段 {} 文件头不匹配，已跳过", path);
+                return null;
+            }
+            return buf;
+        }
+    }
+
+    /**
+     * 按时间范围扫描分段。live 为可写分段（及其当前记录数），直接读映射区；其余分段只读映射。
+     */
+    private static void scan(List<Segment> segments, Path livePath, ByteBuffer live, int liveCount,
+                             long from, long to, int limit, List<DroneDto.TrackPoint> out) throws IOException {
+        for (int i = 0; i < segments.size() && out.size() < limit; i++) {
+            Segment seg = segments.get(i);
+            long nextStart = i + 1 < segments.size() ? segments.get(i + 1).start() : Long.MAX_VALUE;
+            if (nextStart <= from) {
+                continue;
+            }
+            if (seg.start() > to) {
+                break;
+            }
+
+            ByteBuffer buf;
+            int count;
+            if (seg.path().equals(livePath)) {
+                buf = live;
+                count = liveCount;
+            } else {
+                buf = map(seg.path(), FileChannel.MapMode.READ_ONLY);
+                if (buf == null) {
+                    continue;
+                }
+                count = countOf(buf);
+            }
+
+            for (int idx = lowerBound(buf, count, from); idx < count && out.size() < limit; idx++) {
+                if (timestampAt(buf, idx) > to) {
+                    return;
+                }
+                out.add(readPoint(buf, idx));
+            }
+        }
+    }
+
+    private static List<Segment> listSegments(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            return files
+                    .filter(p -> SEGMENT_NAME.matcher(p.getFileName().toString()).matches())
+                    .map(p -> {
+                        String name = p.getFileName().toString();
+                        return new Segment(p, Long.parseLong(
+                                name.substring(0, name.length() - SEGMENT_SUFFIX.length())));
+                    })
+                    .sorted(Comparator.comparingLong(Segment::start))
+                    .toList();
+        }
+    }
+
+    /**
+     * 删除全部记录都早于 cutoff 的分段（activePath 为可写分段，除外）。
+     */
+    private static int purgeSegments(Path dir, Path activePath, long cutoff) throws IOException {
+        List<Segment> segments = listSegments(dir);
+        int deleted = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment seg = segments.get(i);
+            if (seg.path().equals(activePath)) {
+                continue;
+            }
+            // 本段记录都早于下一段的第一条，据此判断不用打开文件
+            boolean expired = i + 1 < segments.size() && segments.get(i + 1).start() <= cutoff;
+            if (!expired) {
+                MappedByteBuffer buf = map(seg.path(), FileChannel.MapMode.READ_ONLY);
+                int count = buf == null ? 0 : countOf(buf);
+                expired = count == 0 || timestampAt(buf, count - 1) < cutoff;
+            }
+            if (expired) {
+                Files.deleteIfExists(seg.path());
+                deleted++;
+            }
+        }
+        return deleted;
+    }
+
+    private static int countOf(ByteBuffer buf) {
+        return Math.max(0, Math.min(buf.getInt(COUNT_OFFSET), capacityOf(buf)));
+    }
+
+    private record Segment(Path path, long start) {
+    }
+
+    /**
+     * 单架无人机的轨迹：一个可写分段 + 若干只读分段。
+     */
+    private final class DroneTrack {
+
+        private final Path dir;
+
+        private boolean opened;
+        private MappedByteBuffer active;
+        private Path activePath;
+        private int activeCount;
+        private int activeCapacity;
+        private long lastTimestamp = Long.MIN_VALUE;
+        private long lastAppendAt;
+
+        private DroneTrack(Path dir) {
+            this.dir = dir;
+        }
+
+        private synchronized void append(long timestamp, double lat, double lng,
+                                         int battery, long orderId) throws IOException {
+            openLatest();
+            // 时间戳严格递增，二分查找和按文件名裁剪分段都依赖这一点
+            if (timestamp <= lastTimestamp) {
+                return;
+            }
+            if (active == null || activeCount >= activeCapacity) {
+                roll(timestamp);
+            }
+            int pos = HEADER_BYTES + activeCount * RECORD_BYTES;
+            active.putLong(pos, timestamp);
+            active.putDouble(pos + 8, lat);
+            active.putDouble(pos + 16, lng);
+            active.putLong(pos + 24, orderId);
+            active.putInt(pos + 32, battery);
+            active.putInt(pos + 36, 0);
+            activeCount++;
+            active.putInt(COUNT_OFFSET, activeCount);
+            lastTimestamp = timestamp;
+            lastAppendAt = System.currentTimeMillis();
+        }
+
+        /**
+         * 查询不打开可写映射：未打开（或已因空闲关闭）时所有分段都只读映射。
+         */
+        private synchronized void query(long from, long to, int limit,
+                                        List<DroneDto.TrackPoint> out) throws IOException {
+            scan(listSegments(dir), activePath, active, activeCount, from, to, limit, out);
+        }
+
+        private synchronized int purge(long cutoff) throws IOException {
+            return purgeSegments(dir, activePath, cutoff);
+        }
+
+        private synchronized void closeIfIdle(long idleBefore) {
+            if (active != null && lastAppendAt < idleBefore) {
+                close();
+            }
+        }
+
+        private synchronized void close() {
+            if (active != null) {
+                active.force();
+            }
+            active = null;
+            activePath = null;
+            opened = false;
+        }
+
+        /**
+         * 首次使用时接着最新的分段继续写（进程重启后）。
+         */
+        private void openLatest() throws IOException {
+            if (opened) {
+                return;
+            }
+            opened = true;
+            List<Segment> segments = listSegments(dir);
+            if (segments.isEmpty()) {
+                return;
+            }
+            Segment last = segments.get(segments.size() - 1);
+            MappedByteBuffer buf = map(last.path(), FileChannel.MapMode.READ_WRITE);
+            if (buf == null) {
+                return;
+            }
+            active = buf;
+            activePath = last.path();
+            activeCount = countOf(buf);
+            activeCapacity = capacityOf(buf);
+            if (activeCount > 0) {
+                lastTimestamp = Math.max(lastTimestamp, timestampAt(buf, activeCount - 1));
+            }
+            lastAppendAt = System.currentTimeMillis();
+        }
+
+        private void roll(long firstTimestamp) throws IOException {
+            if (active != null) {
+                active.force();
+            }
+            Files.createDirectories(dir);
+            Path path = dir.resolve(String.format("%019d%s", firstTimestamp, SEGMENT_SUFFIX));
+            MappedByteBuffer buf;
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+                buf = ch.map(FileChannel.MapMode.READ_WRITE, 0,
+                        Math.max(segmentBytes, HEADER_BYTES + RECORD_BYTES));
+            }
+            buf.putInt(0, MAGIC);
+            buf.putInt(4, RECORD_BYTES);
+            buf.putInt(COUNT_OFFSET, 0);
+            active = buf;
+            activePath = path;
+            activeCount = 0;
+            activeCapacity = capacityOf(buf);
+        }
+    }
+}
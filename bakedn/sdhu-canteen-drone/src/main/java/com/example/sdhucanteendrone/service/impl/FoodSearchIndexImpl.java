@@ -0,0 +1,391 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.service.FoodSearchIndex;
+import com.example.sdhucanteendrone.service.event.FoodChangedEvent;
+import com.example.sdhucanteendrone.service.event.FoodsImportedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.Charset;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 按食堂分片的 n-gram 倒排索引。
+ * <p>
+ * 每个食堂一张 gram → 菜品 id 集合 的倒排表，gram 为归一化文本（NFKC、小写、去空白）的单字和双字，
+ * 覆盖菜名、描述和菜名拼音首字母。查询时取关键字的 gram，从最短的倒排表开始求交集得到候选，
+ * 再逐个按"是否连续包含关键字"校验并分级排序，结果与原来的 like 语义一致（且多了首字母、描述命中）。
+ * <p>
+ * 读多写少，使用读写锁；写入来自菜品变化事件（事务提交后）。全量加载期间到达的事件先记下，
+ * 加载完成时在同一把写锁里按最新数据补上，避免被更早的全量快照覆盖或丢失。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class FoodSearchIndexImpl implements FoodSearchIndex {
+
+    /**
+     * GB2312 一级汉字按拼音排序，各声母第一个字的区位码（i / u / v 没有）。
+     */
+    private static final int[] GB2312_INITIAL_STARTS = {
+            0xB0A1, 0xB0C5, 0xB2C1, 0xB4EE, 0xB6EA, 0xB7A2, 0xB8C1, 0xB9FE, 0xBBF7, 0xBFA6, 0xC0AC, 0xC2E8,
+            0xC4C3, 0xC5B6, 0xC5BE, 0xC6DA, 0xC8BB, 0xC8F6, 0xCBFA, 0xCDDA, 0xCEF4, 0xD1B9, 0xD4D1};
+    private static final String GB2312_INITIALS = "abcdefghjklmnopqrstwxyz";
+    private static final int GB2312_LEVEL1_END = 0xD7F9;
+    private static final Charset GB2312 = Charset.forName("GB2312");
+
+    private final FoodRepository foodRepository;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Doc> docs = new HashMap<>();
+    private final Map<Long, Map<String, Set<Long>>> postings = new HashMap<>();
+    private volatile boolean ready;
+    /** 加载期间到达的变化（受写锁保护）：待回查的菜品 id、导入带来的菜品对象 */
+    private final Set<Long> pendingIds = new LinkedHashSet<>();
+    private final List<Food> pendingFoods = new ArrayList<>();
+
+    // ============================================================
+    // 查询
+    // ============================================================
+
+    @Override
+    public boolean isReady() {
+        return ready;
+    }
+
+    @Override
+    public List<Long> search(Long canteenId, String keyword, Long categoryId, Boolean onShelf) {
+        String q = normalize(keyword);
+        if (q.isEmpty()) {
+            return List.of();
+        }
+        lock.readLock().lock();
+        try {
+            Map<String, Set<Long>> table = postings.get(canteenId);
+            if (table == null) {
+                return List.of();
+            }
+            Set<Long> candidates = candidates(table, q);
+            List<Hit> hits = new ArrayList<>();
+            for (Long id : candidates) {
+                Doc doc = docs.get(id);
+                if ((categoryId != null && !categoryId.equals(doc.categoryId()))
+                        || (onShelf != null && onShelf != doc.onShelf())) {
+                    continue;
+                }
+                int tier = tier(doc, q);
+                if (tier >= 0) {
+                    hits.add(new Hit(doc, tier));
+                }
+            }
+            hits.sort(Comparator.comparingInt(Hit::tier)
+                    .thenComparing(h -> !h.doc().onShelf())
+                    .thenComparingInt(h -> h.doc().name().length())
+                    .thenComparing(h -> h.doc().id()));
+            return hits.stream().map(h -> h.doc().id()).toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 关键字所有 gram 的倒排表求交集，从最短的开始。
+     */
+    private Set<Long> candidates(Map<String, Set<Long>> table, String q) {
+        List<Set<Long>> lists = new ArrayList<>();
+        for (String gram : queryGrams(q)) {
+            Set<Long> ids = table.get(gram);
+            if (ids == null) {
+                return Set.of();
+            }
+            lists.add(ids);
+        }
+        lists.sort(Comparator.comparingInt(Set::size));
+        Set<Long> result = new HashSet<>(lists.get(0));
+        for (int i = 1; i < lists.size() && !result.isEmpty(); i++) {
+            result.retainAll(lists.get(i));
+        }
+        return result;
+    }
+
+    /**
+     * 相关度分级，越小越靠前；不连续包含关键字返回 -1。
+     */
+    private static int tier(Doc doc, String q) {
+        if (doc.name().equals(q)) {
+            return 0;
+        }
+        if (doc.name().startsWith(q)) {
+            return 1;
+        }
+        if (doc.name().contains(q)) {
+            return 2;
+        }
+        if (doc.initials().startsWith(q)) {
+            return 3;
+        }
+        if (doc.initials().contains(q)) {
+            return 4;
+        }
+        if (doc.description().contains(q)) {
+            return 5;
+        }
+        return -1;
+    }
+
+    // ============================================================
+    // 维护
+    // ============================================================
+
+    @Override
+    public void upsert(Food food) {
+        Doc doc = new Doc(food.getId(), food.getCanteenId(), food.getCategoryId(),
+                Boolean.TRUE.equals(food.getOnShelf()), normalize(food.getName()),
+                normalize(food.getDescription()), initials(food.getName()));
+        lock.writeLock().lock();
+        try {
+            removeInternal(food.getId());
+            docs.put(doc.id(), doc);
+            Map<String, Set<Long>> table = postings.computeIfAbsent(doc.canteenId(), k -> new HashMap<>());
+            for (String gram : docGrams(doc)) {
+                table.computeIfAbsent(gram, k -> new HashSet<>()).add(doc.id());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public void remove(Long foodId) {
+        lock.writeLock().lock();
+        try {
+            removeInternal(foodId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    @Override
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return docs.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        lock.writeLock().lock();
+        try {
+            // 从这里开始的变化都记下来，等快照装好后补上
+            ready = false;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        List<Food> foods = foodRepository.findAll();
+        int replayed;
+        lock.writeLock().lock();
+        try {
+            docs.clear();
+            postings.clear();
+            foods.forEach(this::upsert);
+            // 快照可能早于这些变化：导入的对象直接收录，其余按 id 一次回查最新数据，读不到说明已删除
+            pendingFoods.forEach(this::upsert);
+            if (!pendingIds.isEmpty()) {
+                Map<Long, Food> latest = new HashMap<>();
+                foodRepository.findAllById(pendingIds).forEach(f -> latest.put(f.getId(), f));
+                for (Long id : pendingIds) {
+                    Food food = latest.get(id);
+                    if (food == null) {
+                        removeInternal(id);
+                    } else {
+                        upsert(food);
+                    }
+                }
+            }
+            replayed = pendingFoods.size() + pendingIds.size();
+            pendingFoods.clear();
+            pendingIds.clear();
+            ready = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+        log.info("菜品搜索索引已加载，菜品 {} 个，加载期间的变化 {} 条", foods.size(), replayed);
+    }
+
+    /**
+     * 菜品变化提交后按 id 重新读取，读不到说明已删除。加载完成前只记下 id，加载完成时补上。
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFoodChanged(FoodChangedEvent event) {
+        if (deferUntilReady(() -> pendingIds.add(event.getFoodId()))) {
+            return;
+        }
+        foodRepository.findById(event.getFoodId())
+                .ifPresentOrElse(this::upsert, () -> remove(event.getFoodId()));
+    }
+
+    /**
+     * 批量导入的菜品直接用事件里的对象收录，不逐个回查；整批只加一次写锁。
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onFoodsImported(FoodsImportedEvent event) {
+        if (deferUntilReady(() -> pendingFoods.addAll(event.getFoods()))) {
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            event.getFoods().forEach(this::upsert);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 加载未完成时在写锁内记下变化并返回 true；已完成返回 false，由调用方直接更新索引。
+     */
+    private boolean deferUntilReady(Runnable record) {
+        if (ready) {
+            return false;
+        }
+        lock.writeLock().lock();
+        try {
+            if (ready) {
+                return false;
+            }
+            record.run();
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeInternal(Long foodId) {
+        Doc old = docs.remove(foodId);
+        if (old == null) {
+            return;
+        }
+        Map<String, Set<Long>> table = postings.get(old.canteenId());
+        for (String gram : docGrams(old)) {
+            Set<Long> ids = table.get(gram);
+            if (ids != null && ids.remove(foodId) && ids.isEmpty()) {
+                table.remove(gram);
+            }
+        }
+    }
+
+    // ============================================================
+    // 切词
+    // ============================================================
+
+    private static Set<String> docGrams(Doc doc) {
+        Set<String> grams = new HashSet<>();
+        addGrams(grams, doc.name());
+        addGrams(grams, doc.description());
+        addGrams(grams, doc.initials());
+        return grams;
+    }
+
+    /**
+     * 文本的全部单字和双字。
+     */
+    private static void addGrams(Set<String> grams, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            grams.add(text.substring(i, i + 1));
+            if (i + 1 < text.length()) {
+                grams.add(text.substring(i, i + 2));
+            }
+        }
+    }
+
+    /**
+     * 关键字用于求交集的 gram：单字关键字取单字，否则取全部双字。
+     */
+    private static Set<String> queryGrams(String q) {
+        Set<String> grams = new LinkedHashSet<>();
+        if (q.length() == 1) {
+            grams.add(q);
+            return grams;
+        }
+        for (int i = 0; i + 1 < q.length(); i++) {
+            grams.add(q.substring(i, i + 2));
+        }
+        return grams;
+    }
+
+    /**
+     * 归一化：全角转半角（NFKC）、小写、去掉空白。
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String s = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase(Locale.ROOT);
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (!Character.isWhitespace(c)) {
+                sb.append(c);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 菜名的拼音首字母：汉字按 GB2312 一级字库的拼音顺序取声母，字母和数字原样保留，
+     * 其余字符（含不在一级字库的生僻字）跳过。
+     */
+    static String initials(String name) {
+        String s = normalize(name);
+        StringBuilder sb = new StringBuilder(s.length());
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < 0x80) {
+                if (Character.isLetterOrDigit(c)) {
+                    sb.append(c);
+                }
+                continue;
+            }
+            byte[] b = String.valueOf(c).getBytes(GB2312);
+            if (b.length != 2) {
+                continue;
+            }
+            int code = ((b[0] & 0xFF) << 8) | (b[1] & 0xFF);
+            if (code < GB2312_INITIAL_STARTS[0] || code > GB2312_LEVEL1_END) {
+                continue;
+            }
+            int k = GB2312_INITIAL_STARTS.length - 1;
+            while (code < GB2312_INITIAL_STARTS[k]) {
+                k--;
+            }
+            sb.append(GB2312_INITIALS.charAt(k));
+        }
+        return sb.toString();
+    }
+
+    private record Doc(Long id, Long canteenId, Long categoryId, boolean onShelf,
+                       String name, String description, String initials) {
+    }
+
+    private record Hit(Doc doc, int tier) {
+    }
+}
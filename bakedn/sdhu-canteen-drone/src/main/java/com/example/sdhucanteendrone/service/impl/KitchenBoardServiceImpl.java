@@ -0,0 +1,233 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.service.KitchenBoardService;
+import com.example.sdhucanteendrone.service.OrderService;
+import com.example.sdhucanteendrone.service.event.OrderChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 后厨看板的内存实现。
+ * <p>
+ * canteenId -> (orderId -> OrderSummary)，内层按 orderId 升序即下单先后。
+ * <p>
+ * - 读取只遍历内存，返回的是副本
+ * - 状态变化直接按事件里的状态改内存，不读库；只有订单第一次上看板（下单）或
+ *   非状态的修改（配送方式等）才按 id 读一次，且在任何锁之外读
+ * - 每个订单的更新是对该条目的原子 compute，不同订单 / 不同食堂互不阻塞；
+ *   状态只前进不后退（按流转顺序比较），事件乱序到达也不会留下旧状态
+ * - 已离开看板的订单短时间内记为"已结束"，防止更早读到的旧快照又把它放回去
+ * - 重建期间暂停增量更新（读写锁），重建完成后继续
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class KitchenBoardServiceImpl implements KitchenBoardService {
+
+    static final Set<OrderStatus> ACTIVE_STATUSES =
+            EnumSet.of(OrderStatus.PENDING, OrderStatus.CONFIRMED, OrderStatus.PACKED);
+
+    /** 已结束订单的记录保留时长 */
+    private static final long CLOSED_TTL_NANOS = TimeUnit.MINUTES.toNanos(1);
+
+    private final OrderService orderService;
+
+    private final ReentrantReadWriteLock rebuildLock = new ReentrantReadWriteLock();
+    /** orderId -> 离开看板的时间（System.nanoTime） */
+    private final Map<Long, Long> closed = new ConcurrentHashMap<>();
+    private volatile Map<Long, ConcurrentSkipListMap<Long, OrderDto.OrderSummary>> boards = new ConcurrentHashMap<>();
+    private volatile boolean loaded;
+
+    // ============================================================
+    // 读取
+    // ============================================================
+
+    @Override
+    public OrderDto.KitchenBoard getBoard(Long canteenId) {
+        if (!loaded) {
+            rebuild();
+        }
+
+        OrderDto.KitchenBoard board = new OrderDto.KitchenBoard();
+        board.setCanteenId(canteenId);
+        board.setPending(new ArrayList<>());
+        board.setConfirmed(new ArrayList<>());
+        board.setPacked(new ArrayList<>());
+
+        Map<Long, OrderDto.OrderSummary> orders = boards.get(canteenId);
+        if (orders != null) {
+            for (OrderDto.OrderSummary stored : orders.values()) {
+                // 看板上的对象只读，交给调用方的是副本
+                OrderDto.OrderSummary o = copyOf(stored);
+                switch (o.getStatus()) {
+                    case PENDING -> board.getPending().add(o);
+                    case CONFIRMED -> board.getConfirmed().add(o);
+                    case PACKED -> board.getPacked().add(o);
+                    default -> {
+                    }
+                }
+            }
+        }
+        board.setTotal(board.getPending().size() + board.getConfirmed().size() + board.getPacked().size());
+        return board;
+    }
+
+    // ============================================================
+    // 维护
+    // ============================================================
+
+    @Override
+    public void rebuild() {
+        rebuildLock.writeLock().lock();
+        try {
+            Map<Long, ConcurrentSkipListMap<Long, OrderDto.OrderSummary>> fresh = new ConcurrentHashMap<>();
+            for (OrderDto.OrderSummary o : orderService.listOrdersByStatus(ACTIVE_STATUSES)) {
+                fresh.computeIfAbsent(o.getCanteenId(), k -> new ConcurrentSkipListMap<>()).put(o.getId(), o);
+            }
+            boards = fresh;
+            loaded = true;
+            log.info("后厨看板已加载，进行中订单 {} 个", fresh.values().stream().mapToInt(Map::size).sum());
+        } finally {
+            rebuildLock.writeLock().unlock();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadOnStartup() {
+        try {
+            rebuild();
+        } catch (RuntimeException e) {
+            // 启动时数据库不可用：首次读取看板时再加载
+            log.warn("后厨看板加载失败，将在首次读取时重试: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 订单变化提交后更新看板；看板尚未加载时跳过，加载时自然包含该订单。
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (!loaded) {
+            return;
+        }
+        Long orderId = event.getOrderId();
+        OrderStatus status = event.getStatus();
+        ConcurrentSkipListMap<Long, OrderDto.OrderSummary> orders = boards.get(event.getCanteenId());
+        boolean onBoard = orders != null && orders.containsKey(orderId);
+        if (!ACTIVE_STATUSES.contains(status)) {
+            closed.put(orderId, System.nanoTime());
+            if (!onBoard) {
+                return;
+            }
+        }
+
+        // 看板上没有该订单的展示字段，或变化的不是状态：读一次最新一行（不持有任何锁）
+        OrderDto.OrderSummary fresh = null;
+        if ((!onBoard || event.getPreviousStatus() == status) && ACTIVE_STATUSES.contains(status)) {
+            fresh = orderService.findOrderSummary(orderId).orElse(null);
+            if (fresh == null && !onBoard) {
+                return;
+            }
+        }
+
+        rebuildLock.readLock().lock();
+        try {
+            if (fresh != null && closed.containsKey(orderId)) {
+                // 读库之后订单已结束：旧快照不能再放回看板
+                fresh = null;
+            }
+            apply(event, fresh);
+        } finally {
+            rebuildLock.readLock().unlock();
+        }
+        purgeClosed();
+    }
+
+    // ============================================================
+    // 工具方法
+    // ============================================================
+
+    /**
+     * 把一次变化合并到看板条目上：取事件状态、读到的状态、看板现有状态中最靠后的一个。
+     */
+    private void apply(OrderChangedEvent event, OrderDto.OrderSummary fresh) {
+        ConcurrentSkipListMap<Long, OrderDto.OrderSummary> orders = ACTIVE_STATUSES.contains(event.getStatus())
+                ? boards.computeIfAbsent(event.getCanteenId(), k -> new ConcurrentSkipListMap<>())
+                : boards.get(event.getCanteenId());
+        if (orders == null) {
+            return;
+        }
+        orders.compute(event.getOrderId(), (id, current) -> {
+            OrderDto.OrderSummary base = fresh;
+            if (current != null && (base == null || base.getStatus().ordinal() < current.getStatus().ordinal())) {
+                base = current;
+            }
+            if (base == null) {
+                return null;
+            }
+            OrderStatus status = later(base.getStatus(), event.getStatus());
+            if (!ACTIVE_STATUSES.contains(status)) {
+                return null;
+            }
+            if (base == current && status == current.getStatus()) {
+                return current;
+            }
+            OrderDto.OrderSummary next = copyOf(base);
+            next.setStatus(status);
+            next.setStatusLabel(status.getLabel());
+            if (base != fresh && event.getStatusEvent() != null && event.getStatusEvent().getOccurredAt() != null) {
+                next.setUpdatedAt(LocalDateTime.ofInstant(event.getStatusEvent().getOccurredAt(), ZoneId.systemDefault()));
+            }
+            return next;
+        });
+    }
+
+    /**
+     * 状态只前进：流转表按声明顺序单向推进（取消是终态），ordinal 大的更新。
+     */
+    private static OrderStatus later(OrderStatus a, OrderStatus b) {
+        return b == null || a.ordinal() >= b.ordinal() ? a : b;
+    }
+
+    private void purgeClosed() {
+        long now = System.nanoTime();
+        closed.values().removeIf(at -> now - at > CLOSED_TTL_NANOS);
+    }
+
+    private static OrderDto.OrderSummary copyOf(OrderDto.OrderSummary o) {
+        OrderDto.OrderSummary c = new OrderDto.OrderSummary();
+        c.setId(o.getId());
+        c.setCustomerId(o.getCustomerId());
+        c.setCustomerName(o.getCustomerName());
+        c.setCanteenId(o.getCanteenId());
+        c.setCanteenName(o.getCanteenName());
+        c.setStatus(o.getStatus());
+        c.setStatusLabel(o.getStatusLabel());
+        c.setDeliveryMethod(o.getDeliveryMethod());
+        c.setAmountCent(o.getAmountCent());
+        c.setDeliveryAddress(o.getDeliveryAddress());
+        c.setFirstFoodName(o.getFirstFoodName());
+        c.setTotalItemCount(o.getTotalItemCount());
+        c.setCreatedAt(o.getCreatedAt());
+        c.setUpdatedAt(o.getUpdatedAt());
+        return c;
+    }
+}
@@ -0,0 +1,166 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 菜单导入导出用的最小 CSV 读写（RFC 4180）：逗号分隔，双引号包裹的字段内可含逗号、换行，
+ * 字段内的双引号写成两个双引号。按记录逐条读取，不会把整个文件读进内存。
+ */
+final class MenuCsv {
+
+    private MenuCsv() {
+    }
+
+    static final class CsvReader {
+
+        private final Reader in;
+        private int pending = -2;
+        private long line = 1;
+        private long recordLine;
+        private boolean first = true;
+
+        CsvReader(Reader in) {
+            this.in = in;
+        }
+
+        /**
+         * 当前记录开始的行号（从 1 开始），用于报错。
+         */
+        long recordLine() {
+            return recordLine;
+        }
+
+        /**
+         * 读取下一条记录；到达文件末尾返回 null，空行跳过。
+         *
+         * @throws IllegalArgumentException 引号未闭合等格式错误
+         */
+        List<String> next() throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    return null;
+                }
+                if (c == '\r' || c == '\n') {
+                    consumeNewline(c);
+                    continue;
+                }
+                unread(c);
+                recordLine = line;
+                return readRecord();
+            }
+        }
+
+        private List<String> readRecord() throws IOException {
+            List<String> fields = new ArrayList<>();
+            StringBuilder field = new StringBuilder();
+            boolean quoted = false;
+            boolean afterQuote = false;
+            while (true) {
+                int c = read();
+                if (quoted) {
+                    if (c == -1) {
+                        throw new IllegalArgumentException("第 " + recordLine + " 行：引号未闭合");
+                    }
+                    if (c == '"') {
+                        int d = read();
+                        if (d == '"') {
+                            field.append('"');
+                        } else {
+                            unread(d);
+                            quoted = false;
+                            afterQuote = true;
+                        }
+                    } else {
+                        if (c == '\n' || c == '\r') {
+                            // 字段内换行统一成 \n
+                            consumeNewline(c);
+                            field.append('\n');
+                        } else {
+                            field.append((char) c);
+                        }
+                    }
+                    continue;
+                }
+                if (c == -1 || c == '\r' || c == '\n') {
+                    if (c != -1) {
+                        consumeNewline(c);
+                    }
+                    fields.add(field.toString());
+                    return fields;
+                }
+                if (c == ',') {
+                    fields.add(field.toString());
+                    field.setLength(0);
+                    afterQuote = false;
+                } else if (c == '"' && field.isEmpty() && !afterQuote) {
+                    quoted = true;
+                } else if (afterQuote) {
+                    throw new IllegalArgumentException("第 " + recordLine + " 行：引号后只能是逗号或换行");
+                } else {
+                    field.append((char) c);
+                }
+            }
+        }
+
+        private void consumeNewline(int c) throws IOException {
+            if (c == '\r') {
+                int d = read();
+                if (d != '\n') {
+                    unread(d);
+                }
+            }
+            line++;
+        }
+
+        private int read() throws IOException {
+            if (pending != -2) {
+                int c = pending;
+                pending = -2;
+                return c;
+            }
+            int c = in.read();
+            if (first) {
+                first = false;
+                // 跳过 UTF-8 BOM（Excel 另存的 CSV 会带）
+                if (c == '\uFEFF') {
+                    c = in.read();
+                }
+            }
+            return c;
+        }
+
+        private void unread(int c) {
+            pending = c;
+        }
+    }
+
+    /**
+     * 写一条记录（以 \r\n 结尾），null 写成空字段。
+     */
+    static void writeRecord(Writer out, List<?> fields) throws IOException {
+        for (int i = 0; i < fields.size(); i++) {
+            if (i > 0) {
+                out.write(',');
+            }
+            Object v = fields.get(i);
+            if (v != null) {
+                out.write(escape(v.toString()));
+            }
+        }
+        out.write("\r\n");
+    }
+
+    static String escape(String value) {
+        boolean needsQuote = value.indexOf(',') >= 0 || value.indexOf('"') >= 0
+                || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0;
+        if (!needsQuote) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+}
@@ -9,9 +9,16 @@ import com.example.sdhucanteendrone.entity.enums.FoodShelfStatus;
 import com.example.sdhucanteendrone.repository.CanteenRepository;
 import com.example.sdhucanteendrone.repository.FoodRepository;
 import com.example.sdhucanteendrone.repository.MenuCategoryRepository;
+import com.example.sdhucanteendrone.service.FoodSearchIndex;
 import com.example.sdhucanteendrone.service.MenuService;
+import com.example.sdhucanteendrone.service.MenuSnapshotService;
+import com.example.sdhucanteendrone.service.StockReservationService;
+import com.example.sdhucanteendrone.service.event.FoodChangedEvent;
+import com.example.sdhucanteendrone.service.event.MenuChangedEvent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -19,9 +26,10 @@ import org.springframework.transaction.annotation.Transactional;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,6 +40,10 @@ public class MenuServiceImpl implements MenuService {
     private final CanteenRepository canteenRepository;
     private final MenuCategoryRepository categoryRepository;
     private final FoodRepository foodRepository;
+    private final StockReservationService stockReservationService;
+    private final FoodSearchIndex foodSearchIndex;
+    private final MenuSnapshotService menuSnapshotService;
+    private final ApplicationEventPublisher eventPublisher;
 
     // ============================================================
     // 分类
@@ -39,17 +51,16 @@ public class MenuServiceImpl implements MenuService {
 
     @Override
     public MenuDto.CategoryList listCategories(Long canteenId) {
-        // 校验食堂存在（可选）
-        canteenRepository.findById(canteenId)
-                .orElseThrow(() -> BizException.notFound("食堂不存在"));
-
-        List<MenuCategory> list = categoryRepository.findByCanteenId(canteenId);
-        list.sort(Comparator.comparing(MenuCategory::getSort));
+        // 直接取菜单快照（快照构建时已校验食堂存在，分类已按 sort 排好）
+        MenuDto.MenuSnapshot menu = menuSnapshotService.get(canteenId);
 
         MenuDto.CategoryList dto = new MenuDto.CategoryList();
         dto.setCanteenId(canteenId);
         dto.setCategories(
-                list.stream().map(this::toCategorySummary).collect(Collectors.toList())
+                menu.getSections().stream()
+                        .filter(section -> section.getCategoryId() != null)
+                        .map(section -> toCategorySummary(canteenId, section))
+                        .collect(Collectors.toList())
         );
         return dto;
     }
@@ -73,7 +84,9 @@ public class MenuServiceImpl implements MenuService {
         cat.setCreatedAt(Instant.now());
         cat.setUpdatedAt(Instant.now());
 
-        return toCategoryDetail(categoryRepository.save(cat));
+        MenuCategory saved = categoryRepository.save(cat);
+        eventPublisher.publishEvent(new MenuChangedEvent(canteenId));
+        return toCategoryDetail(saved);
     }
 
     @Override
@@ -100,7 +113,9 @@ public class MenuServiceImpl implements MenuService {
         }
 
         cat.setUpdatedAt(Instant.now());
-        return toCategoryDetail(categoryRepository.save(cat));
+        MenuCategory saved = categoryRepository.save(cat);
+        eventPublisher.publishEvent(new MenuChangedEvent(canteenId));
+        return toCategoryDetail(saved);
     }
 
     @Override
@@ -119,6 +134,7 @@ public class MenuServiceImpl implements MenuService {
         }
 
         categoryRepository.delete(cat);
+        eventPublisher.publishEvent(new MenuChangedEvent(canteenId));
     }
 
     // ============================================================
@@ -138,16 +154,45 @@ public class MenuServiceImpl implements MenuService {
             onShelf = (shelfStatus == FoodShelfStatus.ON);
         }
 
-        Page<Food> page = foodRepository.searchFoods(
-                canteenId,
-                categoryId,
-                onShelf,
-                keyword == null ? "" : keyword.trim(),
-                pageable
-        );
+        String kw = keyword == null ? "" : keyword.trim();
+        if (!kw.isEmpty() && foodSearchIndex.isReady()) {
+            return searchByIndex(canteenId, categoryId, onShelf, kw, pageable);
+        }
+
+        // 无关键字，或索引尚未加载完（刚启动）时走数据库
+        Page<Food> page = foodRepository.searchFoods(canteenId, categoryId, onShelf, kw, pageable);
         return page.map(this::toFoodSummary);
     }
 
+    /**
+     * 关键字搜索：索引给出按相关度排好的 id，只取当前页的菜品回表。
+     * 结果按相关度排序，忽略 pageable 中的排序字段。
+     */
+    private Page<MenuDto.FoodSummary> searchByIndex(Long canteenId, Long categoryId, Boolean onShelf,
+                                                    String keyword, Pageable pageable) {
+        List<Long> ids = foodSearchIndex.search(canteenId, keyword, categoryId, onShelf);
+        if (pageable.isUnpaged()) {
+            return new PageImpl<>(loadInOrder(ids), pageable, ids.size());
+        }
+        int from = (int) Math.min(pageable.getOffset(), ids.size());
+        int to = Math.min(from + pageable.getPageSize(), ids.size());
+        return new PageImpl<>(loadInOrder(ids.subList(from, to)), pageable, ids.size());
+    }
+
+    private List<MenuDto.FoodSummary> loadInOrder(List<Long> ids) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, Food> byId = foodRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Food::getId, Function.identity()));
+        // 索引与数据库之间有极短的窗口不一致（刚删除的菜品），查不到的直接跳过
+        return ids.stream()
+                .map(byId::get)
+                .filter(Objects::nonNull)
+                .map(this::toFoodSummary)
+                .collect(Collectors.toList());
+    }
+
     @Override
     public MenuDto.FoodDetail getFoodDetail(Long canteenId, Long foodId) {
         Food food = foodRepository.findById(foodId)
@@ -186,11 +231,15 @@ public class MenuServiceImpl implements MenuService {
         food.setPriceCent(req.getPriceCent());
         food.setStock(req.getStock() == null ? 0 : req.getStock());
         food.setImageUrl(req.getImageUrl());
+        food.setWeightGrams(validateWeight(req.getWeightGrams()));
         food.setOnShelf(req.getOnShelf() == null || req.getOnShelf()); // 默认上架
         food.setCreatedAt(Instant.now());
         food.setUpdatedAt(Instant.now());
 
-        return toFoodDetail(foodRepository.save(food));
+        Food saved = foodRepository.save(food);
+        eventPublisher.publishEvent(new FoodChangedEvent(saved.getId()));
+        eventPublisher.publishEvent(new MenuChangedEvent(canteenId));
+        return toFoodDetail(saved);
     }
 
     @Override
@@ -226,6 +275,9 @@ public class MenuServiceImpl implements MenuService {
             food.setPriceCent(req.getPriceCent());
         }
         if (req.getStock() != null) {
+            // stock 列不随实体保存，单独按绝对值更新（先暂停库存回写）
+            stockReservationService.resetStock(foodId, req.getStock());
+            foodRepository.updateStockByCanteenIdAndId(canteenId, foodId, req.getStock());
             food.setStock(req.getStock());
         }
         if (req.getImageUrl() != null) {
@@ -234,9 +286,15 @@ public class MenuServiceImpl implements MenuService {
         if (req.getOnShelf() != null) {
             food.setOnShelf(req.getOnShelf());
         }
+        if (req.getWeightGrams() != null) {
+            food.setWeightGrams(validateWeight(req.getWeightGrams()));
+        }
 
         food.setUpdatedAt(Instant.now());
-        return toFoodDetail(foodRepository.save(food));
+        Food saved = foodRepository.save(food);
+        eventPublisher.publishEvent(new FoodChangedEvent(foodId));
+        eventPublisher.publishEvent(new MenuChangedEvent(canteenId));
+        return toFoodDetail(saved);
     }
 
     @Override
@@ -247,6 +305,8 @@ public class MenuServiceImpl implements MenuService {
         if (updated == 0) {
             throw BizException.notFound("菜品不存在");
         }
+        eventPublisher.publishEvent(new FoodChangedEvent(foodId));
+        eventPublisher.publishEvent(new MenuChangedEvent(canteenId));
     }
 
     @Override
@@ -255,22 +315,35 @@ public class MenuServiceImpl implements MenuService {
         if (stock == null || stock < 0) {
             throw BizException.badRequest("库存必须为非负整数");
         }
+        // 先暂停库存回写再写 foods.stock，提交后内存账本按新值重置
+        stockReservationService.resetStock(foodId, stock);
         int updated = foodRepository.updateStockByCanteenIdAndId(canteenId, foodId, stock);
         if (updated == 0) {
             throw BizException.notFound("菜品不存在");
         }
     }
 
+    @Override
+    @Transactional
+    public void changeFoodFlashSale(Long canteenId, Long foodId, boolean enabled) {
+        int updated = foodRepository.updateFlashSaleByCanteenIdAndId(canteenId, foodId, enabled);
+        if (updated == 0) {
+            throw BizException.notFound("菜品不存在");
+        }
+        stockReservationService.setFlashSale(foodId, enabled);
+        eventPublisher.publishEvent(new MenuChangedEvent(canteenId));
+    }
+
     // ============================================================
     // 工具方法
     // ============================================================
 
-    private MenuDto.CategorySummary toCategorySummary(MenuCategory cat) {
+    private MenuDto.CategorySummary toCategorySummary(Long canteenId, MenuDto.MenuSection section) {
         MenuDto.CategorySummary dto = new MenuDto.CategorySummary();
-        dto.setId(cat.getId());
-        dto.setCanteenId(cat.getCanteenId());
-        dto.setName(cat.getName());
-        dto.setSort(cat.getSort());
+        dto.setId(section.getCategoryId());
+        dto.setCanteenId(canteenId);
+        dto.setName(section.getCategoryName());
+        dto.setSort(section.getSort());
         return dto;
     }
 
@@ -295,7 +368,9 @@ public class MenuServiceImpl implements MenuService {
         dto.setPriceCent(food.getPriceCent());
         dto.setStock(food.getStock());
         dto.setOnShelf(food.getOnShelf());
+        dto.setFlashSale(Boolean.TRUE.equals(food.getFlashSale()));
         dto.setImageUrl(food.getImageUrl());
+        dto.setWeightGrams(food.getWeightGrams());
         return dto;
     }
 
@@ -308,11 +383,24 @@ public class MenuServiceImpl implements MenuService {
         dto.setPriceCent(food.getPriceCent());
         dto.setStock(food.getStock());
         dto.setOnShelf(food.getOnShelf());
+        dto.setFlashSale(Boolean.TRUE.equals(food.getFlashSale()));
         dto.setImageUrl(food.getImageUrl());
+        dto.setWeightGrams(food.getWeightGrams());
         dto.setCreatedAt(toLocalDateTime(food.getCreatedAt()));
         dto.setUpdatedAt(toLocalDateTime(food.getUpdatedAt()));
         return dto;
     }
+
+    /**
+     * 单份重量：可为空，填写时必须为正数（单份不超过 10 kg）。
+     */
+    private Integer validateWeight(Integer weightGrams) {
+        if (weightGrams != null && (weightGrams <= 0 || weightGrams > 10_000)) {
+            throw BizException.badRequest("单份重量必须在 1~10000 克之间");
+        }
+        return weightGrams;
+    }
+
     private LocalDateTime toLocalDateTime(Instant instant) {
         return instant == null ? null :
                 LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
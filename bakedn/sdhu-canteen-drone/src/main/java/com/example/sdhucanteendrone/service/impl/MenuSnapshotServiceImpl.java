@@ -0,0 +1,157 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.MenuDto;
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.entity.MenuCategory;
+import com.example.sdhucanteendrone.repository.CanteenRepository;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.repository.MenuCategoryRepository;
+import com.example.sdhucanteendrone.service.MenuSnapshotService;
+import com.example.sdhucanteendrone.service.event.MenuChangedEvent;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 菜单快照：ConcurrentHashMap 里每个食堂一份不可变快照，读取就是一次 map 查找。
+ * <p>
+ * 每个食堂有一个变更序号，失效时在 map 的同一个槽位内递增序号并移除快照；
+ * 构建在锁外查库，写回时同样在该槽位内比较序号，期间有变更就不写回（重试一次），
+ * 避免把变更前读到的旧菜单放回去。快照的版本号即构建时的变更序号 + 1。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class MenuSnapshotServiceImpl implements MenuSnapshotService {
+
+    private static final int MAX_BUILD_ATTEMPTS = 3;
+
+    private final CanteenRepository canteenRepository;
+    private final MenuCategoryRepository categoryRepository;
+    private final FoodRepository foodRepository;
+
+    private final Map<Long, MenuDto.MenuSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Map<Long, AtomicLong> changeSeqs = new ConcurrentHashMap<>();
+
+    @Override
+    public MenuDto.MenuSnapshot get(Long canteenId) {
+        MenuDto.MenuSnapshot snapshot = snapshots.get(canteenId);
+        if (snapshot != null) {
+            return snapshot;
+        }
+        AtomicLong seq = changeSeqs.computeIfAbsent(canteenId, k -> new AtomicLong());
+        MenuDto.MenuSnapshot built = null;
+        for (int attempt = 0; attempt < MAX_BUILD_ATTEMPTS; attempt++) {
+            long expected = seq.get();
+            MenuDto.MenuSnapshot candidate = build(canteenId, expected + 1);
+            MenuDto.MenuSnapshot current = snapshots.compute(canteenId,
+                    (k, old) -> seq.get() == expected && (old == null || old.getVersion() < candidate.getVersion())
+                            ? candidate : old);
+            if (current != null) {
+                return current;
+            }
+            built = candidate;
+        }
+        // 菜单一直在变：本次结果只返回不缓存
+        return built;
+    }
+
+    @Override
+    public long currentVersion(Long canteenId) {
+        AtomicLong seq = changeSeqs.get(canteenId);
+        return seq == null ? 1 : seq.get() + 1;
+    }
+
+    @Override
+    public void invalidate(Long canteenId) {
+        AtomicLong seq = changeSeqs.computeIfAbsent(canteenId, k -> new AtomicLong());
+        snapshots.compute(canteenId, (k, old) -> {
+            seq.incrementAndGet();
+            return null;
+        });
+    }
+
+    /**
+     * 菜单写操作提交后失效并立即重建，后续请求直接命中新快照。
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onMenuChanged(MenuChangedEvent event) {
+        invalidate(event.getCanteenId());
+        try {
+            MenuDto.MenuSnapshot snapshot = get(event.getCanteenId());
+            log.debug("食堂 {} 菜单快照已重建，版本 {}", event.getCanteenId(), snapshot.getVersion());
+        } catch (BizException e) {
+            // 食堂已删除：快照已丢弃，不再重建
+            log.debug("食堂 {} 不存在，菜单快照不再重建", event.getCanteenId());
+        }
+    }
+
+    // ============================================================
+    // 构建
+    // ============================================================
+
+    private MenuDto.MenuSnapshot build(Long canteenId, long version) {
+        if (!canteenRepository.existsById(canteenId)) {
+            throw BizException.notFound("食堂不存在");
+        }
+        List<MenuCategory> categories = new ArrayList<>(categoryRepository.findByCanteenId(canteenId));
+        categories.sort(Comparator.comparing(MenuCategory::getSort, Comparator.nullsLast(Comparator.naturalOrder()))
+                .thenComparing(MenuCategory::getId));
+
+        Map<Long, MenuCategory> byId = new LinkedHashMap<>();
+        Map<Long, List<MenuDto.FoodSummary>> grouped = new LinkedHashMap<>();
+        for (MenuCategory c : categories) {
+            byId.put(c.getId(), c);
+            grouped.put(c.getId(), new ArrayList<>());
+        }
+        List<MenuDto.FoodSummary> uncategorized = new ArrayList<>();
+        List<Food> foods = new ArrayList<>(foodRepository.findByCanteenIdAndOnShelfTrue(canteenId));
+        foods.sort(Comparator.comparing(Food::getId));
+        for (Food f : foods) {
+            MenuCategory c = f.getCategoryId() == null ? null : byId.get(f.getCategoryId());
+            MenuDto.FoodSummary dto = toFoodSummary(f, c);
+            if (c == null) {
+                uncategorized.add(dto);
+            } else {
+                grouped.get(c.getId()).add(dto);
+            }
+        }
+
+        List<MenuDto.MenuSection> sections = new ArrayList<>();
+        for (MenuCategory c : categories) {
+            sections.add(new MenuDto.MenuSection(c.getId(), c.getName(), c.getSort(),
+                    List.copyOf(grouped.get(c.getId()))));
+        }
+        if (!uncategorized.isEmpty()) {
+            sections.add(new MenuDto.MenuSection(null, "未分类", null, List.copyOf(uncategorized)));
+        }
+        return new MenuDto.MenuSnapshot(canteenId, version, LocalDateTime.now(), List.copyOf(sections));
+    }
+
+    private MenuDto.FoodSummary toFoodSummary(Food food, MenuCategory category) {
+        MenuDto.FoodSummary dto = new MenuDto.FoodSummary();
+        dto.setId(food.getId());
+        dto.setCanteenId(food.getCanteenId());
+        dto.setCategoryId(category == null ? null : category.getId());
+        dto.setCategoryName(category == null ? null : category.getName());
+        dto.setName(food.getName());
+        dto.setPriceCent(food.getPriceCent());
+        dto.setOnShelf(food.getOnShelf());
+        dto.setFlashSale(Boolean.TRUE.equals(food.getFlashSale()));
+        dto.setImageUrl(food.getImageUrl());
+        dto.setWeightGrams(food.getWeightGrams());
+        return dto;
+    }
+}
@@ -0,0 +1,472 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.MenuDto;
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.entity.MenuCategory;
+import com.example.sdhucanteendrone.entity.enums.MenuFileFormat;
+import com.example.sdhucanteendrone.repository.CanteenRepository;
+import com.example.sdhucanteendrone.repository.FoodBatchRepository;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.repository.MenuCategoryRepository;
+import com.example.sdhucanteendrone.service.MenuTransferService;
+import com.example.sdhucanteendrone.service.event.FoodsImportedEvent;
+import com.example.sdhucanteendrone.service.event.MenuChangedEvent;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * 菜单批量导入导出。
+ * <p>
+ * 导入在一个事务里完成：先加载该食堂的分类（名称 → 分类）和全部菜品名，逐行解析校验，
+ * 合法的菜品攒满一批用 JDBC batch 插入；新分类数量很少，直接用 JPA 保存拿到 id。
+ * 提交后发一次 FoodsImportedEvent（带新菜品对象，搜索索引直接收录）和一次 MenuChangedEvent（菜单快照）。
+ * <p>
+ * CSV 单元格和 JSON 字段的类型错误一样按行跳过，只有文件本身无法解析时才整体失败。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class MenuTransferServiceImpl implements MenuTransferService {
+
+    /** 攒多少行菜品写一次数据库 */
+    private static final int BATCH_SIZE = 500;
+    /** 报告里最多带多少条跳过原因 */
+    private static final int MAX_REPORTED_ERRORS = 100;
+
+    static final List<String> COLUMNS = List.of("category", "categorySort", "name", "priceCent", "stock",
+            "weightGrams", "onShelf", "imageUrl", "description");
+    /** 非字符串列的类型，JSON 字段绑定失败时用来生成提示 */
+    private static final Map<String, Class<?>> COLUMN_TYPES = Map.of("categorySort", Integer.class,
+            "priceCent", Integer.class, "stock", Integer.class, "weightGrams", Integer.class, "onShelf", Boolean.class);
+
+    private final CanteenRepository canteenRepository;
+    private final MenuCategoryRepository categoryRepository;
+    private final FoodRepository foodRepository;
+    private final FoodBatchRepository foodBatchRepository;
+    private final ObjectMapper objectMapper;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // ============================================================
+    // 导入
+    // ============================================================
+
+    @Override
+    @Transactional
+    public MenuDto.ImportReport importMenu(Long canteenId, MenuFileFormat format, InputStream in) {
+        if (!canteenRepository.existsById(canteenId)) {
+            throw BizException.notFound("食堂不存在");
+        }
+        ImportContext ctx = new ImportContext(canteenId);
+        try {
+            if (format == MenuFileFormat.JSON) {
+                importJson(ctx, in);
+            } else {
+                importCsv(ctx, in);
+            }
+        } catch (JsonProcessingException e) {
+            throw BizException.badRequest("JSON 格式错误：" + e.getOriginalMessage());
+        } catch (IOException e) {
+            throw BizException.badRequest("读取导入文件失败：" + e.getMessage());
+        } catch (IllegalArgumentException e) {
+            throw BizException.badRequest(e.getMessage());
+        }
+        ctx.flush();
+
+        if (!ctx.createdFoods.isEmpty()) {
+            eventPublisher.publishEvent(new FoodsImportedEvent(canteenId, ctx.createdFoods));
+        }
+        if (ctx.report.getCreatedFoods() > 0 || ctx.report.getCreatedCategories() > 0) {
+            eventPublisher.publishEvent(new MenuChangedEvent(canteenId));
+        }
+        log.info("食堂 {} 导入菜单：新增分类 {} 个，菜品 {} 个，跳过 {} 行", canteenId,
+                ctx.report.getCreatedCategories(), ctx.report.getCreatedFoods(), ctx.report.getSkippedRows());
+        return ctx.report;
+    }
+
+    private void importCsv(ImportContext ctx, InputStream in) throws IOException {
+        MenuCsv.CsvReader reader = new MenuCsv.CsvReader(
+                new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8)));
+        List<String> header = reader.next();
+        if (header == null) {
+            return;
+        }
+        Map<String, Integer> columns = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) {
+            columns.put(header.get(i).strip().toLowerCase(Locale.ROOT), i);
+        }
+        if (!columns.containsKey("name") && !columns.containsKey("category")) {
+            throw BizException.badRequest("CSV 表头至少需要 name 或 category 列，可用列：" + String.join(",", COLUMNS));
+        }
+
+        List<String> record;
+        while ((record = reader.next()) != null) {
+            long line = reader.recordLine();
+            MenuDto.MenuRow row = new MenuDto.MenuRow();
+            try {
+                row.setCategory(cell(record, columns, "category"));
+                row.setCategorySort(intCell(record, columns, "categorySort"));
+                row.setName(cell(record, columns, "name"));
+                row.setPriceCent(intCell(record, columns, "priceCent"));
+                row.setStock(intCell(record, columns, "stock"));
+                row.setWeightGrams(intCell(record, columns, "weightGrams"));
+                row.setOnShelf(boolCell(record, columns, "onShelf"));
+                row.setImageUrl(cell(record, columns, "imageUrl"));
+                row.setDescription(cell(record, columns, "description"));
+            } catch (IllegalArgumentException e) {
+                ctx.skip(line, row.getName(), e.getMessage());
+                continue;
+            }
+            ctx.accept(line, row);
+        }
+    }
+
+    private void importJson(ImportContext ctx, InputStream in) throws IOException {
+        try (JsonParser parser = objectMapper.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_ARRAY) {
+                throw BizException.badRequest("JSON 导入文件应为 MenuRow 对象组成的数组");
+            }
+            long index = 0;
+            JsonToken token;
+            while ((token = parser.nextToken()) == JsonToken.START_OBJECT) {
+                index++;
+                // 每次只读一个元素；先读成树，字段类型不对时只跳过这一行
+                JsonNode node = parser.readValueAsTree();
+                MenuDto.MenuRow row;
+                try {
+                    row = objectMapper.treeToValue(node, MenuDto.MenuRow.class);
+                } catch (JsonMappingException e) {
+                    ctx.skip(index, node.path("name").isTextual() ? node.get("name").asText() : null,
+                            fieldError(e, node));
+                    continue;
+                }
+                ctx.accept(index, row);
+            }
+            if (token != JsonToken.END_ARRAY) {
+                throw BizException.badRequest("JSON 数组第 " + (index + 1) + " 个元素不是对象");
+            }
+        }
+    }
+
+    /**
+     * JSON 字段绑定失败的原因，与 CSV 单元格的提示一致（"priceCent 不是整数：abc"）。
+     */
+    private static String fieldError(JsonMappingException e, JsonNode node) {
+        List<JsonMappingException.Reference> path = e.getPath();
+        String field = path.isEmpty() ? null : path.get(path.size() - 1).getFieldName();
+        if (field == null) {
+            return "无法解析：" + e.getOriginalMessage();
+        }
+        Class<?> type = COLUMN_TYPES.get(field);
+        String expected = type == Integer.class ? "不是整数" : type == Boolean.class ? "应为 true / false" : "类型不正确";
+        return field + " " + expected + "：" + node.get(field);
+    }
+
+    /**
+     * 一次导入的状态：预加载的分类 / 菜品名、待写入的菜品、导入报告。
+     */
+    private final class ImportContext {
+
+        private final Long canteenId;
+        private final Map<String, MenuCategory> categories = new HashMap<>();
+        private final Set<String> names;
+        private final List<Food> buffer = new ArrayList<>();
+        private final List<Food> createdFoods = new ArrayList<>();
+        private final MenuDto.ImportReport report = new MenuDto.ImportReport();
+        private final Instant now = Instant.now();
+
+        private ImportContext(Long canteenId) {
+            this.canteenId = canteenId;
+            for (MenuCategory c : categoryRepository.findByCanteenId(canteenId)) {
+                categories.put(c.getName(), c);
+            }
+            this.names = new HashSet<>(foodRepository.findNamesByCanteenId(canteenId));
+            report.setErrors(new ArrayList<>());
+        }
+
+        private void accept(long row, MenuDto.MenuRow r) {
+            String category = trimToNull(r.getCategory());
+            String name = trimToNull(r.getName());
+            if (name == null) {
+                // 只声明分类的行
+                if (category == null) {
+                    skip(row, null, "分类和菜品名称不能同时为空");
+                    return;
+                }
+                String error = checkCategory(category);
+                if (error != null) {
+                    skip(row, null, error);
+                    return;
+                }
+                resolveCategory(category, r.getCategorySort());
+                return;
+            }
+
+            String error = category == null ? null : checkCategory(category);
+            if (error == null) {
+                error = checkFood(name, r);
+            }
+            if (error != null) {
+                skip(row, name, error);
+                return;
+            }
+
+            Food food = new Food();
+            food.setCanteenId(canteenId);
+            food.setCategoryId(category == null ? null : resolveCategory(category, r.getCategorySort()).getId());
+            food.setName(name);
+            food.setPriceCent(r.getPriceCent());
+            food.setStock(r.getStock() == null ? 0 : r.getStock());
+            food.setWeightGrams(r.getWeightGrams());
+            food.setOnShelf(r.getOnShelf() == null || r.getOnShelf()); // 默认上架
+            food.setImageUrl(trimToNull(r.getImageUrl()));
+            food.setDescription(trimToNull(r.getDescription()));
+            food.setCreatedAt(now);
+            food.setUpdatedAt(now);
+            names.add(name);
+            buffer.add(food);
+            if (buffer.size() >= BATCH_SIZE) {
+                flush();
+            }
+        }
+
+        private String checkCategory(String category) {
+            return category.length() > 100 ? "分类名称不能超过 100 个字符" : null;
+        }
+
+        /**
+         * 菜品校验规则与单个新增菜品一致。
+         */
+        private String checkFood(String name, MenuDto.MenuRow r) {
+            if (name.length() > 200) {
+                return "菜品名称不能超过 200 个字符";
+            }
+            if (names.contains(name)) {
+                return "该菜品名称已存在";
+            }
+            if (r.getPriceCent() == null || r.getPriceCent() < 0) {
+                return "单价必须为非负整数（分）";
+            }
+            if (r.getStock() != null && r.getStock() < 0) {
+                return "库存必须为非负整数";
+            }
+            if (r.getWeightGrams() != null && (r.getWeightGrams() <= 0 || r.getWeightGrams() > 10_000)) {
+                return "单份重量必须在 1~10000 克之间";
+            }
+            if (r.getImageUrl() != null && r.getImageUrl().strip().length() > 255) {
+                return "图片地址不能超过 255 个字符";
+            }
+            if (r.getDescription() != null && r.getDescription().strip().length() > 500) {
+                return "描述不能超过 500 个字符";
+            }
+            return null;
+        }
+
+        private MenuCategory resolveCategory(String name, Integer sort) {
+            MenuCategory existing = categories.get(name);
+            if (existing != null) {
+                return existing;
+            }
+            MenuCategory cat = new MenuCategory();
+            cat.setCanteenId(canteenId);
+            cat.setName(name);
+            cat.setSort(sort == null ? 0 : sort);
+            cat.setCreatedAt(now);
+            cat.setUpdatedAt(now);
+            MenuCategory saved = categoryRepository.save(cat);
+            categories.put(name, saved);
+            report.setCreatedCategories(report.getCreatedCategories() + 1);
+            return saved;
+        }
+
+        private void skip(long row, String name, String message) {
+            report.setSkippedRows(report.getSkippedRows() + 1);
+            if (report.getErrors().size() < MAX_REPORTED_ERRORS) {
+                MenuDto.ImportError error = new MenuDto.ImportError();
+                error.setRow(row);
+                error.setName(name);
+                error.setMessage(message);
+                report.getErrors().add(error);
+            }
+        }
+
+        private void flush() {
+            if (buffer.isEmpty()) {
+                return;
+            }
+            foodBatchRepository.batchInsertFoods(buffer);
+            createdFoods.addAll(buffer);
+            report.setCreatedFoods(report.getCreatedFoods() + buffer.size());
+            buffer.clear();
+        }
+    }
+
+    // ============================================================
+    // 导出
+    // ============================================================
+
+    @Override
+    public StreamingResponseBody exportMenu(Long canteenId, MenuFileFormat format) {
+        if (!canteenRepository.existsById(canteenId)) {
+            throw BizException.notFound("食堂不存在");
+        }
+        return out -> {
+            List<MenuCategory> categories = new ArrayList<>(categoryRepository.findByCanteenId(canteenId));
+            categories.sort(Comparator.comparing(MenuCategory::getSort,
+                    Comparator.nullsLast(Comparator.naturalOrder())).thenComparing(MenuCategory::getId));
+            Map<Long, MenuCategory> byId = new HashMap<>();
+            categories.forEach(c -> byId.put(c.getId(), c));
+
+            if (format == MenuFileFormat.JSON) {
+                exportJson(canteenId, categories, byId, out);
+            } else {
+                exportCsv(canteenId, categories, byId, out);
+            }
+        };
+    }
+
+    private void exportCsv(Long canteenId, List<MenuCategory> categories, Map<Long, MenuCategory> byId,
+                           OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        // BOM，Excel 才能正确识别 UTF-8
+        writer.write('\uFEFF');
+        MenuCsv.writeRecord(writer, COLUMNS);
+        Consumer<MenuDto.MenuRow> sink = row -> {
+            try {
+                MenuCsv.writeRecord(writer, Arrays.asList(row.getCategory(), row.getCategorySort(),
+                        row.getName(), row.getPriceCent(), row.getStock(), row.getWeightGrams(),
+                        row.getOnShelf(), row.getImageUrl(), row.getDescription()));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+        writeRows(canteenId, categories, byId, sink);
+        writer.flush();
+    }
+
+    private void exportJson(Long canteenId, List<MenuCategory> categories, Map<Long, MenuCategory> byId,
+                            OutputStream out) throws IOException {
+        JsonGenerator generator = objectMapper.createGenerator(out, JsonEncoding.UTF8);
+        generator.writeStartArray();
+        writeRows(canteenId, categories, byId, row -> {
+            try {
+                generator.writeObject(row);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+        generator.writeEndArray();
+        generator.flush();
+    }
+
+    private void writeRows(Long canteenId, List<MenuCategory> categories, Map<Long, MenuCategory> byId,
+                           Consumer<MenuDto.MenuRow> sink) throws IOException {
+        for (MenuCategory c : categories) {
+            MenuDto.MenuRow row = new MenuDto.MenuRow();
+            row.setCategory(c.getName());
+            row.setCategorySort(c.getSort());
+            sink.accept(row);
+        }
+        try {
+            foodBatchRepository.streamFoods(canteenId, food -> sink.accept(toRow(food, byId.get(food.getCategoryId()))));
+        } catch (UncheckedIOException e) {
+            // 客户端断开等写出失败
+            throw e.getCause();
+        }
+    }
+
+    private MenuDto.MenuRow toRow(Food food, MenuCategory category) {
+        MenuDto.MenuRow row = new MenuDto.MenuRow();
+        if (category != null) {
+            row.setCategory(category.getName());
+            row.setCategorySort(category.getSort());
+        }
+        row.setName(food.getName());
+        row.setPriceCent(food.getPriceCent());
+        row.setStock(food.getStock());
+        row.setWeightGrams(food.getWeightGrams());
+        row.setOnShelf(food.getOnShelf());
+        row.setImageUrl(food.getImageUrl());
+        row.setDescription(food.getDescription());
+        return row;
+    }
+
+    // ============================================================
+    // 工具方法
+    // ============================================================
+
+    private static String cell(List<String> record, Map<String, Integer> columns, String column) {
+        Integer i = columns.get(column.toLowerCase(Locale.ROOT));
+        if (i == null || i >= record.size()) {
+            return null;
+        }
+        return trimToNull(record.get(i));
+    }
+
+    private static Integer intCell(List<String> record, Map<String, Integer> columns, String column) {
+        String v = cell(record, columns, column);
+        if (v == null) {
+            return null;
+        }
+        try {
+            return Integer.valueOf(v);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(column + " 不是整数：" + v);
+        }
+    }
+
+    private static Boolean boolCell(List<String> record, Map<String, Integer> columns, String column) {
+        String v = cell(record, columns, column);
+        if (v == null) {
+            return null;
+        }
+        return switch (v.toLowerCase(Locale.ROOT)) {
+            case "true", "1", "是" -> true;
+            case "false", "0", "否" -> false;
+            default -> throw new IllegalArgumentException(column + " 应为 true / false：" + v);
+        };
+    }
+
+    private static String trimToNull(String s) {
+        if (s == null) {
+            return null;
+        }
+        String t = s.strip();
+        return t.isEmpty() ? null : t;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * 合单装载规则（自动派机与手动合单共用）。
+ */
+final class MissionPlanner {
+
+    private MissionPlanner() {
+    }
+
+    /**
+     * 目的地归并：取地址中楼栋部分，例如 "宿舍1栋-101"、"宿舍1栋 203" 都归为 "宿舍1栋"。
+     */
+    static String destinationKey(String address) {
+        if (address == null) {
+            return "";
+        }
+        String s = address.strip();
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '-' || c == '－' || Character.isWhitespace(c)) {
+                return s.substring(0, i);
+            }
+        }
+        return s;
+    }
+
+    /**
+     * 按排队顺序装载一次起飞的订单：队首必装（调用方保证装得下），
+     * 其后依次装入还放得下的订单，直到达到载重或单数上限。
+     */
+    static <T> List<T> fill(List<T> queue, ToDoubleFunction<T> weightKg, double capacityKg, int maxOrders) {
+        List<T> flight = new ArrayList<>();
+        double load = 0;
+        for (T order : queue) {
+            if (flight.size() >= maxOrders) {
+                break;
+            }
+            double w = weightKg.applyAsDouble(order);
+            if (flight.isEmpty() || load + w <= capacityKg) {
+                flight.add(order);
+                load += w;
+            }
+        }
+        return flight;
+    }
+
+    /**
+     * 队列前 maxOrders 单的总重量。
+     */
+    static <T> double plannedKg(List<T> queue, ToDoubleFunction<T> weightKg, int maxOrders) {
+        return queue.stream().limit(maxOrders).mapToDouble(weightKg).sum();
+    }
+}
@@ -0,0 +1,179 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.DroneDto;
+import com.example.sdhucanteendrone.entity.Drone;
+import com.example.sdhucanteendrone.entity.Mission;
+import com.example.sdhucanteendrone.entity.Order;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.entity.enums.MissionStatus;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.repository.DroneRepository;
+import com.example.sdhucanteendrone.repository.MissionRepository;
+import com.example.sdhucanteendrone.repository.OrderItemRepository;
+import com.example.sdhucanteendrone.repository.OrderRepository;
+import com.example.sdhucanteendrone.repository.OrderWeightView;
+import com.example.sdhucanteendrone.service.MissionService;
+import com.example.sdhucanteendrone.service.OrderService;
+import com.example.sdhucanteendrone.service.event.DroneChangedEvent;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 合单配送任务。
+ * <p>
+ * 起飞顺序：写入任务 → 无人机 IDLE -> IN_MISSION 并绑定任务 → 订单绑定无人机和任务
+ * → 订单批量改为 SHIPPED。每一步都是条件更新，任何一步影响行数不符即抛 409，整体回滚。
+ * 任务结束（最后一单送达）由 OrderService#markDelivered 处理。
+ */
+@Service
+@RequiredArgsConstructor
+@Transactional(readOnly = true)
+public class MissionServiceImpl implements MissionService {
+
+    private final MissionRepository missionRepository;
+    private final OrderRepository orderRepository;
+    private final OrderItemRepository orderItemRepository;
+    private final DroneRepository droneRepository;
+    private final OrderService orderService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    @Value("${canteen.mission.max-orders:4}")
+    private int maxOrders = 4;
+
+    @Value("${canteen.dispatch.portion-weight-kg:0.5}")
+    private double portionWeightKg = 0.5;
+
+    @Value("${canteen.dispatch.min-battery:30}")
+    private int minBattery = 30;
+
+    // ============================================================
+    // 起飞
+    // ============================================================
+
+    @Override
+    @Transactional
+    public DroneDto.MissionDetail launch(Long droneId, List<Long> orderIds) {
+        if (droneId == null) {
+            throw BizException.badRequest("无人机不能为空");
+        }
+        if (orderIds == null || orderIds.isEmpty()) {
+            throw BizException.badRequest("订单列表为空");
+        }
+        List<Long> ids = orderIds.stream().filter(Objects::nonNull).distinct().sorted().toList();
+        if (ids.size() > maxOrders) {
+            throw BizException.badRequest("单次合单最多 " + maxOrders + " 个订单");
+        }
+
+        List<Order> orders = orderRepository.findAllById(ids);
+        if (orders.size() != ids.size()) {
+            throw BizException.notFound("订单不存在");
+        }
+        Order first = orders.get(0);
+        String destination = MissionPlanner.destinationKey(first.getAddress());
+        for (Order order : orders) {
+            if (order.getDeliverMethod() != DeliverMethod.DRONE) {
+                throw BizException.badRequest("订单 " + order.getId() + " 不是无人机配送");
+            }
+            if (order.getStatus() != OrderStatus.PACKED || order.getDroneId() != null) {
+                throw BizException.badRequest("订单 " + order.getId() + " 当前不能合单起飞");
+            }
+            if (!order.getCanteenId().equals(first.getCanteenId())
+                    || !MissionPlanner.destinationKey(order.getAddress()).equals(destination)) {
+                throw BizException.badRequest("合单的订单必须来自同一食堂、送往同一目的地");
+            }
+        }
+
+        Drone drone = droneRepository.findById(droneId)
+                .orElseThrow(() -> BizException.notFound("无人机不存在"));
+        Map<Long, Double> weights = estimatePayloadKg(ids);
+        double payloadKg = ids.stream().mapToDouble(id -> weights.getOrDefault(id, 0.0)).sum();
+        if (drone.getMaxPayloadKg() == null || payloadKg > drone.getMaxPayloadKg()) {
+            throw BizException.badRequest("订单总重量超出无人机最大载重");
+        }
+        if (drone.getBattery() == null || drone.getBattery() < minBattery) {
+            throw BizException.badRequest("无人机电量低于 " + minBattery + "%，不能起飞");
+        }
+
+        Instant now = Instant.now();
+        Mission mission = new Mission();
+        mission.setDroneId(droneId);
+        mission.setCanteenId(first.getCanteenId());
+        mission.setDestination(destination);
+        mission.setStatus(MissionStatus.IN_FLIGHT);
+        mission.setOrderCount(ids.size());
+        mission.setRemainingOrders(ids.size());
+        mission.setPayloadKg(payloadKg);
+        mission.setCreatedAt(now);
+        mission.setUpdatedAt(now);
+        mission = missionRepository.save(mission);
+        Long missionId = mission.getId();
+
+        // 无人机直接 IDLE -> IN_MISSION：起飞与占用在同一事务内完成，不经过 RESERVED
+        if (droneRepository.bindMission(droneId, DroneStatus.IDLE, DroneStatus.IN_MISSION, missionId, now) == 0) {
+            throw new BizException(HttpStatus.CONFLICT, "无人机当前不可用");
+        }
+        if (orderRepository.assignMissionIfUnassigned(ids, OrderStatus.PACKED, droneId, missionId, now) != ids.size()) {
+            throw new BizException(HttpStatus.CONFLICT, "部分订单已被指派或状态已变化，请刷新后重试");
+        }
+
+        if (orderService.shipMissionOrders(ids, "无人机已起飞（合单任务 #" + missionId + "）").getFailed() > 0) {
+            throw new BizException(HttpStatus.CONFLICT, "部分订单状态已变化，请刷新后重试");
+        }
+
+        eventPublisher.publishEvent(new DroneChangedEvent(droneId));
+        return toDetail(mission, ids);
+    }
+
+    // ============================================================
+    // 查询
+    // ============================================================
+
+    @Override
+    public DroneDto.MissionDetail getMission(Long missionId) {
+        Mission mission = missionRepository.findById(missionId)
+                .orElseThrow(() -> BizException.notFound("任务不存在"));
+        return toDetail(mission, orderRepository.findIdsByMissionId(missionId));
+    }
+
+    @Override
+    public Map<Long, Double> estimatePayloadKg(Collection<Long> orderIds) {
+        if (orderIds == null || orderIds.isEmpty()) {
+            return Map.of();
+        }
+        int defaultGrams = (int) Math.round(portionWeightKg * 1000);
+        Map<Long, Double> weights = new HashMap<>();
+        for (OrderWeightView row : orderItemRepository.sumWeightGramsByOrderIdIn(orderIds, defaultGrams)) {
+            weights.put(row.getOrderId(), row.getWeightGrams() == null ? 0 : row.getWeightGrams() / 1000.0);
+        }
+        return weights;
+    }
+
+    private DroneDto.MissionDetail toDetail(Mission mission, List<Long> orderIds) {
+        DroneDto.MissionDetail dto = new DroneDto.MissionDetail();
+        dto.setId(mission.getId());
+        dto.setDroneId(mission.getDroneId());
+        dto.setCanteenId(mission.getCanteenId());
+        dto.setDestination(mission.getDestination());
+        dto.setStatus(mission.getStatus());
+        dto.setOrderIds(orderIds);
+        dto.setOrderCount(mission.getOrderCount());
+        dto.setRemainingOrders(mission.getRemainingOrders());
+        dto.setPayloadKg(mission.getPayloadKg());
+        dto.setCreatedAt(mission.getCreatedAt());
+        dto.setCompletedAt(mission.getCompletedAt());
+        return dto;
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.service.OrderDetailCache;
+import com.example.sdhucanteendrone.service.event.OrderChangedEvent;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * 基于 access-order LinkedHashMap 的 LRU 缓存。
+ * <p>
+ * 读写都在同一把锁内完成，锁内只做 map 操作，加载订单（查库）在锁外进行。
+ * 每次失效都会递增 invalidationSeq：加载前后序号不一致说明期间有订单提交了变化，
+ * 这次加载的结果可能已经过时，只返回给调用方，不写入缓存。
+ */
+@Service
+public class OrderDetailCacheImpl implements OrderDetailCache {
+
+    private final Object lock = new Object();
+    private final Map<Long, CachedDetail> entries = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, CachedDetail> eldest) {
+            if (size() > maxEntries) {
+                evictions.increment();
+                return true;
+            }
+            return false;
+        }
+    };
+
+    private final AtomicLong invalidationSeq = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder invalidations = new LongAdder();
+
+    @Value("${canteen.order-detail-cache.max-entries:5000}")
+    private int maxEntries = 5000;
+
+    @Value("${canteen.order-detail-cache.ttl-seconds:300}")
+    private long ttlSeconds = 300;
+
+    @Override
+    public OrderDto.OrderDetail getOrLoad(Long orderId, Function<Long, OrderDto.OrderDetail> loader) {
+        Instant now = Instant.now();
+        long seq;
+        synchronized (lock) {
+            CachedDetail cached = entries.get(orderId);
+            if (cached != null && now.isBefore(cached.expiresAt)) {
+                hits.increment();
+                return cached.detail;
+            }
+            if (cached != null) {
+                // 过期兜底（用户名、无人机编号等不经过订单事件的变化）
+                entries.remove(orderId);
+                evictions.increment();
+            }
+            seq = invalidationSeq.get();
+        }
+
+        misses.increment();
+        OrderDto.OrderDetail detail = loader.apply(orderId);
+
+        synchronized (lock) {
+            if (invalidationSeq.get() == seq) {
+                entries.put(orderId, new CachedDetail(detail, now.plus(Duration.ofSeconds(ttlSeconds))));
+            }
+        }
+        return detail;
+    }
+
+    @Override
+    public void invalidate(Long orderId) {
+        synchronized (lock) {
+            invalidationSeq.incrementAndGet();
+            if (entries.remove(orderId) != null) {
+                invalidations.increment();
+            }
+        }
+    }
+
+    @Override
+    public OrderDto.OrderDetailCacheStats stats() {
+        OrderDto.OrderDetailCacheStats stats = new OrderDto.OrderDetailCacheStats();
+        synchronized (lock) {
+            stats.setSize(entries.size());
+        }
+        stats.setMaxEntries(maxEntries);
+        stats.setHits(hits.sum());
+        stats.setMisses(misses.sum());
+        stats.setEvictions(evictions.sum());
+        stats.setInvalidations(invalidations.sum());
+        long total = stats.getHits() + stats.getMisses();
+        stats.setHitRate(total == 0 ? 0 : (double) stats.getHits() / total);
+        return stats;
+    }
+
+    /**
+     * 订单变化提交后失效缓存；不在事务中发布的事件直接处理。
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        invalidate(event.getOrderId());
+    }
+
+    private record CachedDetail(OrderDto.OrderDetail detail, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.entity.OrderStatusEvent;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.service.OrderEventStreamService;
+import com.example.sdhucanteendrone.service.OrderService;
+import com.example.sdhucanteendrone.service.event.OrderChangedEvent;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 订单状态 SSE 推送。
+ * <p>
+ * - 订阅表：orderId -> 订阅连接集合；空闲连接只占一个 SseEmitter 和一个空队列，不占线程
+ * - 每个连接一个有界发送队列，由少量发送线程串行写出；队列写满说明客户端读得太慢，
+ *   直接关闭连接，客户端带 Last-Event-ID 重连后从数据库补发
+ * - 新订阅先登记、再查历史事件，登记之后到达的实时事件暂存，历史发完再按 id 去重补上，
+ *   保证不丢、不重
+ * - 定时心跳（SSE 注释行），防止代理 / 负载均衡把空闲连接断开
+ * - 终态事件发出后服务端关闭连接；浏览器带着终态事件的 id 重连时不再登记订阅，由控制器回 204
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OrderEventStreamServiceImpl implements OrderEventStreamService {
+
+    private static final int DISPATCH_THREADS = 4;
+
+    private static final Set<OrderStatus> TERMINAL_STATUSES =
+            EnumSet.of(OrderStatus.DELIVERED, OrderStatus.COMPLETED, OrderStatus.CANCELED);
+
+    private static final Object HEARTBEAT = new Object();
+
+    private final OrderService orderService;
+
+    private final ConcurrentHashMap<Long, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+
+    private final AtomicInteger threadSeq = new AtomicInteger();
+    private final ExecutorService dispatcher = Executors.newFixedThreadPool(DISPATCH_THREADS, r -> {
+        Thread t = new Thread(r, "order-sse-" + threadSeq.incrementAndGet());
+        t.setDaemon(true);
+        return t;
+    });
+
+    @Value("${canteen.order-stream.timeout-ms:1800000}")
+    private long timeoutMs = 1_800_000;
+
+    @Value("${canteen.order-stream.buffer-size:32}")
+    private int bufferSize = 32;
+
+    @Value("${canteen.order-stream.max-subscribers:20000}")
+    private int maxSubscribers = 20_000;
+
+    // ============================================================
+    // 订阅
+    // ============================================================
+
+    @Override
+    public SseEmitter subscribe(Long orderId, Long lastEventId) {
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new BizException(HttpStatus.SERVICE_UNAVAILABLE, "订阅连接数已满，请稍后重试");
+        }
+
+        SseEmitter emitter = createEmitter(timeoutMs);
+        Subscriber sub = new Subscriber(orderId, emitter);
+        subscribers.computeIfAbsent(orderId, k -> ConcurrentHashMap.newKeySet()).add(sub);
+        emitter.onCompletion(() -> unregister(sub));
+        emitter.onTimeout(() -> close(sub));
+        emitter.onError(e -> unregister(sub));
+
+        // 先登记再查历史：两者之间提交的事件会暂存在 parked 里，不会漏掉
+        List<OrderDto.OrderStatusEvent> history;
+        try {
+            history = orderService.getOrderTimeline(orderId).getEvents();
+        } catch (RuntimeException e) {
+            unregister(sub);
+            throw e;
+        }
+        List<OrderDto.OrderStatusEvent> missed = new ArrayList<>(history.size());
+        boolean finished = false;
+        for (OrderDto.OrderStatusEvent e : history) {
+            if (lastEventId == null || e.getId() > lastEventId) {
+                missed.add(e);
+            }
+            finished |= TERMINAL_STATUSES.contains(e.getCode());
+        }
+
+        // 终态事件已经送达、客户端又自动重连：不再占用订阅名额，也不会再有新事件
+        if (finished && missed.isEmpty()) {
+            unregister(sub);
+            return null;
+        }
+
+        if (sub.finishReplay(missed)) {
+            schedule(sub);
+        } else {
+            close(sub);
+        }
+        return emitter;
+    }
+
+    @Override
+    public int subscriberCount() {
+        return subscriberCount.get();
+    }
+
+    // ============================================================
+    // 事件分发
+    // ============================================================
+
+    /**
+     * 状态事件提交后推送给该订单的全部订阅者。
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT, fallbackExecution = true)
+    public void onOrderChanged(OrderChangedEvent event) {
+        if (event.getStatusEvent() == null) {
+            return;
+        }
+        Set<Subscriber> subs = subscribers.get(event.getOrderId());
+        if (subs == null || subs.isEmpty()) {
+            return;
+        }
+        OrderDto.OrderStatusEvent dto = toDto(event.getStatusEvent());
+        for (Subscriber sub : subs) {
+            if (sub.offer(dto)) {
+                schedule(sub);
+            } else {
+                close(sub);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${canteen.order-stream.heartbeat-ms:15000}")
+    public void heartbeat() {
+        subscribers.values().forEach(subs -> subs.forEach(sub -> {
+            if (sub.offerHeartbeat()) {
+                schedule(sub);
+            }
+        }));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        subscribers.values().forEach(subs -> subs.forEach(this::close));
+        dispatcher.shutdownNow();
+    }
+
+    /**
+     * 创建 SSE 连接（单独成方法，便于测试替换）。
+     */
+    SseEmitter createEmitter(long timeout) {
+        return new SseEmitter(timeout);
+    }
+
+    // ============================================================
+    // 发送
+    // ============================================================
+
+    private void schedule(Subscriber sub) {
+        if (sub.draining.compareAndSet(false, true)) {
+            dispatcher.execute(() -> drain(sub));
+        }
+    }
+
+    /**
+     * 同一连接同一时刻只有一个线程在写，保证事件按 id 顺序到达。
+     */
+    private void drain(Subscriber sub) {
+        while (true) {
+            Object item = sub.poll();
+            if (item == null) {
+                sub.draining.set(false);
+                // 释放标记后又有新事件入队：抢回来继续发
+                if (sub.hasPending() && sub.draining.compareAndSet(false, true)) {
+                    continue;
+                }
+                return;
+            }
+            try {
+                if (item == HEARTBEAT) {
+                    sub.emitter.send(SseEmitter.event().comment("heartbeat"));
+                    continue;
+                }
+                OrderDto.OrderStatusEvent e = (OrderDto.OrderStatusEvent) item;
+                sub.emitter.send(SseEmitter.event()
+                        .id(String.valueOf(e.getId()))
+                        .name("status")
+                        .data(e));
+                if (TERMINAL_STATUSES.contains(e.getCode())) {
+                    close(sub);
+                    return;
+                }
+            } catch (IOException | IllegalStateException ex) {
+                // 客户端已断开
+                log.debug("订单 {} 的 SSE 连接已断开: {}", sub.orderId, ex.getMessage());
+                unregister(sub);
+                return;
+            }
+        }
+    }
+
+    private void close(Subscriber sub) {
+        unregister(sub);
+        try {
+            sub.emitter.complete();
+        } catch (RuntimeException ignored) {
+            // 连接可能已被容器关闭
+        }
+    }
+
+    private void unregister(Subscriber sub) {
+        if (!sub.closed.compareAndSet(false, true)) {
+            return;
+        }
+        subscriberCount.decrementAndGet();
+        subscribers.computeIfPresent(sub.orderId, (k, subs) -> {
+            subs.remove(sub);
+            return subs.isEmpty() ? null : subs;
+        });
+    }
+
+    private OrderDto.OrderStatusEvent toDto(OrderStatusEvent e) {
+        OrderDto.OrderStatusEvent dto = new OrderDto.OrderStatusEvent();
+        dto.setId(e.getId());
+        dto.setOrderId(e.getOrderId());
+        dto.setCode(e.getCode());
+        dto.setOccurredAt(toLocalDateTime(e.getOccurredAt()));
+        dto.setNote(e.getNote());
+        dto.setCreatedAt(toLocalDateTime(e.getCreatedAt()));
+        return dto;
+    }
+
+    private LocalDateTime toLocalDateTime(Instant instant) {
+        return instant == null ? null :
+                LocalDateTime.ofInstant(instant, ZoneId.systemDefault());
+    }
+
+    /**
+     * 一个订阅连接及其有界发送队列。
+     */
+    private final class Subscriber {
+
+        private final Long orderId;
+        private final SseEmitter emitter;
+        private final AtomicBoolean draining = new AtomicBoolean();
+        private final AtomicBoolean closed = new AtomicBoolean();
+
+        private final ArrayDeque<Object> queue = new ArrayDeque<>(4);
+        /** 回放历史期间到达的实时事件；回放结束后置为 null */
+        private List<OrderDto.OrderStatusEvent> parked = new ArrayList<>(2);
+        private long lastQueuedId;
+
+        private Subscriber(Long orderId, SseEmitter emitter) {
+            this.orderId = orderId;
+            this.emitter = emitter;
+        }
+
+        /**
+         * @return false 表示缓冲区已满
+         */
+        private synchronized boolean offer(OrderDto.OrderStatusEvent e) {
+            if (parked != null) {
+                parked.add(e);
+                return parked.size() <= bufferSize;
+            }
+            return enqueue(e);
+        }
+
+        private synchronized boolean finishReplay(List<OrderDto.OrderStatusEvent> history) {
+            List<OrderDto.OrderStatusEvent> live = parked;
+            parked = null;
+            for (OrderDto.OrderStatusEvent e : history) {
+                if (!enqueue(e)) {
+                    return false;
+                }
+            }
+            for (OrderDto.OrderStatusEvent e : live) {
+                if (!enqueue(e)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 队列为空时才需要心跳；有待发事件说明连接本来就不空闲。
+         */
+        private synchronized boolean offerHeartbeat() {
+            if (parked != null || !queue.isEmpty()) {
+                return false;
+            }
+            queue.add(HEARTBEAT);
+            return true;
+        }
+
+        private synchronized Object poll() {
+            return queue.poll();
+        }
+
+        private synchronized boolean hasPending() {
+            return !queue.isEmpty();
+        }
+
+        private boolean enqueue(OrderDto.OrderStatusEvent e) {
+            if (e.getId() != null && e.getId() <= lastQueuedId) {
+                return true;
+            }
+            if (queue.size() >= bufferSize) {
+                return false;
+            }
+            queue.add(e);
+            if (e.getId() != null) {
+                lastQueuedId = e.getId();
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,265 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.entity.OrderIdempotencyKey;
+import com.example.sdhucanteendrone.repository.OrderIdempotencyKeyRepository;
+import com.example.sdhucanteendrone.service.OrderIdempotencyService;
+import com.example.sdhucanteendrone.service.OrderService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpStatus;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * 下单幂等处理。
+ * <p>
+ * 两级存储：
+ * - 进程内：key -> 首个请求的结果（CompletableFuture），有 TTL 和条数上限，
+ *   同一 key 的并发请求在这里排队等待首个请求完成；超出上限时先清理过期条目，
+ *   再按时间淘汰最早的已完成条目，全是处理中的条目时拒绝新 key
+ * - 数据库：order_idempotency_keys，与订单在同一事务内写入，
+ *   用于进程重启、内存条目被淘汰或多实例部署时兜底
+ * <p>
+ * 两级都记录首次请求体的指纹，同一个 key 换了请求内容时返回 422，不会把别的订单当作结果重放。
+ * <p>
+ * 本类不开启事务：等待方必须在首个请求提交之后再读取订单。
+ */
+@Service
+@RequiredArgsConstructor
+public class OrderIdempotencyServiceImpl implements OrderIdempotencyService {
+
+    private static final int MAX_KEY_LENGTH = 64;
+
+    private final OrderService orderService;
+    private final OrderIdempotencyKeyRepository idempotencyKeyRepository;
+
+    private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    @Value("${canteen.idempotency.ttl-minutes:1440}")
+    private long ttlMinutes;
+
+    @Value("${canteen.idempotency.max-entries:10000}")
+    private int maxEntries;
+
+    @Value("${canteen.idempotency.wait-timeout-ms:10000}")
+    private long waitTimeoutMs;
+
+    @Override
+    public OrderDto.OrderDetail createOrder(String idempotencyKey, OrderDto.OrderCreateReq req) {
+        if (idempotencyKey == null || idempotencyKey.isBlank()) {
+            return orderService.createOrder(req);
+        }
+        if (idempotencyKey.length() > MAX_KEY_LENGTH) {
+            throw BizException.badRequest("Idempotency-Key 过长");
+        }
+
+        String scopedKey = req.getCustomerId() + ":" + idempotencyKey;
+        String requestHash = fingerprint(req);
+        Instant now = Instant.now();
+
+        // 抢占 key：没有记录或记录已过期时由当前请求负责下单
+        Entry mine = new Entry(now.plus(ttl()), requestHash);
+        Entry current = entries.compute(scopedKey,
+                (k, old) -> old == null || old.isExpired(now) ? mine : old);
+        if (current != mine) {
+            checkSameRequest(current.requestHash, requestHash);
+            return orderService.getOrderDetail(await(current));
+        }
+        if (entries.size() > maxEntries) {
+            makeRoom(scopedKey, mine);
+        }
+
+        try {
+            // 数据库兜底：其它实例或淘汰前的请求已经下过单
+            Optional<OrderIdempotencyKey> existing = findPersisted(scopedKey, now);
+            if (existing.isPresent()) {
+                return replay(scopedKey, mine, existing.get(), requestHash);
+            }
+
+            OrderDto.OrderDetail detail = orderService.createOrder(req, scopedKey, requestHash);
+            mine.future.complete(detail.getId());
+            return detail;
+        } catch (DataIntegrityViolationException e) {
+            // 另一个实例抢先提交了同一个 key：以它的订单为准
+            Optional<OrderIdempotencyKey> winner = idempotencyKeyRepository.findById(scopedKey);
+            if (winner.isPresent()) {
+                return replay(scopedKey, mine, winner.get(), requestHash);
+            }
+            entries.remove(scopedKey, mine);
+            mine.future.completeExceptionally(e);
+            throw e;
+        } catch (RuntimeException e) {
+            // 下单失败不占用 key，客户端可以用同一个 key 重试
+            entries.remove(scopedKey, mine);
+            mine.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // ============================================================
+    // 过期清理
+    // ============================================================
+
+    @Scheduled(fixedDelayString = "${canteen.idempotency.purge-interval-ms:600000}")
+    @Transactional
+    public void purgeExpired() {
+        purgeExpiredEntries();
+        idempotencyKeyRepository.deleteByCreatedAtBefore(Instant.now().minus(ttl()));
+    }
+
+    private void purgeExpiredEntries() {
+        Instant now = Instant.now();
+        entries.values().removeIf(e -> e.isExpired(now));
+    }
+
+    /**
+     * 条目超出上限：清理过期条目，仍超出时淘汰最早的已完成条目（数据库里还有兜底记录），
+     * 一次淘汰到上限的 90%，避免每个新 key 都排序一遍；剩下的全是处理中的请求时拒绝当前 key。
+     */
+    private void makeRoom(String scopedKey, Entry mine) {
+        purgeExpiredEntries();
+        int excess = entries.size() - maxEntries;
+        if (excess > 0) {
+            List<Map.Entry<String, Entry>> done = new ArrayList<>();
+            for (Map.Entry<String, Entry> e : entries.entrySet()) {
+                if (e.getValue() != mine && e.getValue().future.isDone()) {
+                    done.add(e);
+                }
+            }
+            done.sort(Comparator.comparing(e -> e.getValue().expiresAt));
+            int target = excess + maxEntries / 10;
+            for (int i = 0; i < done.size() && i < target; i++) {
+                entries.remove(done.get(i).getKey(), done.get(i).getValue());
+            }
+        }
+        if (entries.size() > maxEntries) {
+            entries.remove(scopedKey, mine);
+            BizException e = new BizException(HttpStatus.TOO_MANY_REQUESTS, "处理中的下单请求过多，请稍后重试");
+            mine.future.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    // ============================================================
+    // 工具方法
+    // ============================================================
+
+    private Optional<OrderIdempotencyKey> findPersisted(String scopedKey, Instant now) {
+        Optional<OrderIdempotencyKey> row = idempotencyKeyRepository.findById(scopedKey);
+        if (row.isPresent() && row.get().getCreatedAt().isBefore(now.minus(ttl()))) {
+            // 过期但尚未被清理的记录，删除后按新请求处理
+            idempotencyKeyRepository.deleteById(scopedKey);
+            return Optional.empty();
+        }
+        return row;
+    }
+
+    /**
+     * 按落库记录重放；请求内容不同时释放本进程的占位并拒绝。
+     */
+    private OrderDto.OrderDetail replay(String scopedKey, Entry mine, OrderIdempotencyKey row, String requestHash) {
+        if (row.getRequestHash() != null && !row.getRequestHash().equals(requestHash)) {
+            entries.remove(scopedKey, mine);
+            BizException e = mismatch();
+            mine.future.completeExceptionally(e);
+            throw e;
+        }
+        mine.future.complete(row.getOrderId());
+        return orderService.getOrderDetail(row.getOrderId());
+    }
+
+    private static void checkSameRequest(String expected, String actual) {
+        if (!Objects.equals(expected, actual)) {
+            throw mismatch();
+        }
+    }
+
+    private static BizException mismatch() {
+        return new BizException(HttpStatus.UNPROCESSABLE_ENTITY, "Idempotency-Key 已用于内容不同的下单请求");
+    }
+
+    /**
+     * 请求体指纹：customerId 已在 key 里；明细按菜品排序，顺序不同视为同一请求。
+     */
+    static String fingerprint(OrderDto.OrderCreateReq req) {
+        StringBuilder sb = new StringBuilder()
+                .append(req.getCanteenId()).append('|')
+                .append(req.getDeliveryMethod()).append('|')
+                .append(req.getDeliveryAddress()).append('|')
+                .append(req.getRemarks());
+        if (req.getItems() != null) {
+            req.getItems().stream()
+                    .sorted(Comparator.comparing(OrderDto.OrderItemCreateReq::getFoodId,
+                                    Comparator.nullsFirst(Comparator.naturalOrder()))
+                            .thenComparing(OrderDto.OrderItemCreateReq::getQty,
+                                    Comparator.nullsFirst(Comparator.naturalOrder())))
+                    .forEach(i -> sb.append('|').append(i.getFoodId()).append('x').append(i.getQty()));
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(sb.toString().getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Long await(Entry entry) {
+        try {
+            return entry.future.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new BizException(HttpStatus.CONFLICT, "相同请求正在处理中，请稍后查询订单");
+        } catch (ExecutionException e) {
+            // 首个请求失败：重复请求返回相同的错误
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw BizException.internalError("下单失败");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw BizException.internalError("下单被中断");
+        }
+    }
+
+    private Duration ttl() {
+        return Duration.ofMinutes(ttlMinutes);
+    }
+
+    private static final class Entry {
+
+        private final CompletableFuture<Long> future = new CompletableFuture<>();
+        private final Instant expiresAt;
+        private final String requestHash;
+
+        private Entry(Instant expiresAt, String requestHash) {
+            this.expiresAt = expiresAt;
+            this.requestHash = requestHash;
+        }
+
+        private boolean isExpired(Instant now) {
+            // 仍在处理中的请求不算过期，避免并发重复下单
+            return future.isDone() && now.isAfter(expiresAt);
+        }
+    }
+}
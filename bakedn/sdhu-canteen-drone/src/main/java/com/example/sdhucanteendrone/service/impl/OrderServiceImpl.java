@@ -1,23 +1,48 @@
 package com.example.sdhucanteendrone.service.impl;
 
 import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.CanteenDto;
 import com.example.sdhucanteendrone.dto.OrderDto;
 import com.example.sdhucanteendrone.entity.*;
 import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
 import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.entity.enums.MissionStatus;
 import com.example.sdhucanteendrone.entity.enums.OrderStatus;
 import com.example.sdhucanteendrone.repository.*;
+import com.example.sdhucanteendrone.service.DeliveryEtaService;
+import com.example.sdhucanteendrone.service.OrderDetailCache;
 import com.example.sdhucanteendrone.service.OrderService;
+import com.example.sdhucanteendrone.service.RouteService;
+import com.example.sdhucanteendrone.service.StockReservationService;
+import com.example.sdhucanteendrone.service.event.DroneChangedEvent;
+import com.example.sdhucanteendrone.service.event.OrderChangedEvent;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.time.LocalDateTime;
 import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
@@ -32,6 +57,18 @@ public class OrderServiceImpl implements OrderService {
     private final UserRepository userRepository;
     private final FoodRepository foodRepository;
     private final DroneRepository droneRepository;
+    private final MissionRepository missionRepository;
+    private final OrderBatchRepository orderBatchRepository;
+    private final StockReservationService stockReservationService;
+    private final OrderIdempotencyKeyRepository idempotencyKeyRepository;
+    private final OrderDetailCache orderDetailCache;
+    private final RouteService routeService;
+    private final DeliveryEtaService deliveryEtaService;
+    private final ApplicationEventPublisher eventPublisher;
+
+    /** 指派无人机的电量下限，与自动派机一致 */
+    @Value("${canteen.dispatch.min-battery:30}")
+    private int minBattery = 30;
 
     // ============================================================
     // 创建订单
@@ -40,6 +77,12 @@ public class OrderServiceImpl implements OrderService {
     @Override
     @Transactional
     public OrderDto.OrderDetail createOrder(OrderDto.OrderCreateReq req) {
+        return createOrder(req, null, null);
+    }
+
+    @Override
+    @Transactional
+    public OrderDto.OrderDetail createOrder(OrderDto.OrderCreateReq req, String idempotencyKey, String requestHash) {
 
         if (req.getItems() == null || req.getItems().isEmpty()) {
             throw BizException.badRequest("购物车为空");
@@ -52,6 +95,37 @@ public class OrderServiceImpl implements OrderService {
         Canteen canteen = canteenRepository.findById(req.getCanteenId())
                 .orElseThrow(() -> BizException.notFound("食堂不存在"));
 
+        // 一次查出购物车涉及的全部菜品，避免逐行 findById
+        Map<Long, Food> foods = foodRepository.findAllById(
+                        req.getItems().stream().map(OrderDto.OrderItemCreateReq::getFoodId).collect(Collectors.toSet()))
+                .stream()
+                .collect(Collectors.toMap(Food::getId, Function.identity()));
+
+        // 校验菜品并按菜品汇总份数（同一菜品可能出现在多行）
+        Map<Long, Integer> quantities = new LinkedHashMap<>();
+        for (OrderDto.OrderItemCreateReq itemReq : req.getItems()) {
+            Food food = foods.get(itemReq.getFoodId());
+            if (food == null) {
+                throw BizException.badRequest("菜品不存在: " + itemReq.getFoodId());
+            }
+            if (!Objects.equals(food.getCanteenId(), canteen.getId())) {
+                throw BizException.badRequest("菜品不属于该食堂: " + food.getName());
+            }
+            if (!Boolean.TRUE.equals(food.getOnShelf())) {
+                throw BizException.badRequest("菜品已下架: " + food.getName());
+            }
+            if (itemReq.getQty() == null || itemReq.getQty() <= 0) {
+                throw BizException.badRequest("菜品数量必须大于 0: " + food.getName());
+            }
+            quantities.merge(food.getId(), itemReq.getQty(), Integer::sum);
+        }
+
+        // 内存预占库存，不足直接拒绝；事务回滚时自动归还
+        Long shortFoodId = stockReservationService.tryReserve(quantities);
+        if (shortFoodId != null) {
+            throw BizException.badRequest("库存不足: " + foods.get(shortFoodId).getName());
+        }
+
         // 创建订单主表（使用 Long 外键）
         Order order = new Order();
         order.setCustomerId(customer.getId());
@@ -71,24 +145,31 @@ public class OrderServiceImpl implements OrderService {
 
         Order savedOrder = orderRepository.save(order);
 
-        // 创建明细（使用 orderId / foodId / quantity）
-        for (OrderDto.OrderItemCreateReq itemReq : req.getItems()) {
-            Food food = foodRepository.findById(itemReq.getFoodId())
-                    .orElseThrow(() -> BizException.badRequest("菜品不存在: " + itemReq.getFoodId()));
-
+        // 幂等键与订单同事务落库：主键冲突会让整单回滚
+        if (idempotencyKey != null) {
+            idempotencyKeyRepository.insertKey(idempotencyKey, customer.getId(), savedOrder.getId(), requestHash, Instant.now());
+        }
 
+        // 创建明细（使用 orderId / foodId / quantity），统一批量写入
+        Instant now = Instant.now();
+        List<OrderItem> items = new ArrayList<>(req.getItems().size());
+        for (OrderDto.OrderItemCreateReq itemReq : req.getItems()) {
+            Food food = foods.get(itemReq.getFoodId());
             OrderItem item = new OrderItem();
             item.setOrderId(savedOrder.getId());
             item.setFoodId(food.getId());
             item.setFoodName(food.getName());
             item.setUnitPrice(food.getPriceCent());
             item.setQuantity(itemReq.getQty());
-            item.setCreatedAt(Instant.now());
-            orderItemRepository.save(item);
+            item.setCreatedAt(now);
+            items.add(item);
         }
+        orderBatchRepository.batchInsertItems(items);
 
-        // 记录初始状态事件
-        createStatusEvent(savedOrder.getId(), OrderStatus.PENDING, "订单已创建");
+        // 初始状态事件与明细一样走 JDBC 批量写入，不经过持久化上下文
+        OrderStatusEvent created = newStatusEvent(savedOrder.getId(), OrderStatus.PENDING, "订单已创建", now);
+        orderBatchRepository.batchInsertStatusEvents(List.of(created));
+        publishChanged(savedOrder, null, created);
 
         // 再查一遍，包含金额等字段
         return getOrderDetail(savedOrder.getId());
@@ -100,35 +181,124 @@ public class OrderServiceImpl implements OrderService {
 
     @Override
     public OrderDto.OrderDetail getOrderDetail(Long orderId) {
+        // 只在只读事务中走缓存：写事务里读到的是尚未提交的数据，不能缓存
+        if (TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return orderDetailCache.getOrLoad(orderId, this::loadOrderDetail);
+        }
+        return loadOrderDetail(orderId);
+    }
+
+    private OrderDto.OrderDetail loadOrderDetail(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> BizException.notFound("订单不存在"));
 
         List<OrderItem> items = orderItemRepository.findByOrderId(orderId);
         List<OrderStatusEvent> events = statusEventRepository.findByOrderIdOrderByOccurredAtAsc(orderId);
 
-        return toOrderDetail(order, items, events);
+        OrderDto.OrderDetail detail = toOrderDetail(order, items, events);
+        // 航线只取决于食堂和地址，随详情一起缓存
+        if (order.getDeliverMethod() == DeliverMethod.DRONE) {
+            CanteenDto.RoutePlan route = routeService.plan(order.getCanteenId(), order.getAddress());
+            if (route != null) {
+                detail.setRouteDistanceMeters(route.getDistanceMeters());
+                detail.setEtaSeconds(route.getEtaSeconds());
+            }
+        }
+        fillPredictions(detail, order, events);
+        return detail;
+    }
+
+    /**
+     * 按时间轴上已发生的节点推算后续节点：未打包时预测打包完成时间，无人机订单未送达时预测送达时间。
+     * 预测随详情缓存，订单每次状态变化都会失效重算。
+     */
+    private void fillPredictions(OrderDto.OrderDetail detail, Order order, List<OrderStatusEvent> events) {
+        OrderStatus status = order.getStatus();
+        if (status == OrderStatus.CANCELED || status.ordinal() >= OrderStatus.DELIVERED.ordinal()) {
+            return;
+        }
+        Map<OrderStatus, Instant> reached = new EnumMap<>(OrderStatus.class);
+        for (OrderStatusEvent e : events) {
+            reached.putIfAbsent(e.getCode(), e.getOccurredAt());
+        }
+        Instant pendingAt = reached.getOrDefault(OrderStatus.PENDING, order.getCreatedAt());
+
+        Instant readyAt = reached.get(OrderStatus.PACKED);
+        if (readyAt == null) {
+            readyAt = deliveryEtaService.predictReadyAt(order.getCanteenId(), pendingAt);
+            detail.setPredictedReadyAt(toLocalDateTime(readyAt));
+        }
+        if (order.getDeliverMethod() == DeliverMethod.DRONE) {
+            Instant departAt = reached.getOrDefault(OrderStatus.SHIPPED, readyAt);
+            detail.setPredictedDeliveredAt(toLocalDateTime(
+                    deliveryEtaService.predictDeliveredAt(order.getCanteenId(), departAt, detail.getEtaSeconds())));
+        }
     }
 
     @Override
     public Page<OrderDto.OrderSummary> listCustomerOrders(Long customerId, OrderStatus status, Pageable pageable) {
-        Page<Order> page;
-        if (status != null) {
-            page = orderRepository.findByCustomerIdAndStatusOrderByCreatedAtDesc(customerId, status, pageable);
+        return orderRepository.findCustomerOrderSummaries(customerId, status, pageable)
+                .map(this::toOrderSummary);
+    }
+
+    @Override
+    public Page<OrderDto.OrderSummary> listCanteenOrders(Long canteenId, OrderStatus status, Pageable pageable) {
+        return orderRepository.findCanteenOrderSummaries(canteenId, status, pageable)
+                .map(this::toOrderSummary);
+    }
+
+    @Override
+    public OrderDto.OrderCursorPage listCustomerOrdersByCursor(Long customerId, OrderStatus status,
+                                                               String cursor, int size) {
+        int limit = normalizeCursorPageSize(size);
+        CursorPosition position = decodeCursor(cursor);
+        Pageable page = PageRequest.of(0, limit + 1);
+        List<OrderSummaryView> rows;
+        if (position == null) {
+            rows = status == null
+                    ? orderRepository.findCustomerOrderSummariesFirst(customerId, page)
+                    : orderRepository.findCustomerOrderSummariesFirstByStatus(customerId, status, page);
         } else {
-            page = orderRepository.findByCustomerIdOrderByCreatedAtDesc(customerId, pageable);
+            rows = status == null
+                    ? orderRepository.findCustomerOrderSummariesAfter(
+                            customerId, position.createdAt(), position.id(), page)
+                    : orderRepository.findCustomerOrderSummariesAfterByStatus(
+                            customerId, status, position.createdAt(), position.id(), page);
         }
-        return page.map(this::toOrderSummary);
+        return toCursorPage(rows, limit);
     }
 
     @Override
-    public Page<OrderDto.OrderSummary> listCanteenOrders(Long canteenId, OrderStatus status, Pageable pageable) {
-        Page<Order> page;
-        if (status != null) {
-            page = orderRepository.findByCanteenIdAndStatusOrderByCreatedAtDesc(canteenId, status, pageable);
+    public OrderDto.OrderCursorPage listCanteenOrdersByCursor(Long canteenId, OrderStatus status,
+                                                              String cursor, int size) {
+        int limit = normalizeCursorPageSize(size);
+        CursorPosition position = decodeCursor(cursor);
+        Pageable page = PageRequest.of(0, limit + 1);
+        List<OrderSummaryView> rows;
+        if (position == null) {
+            rows = status == null
+                    ? orderRepository.findCanteenOrderSummariesFirst(canteenId, page)
+                    : orderRepository.findCanteenOrderSummariesFirstByStatus(canteenId, status, page);
         } else {
-            page = orderRepository.findByCanteenIdOrderByCreatedAtDesc(canteenId, pageable);
+            rows = status == null
+                    ? orderRepository.findCanteenOrderSummariesAfter(
+                            canteenId, position.createdAt(), position.id(), page)
+                    : orderRepository.findCanteenOrderSummariesAfterByStatus(
+                            canteenId, status, position.createdAt(), position.id(), page);
         }
-        return page.map(this::toOrderSummary);
+        return toCursorPage(rows, limit);
+    }
+
+    @Override
+    public Optional<OrderDto.OrderSummary> findOrderSummary(Long orderId) {
+        return orderRepository.findOrderSummaryById(orderId).map(this::toOrderSummary);
+    }
+
+    @Override
+    public List<OrderDto.OrderSummary> listOrdersByStatus(Collection<OrderStatus> statuses) {
+        return orderRepository.findOrderSummariesByStatusIn(statuses).stream()
+                .map(this::toOrderSummary)
+                .collect(Collectors.toList());
     }
 
     // ============================================================
@@ -141,17 +311,24 @@ public class OrderServiceImpl implements OrderService {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> BizException.notFound("订单不存在"));
 
-        if (order.getStatus() == OrderStatus.CANCELED || order.getStatus() == OrderStatus.COMPLETED) {
-            throw BizException.badRequest("该订单已完成或已取消");
-        }
+        OrderStatus previous = transitionStatus(order, OrderStatus.CANCELED);
+        OrderStatusEvent event = createStatusEvent(orderId, OrderStatus.CANCELED,
+                reason == null || reason.isBlank() ? "用户取消订单" : reason);
+        publishChanged(order, previous, event);
 
-        order.setStatus(OrderStatus.CANCELED);
-        order.setUpdatedAt(Instant.now());
-        orderRepository.save(order);
+        // 已预占的无人机随订单一起释放（订单绑定保留，便于追溯）
+        if (order.getDroneId() != null
+                && droneRepository.unbindOrder(order.getDroneId(), orderId,
+                DroneStatus.RESERVED, DroneStatus.IDLE, Instant.now()) == 1) {
+            eventPublisher.publishEvent(new DroneChangedEvent(order.getDroneId()));
+        }
 
-        createStatusEvent(orderId, OrderStatus.CANCELED,
-                reason == null || reason.isBlank() ? "用户取消订单" : reason);
-        // 库存回滚由数据库触发器负责
+        // 事务提交后归还内存库存，由定时任务回写 foods.stock
+        Map<Long, Integer> quantities = new HashMap<>();
+        for (OrderItem item : orderItemRepository.findByOrderId(orderId)) {
+            quantities.merge(item.getFoodId(), item.getQuantity(), Integer::sum);
+        }
+        stockReservationService.release(quantities);
     }
 
     @Override
@@ -159,13 +336,122 @@ public class OrderServiceImpl implements OrderService {
     public void updateOrderStatus(Long orderId, OrderStatus status, String note) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> BizException.notFound("订单不存在"));
+        if (status == OrderStatus.DELIVERED && order.getDeliverMethod() == DeliverMethod.DRONE) {
+            // 无人机订单送达要同时结束任务航段、释放无人机，与 markDelivered 相同
+            deliver(order, note == null || note.isBlank() ? "订单已送达" : note);
+            return;
+        }
+        String droneOnly = droneOnlyTransitionMessage(order, status);
+        if (droneOnly != null) {
+            throw BizException.badRequest(droneOnly);
+        }
 
-        // 此处可以按业务增加状态流转校验
-        order.setStatus(status);
-        order.setUpdatedAt(Instant.now());
-        orderRepository.save(order);
+        OrderStatus previous = transitionStatus(order, status);
+        OrderStatusEvent event = createStatusEvent(orderId, status, note);
+        publishChanged(order, previous, event);
+    }
+
+    /** 批量修改状态单次最多处理的订单数 */
+    private static final int MAX_BULK_SIZE = 200;
+
+    @Override
+    @Transactional
+    public OrderDto.BulkStatusResult bulkUpdateOrderStatus(OrderDto.BulkStatusReq req) {
+        return applyBulkStatus(req, false);
+    }
+
+    @Override
+    @Transactional
+    public OrderDto.BulkStatusResult shipMissionOrders(List<Long> orderIds, String note) {
+        OrderDto.BulkStatusReq req = new OrderDto.BulkStatusReq();
+        req.setOrderIds(orderIds);
+        req.setStatus(OrderStatus.SHIPPED);
+        req.setNote(note);
+        return applyBulkStatus(req, true);
+    }
+
+    /**
+     * 批量改状态。droneAware 为 false 时（通用接口）无人机订单不能起飞 / 送达，
+     * 这两步要同时修改无人机，见 {@link #droneOnlyTransitionMessage}。
+     */
+    private OrderDto.BulkStatusResult applyBulkStatus(OrderDto.BulkStatusReq req, boolean droneAware) {
+        if (req.getOrderIds() == null || req.getOrderIds().isEmpty()) {
+            throw BizException.badRequest("订单列表为空");
+        }
+        if (req.getStatus() == null) {
+            throw BizException.badRequest("目标状态不能为空");
+        }
+        if (req.getStatus() == OrderStatus.CANCELED) {
+            // 取消需要归还库存，走单个取消接口
+            throw BizException.badRequest("取消订单请使用取消接口");
+        }
+        List<Long> ids = req.getOrderIds().stream().filter(Objects::nonNull).distinct().toList();
+        if (ids.size() > MAX_BULK_SIZE) {
+            throw BizException.badRequest("单次最多修改 " + MAX_BULK_SIZE + " 个订单");
+        }
+
+        OrderStatus target = req.getStatus();
+        Map<Long, Order> orders = orderRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(Order::getId, Function.identity()));
+
+        // 每个订单一条带当前状态的条件 update，整批一次发出
+        Map<Long, String> failures = new HashMap<>();
+        Map<Long, OrderStatus> current = new LinkedHashMap<>();
+        for (Long id : ids) {
+            Order order = orders.get(id);
+            String droneOnly = order == null || droneAware ? null : droneOnlyTransitionMessage(order, target);
+            if (order == null) {
+                failures.put(id, "订单不存在");
+            } else if (droneOnly != null) {
+                failures.put(id, droneOnly);
+            } else if (order.getStatus() == target) {
+                failures.put(id, "订单已是该状态");
+            } else if (!order.getStatus().canTransitionTo(target)) {
+                failures.put(id, illegalTransitionMessage(order.getStatus(), target));
+            } else {
+                current.put(id, order.getStatus());
+            }
+        }
+
+        // 不加行锁：每条语句的影响行数决定该订单是否改成功，并发请求对同一订单只有一个能改到
+        Instant now = Instant.now();
+        Set<Long> updated = orderBatchRepository.batchCompareAndSetStatus(current, target, now);
+        for (Long id : current.keySet()) {
+            if (!updated.contains(id)) {
+                // 读取之后被并发修改
+                failures.put(id, "订单状态已被修改，请刷新后重试");
+            }
+        }
+
+        // 状态事件一次批量写入
+        List<OrderStatusEvent> events = new ArrayList<>(updated.size());
+        for (Long id : ids) {
+            if (updated.contains(id)) {
+                events.add(newStatusEvent(id, target, req.getNote(), now));
+            }
+        }
+        orderBatchRepository.batchInsertStatusEvents(events);
+
+        for (OrderStatusEvent e : events) {
+            Order order = orders.get(e.getOrderId());
+            eventPublisher.publishEvent(new OrderChangedEvent(
+                    order.getId(), order.getCustomerId(), order.getCanteenId(),
+                    order.getStatus(), target, e));
+        }
 
-        createStatusEvent(orderId, status, note);
+        OrderDto.BulkStatusResult result = new OrderDto.BulkStatusResult();
+        List<OrderDto.BulkStatusItem> items = new ArrayList<>(ids.size());
+        for (Long id : ids) {
+            OrderDto.BulkStatusItem item = new OrderDto.BulkStatusItem();
+            item.setOrderId(id);
+            item.setSuccess(updated.contains(id));
+            item.setMessage(failures.get(id));
+            items.add(item);
+        }
+        result.setResults(items);
+        result.setSucceeded(updated.size());
+        result.setFailed(ids.size() - updated.size());
+        return result;
     }
 
     @Override
@@ -191,6 +477,7 @@ public class OrderServiceImpl implements OrderService {
         order.setDeliverMethod(method);
         order.setUpdatedAt(Instant.now());
         orderRepository.save(order);
+        publishChanged(order, order.getStatus(), null);
     }
 
     // ============================================================
@@ -206,17 +493,32 @@ public class OrderServiceImpl implements OrderService {
         if (order.getDeliverMethod() != DeliverMethod.DRONE) {
             throw BizException.badRequest("该订单不是无人机配送");
         }
+        if (order.getStatus().isTerminal() || order.getStatus() == OrderStatus.SHIPPED) {
+            throw BizException.badRequest("订单当前状态不能指派无人机");
+        }
+        if (order.getDroneId() != null) {
+            throw BizException.badRequest("订单已指派无人机");
+        }
 
         Drone drone = droneRepository.findById(droneId)
                 .orElseThrow(() -> BizException.notFound("无人机不存在"));
-
-        if (drone.getStatus() != DroneStatus.IDLE) {
-            throw BizException.badRequest("无人机当前不可用");
+        if (drone.getBattery() == null || drone.getBattery() < minBattery) {
+            throw BizException.badRequest("无人机电量低于 " + minBattery + "%，不能指派");
         }
 
+        // 预占无人机：IDLE -> RESERVED 一条条件 update，两个订单抢同一架时只有一个能成功
+        Instant now = Instant.now();
+        if (droneRepository.bindOrder(droneId, DroneStatus.IDLE, DroneStatus.RESERVED, orderId, now) == 0) {
+            throw new BizException(HttpStatus.CONFLICT, "无人机当前不可用");
+        }
+        // 订单同样用条件 update 绑定；失败时抛异常，事务回滚连同无人机预占一起撤销
+        if (orderRepository.assignDroneIfUnassigned(orderId, droneId, now) == 0) {
+            throw new BizException(HttpStatus.CONFLICT, "订单已被指派其它无人机，请刷新后重试");
+        }
         order.setDroneId(droneId);
-        order.setUpdatedAt(Instant.now());
-        orderRepository.save(order);
+        order.setUpdatedAt(now);
+        publishChanged(order, order.getStatus(), null);
+        eventPublisher.publishEvent(new DroneChangedEvent(droneId));
     }
 
     @Override
@@ -234,19 +536,17 @@ public class OrderServiceImpl implements OrderService {
             throw BizException.badRequest("订单尚未指派无人机");
         }
 
-        Drone drone = droneRepository.findById(droneId)
-                .orElseThrow(() -> BizException.notFound("无人机不存在"));
+        OrderStatus previous = transitionStatus(order, OrderStatus.SHIPPED);
 
-        // 修改订单状态
-        order.setStatus(OrderStatus.SHIPPED);
-        order.setUpdatedAt(Instant.now());
-        orderRepository.save(order);
-        createStatusEvent(orderId, OrderStatus.SHIPPED, "无人机已起飞");
+        // 无人机 RESERVED -> IN_MISSION，前提是仍由本订单预占（可能已超时释放）
+        if (droneRepository.advanceBoundOrder(droneId, orderId,
+                DroneStatus.RESERVED, DroneStatus.IN_MISSION, Instant.now()) == 0) {
+            throw new BizException(HttpStatus.CONFLICT, "无人机预占已失效，请重新指派");
+        }
 
-        // 修改无人机状态
-        drone.setStatus(DroneStatus.IN_MISSION);
-        drone.setUpdatedAt(Instant.now());
-        droneRepository.save(drone);
+        OrderStatusEvent event = createStatusEvent(orderId, OrderStatus.SHIPPED, "无人机已起飞");
+        publishChanged(order, previous, event);
+        eventPublisher.publishEvent(new DroneChangedEvent(droneId));
     }
 
     @Override
@@ -254,77 +554,221 @@ public class OrderServiceImpl implements OrderService {
     public void markDelivered(Long orderId) {
         Order order = orderRepository.findById(orderId)
                 .orElseThrow(() -> BizException.notFound("订单不存在"));
+        deliver(order, "订单已送达");
+    }
 
-        if (order.getStatus() != OrderStatus.SHIPPED) {
-            throw BizException.badRequest("当前状态不允许标记为已送达");
+    /**
+     * 订单改为 DELIVERED，并结束合单任务航段或释放单独配送的无人机。
+     */
+    private void deliver(Order order, String note) {
+        Long orderId = order.getId();
+        Long droneId = order.getDroneId();
+
+        OrderStatus previous = transitionStatus(order, OrderStatus.DELIVERED);
+        OrderStatusEvent event = createStatusEvent(orderId, OrderStatus.DELIVERED, note);
+        publishChanged(order, previous, event);
+
+        if (order.getMissionId() != null) {
+            finishMissionLeg(order.getMissionId(), droneId);
+        } else if (droneId != null) {
+            // 送达以订单为准；无人机状态若已被管理员改动，这里不覆盖
+            if (droneRepository.unbindOrder(droneId, orderId,
+                    DroneStatus.IN_MISSION, DroneStatus.IDLE, Instant.now()) == 1) {
+                eventPublisher.publishEvent(new DroneChangedEvent(droneId));
+            }
         }
+    }
 
-        Long droneId = order.getDroneId();
+    /**
+     * 合单任务中的一单送达：最后一单送达时结束任务并释放无人机。
+     */
+    private void finishMissionLeg(Long missionId, Long droneId) {
+        Instant now = Instant.now();
+        if (missionRepository.decrementRemaining(missionId, MissionStatus.IN_FLIGHT, now) == 0) {
+            return;
+        }
+        Integer remaining = missionRepository.findRemainingOrders(missionId);
+        if (remaining != null && remaining == 0) {
+            missionRepository.complete(missionId, MissionStatus.IN_FLIGHT, MissionStatus.COMPLETED, now);
+            // 无人机若已被管理员改为其它状态（绑定已清除），这里不再改动
+            if (droneRepository.unbindMission(droneId, missionId, DroneStatus.IN_MISSION, DroneStatus.IDLE, now) == 1) {
+                eventPublisher.publishEvent(new DroneChangedEvent(droneId));
+            }
+        }
+    }
 
-        order.setStatus(OrderStatus.DELIVERED);
-        order.setUpdatedAt(Instant.now());
-        orderRepository.save(order);
-        createStatusEvent(orderId, OrderStatus.DELIVERED, "订单已送达");
+    @Override
+    @Transactional
+    public boolean releaseDroneReservation(Long orderId, Long droneId) {
+        // 只释放尚未起飞的预占；无人机已起飞或已改绑其它订单时不做任何修改
+        Instant now = Instant.now();
+        if (droneRepository.unbindOrder(droneId, orderId, DroneStatus.RESERVED, DroneStatus.IDLE, now) == 0) {
+            return false;
+        }
+        orderRepository.unassignDrone(orderId, droneId, now);
+        orderRepository.findById(orderId).ifPresent(o -> publishChanged(o, o.getStatus(), null));
+        eventPublisher.publishEvent(new DroneChangedEvent(droneId));
+        return true;
+    }
+
+    // ============================================================
+    // 工具方法：状态流转
+    // ============================================================
 
-        if (droneId != null) {
-            Drone drone = droneRepository.findById(droneId)
-                    .orElseThrow(() -> BizException.notFound("无人机不存在"));
-            drone.setStatus(DroneStatus.IDLE);
-            drone.setUpdatedAt(Instant.now());
-            droneRepository.save(drone);
+    /**
+     * 按流转表校验后，用条件 update（where status = 当前状态）修改订单状态。
+     * <p>
+     * 读取之后若有其它请求先改了状态，update 影响 0 行，直接返回 409，
+     * 不会覆盖对方的修改，也不需要行锁。成功后同步更新传入的 order 对象。
+     *
+     * @return 修改前的状态
+     */
+    private OrderStatus transitionStatus(Order order, OrderStatus target) {
+        OrderStatus current = order.getStatus();
+        if (!current.canTransitionTo(target)) {
+            throw BizException.badRequest(illegalTransitionMessage(current, target));
+        }
+        Instant now = Instant.now();
+        if (orderRepository.compareAndSetStatus(order.getId(), current, target, now) == 0) {
+            throw new BizException(HttpStatus.CONFLICT, "订单状态已被修改，请刷新后重试");
+        }
+        order.setStatus(target);
+        order.setUpdatedAt(now);
+        return current;
+    }
+
+    /**
+     * 无人机订单的起飞 / 送达要同时修改无人机（和合单任务）的绑定，只能走
+     * startDelivery / 合单起飞 / markDelivered（通用单个接口的送达会转给它）。
+     *
+     * @return 不允许时的提示，允许时返回 null
+     */
+    private String droneOnlyTransitionMessage(Order order, OrderStatus target) {
+        if (order.getDeliverMethod() != DeliverMethod.DRONE) {
+            return null;
+        }
+        if (target == OrderStatus.SHIPPED) {
+            return "无人机订单请使用起飞接口";
+        }
+        if (target == OrderStatus.DELIVERED) {
+            // 单个订单的通用接口会转给 deliver；批量接口不处理任务航段
+            return "无人机订单请逐单确认送达";
         }
+        return null;
+    }
+
+    private String illegalTransitionMessage(OrderStatus from, OrderStatus to) {
+        return "订单状态不能从「" + from.getLabel() + "」变为「" + to.getLabel() + "」";
     }
 
     // ============================================================
     // 工具方法：状态事件
     // ============================================================
 
-    private void createStatusEvent(Long orderId, OrderStatus status, String note) {
+    private OrderStatusEvent createStatusEvent(Long orderId, OrderStatus status, String note) {
+        return statusEventRepository.save(newStatusEvent(orderId, status, note, Instant.now()));
+    }
+
+    /**
+     * 构造尚未落库的状态事件，由调用方单条保存或批量写入。
+     */
+    private static OrderStatusEvent newStatusEvent(Long orderId, OrderStatus status, String note, Instant now) {
         OrderStatusEvent e = new OrderStatusEvent();
         e.setOrderId(orderId);
         e.setCode(status);
-        e.setOccurredAt(Instant.now());
+        e.setOccurredAt(now);
         e.setNote(note);
-        e.setCreatedAt(Instant.now());
-        statusEventRepository.save(e);
+        e.setCreatedAt(now);
+        return e;
+    }
+
+    /**
+     * 发布订单变化事件，监听方（详情缓存等）在事务提交后处理。
+     */
+    private void publishChanged(Order order, OrderStatus previousStatus, OrderStatusEvent statusEvent) {
+        eventPublisher.publishEvent(new OrderChangedEvent(
+                order.getId(), order.getCustomerId(), order.getCanteenId(),
+                previousStatus, order.getStatus(), statusEvent));
     }
 
     // ============================================================
-    // 工具方法：DTO 映射
+    // 工具方法：游标分页
     // ============================================================
 
-    private OrderDto.OrderSummary toOrderSummary(Order o) {
-        OrderDto.OrderSummary dto = new OrderDto.OrderSummary();
-        dto.setId(o.getId());
-        dto.setCustomerId(o.getCustomerId());
-        dto.setCanteenId(o.getCanteenId());
-        dto.setStatus(o.getStatus());
-        dto.setStatusLabel(o.getStatus().getLabel());
-        dto.setDeliveryMethod(o.getDeliverMethod());
-        dto.setAmountCent(o.getAmountTotal());
-        dto.setDeliveryAddress(o.getAddress());
-        ZoneId zone = ZoneId.systemDefault();
-        dto.setCreatedAt(o.getCreatedAt() == null ? null :
-                LocalDateTime.ofInstant(o.getCreatedAt(), zone));
-        dto.setUpdatedAt(o.getUpdatedAt() == null ? null :
-                LocalDateTime.ofInstant(o.getUpdatedAt(), zone));
+    private static final int MAX_CURSOR_PAGE_SIZE = 100;
 
+    private int normalizeCursorPageSize(int size) {
+        return Math.max(1, Math.min(size, MAX_CURSOR_PAGE_SIZE));
+    }
 
-        // 额外查用户 / 食堂名称（可做缓存优化）
-        userRepository.findById(o.getCustomerId()).ifPresent(u -> {
-            dto.setCustomerName(u.getDisplayName());
-        });
-        canteenRepository.findById(o.getCanteenId()).ifPresent(c -> {
-            dto.setCanteenName(c.getName());
-        });
+    /**
+     * 多查 1 条用来判断是否还有下一页，游标取本页最后一条的 (createdAt, id)。
+     */
+    private OrderDto.OrderCursorPage toCursorPage(List<OrderSummaryView> rows, int limit) {
+        boolean hasMore = rows.size() > limit;
+        List<OrderSummaryView> pageRows = hasMore ? rows.subList(0, limit) : rows;
+
+        OrderDto.OrderCursorPage page = new OrderDto.OrderCursorPage();
+        page.setItems(pageRows.stream().map(this::toOrderSummary).collect(Collectors.toList()));
+        page.setHasMore(hasMore);
+        if (hasMore) {
+            OrderSummaryView last = pageRows.get(pageRows.size() - 1);
+            page.setNextCursor(encodeCursor(last.getCreatedAt(), last.getId()));
+        }
+        return page;
+    }
+
+    /**
+     * 游标格式：base64url("epochSecond:nano:id")，对前端不透明。
+     * 游标查询只返回 createdAt 非空的行，这里一定能编码出游标。
+     */
+    private String encodeCursor(Instant createdAt, Long id) {
+        String raw = createdAt.getEpochSecond() + ":" + createdAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
 
-        // 用明细填充一些冗余信息
-        OrderItem first = orderItemRepository.findFirstByOrderIdOrderByIdAsc(o.getId());
-        if (first != null) {
-            dto.setFirstFoodName(first.getFoodName());
+    /**
+     * cursor 为空时返回 null（表示第一页）。
+     */
+    private CursorPosition decodeCursor(String cursor) {
+        if (cursor == null || cursor.isBlank()) {
+            return null;
         }
-        dto.setTotalItemCount(orderItemRepository.sumQtyByOrderId(o.getId()));
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = raw.split(":");
+            Instant createdAt = Instant.ofEpochSecond(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+            return new CursorPosition(createdAt, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw BizException.badRequest("分页游标不合法");
+        }
+    }
 
+    private record CursorPosition(Instant createdAt, Long id) {
+    }
+
+    // ============================================================
+    // 工具方法：DTO 映射
+    // ============================================================
+
+    private OrderDto.OrderSummary toOrderSummary(OrderSummaryView v) {
+        OrderDto.OrderSummary dto = new OrderDto.OrderSummary();
+        dto.setId(v.getId());
+        dto.setCustomerId(v.getCustomerId());
+        dto.setCustomerName(v.getCustomerName());
+        dto.setCanteenId(v.getCanteenId());
+        dto.setCanteenName(v.getCanteenName());
+        dto.setStatus(v.getStatus());
+        dto.setStatusLabel(v.getStatus().getLabel());
+        dto.setDeliveryMethod(v.getDeliverMethod());
+        dto.setAmountCent(v.getAmountTotal());
+        dto.setDeliveryAddress(v.getAddress());
+        // 用明细填充的冗余信息已在同一条查询中取出
+        dto.setFirstFoodName(v.getFirstFoodName());
+        dto.setTotalItemCount(v.getTotalItemCount() == null ? 0 : v.getTotalItemCount().intValue());
+        dto.setCreatedAt(toLocalDateTime(v.getCreatedAt()));
+        dto.setUpdatedAt(toLocalDateTime(v.getUpdatedAt()));
         return dto;
     }
 
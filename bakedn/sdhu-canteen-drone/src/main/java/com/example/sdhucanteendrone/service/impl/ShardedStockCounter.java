@@ -0,0 +1,273 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * 单个菜品的内存库存计数器。
+ * <p>
+ * 可售份数拆成 N 个分片（普通菜品 N = 1，就是一个 CAS 计数器；限时抢购的爆款按 CPU 核数拆分），
+ * 每个线程固定从自己的"主分片"扣减，主分片不够时依次从其他分片"偷"，偷不齐就全部退回，
+ * 所以分片之和永远不会小于 0，不会超卖。售罄时所有分片都是 0，扫一遍即可拒绝，不碰数据库。
+ * <p>
+ * 每个分片的 available / pendingDelta 放在同一个 64 字节槽位里，不同分片不共享缓存行，
+ * 互不失效。{@link #drainPending()} 汇总各分片的 pendingDelta 回写 foods.stock。
+ * <p>
+ * 切换分片数时（开启 / 关闭抢购）先把旧分片逐个封存为 {@link #SEALED}，
+ * 把余量合并到新分片后再发布；期间读到 SEALED 的线程自旋等待新分片。
+ * 管理端重置库存（{@link #reset(int)}）同样封存旧分片，再发布按新值初始化、净变化量为 0 的分片。
+ * 切换、重置、汇总净变化量三者互斥（同一把对象锁）。
+ */
+final class ShardedStockCounter {
+
+    /** 每个分片占 16 个 int（64 字节）：[0] 为 available，[1] 为 pendingDelta */
+    private static final int STRIDE = 16;
+    private static final int PENDING = 1;
+
+    /** 分片已封存，余量已转移到新分片 */
+    private static final int SEALED = -1;
+
+    private static final int TAKEN = 0;
+    private static final int INSUFFICIENT = 1;
+    private static final int RETRY = 2;
+
+    private volatile Shards shards;
+
+    /**
+     * 换下来的各代旧分片：封存前已扣减的线程可能还没记上 pendingDelta，回写时逐代汇总。
+     * 无法确定某一代何时不再有在途线程，所以不丢弃；只在切换分片数（开关抢购）时增加一代，
+     * 重置库存时清空。
+     */
+    private List<Shards> retired = new ArrayList<>();
+
+    ShardedStockCounter(int stock, int shardCount) {
+        this.shards = new Shards(shardCount, Math.max(stock, 0));
+    }
+
+    int shardCount() {
+        return shards.count;
+    }
+
+    /**
+     * 扣减 qty 份；库存不足返回 false，不做任何扣减。
+     */
+    boolean tryTake(int qty) {
+        while (true) {
+            Shards s = shards;
+            int home = s.home();
+            int r = take(s, home, qty);
+            if (r == TAKEN) {
+                s.cells.addAndGet(home * STRIDE + PENDING, -qty);
+                return true;
+            }
+            if (r == INSUFFICIENT) {
+                return false;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * 归还 qty 份（加到当前线程的主分片）。
+     */
+    void give(int qty) {
+        while (true) {
+            Shards s = shards;
+            int home = s.home();
+            if (add(s, home, qty)) {
+                s.cells.addAndGet(home * STRIDE + PENDING, qty);
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * 当前可售份数（各分片之和，并发扣减时为近似值）。
+     */
+    int available() {
+        Shards s = shards;
+        int sum = 0;
+        for (int i = 0; i < s.count; i++) {
+            int v = s.cells.get(i * STRIDE);
+            if (v > 0) {
+                sum += v;
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * 取走尚未回写的净变化量（含已换下的旧分片）。
+     */
+    synchronized int drainPending() {
+        int delta = shards.drainPending();
+        for (Shards old : retired) {
+            delta += old.drainPending();
+        }
+        return delta;
+    }
+
+    /**
+     * 回写失败时把净变化量加回去，下一轮重试。
+     */
+    void addPending(int delta) {
+        shards.cells.addAndGet(PENDING, delta);
+    }
+
+    /**
+     * 调整分片数；余量原样保留，未回写的净变化量不受影响。
+     */
+    synchronized void reshard(int shardCount) {
+        Shards old = shards;
+        if (old.count == shardCount) {
+            return;
+        }
+        Shards next = new Shards(shardCount, seal(old));
+        retired.add(old);
+        shards = next;
+    }
+
+    /**
+     * 管理端设置库存绝对值：可售份数改为 stock，尚未回写的净变化量（含旧分片）作废，分片数不变。
+     * 封存之后才记账的在途扣减落在旧分片上，随旧分片一起丢弃。
+     */
+    synchronized void reset(int stock) {
+        Shards old = shards;
+        seal(old);
+        retired = new ArrayList<>();
+        shards = new Shards(old.count, Math.max(stock, 0));
+    }
+
+    // ============================================================
+    // 工具方法
+    // ============================================================
+
+    /**
+     * 把各分片封存为 SEALED，返回封存前的余量之和。只在持有对象锁时调用，
+     * getAndSet 拿到的一定是非负余量。
+     */
+    private static int seal(Shards s) {
+        int total = 0;
+        for (int i = 0; i < s.count; i++) {
+            total += s.cells.getAndSet(i * STRIDE, SEALED);
+        }
+        return total;
+    }
+
+    private int take(Shards s, int home, int qty) {
+        // 快路径：主分片够扣
+        int base = home * STRIDE;
+        while (true) {
+            int v = s.cells.get(base);
+            if (v == SEALED) {
+                return RETRY;
+            }
+            if (v < qty) {
+                break;
+            }
+            if (s.cells.compareAndSet(base, v, v - qty)) {
+                return TAKEN;
+            }
+        }
+        if (s.count == 1) {
+            return INSUFFICIENT;
+        }
+
+        // 慢路径：从各分片凑齐，凑不齐全部退回
+        int[] takenFrom = new int[s.count];
+        int remaining = qty;
+        for (int k = 0; k < s.count && remaining > 0; k++) {
+            int idx = (home + k) % s.count;
+            int offset = idx * STRIDE;
+            while (remaining > 0) {
+                int v = s.cells.get(offset);
+                if (v == SEALED) {
+                    undo(takenFrom);
+                    return RETRY;
+                }
+                if (v == 0) {
+                    break;
+                }
+                int t = Math.min(v, remaining);
+                if (s.cells.compareAndSet(offset, v, v - t)) {
+                    takenFrom[idx] += t;
+                    remaining -= t;
+                }
+            }
+        }
+        if (remaining == 0) {
+            return TAKEN;
+        }
+        undo(takenFrom);
+        return INSUFFICIENT;
+    }
+
+    /**
+     * 退回凑单时已扣的份数。原分片可能已被封存，统一加到当前分片上，总量不变。
+     */
+    private void undo(int[] takenFrom) {
+        int total = 0;
+        for (int t : takenFrom) {
+            total += t;
+        }
+        if (total == 0) {
+            return;
+        }
+        while (true) {
+            Shards s = shards;
+            if (add(s, s.home(), total)) {
+                return;
+            }
+            Thread.onSpinWait();
+        }
+    }
+
+    private static boolean add(Shards s, int idx, int qty) {
+        int offset = idx * STRIDE;
+        while (true) {
+            int v = s.cells.get(offset);
+            if (v == SEALED) {
+                return false;
+            }
+            if (s.cells.compareAndSet(offset, v, v + qty)) {
+                return true;
+            }
+        }
+    }
+
+    private static final class Shards {
+
+        private final int count;
+        private final AtomicIntegerArray cells;
+
+        private Shards(int count, int stock) {
+            this.count = Math.max(count, 1);
+            this.cells = new AtomicIntegerArray(this.count * STRIDE);
+            // 余量平均分到各分片，除不尽的部分给前几个分片
+            for (int i = 0; i < this.count; i++) {
+                cells.set(i * STRIDE, stock / this.count + (i < stock % this.count ? 1 : 0));
+            }
+        }
+
+        /**
+         * 当前线程的主分片：线程 id 打散后取模，同一线程总落在同一个分片上。
+         */
+        private int home() {
+            if (count == 1) {
+                return 0;
+            }
+            long h = Thread.currentThread().getId() * 0x9E3779B97F4A7C15L;
+            return (int) ((h >>> 33) % count);
+        }
+
+        private int drainPending() {
+            int sum = 0;
+            for (int i = 0; i < count; i++) {
+                sum += cells.getAndSet(i * STRIDE + PENDING, 0);
+            }
+            return sum;
+        }
+    }
+}
@@ -0,0 +1,277 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.repository.FoodBatchRepository;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.service.StockReservationService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Collectors;
+
+/**
+ * 内存库存账本。
+ * <p>
+ * 每个菜品一个计数器：available 为当前可售份数（CAS 扣减，无锁），
+ * pendingDelta 为尚未回写数据库的净变化量。计数器在第一次用到时按 foods.stock 初始化，
+ * 之后以内存为准，foods.stock 只由 {@link #flush()} 追平。
+ * <p>
+ * 开启限时抢购（foods.flash_sale）的菜品把余量拆成多个分片，见 {@link ShardedStockCounter}。
+ * <p>
+ * 管理端重置库存与回写互斥（{@link #flushLock}）：重置从调用起持有锁直到事务结束，
+ * 期间的回写轮次直接跳过，所以已取出的净变化量不会叠加到管理端写入的绝对值上；
+ * 提交后在计数器内部把可售份数设为新值、净变化量清零。
+ * <p>
+ * 库存改由应用维护后，数据库里 order_items 插入 / 订单取消时自动扣减 / 回滚 foods.stock 的触发器
+ * 必须删除（sql/drop_stock_triggers.sql），否则会重复扣减；启动时检查，仍存在则拒绝启动。
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class StockReservationServiceImpl implements StockReservationService {
+
+    private final FoodRepository foodRepository;
+    private final FoodBatchRepository foodBatchRepository;
+
+    /**
+     * 限时抢购菜品的分片数，0 表示按 CPU 核数
+     */
+    @Value("${canteen.stock.flash-shards:0}")
+    private int flashShards = 0;
+
+    /**
+     * 旧库存触发器仍存在时是否拒绝启动；false 只记错误日志
+     */
+    @Value("${canteen.stock.fail-on-legacy-triggers:true}")
+    private boolean failOnLegacyTriggers = true;
+
+    private final ConcurrentHashMap<Long, ShardedStockCounter> counters = new ConcurrentHashMap<>();
+
+    /** 回写一轮（取出净变化量 + 写库）与管理端重置互斥 */
+    private final ReentrantLock flushLock = new ReentrantLock();
+
+    // ============================================================
+    // 启动检查
+    // ============================================================
+
+    /**
+     * 旧的库存触发器还在时，下单会在内存和数据库里各扣一次。
+     * 在定时回写开始之前检查；查不了 information_schema（非 MySQL）时跳过。
+     */
+    @PostConstruct
+    public void checkLegacyTriggers() {
+        List<String> triggers;
+        try {
+            triggers = foodBatchRepository.findStockTriggers();
+        } catch (DataAccessException e) {
+            log.warn("无法检查库存触发器，已跳过: {}", e.getMessage());
+            return;
+        }
+        if (triggers.isEmpty()) {
+            return;
+        }
+        String drops = triggers.stream()
+                .map(t -> "DROP TRIGGER IF EXISTS `" + t + "`;")
+                .collect(Collectors.joining(" "));
+        String message = "数据库仍有自动扣减 / 回滚 foods.stock 的触发器 " + triggers
+                + "，库存会重复扣减；请执行 sql/drop_stock_triggers.sql 或: " + drops;
+        if (failOnLegacyTriggers) {
+            throw new IllegalStateException(message);
+        }
+        log.error(message);
+    }
+
+    // ============================================================
+    // 预占 / 归还
+    // ============================================================
+
+    @Override
+    public Long tryReserve(Map<Long, Integer> quantities) {
+        List<Map.Entry<Long, Integer>> reserved = new ArrayList<>(quantities.size());
+        for (Map.Entry<Long, Integer> e : quantities.entrySet()) {
+            if (!counter(e.getKey()).tryTake(e.getValue())) {
+                // 全部成功或全部不扣：把已扣的退回去
+                reserved.forEach(r -> counter(r.getKey()).give(r.getValue()));
+                return e.getKey();
+            }
+            reserved.add(e);
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Long, Integer> copy = Map.copyOf(quantities);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        copy.forEach((foodId, qty) -> counter(foodId).give(qty));
+                    }
+                }
+            });
+        }
+        return null;
+    }
+
+    @Override
+    public void release(Map<Long, Integer> quantities) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            Map<Long, Integer> copy = Map.copyOf(quantities);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    copy.forEach((foodId, qty) -> counter(foodId).give(qty));
+                }
+            });
+            return;
+        }
+        quantities.forEach((foodId, qty) -> counter(foodId).give(qty));
+    }
+
+    @Override
+    public void resetStock(Long foodId, int stock) {
+        // 管理端设置的是绝对值，未回写的净变化量一并作废
+        flushLock.lock();
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    resetCounter(foodId, stock);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    flushLock.unlock();
+                }
+            });
+            return;
+        }
+        try {
+            resetCounter(foodId, stock);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    @Override
+    public void setFlashSale(Long foodId, boolean enabled) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    reshard(foodId, enabled);
+                }
+            });
+            return;
+        }
+        reshard(foodId, enabled);
+    }
+
+    @Override
+    public Integer getAvailable(Long foodId) {
+        ShardedStockCounter c = counters.get(foodId);
+        return c == null ? null : c.available();
+    }
+
+    // ============================================================
+    // 回写数据库
+    // ============================================================
+
+    @Override
+    @Scheduled(fixedDelayString = "${canteen.stock.flush-interval-ms:1000}")
+    public int flush() {
+        // 管理端正在重置库存：本轮跳过，净变化量留到下一轮
+        if (!flushLock.tryLock()) {
+            return 0;
+        }
+        try {
+            return flushLocked();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private int flushLocked() {
+        Map<Long, Integer> deltas = new HashMap<>();
+        counters.forEach((foodId, c) -> {
+            int delta = c.drainPending();
+            if (delta != 0) {
+                deltas.put(foodId, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            foodBatchRepository.batchAddStock(deltas);
+        } catch (RuntimeException ex) {
+            // 回写失败：把变化量加回去，下一轮重试
+            deltas.forEach((foodId, delta) -> {
+                ShardedStockCounter c = counters.get(foodId);
+                if (c != null) {
+                    c.addPending(delta);
+                }
+            });
+            log.warn("库存回写失败，将在下一轮重试: {}", ex.getMessage());
+            return 0;
+        }
+        return deltas.size();
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        flush();
+    }
+
+    // ============================================================
+    // 工具方法
+    // ============================================================
+
+    private ShardedStockCounter counter(Long foodId) {
+        ShardedStockCounter c = counters.get(foodId);
+        if (c != null) {
+            return c;
+        }
+        // 不在 computeIfAbsent 里查库，避免持有 map 内部锁做 IO
+        ShardedStockCounter created = foodRepository.findById(foodId)
+                .map(f -> new ShardedStockCounter(f.getStock(), shardCount(Boolean.TRUE.equals(f.getFlashSale()))))
+                .orElseGet(() -> new ShardedStockCounter(0, 1));
+        ShardedStockCounter existing = counters.putIfAbsent(foodId, created);
+        return existing == null ? created : existing;
+    }
+
+    private void resetCounter(Long foodId, int stock) {
+        // 尚未加载的菜品不用处理，下次用到时按已提交的 foods.stock 初始化；
+        // 已加载的在原计数器上重置，不换对象，在途的扣减 / 归还不会落到被丢弃的计数器上
+        ShardedStockCounter c = counters.get(foodId);
+        if (c != null) {
+            c.reset(stock);
+        }
+    }
+
+    private void reshard(Long foodId, boolean enabled) {
+        ShardedStockCounter c = counters.get(foodId);
+        if (c != null) {
+            c.reshard(shardCount(enabled));
+        }
+    }
+
+    private int shardCount(boolean flashSale) {
+        if (!flashSale) {
+            return 1;
+        }
+        return flashShards > 0 ? flashShards : Runtime.getRuntime().availableProcessors();
+    }
+}
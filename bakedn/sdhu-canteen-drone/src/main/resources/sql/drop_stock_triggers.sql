@@ -0,0 +1,23 @@
+-- 删除旧的库存触发器
+-- 库存改由应用内存账本维护（下单预占、取消归还、定时批量回写 foods.stock），
+-- order_items 插入时扣减 / 订单取消时回滚 foods.stock 的触发器必须删除，否则每单会扣两次。
+-- 刷新 orders.amount_total 的触发器不改 foods，保留。
+-- 应用启动时用同样的条件检查，仍有匹配的触发器则拒绝启动（canteen.stock.fail-on-legacy-triggers）。
+
+-- 1. 列出要删除的触发器，并生成对应的 DROP 语句
+--    （MySQL 不支持用预处理语句执行 DROP TRIGGER，各环境的触发器名可能不同，以这里查出的为准）
+SELECT TRIGGER_NAME,
+       EVENT_OBJECT_TABLE,
+       ACTION_TIMING,
+       EVENT_MANIPULATION,
+       CONCAT('DROP TRIGGER IF EXISTS `', TRIGGER_NAME, '`;') AS drop_statement
+FROM information_schema.TRIGGERS
+WHERE TRIGGER_SCHEMA = DATABASE()
+  AND EVENT_OBJECT_TABLE IN ('order_items', 'orders')
+  AND LOWER(ACTION_STATEMENT) LIKE '%foods%'
+  AND LOWER(ACTION_STATEMENT) LIKE '%stock%';
+
+-- 2. 逐条执行上面 drop_statement 列中的语句，例如：
+-- DROP TRIGGER IF EXISTS `<trigger_name>`;
+
+-- 3. 再执行一次第 1 步，结果应为空
@@ -0,0 +1,113 @@
+package com.example.sdhucanteendrone.controller;
+
+import com.example.sdhucanteendrone.dto.CanteenDto;
+import com.example.sdhucanteendrone.repository.CanteenRepository;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.repository.MenuCategoryRepository;
+import com.example.sdhucanteendrone.service.CanteenService;
+import com.example.sdhucanteendrone.service.DeliveryEtaService;
+import com.example.sdhucanteendrone.service.MenuService;
+import com.example.sdhucanteendrone.service.MenuTransferService;
+import com.example.sdhucanteendrone.service.RouteService;
+import com.example.sdhucanteendrone.service.event.CanteenChangedEvent;
+import com.example.sdhucanteendrone.service.event.MenuChangedEvent;
+import com.example.sdhucanteendrone.service.impl.ContentVersionServiceImpl;
+import com.example.sdhucanteendrone.service.impl.MenuSnapshotServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * 条件请求：If-None-Match 命中时直接 304，不调用任何 service / repository（也就没有任何 SQL）；
+ * 写操作提交后 ETag 改变，旧 ETag 拿到 200。
+ */
+class ConditionalGetTest {
+
+    private static final Long CANTEEN = 1L;
+
+    private CanteenRepository canteenRepository;
+    private MenuCategoryRepository categoryRepository;
+    private FoodRepository foodRepository;
+    private CanteenService canteenService;
+    private MenuSnapshotServiceImpl menuSnapshotService;
+    private ContentVersionServiceImpl contentVersionService;
+    private MockMvc mvc;
+
+    @BeforeEach
+    void setUp() {
+        canteenRepository = mock(CanteenRepository.class);
+        categoryRepository = mock(MenuCategoryRepository.class);
+        foodRepository = mock(FoodRepository.class);
+        canteenService = mock(CanteenService.class);
+        menuSnapshotService = new MenuSnapshotServiceImpl(canteenRepository, categoryRepository, foodRepository);
+        contentVersionService = new ContentVersionServiceImpl(menuSnapshotService);
+
+        mvc = MockMvcBuilders.standaloneSetup(
+                new MenuController(mock(MenuService.class), menuSnapshotService, contentVersionService,
+                        mock(MenuTransferService.class)),
+                new CanteenController(canteenService, mock(RouteService.class), mock(DeliveryEtaService.class),
+                        contentVersionService)
+        ).build();
+    }
+
+    @Test
+    void menuNotModifiedWithoutTouchingRepositories() throws Exception {
+        String etag = contentVersionService.menuETag(CANTEEN);
+
+        mvc.perform(get("/api/canteens/{id}/menu", CANTEEN).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, etag));
+        mvc.perform(get("/api/canteens/{id}/menu/categories", CANTEEN).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+
+        verifyNoInteractions(canteenRepository, categoryRepository, foodRepository);
+    }
+
+    @Test
+    void menuChangeInvalidatesETag() throws Exception {
+        when(canteenRepository.existsById(CANTEEN)).thenReturn(true);
+        when(categoryRepository.findByCanteenId(CANTEEN)).thenReturn(List.of());
+        when(foodRepository.findByCanteenIdAndOnShelfTrue(CANTEEN)).thenReturn(List.of());
+        String before = contentVersionService.menuETag(CANTEEN);
+
+        menuSnapshotService.onMenuChanged(new MenuChangedEvent(CANTEEN));
+
+        String after = contentVersionService.menuETag(CANTEEN);
+        assertNotEquals(before, after);
+        mvc.perform(get("/api/canteens/{id}/menu", CANTEEN).header(HttpHeaders.IF_NONE_MATCH, before))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, after));
+    }
+
+    @Test
+    void canteenDetailNotModifiedUntilCanteenChanges() throws Exception {
+        String etag = contentVersionService.canteenETag(CANTEEN);
+
+        mvc.perform(get("/api/canteens/{id}", CANTEEN).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isNotModified());
+        mvc.perform(get("/api/canteens").header(HttpHeaders.IF_NONE_MATCH, contentVersionService.canteenListETag()))
+                .andExpect(status().isNotModified());
+        verifyNoInteractions(canteenService);
+
+        contentVersionService.onCanteenChanged(new CanteenChangedEvent(CANTEEN));
+        when(canteenService.getCanteenDetail(CANTEEN)).thenReturn(new CanteenDto.CanteenDetail());
+
+        mvc.perform(get("/api/canteens/{id}", CANTEEN).header(HttpHeaders.IF_NONE_MATCH, etag))
+                .andExpect(status().isOk());
+        verify(canteenService, times(1)).getCanteenDetail(CANTEEN);
+    }
+}
@@ -0,0 +1,33 @@
+package com.example.sdhucanteendrone.entity.enums;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 订单状态流转表。
+ */
+class OrderStatusTest {
+
+    @Test
+    void happyPathIsAllowed() {
+        assertTrue(OrderStatus.PENDING.canTransitionTo(OrderStatus.CONFIRMED));
+        assertTrue(OrderStatus.CONFIRMED.canTransitionTo(OrderStatus.PACKED));
+        assertTrue(OrderStatus.PACKED.canTransitionTo(OrderStatus.SHIPPED));
+        assertTrue(OrderStatus.SHIPPED.canTransitionTo(OrderStatus.DELIVERED));
+        assertTrue(OrderStatus.DELIVERED.canTransitionTo(OrderStatus.COMPLETED));
+    }
+
+    @Test
+    void skipsBackwardsAndTerminalTransitionsAreRejected() {
+        assertFalse(OrderStatus.PENDING.canTransitionTo(OrderStatus.SHIPPED));
+        assertFalse(OrderStatus.PACKED.canTransitionTo(OrderStatus.CONFIRMED));
+        assertFalse(OrderStatus.SHIPPED.canTransitionTo(OrderStatus.CANCELED));
+        assertFalse(OrderStatus.PENDING.canTransitionTo(OrderStatus.PENDING));
+        assertFalse(OrderStatus.PENDING.canTransitionTo(null));
+        assertTrue(OrderStatus.CANCELED.isTerminal());
+        assertTrue(OrderStatus.COMPLETED.isTerminal());
+        assertFalse(OrderStatus.DELIVERED.isTerminal());
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.sdhucanteendrone.repository;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 统计 JDBC 语句数的 JdbcTemplate：每创建一个 Statement 计一次（一次批量执行只算一次），
+ * 与 Hibernate 统计里的 prepareStatementCount 口径一致，可以直接对比两条写入路径。
+ */
+class CountingJdbcTemplate extends JdbcTemplate {
+
+    private final AtomicLong statements = new AtomicLong();
+
+    CountingJdbcTemplate(DataSource dataSource) {
+        super(dataSource);
+    }
+
+    long statements() {
+        return statements.get();
+    }
+
+    void reset() {
+        statements.set(0);
+    }
+
+    @Override
+    protected void applyStatementSettings(Statement stmt) throws SQLException {
+        statements.incrementAndGet();
+        super.applyStatementSettings(stmt);
+    }
+}
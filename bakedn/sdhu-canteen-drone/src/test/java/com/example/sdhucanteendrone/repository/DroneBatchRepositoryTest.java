@@ -0,0 +1,55 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.Drone;
+import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 遥测批量回写：updated_at 记服务端回写时间，缺省字段保持原值。
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+class DroneBatchRepositoryTest {
+
+    @Autowired
+    private DroneRepository droneRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void updatedAtIsTheFlushTimeNotTheDeviceClock() {
+        Drone d = new Drone();
+        d.setCode("DRN-1");
+        d.setModel("X1");
+        d.setMaxPayloadKg(2.0);
+        d.setBattery(90);
+        d.setStatus(DroneStatus.IDLE);
+        d.setLocation("机库");
+        d.setCreatedAt(Instant.now());
+        d.setUpdatedAt(Instant.now());
+        Long id = droneRepository.saveAndFlush(d).getId();
+
+        Instant flushedAt = Instant.now().plusSeconds(5).truncatedTo(ChronoUnit.MILLIS);
+        new DroneBatchRepository(new JdbcTemplate(dataSource)).batchUpdateTelemetry(
+                List.of(new DroneBatchRepository.TelemetryRow(id, 80, 36.0, 117.0, null)), flushedAt);
+        entityManager.clear();
+
+        Drone saved = droneRepository.findById(id).orElseThrow();
+        assertEquals(flushedAt, saved.getUpdatedAt());
+        assertEquals(80, saved.getBattery());
+        assertEquals(36.0, saved.getLatitude());
+        assertEquals("机库", saved.getLocation());
+    }
+}
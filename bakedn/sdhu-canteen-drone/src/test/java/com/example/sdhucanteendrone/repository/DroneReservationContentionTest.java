@@ -0,0 +1,226 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.Drone;
+import com.example.sdhucanteendrone.entity.Order;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 无人机预占的并发安全性：同一架无人机任何时候最多绑定一个订单。
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class DroneReservationContentionTest {
+
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 20;
+
+    @Autowired
+    private DroneRepository droneRepository;
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteAll();
+        droneRepository.deleteAll();
+    }
+
+    @Test
+    void manyOrdersRacingForOneDroneHaveExactlyOneWinner() throws Exception {
+        Long droneId = newIdleDrone("D-1");
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        for (int round = 0; round < ROUNDS; round++) {
+            List<Long> orderIds = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                orderIds.add(newPackedOrder());
+            }
+
+            // 每个线程替一个订单预占同一架无人机，并在同一事务里绑定订单
+            AtomicInteger winners = race(i -> () -> tx.execute(s -> {
+                Long orderId = orderIds.get(i);
+                if (droneRepository.bindOrder(droneId, DroneStatus.IDLE, DroneStatus.RESERVED,
+                        orderId, Instant.now()) == 0) {
+                    return false;
+                }
+                return orderRepository.assignDroneIfUnassigned(orderId, droneId, Instant.now()) == 1;
+            }));
+            assertEquals(1, winners.get(), "round " + round);
+
+            Drone drone = droneRepository.findById(droneId).orElseThrow();
+            assertEquals(DroneStatus.RESERVED, drone.getStatus());
+            List<Long> bound = orderIds.stream()
+                    .filter(id -> droneId.equals(orderRepository.findById(id).orElseThrow().getDroneId()))
+                    .toList();
+            assertEquals(List.of(drone.getCurrentOrderId()), bound);
+
+            // 释放后进入下一轮
+            assertEquals(Integer.valueOf(1), tx.execute(s -> droneRepository.unbindOrder(droneId, drone.getCurrentOrderId(),
+                    DroneStatus.RESERVED, DroneStatus.IDLE, Instant.now())));
+        }
+    }
+
+    @Test
+    void losingDroneIsRolledBackWhenOrderIsTakenFirst() throws Exception {
+        List<Long> droneIds = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            droneIds.add(newIdleDrone("D-" + i));
+        }
+        Long orderId = newPackedOrder();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // 多架无人机抢同一个订单：订单侧绑定失败时抛异常，连同无人机预占一起回滚
+        AtomicInteger winners = race(i -> () -> tx.execute(s -> {
+            Long droneId = droneIds.get(i);
+            if (droneRepository.bindOrder(droneId, DroneStatus.IDLE, DroneStatus.RESERVED,
+                    orderId, Instant.now()) == 0) {
+                return false;
+            }
+            if (orderRepository.assignDroneIfUnassigned(orderId, droneId, Instant.now()) == 0) {
+                throw new IllegalStateException("order already assigned");
+            }
+            return true;
+        }));
+        assertEquals(1, winners.get());
+
+        Long winner = orderRepository.findById(orderId).orElseThrow().getDroneId();
+        for (Long droneId : droneIds) {
+            Drone d = droneRepository.findById(droneId).orElseThrow();
+            if (droneId.equals(winner)) {
+                assertEquals(DroneStatus.RESERVED, d.getStatus());
+                assertEquals(orderId, d.getCurrentOrderId());
+            } else {
+                assertEquals(DroneStatus.IDLE, d.getStatus());
+                assertNull(d.getCurrentOrderId());
+            }
+        }
+    }
+
+    @Test
+    void startAndFinishRequireTheBoundOrder() {
+        Long droneId = newIdleDrone("D-X");
+        Long orderId = newPackedOrder();
+        Long otherOrderId = newPackedOrder();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        assertEquals(Integer.valueOf(1), tx.execute(s -> droneRepository.bindOrder(droneId, DroneStatus.IDLE,
+                DroneStatus.RESERVED, orderId, Instant.now())));
+        // 其它订单既不能起飞也不能释放这架无人机
+        assertEquals(Integer.valueOf(0), tx.execute(s -> droneRepository.advanceBoundOrder(droneId, otherOrderId,
+                DroneStatus.RESERVED, DroneStatus.IN_MISSION, Instant.now())));
+        assertEquals(Integer.valueOf(0), tx.execute(s -> droneRepository.unbindOrder(droneId, otherOrderId,
+                DroneStatus.RESERVED, DroneStatus.IDLE, Instant.now())));
+
+        assertEquals(Integer.valueOf(1), tx.execute(s -> droneRepository.advanceBoundOrder(droneId, orderId,
+                DroneStatus.RESERVED, DroneStatus.IN_MISSION, Instant.now())));
+        // 已起飞的无人机不会被超时释放
+        assertEquals(Integer.valueOf(0), tx.execute(s -> droneRepository.unbindOrder(droneId, orderId,
+                DroneStatus.RESERVED, DroneStatus.IDLE, Instant.now())));
+        assertEquals(Integer.valueOf(1), tx.execute(s -> droneRepository.unbindOrder(droneId, orderId,
+                DroneStatus.IN_MISSION, DroneStatus.IDLE, Instant.now())));
+
+        Drone d = droneRepository.findById(droneId).orElseThrow();
+        assertEquals(DroneStatus.IDLE, d.getStatus());
+        assertNull(d.getCurrentOrderId());
+        assertNull(d.getReservedAt());
+    }
+
+    @Test
+    void manualStatusChangeClearsBindingSoDroneCanBeReboundLater() {
+        Long droneId = newIdleDrone("D-M");
+        Long orderId = newPackedOrder();
+        Long nextOrderId = newPackedOrder();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        assertEquals(Integer.valueOf(1), tx.execute(s -> droneRepository.bindOrder(droneId, DroneStatus.IDLE,
+                DroneStatus.RESERVED, orderId, Instant.now())));
+        // 状态已被别人改过时不覆盖
+        assertEquals(Integer.valueOf(0), tx.execute(s -> droneRepository.updateStatusById(droneId,
+                DroneStatus.IN_MISSION, DroneStatus.MAINTENANCE, Instant.now())));
+        assertEquals(Integer.valueOf(1), tx.execute(s -> droneRepository.updateStatusById(droneId,
+                DroneStatus.RESERVED, DroneStatus.MAINTENANCE, Instant.now())));
+        assertEquals(Integer.valueOf(1), tx.execute(s -> droneRepository.updateStatusById(droneId,
+                DroneStatus.MAINTENANCE, DroneStatus.IDLE, Instant.now())));
+
+        assertEquals(Integer.valueOf(1), tx.execute(s -> droneRepository.bindOrder(droneId, DroneStatus.IDLE,
+                DroneStatus.RESERVED, nextOrderId, Instant.now())));
+        assertEquals(nextOrderId, droneRepository.findById(droneId).orElseThrow().getCurrentOrderId());
+    }
+
+        private AtomicInteger race(IntFunction<Supplier<Boolean>> attempts) throws Exception {
+        AtomicInteger winners = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            Supplier<Boolean> attempt = attempts.apply(i);
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    if (Boolean.TRUE.equals(attempt.get())) {
+                        winners.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    // 回滚或数据库报并发冲突都算失败的一方
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+        return winners;
+    }
+
+    private Long newIdleDrone(String code) {
+        Drone d = new Drone();
+        d.setCode(code);
+        d.setModel("M1");
+        d.setMaxPayloadKg(2.0);
+        d.setBattery(100);
+        d.setStatus(DroneStatus.IDLE);
+        d.setCreatedAt(Instant.now());
+        d.setUpdatedAt(Instant.now());
+        return droneRepository.save(d).getId();
+    }
+
+    private Long newPackedOrder() {
+        Order order = new Order();
+        order.setCustomerId(1L);
+        order.setCanteenId(1L);
+        order.setDeliverMethod(DeliverMethod.DRONE);
+        order.setStatus(OrderStatus.PACKED);
+        order.setAmountTotal(0);
+        order.setAddress("宿舍1栋-101");
+        order.setCreatedAt(Instant.now());
+        order.setUpdatedAt(Instant.now());
+        return orderRepository.save(order).getId();
+    }
+}
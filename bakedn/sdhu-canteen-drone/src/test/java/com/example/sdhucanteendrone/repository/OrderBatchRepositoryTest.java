@@ -0,0 +1,116 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.Order;
+import com.example.sdhucanteendrone.entity.OrderItem;
+import com.example.sdhucanteendrone.entity.OrderStatusEvent;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+
+/**
+ * 下单写明细和初始状态事件：逐行 JPA save 与 JDBC 批量写入的语句数对比（10 行购物车）。
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class OrderBatchRepositoryTest {
+
+    private static final int CART_LINES = 10;
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+    @Autowired
+    private OrderStatusEventRepository statusEventRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private DataSource dataSource;
+
+    @Test
+    void batchedCartIsTwoStatementsInsteadOfOnePerRow() {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        // 逐行：IDENTITY 主键，每个 save 立刻一条 insert
+        Long perRowOrder = newOrder();
+        stats.clear();
+        items(perRowOrder).forEach(orderItemRepository::save);
+        statusEventRepository.save(event(perRowOrder));
+        entityManager.flush();
+        long perRow = stats.getPrepareStatementCount();
+
+        // 批量：明细一批、事件一批
+        Long batchedOrder = newOrder();
+        CountingJdbcTemplate jdbc = new CountingJdbcTemplate(dataSource);
+        OrderBatchRepository batchRepository = new OrderBatchRepository(jdbc);
+        stats.clear();
+        batchRepository.batchInsertItems(items(batchedOrder));
+        OrderStatusEvent created = event(batchedOrder);
+        batchRepository.batchInsertStatusEvents(List.of(created));
+        long batched = jdbc.statements() + stats.getPrepareStatementCount();
+
+        System.out.printf("%d 行购物车：逐行写入 %d 条语句，批量写入 %d 条语句%n", CART_LINES, perRow, batched);
+        assertEquals(CART_LINES + 1, perRow);
+        assertEquals(2, batched);
+        // 事件 id 回填，SSE 推送要用
+        assertNotNull(created.getId());
+        entityManager.clear();
+        assertEquals(CART_LINES, orderItemRepository.findAll().stream()
+                .filter(i -> i.getOrderId().equals(batchedOrder)).count());
+    }
+
+    private Long newOrder() {
+        Order order = new Order();
+        order.setCustomerId(1L);
+        order.setCanteenId(1L);
+        order.setDeliverMethod(DeliverMethod.MANUAL);
+        order.setStatus(OrderStatus.PENDING);
+        order.setAmountTotal(0);
+        order.setAddress("宿舍1栋-101");
+        order.setCreatedAt(Instant.now());
+        order.setUpdatedAt(Instant.now());
+        return orderRepository.saveAndFlush(order).getId();
+    }
+
+    private List<OrderItem> items(Long orderId) {
+        List<OrderItem> items = new ArrayList<>(CART_LINES);
+        for (int i = 0; i < CART_LINES; i++) {
+            OrderItem item = new OrderItem();
+            item.setOrderId(orderId);
+            item.setFoodId((long) i + 1);
+            item.setFoodName("菜品" + i);
+            item.setUnitPrice(500);
+            item.setQuantity(1);
+            item.setCreatedAt(Instant.now());
+            items.add(item);
+        }
+        return items;
+    }
+
+    private OrderStatusEvent event(Long orderId) {
+        OrderStatusEvent e = new OrderStatusEvent();
+        e.setOrderId(orderId);
+        e.setCode(OrderStatus.PENDING);
+        e.setOccurredAt(Instant.now());
+        e.setCreatedAt(Instant.now());
+        return e;
+    }
+}
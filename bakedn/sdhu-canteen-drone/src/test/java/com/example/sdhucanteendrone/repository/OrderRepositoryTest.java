@@ -0,0 +1,310 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.Canteen;
+import com.example.sdhucanteendrone.entity.Order;
+import com.example.sdhucanteendrone.entity.OrderItem;
+import com.example.sdhucanteendrone.entity.User;
+import com.example.sdhucanteendrone.entity.enums.CanteenOpenStatus;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.entity.enums.UserRole;
+import com.example.sdhucanteendrone.entity.enums.UserStatus;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 订单列表页投影查询：一页的 SQL 条数与页大小无关，游标分页的语句与翻页深度无关。
+ */
+@DataJpaTest(properties = {
+        "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.properties.hibernate.generate_statistics=true"
+})
+class OrderRepositoryTest {
+
+    private static final int ORDER_COUNT = 60;
+    private static final int PAGE_SIZE = 20;
+    private static final int DEEP_PAGE = 1000;
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private OrderItemRepository orderItemRepository;
+    @Autowired
+    private UserRepository userRepository;
+    @Autowired
+    private CanteenRepository canteenRepository;
+    @Autowired
+    private EntityManager entityManager;
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+    @Autowired
+    private DataSource dataSource;
+
+    private Long canteenId;
+    private Long customerId;
+
+    @BeforeEach
+    void setUp() {
+        User user = new User();
+        user.setUsername("20250001");
+        user.setPasswordHash("x");
+        user.setRole(UserRole.CUSTOMER);
+        user.setStatus(UserStatus.ACTIVE);
+        user.setDisplayName("测试用户");
+        userRepository.save(user);
+        customerId = user.getId();
+
+        Canteen canteen = new Canteen();
+        canteen.setName("测试食堂");
+        canteen.setLocation("测试楼-1层");
+        canteen.setOpenStatus(CanteenOpenStatus.OPEN);
+        canteenRepository.save(canteen);
+        canteenId = canteen.getId();
+
+        for (int i = 0; i < ORDER_COUNT; i++) {
+            Order order = new Order();
+            order.setCustomerId(user.getId());
+            order.setCanteenId(canteenId);
+            order.setDeliverMethod(DeliverMethod.DRONE);
+            order.setStatus(OrderStatus.PENDING);
+            order.setAmountTotal(1000);
+            order.setAddress("宿舍1栋-101");
+            order.setCreatedAt(Instant.now().plusSeconds(i));
+            order.setUpdatedAt(order.getCreatedAt());
+            orderRepository.save(order);
+
+            for (int j = 0; j < 3; j++) {
+                OrderItem item = new OrderItem();
+                item.setOrderId(order.getId());
+                item.setFoodId((long) j + 1);
+                item.setFoodName("菜品" + j);
+                item.setUnitPrice(500);
+                item.setQuantity(j + 1);
+                item.setCreatedAt(Instant.now());
+                orderItemRepository.save(item);
+            }
+        }
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    @Test
+    void canteenSummaryPageFillsJoinedFields() {
+        Page<OrderSummaryView> page =
+                orderRepository.findCanteenOrderSummaries(canteenId, null, PageRequest.of(0, 10));
+
+        assertEquals(ORDER_COUNT, page.getTotalElements());
+        OrderSummaryView first = page.getContent().get(0);
+        assertEquals("测试用户", first.getCustomerName());
+        assertEquals("测试食堂", first.getCanteenName());
+        assertEquals("菜品0", first.getFirstFoodName());
+        assertEquals(6, first.getTotalItemCount().intValue());
+    }
+
+    @Test
+    void statementCountIsConstantRegardlessOfPageSize() {
+        long small = countStatements(5);
+        long large = countStatements(50);
+
+        assertEquals(small, large);
+        // 一条数据查询 + 一条 count
+        assertTrue(large <= 2, "statements per page: " + large);
+    }
+
+    @Test
+    void bulkStatusUpdateIsOneBatchAndSkipsConcurrentlyChangedOrders() {
+        List<Long> ids = orderRepository.findAll().stream().map(Order::getId).toList();
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        // findAll 已把订单放进持久化上下文，清掉后 findById 才会真正查库
+        entityManager.clear();
+
+        // 对照：逐单 findById + save，前 5 单顺便模拟"读取之后被别人改掉"
+        stats.clear();
+        for (Long id : ids.subList(0, 5)) {
+            Order order = orderRepository.findById(id).orElseThrow();
+            order.setStatus(OrderStatus.PACKED);
+            orderRepository.saveAndFlush(order);
+        }
+        long perOrderStatements = stats.getPrepareStatementCount();
+        entityManager.clear();
+
+        // 批量：每单一条带预期状态的条件 update，整批一次发出，不加锁
+        CountingJdbcTemplate jdbc = new CountingJdbcTemplate(dataSource);
+        OrderBatchRepository batchRepository = new OrderBatchRepository(jdbc);
+        Map<Long, OrderStatus> current = new LinkedHashMap<>();
+        ids.forEach(id -> current.put(id, OrderStatus.PENDING));
+        Set<Long> updated = batchRepository.batchCompareAndSetStatus(current, OrderStatus.CONFIRMED, Instant.now());
+
+        assertEquals(Set.copyOf(ids.subList(5, ORDER_COUNT)), updated);
+        assertEquals(1, jdbc.statements());
+        assertTrue(perOrderStatements >= 2 * 5, "per-order statements: " + perOrderStatements);
+        for (Order order : orderRepository.findAllById(ids)) {
+            assertEquals(updated.contains(order.getId()) ? OrderStatus.CONFIRMED : OrderStatus.PACKED,
+                    order.getStatus());
+        }
+    }
+
+    @Test
+    void cursorPagingWalksTiesWithoutGapsOrDuplicates() {
+        // 每 10 单共用同一个 createdAt，页边界会落在相同时间的中间
+        List<Long> ids = orderRepository.findAll().stream().map(Order::getId).sorted().toList();
+        Instant base = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        for (int i = 0; i < ids.size(); i++) {
+            entityManager.createNativeQuery("update orders set created_at = ?1, status = ?2 where id = ?3")
+                    .setParameter(1, base.plusSeconds(i / 10))
+                    .setParameter(2, (i % 2 == 0 ? OrderStatus.CONFIRMED : OrderStatus.PENDING).name())
+                    .setParameter(3, ids.get(i))
+                    .executeUpdate();
+        }
+        entityManager.clear();
+
+        // 期望顺序：createdAt 倒序，同一时间按 id 倒序
+        List<Long> expected = new ArrayList<>();
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            expected.add(ids.get(i));
+        }
+        assertEquals(expected, walk(null, 7));
+
+        List<Long> confirmed = new ArrayList<>();
+        for (int i = ids.size() - 1; i >= 0; i--) {
+            if (i % 2 == 0) {
+                confirmed.add(ids.get(i));
+            }
+        }
+        assertEquals(confirmed, walk(OrderStatus.CONFIRMED, 4));
+    }
+
+    @Test
+    void deepKeysetPageIsTheSameSingleStatementAsPageOne() {
+        // 另起一个食堂，放 DEEP_PAGE 页订单，createdAt 各不相同
+        Canteen deep = new Canteen();
+        deep.setName("深翻页食堂");
+        deep.setLocation("测试楼-2层");
+        deep.setOpenStatus(CanteenOpenStatus.OPEN);
+        canteenRepository.save(deep);
+        Instant base = Instant.now().truncatedTo(ChronoUnit.SECONDS);
+        List<Object[]> rows = new ArrayList<>(DEEP_PAGE * PAGE_SIZE);
+        for (int i = 0; i < DEEP_PAGE * PAGE_SIZE; i++) {
+            Timestamp at = Timestamp.from(base.minusSeconds(i));
+            rows.add(new Object[]{customerId, deep.getId(), DeliverMethod.DRONE.name(), OrderStatus.PENDING.name(),
+                    1000, "宿舍1栋-101", at, at});
+        }
+        new JdbcTemplate(dataSource).batchUpdate("""
+                insert into orders (customer_id, canteen_id, deliver_method, status, amount_total,
+                                    delivery_address, created_at, updated_at)
+                values (?, ?, ?, ?, ?, ?, ?, ?)
+                """, rows);
+        entityManager.clear();
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        PageRequest limit = PageRequest.of(0, PAGE_SIZE);
+
+        // 第 DEEP_PAGE 页的游标：第 DEEP_PAGE - 1 页最后一条
+        OrderSummaryView cursor = orderRepository.findCanteenOrderSummaries(
+                deep.getId(), null, PageRequest.of(DEEP_PAGE - 2, PAGE_SIZE)).getContent().get(PAGE_SIZE - 1);
+        List<OrderSummaryView> first = orderRepository.findCanteenOrderSummariesFirst(deep.getId(), limit);
+        OrderSummaryView firstCursor = first.get(PAGE_SIZE - 1);
+
+        stats.clear();
+        List<OrderSummaryView> page2 = orderRepository.findCanteenOrderSummariesAfter(
+                deep.getId(), firstCursor.getCreatedAt(), firstCursor.getId(), limit);
+        List<String> page2Queries = List.of(stats.getQueries());
+        long page2Statements = stats.getPrepareStatementCount();
+
+        stats.clear();
+        List<OrderSummaryView> deepPage = orderRepository.findCanteenOrderSummariesAfter(
+                deep.getId(), cursor.getCreatedAt(), cursor.getId(), limit);
+        List<String> deepQueries = List.of(stats.getQueries());
+        long deepStatements = stats.getPrepareStatementCount();
+
+        stats.clear();
+        Page<OrderSummaryView> offsetPage = orderRepository.findCanteenOrderSummaries(
+                deep.getId(), null, PageRequest.of(DEEP_PAGE - 1, PAGE_SIZE));
+        long offsetStatements = stats.getPrepareStatementCount();
+
+        // 游标分页：不发 count，任意深度都是同一条语句，只是参数不同
+        assertEquals(1, page2Statements);
+        assertEquals(1, deepStatements);
+        assertEquals(1, deepQueries.size());
+        assertEquals(page2Queries, deepQueries);
+        // 偏移分页：数据查询 + count
+        assertEquals(2, offsetStatements);
+        assertEquals(PAGE_SIZE, page2.size());
+        assertEquals(offsetPage.getContent().stream().map(OrderSummaryView::getId).toList(),
+                deepPage.stream().map(OrderSummaryView::getId).toList());
+
+        System.out.printf("第 1 页（游标）%.2f ms，第 %d 页（游标）%.2f ms，第 %d 页（偏移）%.2f ms%n",
+                averageMillis(() -> orderRepository.findCanteenOrderSummariesFirst(deep.getId(), limit)),
+                DEEP_PAGE, averageMillis(() -> orderRepository.findCanteenOrderSummariesAfter(
+                        deep.getId(), cursor.getCreatedAt(), cursor.getId(), limit)),
+                DEEP_PAGE, averageMillis(() -> orderRepository.findCanteenOrderSummaries(
+                        deep.getId(), null, PageRequest.of(DEEP_PAGE - 1, PAGE_SIZE))));
+    }
+
+    /**
+     * 重复执行取平均耗时，只打印不断言（不同机器差异很大）。
+     */
+    private double averageMillis(Runnable query) {
+        int rounds = 20;
+        long begin = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            query.run();
+            entityManager.clear();
+        }
+        return (System.nanoTime() - begin) / 1e6 / rounds;
+    }
+
+    /**
+     * 按游标一页页往后翻，直到某页不足 size 条（最后一页）。
+     */
+    private List<Long> walk(OrderStatus status, int size) {
+        List<Long> seen = new ArrayList<>();
+        PageRequest limit = PageRequest.of(0, size);
+        List<OrderSummaryView> page = status == null
+                ? orderRepository.findCanteenOrderSummariesFirst(canteenId, limit)
+                : orderRepository.findCanteenOrderSummariesFirstByStatus(canteenId, status, limit);
+        while (true) {
+            page.forEach(v -> seen.add(v.getId()));
+            if (page.size() < size) {
+                return seen;
+            }
+            OrderSummaryView last = page.get(page.size() - 1);
+            page = status == null
+                    ? orderRepository.findCanteenOrderSummariesAfter(canteenId, last.getCreatedAt(), last.getId(), limit)
+                    : orderRepository.findCanteenOrderSummariesAfterByStatus(
+                            canteenId, status, last.getCreatedAt(), last.getId(), limit);
+        }
+    }
+
+    private long countStatements(int pageSize) {
+        Statistics stats = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        stats.clear();
+        Page<OrderSummaryView> page =
+                orderRepository.findCanteenOrderSummaries(canteenId, OrderStatus.PENDING, PageRequest.of(0, pageSize));
+        assertEquals(pageSize, page.getNumberOfElements());
+        // 触发投影取值，确认不会再发额外查询
+        page.forEach(v -> v.getFirstFoodName());
+        return stats.getPrepareStatementCount();
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.sdhucanteendrone.repository;
+
+import com.example.sdhucanteendrone.entity.Order;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 条件更新的并发安全性：多个请求同时推进同一个订单，只有一个能成功。
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class OrderStatusContentionTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private OrderRepository orderRepository;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    @Autowired
+    private DataSource dataSource;
+
+    @AfterEach
+    void tearDown() {
+        orderRepository.deleteAll();
+    }
+
+    @Test
+    void concurrentTransitionsOnSameOrderHaveExactlyOneWinner() throws Exception {
+        Long orderId = newPendingOrder();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // 一半线程确认订单、一半线程取消订单，都以 PENDING 为前提
+        List<OrderStatus> targets = List.of(OrderStatus.CONFIRMED, OrderStatus.CANCELED);
+        AtomicInteger winners = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        for (int i = 0; i < THREADS; i++) {
+            OrderStatus target = targets.get(i % targets.size());
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    Integer rows = tx.execute(s -> orderRepository.compareAndSetStatus(
+                            orderId, OrderStatus.PENDING, target, Instant.now()));
+                    if (rows != null && rows == 1) {
+                        winners.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    // 数据库报并发冲突也算失败的一方
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(1, winners.get());
+        OrderStatus finalStatus = orderRepository.findById(orderId).orElseThrow().getStatus();
+        assertTrue(targets.contains(finalStatus), "final status: " + finalStatus);
+    }
+
+    @Test
+    void staleTransitionIsRejected() {
+        Long orderId = newPendingOrder();
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        assertEquals(Integer.valueOf(1), tx.execute(s -> orderRepository.compareAndSetStatus(
+                orderId, OrderStatus.PENDING, OrderStatus.CONFIRMED, Instant.now())));
+        // 仍以为订单是 PENDING 的请求
+        assertEquals(Integer.valueOf(0), tx.execute(s -> orderRepository.compareAndSetStatus(
+                orderId, OrderStatus.PENDING, OrderStatus.CANCELED, Instant.now())));
+        assertEquals(OrderStatus.CONFIRMED, orderRepository.findById(orderId).orElseThrow().getStatus());
+    }
+
+    @Test
+    void concurrentBulkUpdatesNeverClaimTheSameOrder() throws Exception {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            ids.add(newPendingOrder());
+        }
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        // 多个批量请求同时把同一批 PENDING 订单改成不同状态：不加锁，按每条条件 update 的影响行数认领，互不重叠
+        OrderBatchRepository batchRepository = new OrderBatchRepository(new JdbcTemplate(dataSource));
+        Map<Long, OrderStatus> current = new LinkedHashMap<>();
+        ids.forEach(id -> current.put(id, OrderStatus.PENDING));
+        List<OrderStatus> targets = List.of(OrderStatus.CONFIRMED, OrderStatus.CANCELED);
+        int requests = 4;
+        Map<Long, OrderStatus> claimedBy = new ConcurrentHashMap<>();
+        AtomicInteger claims = new AtomicInteger();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(requests);
+        for (int i = 0; i < requests; i++) {
+            OrderStatus target = targets.get(i % targets.size());
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    Set<Long> mine = tx.execute(s ->
+                            batchRepository.batchCompareAndSetStatus(current, target, Instant.now()));
+                    claims.addAndGet(mine.size());
+                    mine.forEach(id -> claimedBy.put(id, target));
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } catch (RuntimeException e) {
+                    // 数据库报并发冲突：整批回滚，订单留给其它请求
+                }
+            });
+        }
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(30, TimeUnit.SECONDS));
+
+        assertEquals(ids.size(), claims.get());
+        assertEquals(ids.size(), claimedBy.size());
+        for (Order order : orderRepository.findAllById(ids)) {
+            assertEquals(claimedBy.get(order.getId()), order.getStatus());
+        }
+    }
+
+    private Long newPendingOrder() {
+        Order order = new Order();
+        order.setCustomerId(1L);
+        order.setCanteenId(1L);
+        order.setDeliverMethod(DeliverMethod.DRONE);
+        order.setStatus(OrderStatus.PENDING);
+        order.setAmountTotal(0);
+        order.setAddress("宿舍1栋-101");
+        order.setCreatedAt(Instant.now());
+        order.setUpdatedAt(Instant.now());
+        return orderRepository.save(order).getId();
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.CanteenDto;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class CampusRouteServiceImplTest {
+
+    private static final int GRID = 120;
+
+    @Test
+    void noFlyEdgeForcesDetour() throws Exception {
+        CampusGraph graph = CampusGraph.parse(new BufferedReader(new StringReader("""
+                # 直飞 A-B 被禁，只能绕 C
+                node A 36.000 117.000 食堂
+                node B 36.000 117.010
+                node C 36.005 117.005
+                node X 36.100 117.100 孤岛
+                edge A B
+                edge A C
+                edge C B
+                nofly A B
+                canteen 1 A
+                place 宿舍1栋 B
+                place 宿舍9栋 X
+                """)));
+        assertEquals(1, graph.noFlyEdgeCount());
+
+        CampusRouteServiceImpl service = new CampusRouteServiceImpl(mock(ResourceLoader.class));
+        service.load(graph);
+
+        CanteenDto.RoutePlan plan = service.plan(1L, "宿舍1栋-302");
+        assertNotNull(plan);
+        assertEquals("宿舍1栋", plan.getDestination());
+        assertEquals(List.of("A", "C", "B"), plan.getWaypoints());
+        // 绕飞比直飞（约 900 米）长
+        assertTrue(plan.getDistanceMeters() > 1000, "distance " + plan.getDistanceMeters());
+        assertEquals((int) Math.round(plan.getDistanceMeters() / 12) + 60, plan.getEtaSeconds(), 1);
+
+        assertNull(service.plan(1L, "宿舍9栋-101"), "不可达");
+        assertNull(service.plan(1L, "图书馆"), "未登记的楼栋");
+        assertNull(service.plan(2L, "宿舍1栋-101"), "未登记的食堂");
+    }
+
+    @Test
+    void bundledCampusGraphCoversAllCanteensAndDorms() {
+        CampusRouteServiceImpl service = new CampusRouteServiceImpl(new DefaultResourceLoader());
+        service.load();
+
+        CanteenDto.RouteStats stats = service.stats();
+        assertTrue(stats.isLoaded());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), stats.getPrecomputedCanteens());
+        for (long canteen = 1; canteen <= 5; canteen++) {
+            for (int dorm = 1; dorm <= 20; dorm++) {
+                CanteenDto.RoutePlan plan = service.plan(canteen, "宿舍" + dorm + "栋-101");
+                assertNotNull(plan, canteen + " -> " + dorm);
+                assertTrue(plan.getDistanceMeters() < 5000);
+            }
+        }
+    }
+
+    @Test
+    void aStarMatchesDijkstraAndAvoidsNoFlyEdges() {
+        Random random = new Random(42);
+        Set<Long> noFly = new HashSet<>();
+        CampusGraph graph = grid(random, noFly);
+
+        int from = 0;
+        CampusGraph.Tree tree = graph.shortestPathTree(from);
+        for (int i = 0; i < 200; i++) {
+            int to = random.nextInt(GRID * GRID);
+            CampusGraph.Path astar = graph.shortestPath(from, to);
+            CampusGraph.Path dijkstra = graph.pathFrom(tree, to);
+            if (dijkstra == null) {
+                assertNull(astar);
+                continue;
+            }
+            assertNotNull(astar);
+            assertEquals(dijkstra.meters(), astar.meters(), 1e-6);
+            int[] nodes = astar.nodes();
+            assertEquals(from, nodes[0]);
+            assertEquals(to, nodes[nodes.length - 1]);
+            for (int k = 1; k < nodes.length; k++) {
+                assertFalse(noFly.contains(key(nodes[k - 1], nodes[k])), "经过禁飞航段");
+            }
+        }
+    }
+
+    /**
+     * 三种查询路径：冷 A*、LRU 命中、预计算表。只断言各自命中的次数，单次耗时打印出来供对比
+     * （不同机器、JIT 预热程度差异很大，不做快慢断言）。
+     */
+    @Test
+    void queriesTakeTheExpectedPath() {
+        Random random = new Random(7);
+        CampusGraph graph = grid(random, new HashSet<>());
+
+        CampusRouteServiceImpl cached = new CampusRouteServiceImpl(mock(ResourceLoader.class));
+        ReflectionTestUtils.setField(cached, "hotCanteens", List.of(-1L));
+        cached.load(graph);
+        CampusRouteServiceImpl hot = new CampusRouteServiceImpl(mock(ResourceLoader.class));
+        hot.load(graph);
+
+        int places = 200;
+        long cold = 0;
+        for (int i = 0; i < places; i++) {
+            long t = System.nanoTime();
+            assertNotNull(cached.plan(1L, "P" + i));
+            cold += System.nanoTime() - t;
+        }
+        long warm = time(cached, places, 20);
+        long table = time(hot, places, 20);
+
+        int rounds = 20 * places;
+        System.out.printf("航线查询单次耗时：冷 A* %.1f 微秒，LRU 命中 %.1f 微秒，预计算表 %.1f 微秒%n",
+                cold / 1e3 / places, warm / 1e3 / rounds, table / 1e3 / rounds);
+        assertEquals(places, cached.stats().getCacheMisses());
+        assertEquals(rounds, cached.stats().getCacheHits());
+        assertEquals(rounds, hot.stats().getTableHits());
+    }
+
+    private static long time(CampusRouteServiceImpl service, int places, int rounds) {
+        long start = System.nanoTime();
+        for (int r = 0; r < rounds; r++) {
+            for (int i = 0; i < places; i++) {
+                service.plan(1L, "P" + i);
+            }
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * GRID x GRID 网格，间距约 20 米，约 3% 的航段禁飞；食堂在角上，P0..P199 为随机楼栋。
+     */
+    private static CampusGraph grid(Random random, Set<Long> noFly) {
+        CampusGraph.Builder b = new CampusGraph.Builder();
+        for (int r = 0; r < GRID; r++) {
+            for (int c = 0; c < GRID; c++) {
+                b.node("N" + (r * GRID + c), 36.0 + r * 0.00018, 117.0 + c * 0.00022);
+            }
+        }
+        for (int r = 0; r < GRID; r++) {
+            for (int c = 0; c < GRID; c++) {
+                int u = r * GRID + c;
+                if (c + 1 < GRID) {
+                    link(b, random, noFly, u, u + 1);
+                }
+                if (r + 1 < GRID) {
+                    link(b, random, noFly, u, u + GRID);
+                }
+            }
+        }
+        b.canteen(1L, "N0");
+        for (int i = 0; i < 200; i++) {
+            b.place("P" + i, "N" + (GRID * GRID / 2 + random.nextInt(GRID * GRID / 2)));
+        }
+        return b.build();
+    }
+
+    private static void link(CampusGraph.Builder b, Random random, Set<Long> noFly, int u, int v) {
+        if (random.nextInt(100) < 3) {
+            b.noFly("N" + u, "N" + v);
+            noFly.add(key(u, v));
+        } else {
+            b.edge("N" + u, "N" + v);
+        }
+    }
+
+    private static long key(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+}
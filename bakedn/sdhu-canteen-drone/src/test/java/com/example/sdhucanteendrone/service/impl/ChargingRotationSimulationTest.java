@@ -0,0 +1,234 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 充电轮换模拟：同一天的订单、同一支机队、同样的充电桩，比较两种充电策略高峰期每小时送出的订单数。
+ * <p>
+ * - 被动策略：电量低于派单下限才去充电，充满才下桩（不做需求预测）
+ * - 轮换策略：ChargingPlanner，低谷时把电量偏低的无人机轮流送去充电，高峰不够用时提前下桩
+ * <p>
+ * 按分钟推进，需求为早 7 点到晚 9 点、午晚两个高峰的泊松到达。随机种子固定，结果可复现。
+ */
+class ChargingRotationSimulationTest {
+
+    private static final int DRONES = 10;
+    private static final int PAD_SLOTS = 2;
+    private static final int FLIGHT_MINUTES = 15;
+    /** 每次配送消耗的电量（%） */
+    private static final int DRAIN_PER_FLIGHT = 10;
+    /** 充电速度（%/分钟） */
+    private static final double CHARGE_PER_MINUTE = 2.0;
+    private static final int WINDOW_MINUTES = 15;
+
+    private static final int START_HOUR = 7;
+    private static final int END_HOUR = 21;
+    private static final int[][] PEAKS = {{11, 13}, {17, 19}};
+    private static final double BASE_PER_HOUR = 8;
+    private static final double PEAK_PER_HOUR = 40;
+
+    private static final ChargingPlanner.Policy NAIVE =
+            new ChargingPlanner.Policy(30, 30, 100, 101, FLIGHT_MINUTES, 1.0);
+    private static final ChargingPlanner.Policy ROTATION =
+            new ChargingPlanner.Policy(30, 70, 95, 60, FLIGHT_MINUTES, 1.2);
+
+    @Test
+    void rotationServesMoreOrdersPerPeakHour() {
+        int[] demand = demand(new Random(11));
+        int[] initialBattery = initialBattery(new Random(5));
+
+        SimResult naive = simulate(demand, initialBattery, NAIVE, false);
+        SimResult rotation = simulate(demand, initialBattery, ROTATION, true);
+
+        System.out.printf("订单 %d 单；低电量才充电：高峰 %.1f 单/小时，共送达 %d 单，P90 等待 %d 分钟；"
+                        + "轮换充电：高峰 %.1f 单/小时，共送达 %d 单，P90 等待 %d 分钟%n",
+                sum(demand), naive.peakPerHour(), naive.delivered, naive.p90WaitMinutes(),
+                rotation.peakPerHour(), rotation.delivered, rotation.p90WaitMinutes());
+        assertTrue(rotation.peakPerHour() > naive.peakPerHour() * 1.1,
+                "轮换充电的高峰每小时送达量应明显更高");
+        assertTrue(rotation.delivered >= naive.delivered);
+    }
+
+    // ============================================================
+    // 模拟
+    // ============================================================
+
+    private SimResult simulate(int[] demand, int[] initialBattery, ChargingPlanner.Policy policy, boolean forecast) {
+        int minutes = demand.length;
+        double[] battery = new double[DRONES];
+        int[] busyUntil = new int[DRONES];
+        boolean[] charging = new boolean[DRONES];
+        for (int i = 0; i < DRONES; i++) {
+            battery[i] = initialBattery[i];
+        }
+        Deque<Integer> queue = new ArrayDeque<>();
+        SimResult result = new SimResult();
+
+        for (int t = 0; t < minutes; t++) {
+            for (int k = 0; k < demand[t]; k++) {
+                queue.add(t);
+            }
+            int busy = 0;
+            for (int i = 0; i < DRONES; i++) {
+                if (charging[i]) {
+                    battery[i] = Math.min(100, battery[i] + CHARGE_PER_MINUTE);
+                } else if (busyUntil[i] > t) {
+                    busy++;
+                }
+            }
+
+            // 充电调度：每分钟按当前状态跑一次
+            int required;
+            if (forecast) {
+                long recent = window(demand, t - WINDOW_MINUTES, t);
+                long previous = window(demand, t - 2 * WINDOW_MINUTES, t - WINDOW_MINUTES);
+                double perHour = ChargingPlanner.forecastPerHour(recent, previous, WINDOW_MINUTES);
+                required = ChargingPlanner.requiredDrones(perHour, policy);
+            } else {
+                required = Integer.MAX_VALUE;
+            }
+            List<ChargingPlanner.DroneState> idle = new ArrayList<>();
+            List<ChargingPlanner.DroneState> onPads = new ArrayList<>();
+            int dispatchable = busy;
+            for (int i = 0; i < DRONES; i++) {
+                if (charging[i]) {
+                    onPads.add(new ChargingPlanner.DroneState((long) i, (int) battery[i]));
+                } else if (busyUntil[i] <= t) {
+                    idle.add(new ChargingPlanner.DroneState((long) i, (int) battery[i]));
+                    if (battery[i] >= policy.minBattery()) {
+                        dispatchable++;
+                    }
+                }
+            }
+            for (ChargingPlanner.DroneState d : ChargingPlanner.toRelease(onPads, dispatchable, required, policy)) {
+                charging[d.id().intValue()] = false;
+                dispatchable++;
+            }
+            int freeSlots = PAD_SLOTS;
+            for (boolean c : charging) {
+                freeSlots -= c ? 1 : 0;
+            }
+            for (ChargingPlanner.DroneState d : ChargingPlanner.toCharge(idle, freeSlots, dispatchable, required,
+                    policy)) {
+                charging[d.id().intValue()] = true;
+            }
+
+            // 派单：先进先出，电量最高的空闲无人机优先
+            while (!queue.isEmpty()) {
+                int pick = -1;
+                for (int i = 0; i < DRONES; i++) {
+                    if (!charging[i] && busyUntil[i] <= t && battery[i] >= policy.minBattery()
+                            && (pick < 0 || battery[i] > battery[pick])) {
+                        pick = i;
+                    }
+                }
+                if (pick < 0) {
+                    break;
+                }
+                int orderedAt = queue.poll();
+                battery[pick] -= DRAIN_PER_FLIGHT;
+                busyUntil[pick] = t + FLIGHT_MINUTES;
+                result.record(t, orderedAt);
+            }
+        }
+        return result;
+    }
+
+    private static long window(int[] demand, int from, int to) {
+        long n = 0;
+        for (int t = Math.max(0, from); t < to; t++) {
+            n += demand[t];
+        }
+        return n;
+    }
+
+    /**
+     * 每分钟新到的订单数。
+     */
+    private static int[] demand(Random random) {
+        int minutes = (END_HOUR - START_HOUR) * 60;
+        int[] demand = new int[minutes];
+        for (int t = 0; t < minutes; t++) {
+            double perMinute = (isPeak(t) ? PEAK_PER_HOUR : BASE_PER_HOUR) / 60.0;
+            demand[t] = poisson(random, perMinute);
+        }
+        return demand;
+    }
+
+    private static int[] initialBattery(Random random) {
+        int[] battery = new int[DRONES];
+        for (int i = 0; i < DRONES; i++) {
+            battery[i] = 30 + random.nextInt(71);
+        }
+        return battery;
+    }
+
+    private static boolean isPeak(int minute) {
+        int hour = START_HOUR + minute / 60;
+        for (int[] peak : PEAKS) {
+            if (hour >= peak[0] && hour < peak[1]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static int poisson(Random random, double mean) {
+        double limit = Math.exp(-mean);
+        double p = random.nextDouble();
+        int k = 0;
+        while (p > limit) {
+            p *= random.nextDouble();
+            k++;
+        }
+        return k;
+    }
+
+    private static int sum(int[] values) {
+        int s = 0;
+        for (int v : values) {
+            s += v;
+        }
+        return s;
+    }
+
+    private static final class SimResult {
+
+        private int delivered;
+        private int peakDelivered;
+        private final List<Integer> waits = new ArrayList<>();
+
+        private void record(int minute, int orderedAt) {
+            delivered++;
+            if (isPeak(minute)) {
+                peakDelivered++;
+            }
+            waits.add(minute - orderedAt);
+        }
+
+        private double peakPerHour() {
+            int peakHours = 0;
+            for (int[] peak : PEAKS) {
+                peakHours += peak[1] - peak[0];
+            }
+            return (double) peakDelivered / peakHours;
+        }
+
+        private int p90WaitMinutes() {
+            if (waits.isEmpty()) {
+                return 0;
+            }
+            List<Integer> sorted = new ArrayList<>(waits);
+            sorted.sort(null);
+            return sorted.get((int) Math.ceil(0.9 * sorted.size()) - 1);
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.entity.OrderStatusEvent;
+import com.example.sdhucanteendrone.entity.enums.EtaPhase;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.repository.OrderStatusEventRepository;
+import com.example.sdhucanteendrone.repository.StatusTransitionView;
+import com.example.sdhucanteendrone.service.event.OrderChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ETA 预测：状态事件提交后增量计入统计，按 食堂 × 小时段 预测，样本不足时逐级兜底。
+ */
+class DeliveryEtaServiceImplTest {
+
+    private static final Long CANTEEN = 1L;
+    private static final Instant LUNCH = at(12);
+    private static final Instant EVENING = at(18);
+
+    private OrderStatusEventRepository repository;
+    private DeliveryEtaServiceImpl eta;
+    private long nextOrderId = 1;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(OrderStatusEventRepository.class);
+        eta = new DeliveryEtaServiceImpl(repository);
+    }
+
+    @Test
+    void fallsBackToDefaultsWithoutSamples() {
+        assertEquals(LUNCH.plus(Duration.ofMinutes(15)), eta.predictReadyAt(CANTEEN, LUNCH));
+        // 无人机订单优先用航路规划的飞行时间兜底
+        assertEquals(LUNCH.plusSeconds(300), eta.predictDeliveredAt(CANTEEN, LUNCH, 300));
+        assertEquals(LUNCH.plus(Duration.ofMinutes(10)), eta.predictDeliveredAt(CANTEEN, LUNCH, null));
+        assertNull(eta.predictReadyAt(CANTEEN, null));
+    }
+
+    @Test
+    void packedEventAddsPrepSampleForItsHour() {
+        // 午高峰出餐 20 分钟，晚上 8 分钟
+        for (int i = 0; i < 5; i++) {
+            pack(LUNCH.plusSeconds(i * 60L), Duration.ofMinutes(20));
+            pack(EVENING.plusSeconds(i * 60L), Duration.ofMinutes(8));
+        }
+
+        assertEquals(LUNCH.plus(Duration.ofMinutes(20)), eta.predictReadyAt(CANTEEN, LUNCH));
+        assertEquals(EVENING.plus(Duration.ofMinutes(8)), eta.predictReadyAt(CANTEEN, EVENING));
+        // 没有样本的小时段用全天统计（两个时段各 5 单的均值）
+        assertEquals(at(9).plus(Duration.ofMinutes(14)), eta.predictReadyAt(CANTEEN, at(9)));
+        // 其它食堂不受影响
+        assertEquals(LUNCH.plus(Duration.ofMinutes(15)), eta.predictReadyAt(2L, LUNCH));
+
+        List<OrderDto.EtaBucket> buckets = eta.buckets(CANTEEN);
+        assertEquals(3, buckets.size());
+        assertNull(buckets.get(0).getHour());
+        assertEquals(10, buckets.get(0).getSamples());
+        assertEquals(EtaPhase.PREP, buckets.get(1).getPhase());
+    }
+
+    @Test
+    void onlyPackedAndDeliveredEventsAreSampled() {
+        eta.onOrderChanged(changed(1L, OrderStatus.CONFIRMED, LUNCH));
+        eta.onOrderChanged(changed(1L, OrderStatus.SHIPPED, LUNCH));
+        eta.onOrderChanged(new OrderChangedEvent(1L, 5L, CANTEEN, OrderStatus.PACKED, OrderStatus.PACKED, null));
+
+        verify(repository, never()).findFirstByOrderIdAndCodeOrderByOccurredAtAsc(anyLong(), any());
+        assertEquals(List.of(), eta.buckets(CANTEEN));
+    }
+
+    @Test
+    void warmUpPairsEventsPerOrderAndDropsOutliers() {
+        List<StatusTransitionView> rows = List.of(
+                view(1L, OrderStatus.PENDING, LUNCH),
+                view(2L, OrderStatus.PENDING, LUNCH),
+                view(1L, OrderStatus.PACKED, LUNCH.plus(Duration.ofMinutes(12))),
+                view(1L, OrderStatus.SHIPPED, LUNCH.plus(Duration.ofMinutes(15))),
+                view(1L, OrderStatus.DELIVERED, LUNCH.plus(Duration.ofMinutes(21))),
+                // 隔夜才打包，超过 max-sample-minutes，丢弃
+                view(2L, OrderStatus.PACKED, LUNCH.plus(Duration.ofHours(20))),
+                // 预热窗口之前下的单，只有结束事件，配不成样本
+                view(3L, OrderStatus.DELIVERED, LUNCH));
+
+        assertEquals(2, eta.warmUp(rows));
+    }
+
+    @Test
+    void decayedStatsFollowsRecentSamples() {
+        DecayedStats stats = new DecayedStats(0.1);
+        for (int i = 0; i < 200; i++) {
+            stats.add(600);
+        }
+        for (int i = 0; i < 50; i++) {
+            stats.add(1200);
+        }
+        DecayedStats.Snapshot snapshot = stats.snapshot();
+        // 算术平均是 720，衰减均值应已接近最近的 1200
+        assertEquals(1200, snapshot.mean(), 5);
+        assertEquals(250, snapshot.count());
+    }
+
+    private void pack(Instant pendingAt, Duration prep) {
+        long orderId = nextOrderId++;
+        OrderStatusEvent pending = event(orderId, OrderStatus.PENDING, pendingAt);
+        when(repository.findFirstByOrderIdAndCodeOrderByOccurredAtAsc(orderId, OrderStatus.PENDING))
+                .thenReturn(Optional.of(pending));
+        eta.onOrderChanged(changed(orderId, OrderStatus.PACKED, pendingAt.plus(prep)));
+    }
+
+    private static OrderChangedEvent changed(Long orderId, OrderStatus status, Instant at) {
+        return new OrderChangedEvent(orderId, 5L, CANTEEN, null, status, event(orderId, status, at));
+    }
+
+    private static OrderStatusEvent event(Long orderId, OrderStatus code, Instant at) {
+        OrderStatusEvent e = new OrderStatusEvent();
+        e.setOrderId(orderId);
+        e.setCode(code);
+        e.setOccurredAt(at);
+        e.setCreatedAt(at);
+        return e;
+    }
+
+    private static StatusTransitionView view(Long orderId, OrderStatus code, Instant at) {
+        return new StatusTransitionView() {
+            @Override
+            public Long getOrderId() {
+                return orderId;
+            }
+
+            @Override
+            public Long getCanteenId() {
+                return CANTEEN;
+            }
+
+            @Override
+            public OrderStatus getCode() {
+                return code;
+            }
+
+            @Override
+            public Instant getOccurredAt() {
+                return at;
+            }
+        };
+    }
+
+    private static Instant at(int hour) {
+        return LocalDate.of(2025, 3, 10).atTime(hour, 0).atZone(ZoneId.systemDefault()).toInstant();
+    }
+}
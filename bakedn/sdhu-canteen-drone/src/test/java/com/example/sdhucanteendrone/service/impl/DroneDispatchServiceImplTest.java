@@ -0,0 +1,288 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+import com.example.sdhucanteendrone.entity.Canteen;
+import com.example.sdhucanteendrone.entity.Drone;
+import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.repository.CanteenRepository;
+import com.example.sdhucanteendrone.repository.DroneRepository;
+import com.example.sdhucanteendrone.repository.OrderRepository;
+import com.example.sdhucanteendrone.repository.OrderStatusEventRepository;
+import com.example.sdhucanteendrone.repository.OrderSummaryView;
+import com.example.sdhucanteendrone.repository.StatusReachedView;
+import com.example.sdhucanteendrone.service.MissionService;
+import com.example.sdhucanteendrone.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 用模拟机队验证自动派机：电量、载重、就近规则，以及无人机回收后继续派单。
+ */
+class DroneDispatchServiceImplTest {
+
+    private static final int ORDER_COUNT = 20;
+
+    /** 模拟机队：id -> 无人机 */
+    private final Map<Long, Drone> fleet = new HashMap<>();
+    /** 模拟订单：id -> 份数 / 食堂 / 已派无人机 */
+    private final Map<Long, Integer> portions = new HashMap<>();
+    private final Map<Long, Long> orderCanteen = new HashMap<>();
+    private final Map<Long, Long> assigned = new HashMap<>();
+    /** 模拟 PACKED 状态事件：订单 id -> 进入 PACKED 的时间 */
+    private final Map<Long, Instant> packedAt = new HashMap<>();
+    /** 合单起飞记录：无人机 -> 承运的订单 */
+    private final Map<Long, List<Long>> missions = new HashMap<>();
+
+    private DroneRepository droneRepository;
+    private CanteenRepository canteenRepository;
+    private DroneSpatialIndexImpl index;
+    private DroneDispatchServiceImpl dispatcher;
+
+    @BeforeEach
+    void setUp() {
+        // 2 kg 小飞机 6 架、5 kg 大飞机 3 架、低电量 3 架
+        long id = 1;
+        for (int i = 0; i < 6; i++) {
+            addDrone(id++, 2.0, 60 + i, i < 2 ? "一食堂" : "机库");
+        }
+        for (int i = 0; i < 3; i++) {
+            addDrone(id++, 5.0, 80 + i, "机库");
+        }
+        for (int i = 0; i < 3; i++) {
+            addDrone(id++, 5.0, 10, "一食堂");
+        }
+        for (long o = 1; o <= ORDER_COUNT; o++) {
+            portions.put(o, (int) (o % 8) + 1);          // 0.5 ~ 4 kg
+            orderCanteen.put(o, o % 2 == 0 ? 1L : 2L);
+            packedAt.put(o, Instant.now().minusSeconds(o));
+        }
+
+        OrderRepository orderRepository = mock(OrderRepository.class);
+        when(orderRepository.findUndispatchedOrderSummaries(any(), any(), any())).thenAnswer(inv -> {
+            List<OrderSummaryView> rows = new ArrayList<>();
+            for (long o = 1; o <= ORDER_COUNT; o++) {
+                if (!assigned.containsKey(o)) {
+                    rows.add(view(o));
+                }
+            }
+            return rows;
+        });
+
+        OrderStatusEventRepository statusEventRepository = mock(OrderStatusEventRepository.class);
+        when(statusEventRepository.findReachedAt(any(), any())).thenAnswer(inv -> {
+            List<StatusReachedView> rows = new ArrayList<>();
+            for (Long o : inv.<Collection<Long>>getArgument(0)) {
+                rows.add(reached(o, packedAt.get(o)));
+            }
+            return rows;
+        });
+
+        droneRepository = mock(DroneRepository.class);
+        when(droneRepository.findByStatusAndBatteryGreaterThanEqual(any(), anyInt())).thenAnswer(inv ->
+                fleet.values().stream()
+                        .filter(d -> d.getStatus() == inv.getArgument(0, DroneStatus.class))
+                        .filter(d -> d.getBattery() >= inv.getArgument(1, Integer.class))
+                        .toList());
+
+        canteenRepository = mock(CanteenRepository.class);
+        when(canteenRepository.findAllById(any())).thenReturn(List.of(canteen(1L, "一食堂"), canteen(2L, "二食堂")));
+
+        OrderService orderService = mock(OrderService.class);
+        doAnswer(inv -> {
+            Drone d = fleet.get(inv.getArgument(1, Long.class));
+            if (d.getStatus() != DroneStatus.IDLE) {
+                throw new IllegalStateException("无人机当前不可用");
+            }
+            assigned.put(inv.getArgument(0), d.getId());
+            return null;
+        }).when(orderService).assignDrone(anyLong(), anyLong());
+        doAnswer(inv -> {
+            fleet.get(assigned.get(inv.getArgument(0, Long.class))).setStatus(DroneStatus.IN_MISSION);
+            return null;
+        }).when(orderService).startDelivery(anyLong());
+
+        // 未 stub 的 estimatePayloadKg 返回空表，派机退回按份数估重
+        MissionService missionService = mock(MissionService.class);
+        doAnswer(inv -> {
+            Drone d = fleet.get(inv.getArgument(0, Long.class));
+            if (d.getStatus() != DroneStatus.IDLE) {
+                throw new IllegalStateException("无人机当前不可用");
+            }
+            List<Long> orderIds = inv.getArgument(1);
+            orderIds.forEach(o -> assigned.put(o, d.getId()));
+            missions.put(d.getId(), orderIds);
+            d.setStatus(DroneStatus.IN_MISSION);
+            return null;
+        }).when(missionService).launch(anyLong(), anyList());
+
+        // 食堂没有经纬度时不查索引；有经纬度的用例把机队放进真实的网格索引
+        index = new DroneSpatialIndexImpl(droneRepository);
+        dispatcher = new DroneDispatchServiceImpl(orderService, orderRepository, statusEventRepository, droneRepository,
+                canteenRepository, index, missionService, mock(PlatformTransactionManager.class));
+    }
+
+    @Test
+    void dispatchesWithinBatteryAndPayloadLimits() {
+        int first = dispatcher.dispatchOnce();
+
+        // 只有 9 架电量达标
+        assertEquals(9, first);
+        assigned.forEach((orderId, droneId) -> {
+            Drone d = fleet.get(droneId);
+            assertTrue(d.getBattery() >= 30, "低电量无人机被派出: " + droneId);
+            assertTrue(d.getMaxPayloadKg() >= portions.get(orderId) * 0.5, "超载: 订单 " + orderId);
+        });
+        // 一食堂的第一单（订单 2，1.5 kg）由停在一食堂的小飞机承运
+        assertEquals("一食堂", fleet.get(assigned.get(2L)).getLocation());
+    }
+
+    @Test
+    void returnedDronesKeepTheQueueMoving() {
+        for (int round = 0; round < 10 && assigned.size() < ORDER_COUNT; round++) {
+            dispatcher.dispatchOnce();
+            // 模拟送达返航
+            fleet.values().stream()
+                    .filter(d -> d.getStatus() == DroneStatus.IN_MISSION)
+                    .forEach(d -> d.setStatus(DroneStatus.IDLE));
+        }
+
+        assertEquals(ORDER_COUNT, assigned.size());
+        DroneDto.DispatchStats stats = dispatcher.stats();
+        assertEquals(ORDER_COUNT, stats.getDispatched());
+        assertEquals(0, stats.getFailed());
+        assertNotNull(stats.getP50Ms());
+        assertTrue(stats.getP99Ms() >= stats.getP50Ms());
+    }
+
+    @Test
+    void latencyIsMeasuredFromThePackedEventNotTheLastRowUpdate() {
+        // 打包 10 分钟后订单行又被改过（updated_at 是刚才）
+        packedAt.replaceAll((o, t) -> Instant.now().minusSeconds(600));
+
+        dispatcher.dispatchOnce();
+
+        assertTrue(dispatcher.stats().getP50Ms() >= 600_000, "p50 = " + dispatcher.stats().getP50Ms());
+    }
+
+    @Test
+    void batchingWindowStartsAtThePackedEvent() {
+        ReflectionTestUtils.setField(dispatcher, "batchingEnabled", true);
+        // 只留 1~4 单：每个食堂两单，凑不满单数和载重，只看等待窗口（60 s）
+        for (long o = 5; o <= ORDER_COUNT; o++) {
+            assigned.put(o, 0L);
+        }
+        // 一食堂（偶数单）打包已 2 分钟，二食堂刚打包；两边的 updated_at 都是刚才
+        packedAt.replaceAll((o, t) -> Instant.now().minusSeconds(o % 2 == 0 ? 120 : 1));
+
+        dispatcher.dispatchOnce();
+
+        assertNotNull(assigned.get(2L), "等满窗口的订单未起飞");
+        assertEquals(2, missions.get(assigned.get(2L)).size());
+        assertTrue(!assigned.containsKey(1L) && !assigned.containsKey(3L), "未等满窗口的订单被派出");
+    }
+
+    @Test
+    void batchesOrdersOfTheSameCanteenWithinPayload() {
+        ReflectionTestUtils.setField(dispatcher, "batchingEnabled", true);
+        ReflectionTestUtils.setField(dispatcher, "batchWindowMs", 0L);
+
+        // 9 架可用无人机一轮就能带走超过 9 单
+        int first = dispatcher.dispatchOnce();
+        assertTrue(first > 9, "合单后一轮派出 " + first + " 单");
+        assertTrue(dispatcher.stats().getMissions() > 0);
+
+        missions.forEach((droneId, orderIds) -> {
+            assertTrue(orderIds.size() <= 4);
+            assertEquals(1, orderIds.stream().map(orderCanteen::get).distinct().count());
+            double kg = orderIds.stream().mapToDouble(o -> portions.get(o) * 0.5).sum();
+            assertTrue(kg <= fleet.get(droneId).getMaxPayloadKg(), "超载: 无人机 " + droneId);
+        });
+    }
+
+    @Test
+    void canteensWithCoordinatesTakeCandidatesFromTheSpatialIndex() {
+        // 一食堂 (36.000, 117.000)，二食堂在东边约 900 m；停在一食堂的无人机在其附近，其余在机库（两者之间）
+        Canteen first = canteen(1L, "一食堂");
+        first.setLatitude(36.0);
+        first.setLongitude(117.0);
+        Canteen second = canteen(2L, "二食堂");
+        second.setLatitude(36.0);
+        second.setLongitude(117.01);
+        when(canteenRepository.findAllById(any())).thenReturn(List.of(first, second));
+        fleet.values().forEach(d -> {
+            d.setLatitude(36.0);
+            d.setLongitude("一食堂".equals(d.getLocation()) ? 117.0002 : 117.005);
+            index.upsert(d);
+        });
+
+        int dispatchedCount = dispatcher.dispatchOnce();
+
+        assertEquals(9, dispatchedCount);
+        // 不再查库扫描全部空闲无人机
+        verify(droneRepository, never()).findByStatusAndBatteryGreaterThanEqual(any(), anyInt());
+        assigned.forEach((orderId, droneId) -> {
+            Drone d = fleet.get(droneId);
+            assertTrue(d.getBattery() >= 30, "低电量无人机被派出: " + droneId);
+            assertTrue(d.getMaxPayloadKg() >= portions.get(orderId) * 0.5, "超载: 订单 " + orderId);
+        });
+        // 一食堂的第一单（订单 2，1.5 kg）由离一食堂最近的小飞机承运
+        assertEquals("一食堂", fleet.get(assigned.get(2L)).getLocation());
+    }
+
+    private void addDrone(long id, double payloadKg, int battery, String location) {
+        Drone d = new Drone();
+        d.setId(id);
+        d.setCode("DRN-" + id);
+        d.setMaxPayloadKg(payloadKg);
+        d.setBattery(battery);
+        d.setLocation(location);
+        d.setStatus(DroneStatus.IDLE);
+        fleet.put(id, d);
+    }
+
+    private Canteen canteen(Long id, String name) {
+        Canteen c = new Canteen();
+        c.setId(id);
+        c.setName(name);
+        c.setLocation(name);
+        return c;
+    }
+
+    private OrderSummaryView view(long orderId) {
+        OrderSummaryView v = mock(OrderSummaryView.class);
+        when(v.getId()).thenReturn(orderId);
+        when(v.getCanteenId()).thenReturn(orderCanteen.get(orderId));
+        when(v.getTotalItemCount()).thenReturn(portions.get(orderId));
+        when(v.getUpdatedAt()).thenReturn(Instant.now());
+        return v;
+    }
+
+    private StatusReachedView reached(Long orderId, Instant occurredAt) {
+        StatusReachedView v = mock(StatusReachedView.class);
+        when(v.getOrderId()).thenReturn(orderId);
+        when(v.getOccurredAt()).thenReturn(occurredAt);
+        return v;
+    }
+}
@@ -0,0 +1,142 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.entity.Drone;
+import com.example.sdhucanteendrone.entity.enums.DroneStatus;
+import com.example.sdhucanteendrone.repository.DroneRepository;
+import com.example.sdhucanteendrone.service.DroneSpatialIndex;
+import com.example.sdhucanteendrone.service.event.DroneChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTimeoutPreemptively;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * 1 万架无人机的校园机队：网格索引的 k 近邻结果与暴力扫描一致，单次查询在微秒级。
+ */
+class DroneSpatialIndexImplTest {
+
+    private static final int FLEET_SIZE = 10_000;
+    // 约 2km x 2km 的校园，纬度与默认参考纬度一致
+    private static final double BASE_LAT = 36.0;
+    private static final double BASE_LNG = 117.0;
+    private static final double SPAN = 0.02;
+
+    private final Random random = new Random(42);
+    private final List<Drone> fleet = new ArrayList<>();
+
+    private DroneRepository droneRepository;
+    private DroneSpatialIndexImpl index;
+
+    @BeforeEach
+    void setUp() {
+        for (long id = 1; id <= FLEET_SIZE; id++) {
+            Drone d = new Drone();
+            d.setId(id);
+            d.setCode("D" + id);
+            d.setStatus(id % 10 == 0 ? DroneStatus.IN_MISSION : DroneStatus.IDLE);
+            d.setBattery(random.nextInt(101));
+            d.setMaxPayloadKg(id % 3 == 0 ? 5.0 : 2.0);
+            d.setLatitude(BASE_LAT + random.nextDouble() * SPAN);
+            d.setLongitude(BASE_LNG + random.nextDouble() * SPAN);
+            fleet.add(d);
+        }
+        droneRepository = mock(DroneRepository.class);
+        when(droneRepository.findAll()).thenReturn(fleet);
+        index = new DroneSpatialIndexImpl(droneRepository);
+        index.rebuild();
+    }
+
+    @Test
+    void nearestMatchesBruteForce() {
+        assertEquals(FLEET_SIZE - FLEET_SIZE / 10, index.size());
+
+        for (int i = 0; i < 500; i++) {
+            double lat = BASE_LAT + random.nextDouble() * SPAN;
+            double lng = BASE_LNG + random.nextDouble() * SPAN;
+            double minPayload = i % 2 == 0 ? 0 : 3.0;
+
+            List<DroneSpatialIndex.Nearby> actual = index.nearestIdle(lat, lng, 5, 30, minPayload);
+            List<Double> expected = fleet.stream()
+                    .filter(d -> d.getStatus() == DroneStatus.IDLE)
+                    .filter(d -> d.getBattery() >= 30 && d.getMaxPayloadKg() >= minPayload)
+                    .map(d -> DroneSpatialIndex.distanceMeters(lat, lng, d.getLatitude(), d.getLongitude()))
+                    .sorted()
+                    .limit(5)
+                    .toList();
+
+            assertEquals(expected.size(), actual.size());
+            for (int j = 0; j < expected.size(); j++) {
+                assertEquals(expected.get(j), actual.get(j).distanceMeters(), 0.5);
+            }
+        }
+    }
+
+    @Test
+    void queryStaysInMicroseconds() {
+        int queries = 20_000;
+        // 预热
+        for (int i = 0; i < queries; i++) {
+            index.nearestIdle(BASE_LAT + random.nextDouble() * SPAN, BASE_LNG + random.nextDouble() * SPAN, 5, 30, 0);
+        }
+        long start = System.nanoTime();
+        for (int i = 0; i < queries; i++) {
+            index.nearestIdle(BASE_LAT + random.nextDouble() * SPAN, BASE_LNG + random.nextDouble() * SPAN, 5, 30, 0);
+        }
+        double avgMicros = (System.nanoTime() - start) / 1_000.0 / queries;
+        System.out.printf("%d 架无人机，k=5 平均查询耗时 %.1f µs%n", FLEET_SIZE, avgMicros);
+
+        // 宽松上限，只防止退化成全表扫描级别的耗时
+        assertTrue(avgMicros < 1_000, "平均查询耗时 " + avgMicros + " µs");
+    }
+
+    @Test
+    void farQueriesAndStrayFixesDoNotScanEmptyRings() {
+        // 查询点离机群几千公里；再让一架无人机报一次漂到 (0, 0) 的坐标后回来
+        Drone stray = fleet.get(1);
+        index.updatePosition(stray.getId(), null, 0.0, 0.0);
+        assertEquals(stray.getId(), index.nearestIdle(0.1, 0.1, 1, 0, 0).get(0).droneId());
+        index.updatePosition(stray.getId(), null, stray.getLatitude(), stray.getLongitude());
+
+        // 按旧做法要一圈圈扫几万圈（持有读锁）；现在只扫已占用范围，应远小于 1 秒
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int i = 0; i < 100; i++) {
+                List<DroneSpatialIndex.Nearby> actual = index.nearestIdle(0, 0, 3, 30, 0);
+                assertEquals(3, actual.size());
+                assertTrue(actual.stream().allMatch(n -> n.battery() >= 30));
+            }
+        });
+    }
+
+    @Test
+    void busyOrDeletedDronesLeaveIndex() {
+        Drone target = fleet.get(0);
+        List<DroneSpatialIndex.Nearby> before =
+                index.nearestIdle(target.getLatitude(), target.getLongitude(), 1, 0, 0);
+        assertEquals(target.getId(), before.get(0).droneId());
+
+        target.setStatus(DroneStatus.IN_MISSION);
+        when(droneRepository.findById(target.getId())).thenReturn(Optional.of(target));
+        index.onDroneChanged(new DroneChangedEvent(target.getId()));
+        assertTrue(index.nearestIdle(target.getLatitude(), target.getLongitude(), 1, 0, 0)
+                .stream().noneMatch(n -> n.droneId().equals(target.getId())));
+
+        target.setStatus(DroneStatus.IDLE);
+        index.onDroneChanged(new DroneChangedEvent(target.getId()));
+        assertEquals(target.getId(),
+                index.nearestIdle(target.getLatitude(), target.getLongitude(), 1, 0, 0).get(0).droneId());
+
+        when(droneRepository.findById(target.getId())).thenReturn(Optional.empty());
+        index.onDroneChanged(new DroneChangedEvent(target.getId()));
+        assertEquals(FLEET_SIZE - FLEET_SIZE / 10 - 1, index.size());
+    }
+}
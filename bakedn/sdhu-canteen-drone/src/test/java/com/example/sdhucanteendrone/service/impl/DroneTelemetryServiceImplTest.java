@@ -0,0 +1,149 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+import com.example.sdhucanteendrone.repository.DroneBatchRepository;
+import com.example.sdhucanteendrone.repository.DroneRepository;
+import com.example.sdhucanteendrone.service.DroneSpatialIndex;
+import com.example.sdhucanteendrone.service.DroneTrackStore;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 遥测接入：多线程高频上报下每架无人机只回写一行最新值，并给出每秒帧数。
+ */
+class DroneTelemetryServiceImplTest {
+
+    private static final int DRONES = 1_000;
+
+    private DroneBatchRepository droneBatchRepository;
+    private DroneTelemetryServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        DroneRepository droneRepository = mock(DroneRepository.class);
+        when(droneRepository.existsById(anyLong())).thenAnswer(inv -> inv.getArgument(0, Long.class) <= DRONES);
+        droneBatchRepository = mock(DroneBatchRepository.class);
+        service = new DroneTelemetryServiceImpl(droneRepository, droneBatchRepository,
+                mock(DroneSpatialIndex.class), mock(DroneTrackStore.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void coalescesFramesAndMeasuresThroughput() throws Exception {
+        int threads = 8;
+        int batchesPerThread = 500;
+        int batchSize = 100;
+        Instant base = Instant.parse("2026-01-01T00:00:00Z");
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    for (int b = 0; b < batchesPerThread; b++) {
+                        List<DroneDto.TelemetryFrame> frames = new ArrayList<>(batchSize);
+                        for (int i = 0; i < batchSize; i++) {
+                            long seq = (long) b * batchSize + i;
+                            long droneId = (seq * threads + thread) % DRONES + 1;
+                            // 时间戳随序号递增，电量同步递减，便于校验最终值
+                            frames.add(frame(droneId, (int) (100 - seq % 100), base.plusMillis(seq)));
+                        }
+                        service.ingest(frames);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        assertTrue(done.await(60, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+
+        long total = (long) threads * batchesPerThread * batchSize;
+        System.out.printf("遥测接入 %d 帧，%.0f 帧/秒%n", total, total * 1e9 / elapsed);
+
+        DroneDto.TelemetryStats stats = service.stats();
+        assertEquals(total, stats.getFramesReceived());
+        assertEquals(DRONES, stats.getPendingDrones());
+
+        // 40 万帧合并成每架无人机一行
+        assertEquals(DRONES, service.flush());
+        ArgumentCaptor<List<DroneBatchRepository.TelemetryRow>> captor = ArgumentCaptor.forClass(List.class);
+        verify(droneBatchRepository).batchUpdateTelemetry(captor.capture(), any());
+        Map<Long, DroneBatchRepository.TelemetryRow> rows = captor.getValue().stream()
+                .collect(Collectors.toMap(DroneBatchRepository.TelemetryRow::droneId, Function.identity()));
+        assertEquals(DRONES, rows.size());
+        for (long id = 1; id <= DRONES; id++) {
+            DroneDto.DroneTelemetry latest = service.getLatest(id);
+            assertEquals(latest.getBattery(), rows.get(id).battery());
+            assertTrue(latest.isFlushed());
+        }
+
+        // 没有新帧时不再回写
+        assertEquals(0, service.flush());
+        verify(droneBatchRepository, times(1)).batchUpdateTelemetry(any(), any());
+    }
+
+    @Test
+    void staleAndInvalidFramesAreDropped() {
+        Instant now = Instant.now();
+        DroneDto.TelemetryFrame newer = frame(1L, 50, now);
+        newer.setLatitude(36.1);
+        newer.setLongitude(117.1);
+        DroneDto.TelemetryFrame older = frame(1L, 90, now.minusSeconds(5));
+        DroneDto.TelemetryFrame unknown = frame(DRONES + 1L, 80, now);
+        DroneDto.TelemetryFrame badBattery = frame(2L, 120, now);
+        DroneDto.TelemetryFrame batteryOnly = frame(1L, 49, now.plusSeconds(1));
+        // 时钟超前一小时的帧：若被接受，之后的正常帧都会变成"旧帧"
+        DroneDto.TelemetryFrame future = frame(1L, 10, now.plus(1, ChronoUnit.HOURS));
+
+        DroneDto.TelemetryIngestResult result =
+                service.ingest(List.of(newer, older, unknown, badBattery, batteryOnly, future));
+        assertEquals(2, result.getAccepted());
+        assertEquals(1, result.getStale());
+        assertEquals(3, result.getRejected());
+
+        // 只带电量的帧不会抹掉之前的位置
+        DroneDto.DroneTelemetry latest = service.getLatest(1L);
+        assertEquals(49, latest.getBattery());
+        assertEquals(36.1, latest.getLatitude());
+        assertEquals(117.1, latest.getLongitude());
+    }
+
+    private DroneDto.TelemetryFrame frame(long droneId, int battery, Instant reportedAt) {
+        DroneDto.TelemetryFrame f = new DroneDto.TelemetryFrame();
+        f.setDroneId(droneId);
+        f.setBattery(battery);
+        f.setReportedAt(reportedAt);
+        return f;
+    }
+}
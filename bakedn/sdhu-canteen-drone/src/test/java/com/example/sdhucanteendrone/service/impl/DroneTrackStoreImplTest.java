@@ -0,0 +1,151 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.DroneDto;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 轨迹分段文件：滚动、按时间区间回放、重启后续写、过期清理。
+ */
+class DroneTrackStoreImplTest {
+
+    // 每段 10 条记录
+    private static final int SEGMENT_BYTES = 16 + 10 * 40;
+
+    @TempDir
+    Path dir;
+
+    private DroneTrackStoreImpl store;
+
+    @BeforeEach
+    void setUp() {
+        store = newStore();
+    }
+
+    @Test
+    void rollsSegmentsAndReplaysRanges() throws IOException {
+        Instant base = Instant.now().minusSeconds(3600);
+        for (int i = 0; i < 95; i++) {
+            store.append(7L, base.plusSeconds(i), 36.0 + i * 1e-4, 117.0, 100 - i, i < 50 ? 1001L : null);
+        }
+        // 乱序和重复时间戳的点被忽略
+        store.append(7L, base.plusSeconds(10), 0.0, 0.0, 1, null);
+        store.append(7L, base.plusSeconds(94), 0.0, 0.0, 1, null);
+
+        assertEquals(10, segmentCount(7L));
+
+        List<DroneDto.TrackPoint> range = store.query(7L, base.plusSeconds(25), base.plusSeconds(54), 1000);
+        assertEquals(30, range.size());
+        assertEquals(base.plusSeconds(25).toEpochMilli(), range.get(0).getTimestamp().toEpochMilli());
+        assertEquals(75, range.get(0).getBattery());
+        assertEquals(1001L, range.get(24).getOrderId());
+        assertNull(range.get(25).getOrderId());
+
+        assertEquals(5, store.query(7L, base, base.plusSeconds(200), 5).size());
+        assertEquals(95, store.query(7L, base.minusSeconds(60), base.plusSeconds(200), 1000).size());
+        assertTrue(store.query(8L, base, base.plusSeconds(200), 1000).isEmpty());
+    }
+
+    @Test
+    void reopensLatestSegmentAfterRestart() {
+        Instant base = Instant.now().minusSeconds(60);
+        for (int i = 0; i < 5; i++) {
+            store.append(3L, base.plusSeconds(i), null, null, 50, null);
+        }
+        store.close();
+
+        DroneTrackStoreImpl restarted = newStore();
+        restarted.append(3L, base.plusSeconds(2), null, null, 1, null);
+        restarted.append(3L, base.plusSeconds(5), null, null, 49, null);
+
+        List<DroneDto.TrackPoint> all = restarted.query(3L, base, base.plusSeconds(10), 100);
+        assertEquals(6, all.size());
+        assertNull(all.get(0).getLatitude());
+        assertEquals(49, all.get(5).getBattery());
+    }
+
+    @Test
+    void queriesDoNotRegisterDronesOrOpenWritableMappings() {
+        Instant base = Instant.now().minusSeconds(60);
+        for (int i = 0; i < 5; i++) {
+            store.append(4L, base.plusSeconds(i), 36.0, 117.0, 70, null);
+        }
+        store.close();
+
+        // 重启后只查询：能读到已有记录，但不登记无人机；不存在的无人机同样不留下条目
+        DroneTrackStoreImpl restarted = newStore();
+        assertEquals(5, restarted.query(4L, base, base.plusSeconds(10), 100).size());
+        assertTrue(restarted.query(404L, base, base.plusSeconds(10), 100).isEmpty());
+        Map<?, ?> tracks = (Map<?, ?>) ReflectionTestUtils.getField(restarted, "tracks");
+        assertTrue(tracks.isEmpty());
+
+        // 之后的写入照常接着最新分段写
+        restarted.append(4L, base.plusSeconds(5), 36.0, 117.0, 69, null);
+        assertEquals(6, restarted.query(4L, base, base.plusSeconds(10), 100).size());
+    }
+
+    @Test
+    void purgesSegmentsOlderThanRetention() throws IOException {
+        Instant old = Instant.now().minus(Duration.ofHours(100));
+        for (int i = 0; i < 30; i++) {
+            store.append(5L, old.plusSeconds(i), 36.0, 117.0, 80, null);
+        }
+        Instant recent = Instant.now().minusSeconds(10);
+        store.append(5L, recent, 36.0, 117.0, 80, null);
+        assertEquals(4, segmentCount(5L));
+
+        // 前 3 段全部早于保留期；最后一段仍在写，保留
+        assertEquals(3, store.purgeExpired());
+        assertEquals(1, segmentCount(5L));
+        assertEquals(1, store.query(5L, old, Instant.now(), 100).size());
+    }
+
+    @Test
+    void purgeAfterRestartDoesNotRegisterDrones() throws IOException {
+        Instant old = Instant.now().minus(Duration.ofHours(100));
+        for (long drone = 20; drone < 25; drone++) {
+            for (int i = 0; i < 30; i++) {
+                store.append(drone, old.plusSeconds(i), 36.0, 117.0, 80, null);
+            }
+        }
+        store.append(20L, Instant.now().minusSeconds(10), 36.0, 117.0, 80, null);
+        store.close();
+
+        // 重启后第一次清理：没有可写分段，过期的全部删除（含各自最新的一段），不登记任何无人机
+        DroneTrackStoreImpl restarted = newStore();
+        assertEquals(5 * 3, restarted.purgeExpired());
+        Map<?, ?> tracks = (Map<?, ?>) ReflectionTestUtils.getField(restarted, "tracks");
+        assertTrue(tracks.isEmpty());
+        assertEquals(1, segmentCount(20L));
+        assertEquals(0, segmentCount(21L));
+        assertEquals(1, restarted.query(20L, old, Instant.now(), 100).size());
+    }
+
+    private DroneTrackStoreImpl newStore() {
+        DroneTrackStoreImpl s = new DroneTrackStoreImpl();
+        ReflectionTestUtils.setField(s, "dir", dir.toString());
+        ReflectionTestUtils.setField(s, "segmentBytes", SEGMENT_BYTES);
+        return s;
+    }
+
+    private long segmentCount(long droneId) throws IOException {
+        try (Stream<Path> files = Files.list(dir.resolve(String.valueOf(droneId)))) {
+            return files.count();
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 限时抢购扣库存的并发压测：同一道爆款被大量线程同时抢，
+ * 对比单个 CAS 计数器、分片计数器、数据库条件更新三种做法。
+ * <p>
+ * 每种做法的请求数都远多于库存，大部分请求是售罄后的拒绝；只断言不超卖、不少卖，
+ * 吞吐量只打印出来，不同机器差异很大。
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class FlashSaleStockBenchmarkTest {
+
+    private static final int THREADS = 32;
+    private static final int MEMORY_STOCK = 100_000;
+    private static final int MEMORY_ATTEMPTS_PER_THREAD = 20_000;
+    private static final int DB_STOCK = 2_000;
+    private static final int DB_ATTEMPTS_PER_THREAD = 200;
+
+    @Autowired
+    private FoodRepository foodRepository;
+    @Autowired
+    private DataSource dataSource;
+
+    @AfterEach
+    void tearDown() {
+        foodRepository.deleteAll();
+    }
+
+    @Test
+    void shardedCountersNeverOversellUnderContention() throws Exception {
+        ShardedStockCounter single = new ShardedStockCounter(MEMORY_STOCK, 1);
+        run("单个 CAS", MEMORY_STOCK, MEMORY_ATTEMPTS_PER_THREAD, () -> single.tryTake(1));
+        assertEquals(0, single.available());
+        assertEquals(-MEMORY_STOCK, single.drainPending());
+
+        int shards = Runtime.getRuntime().availableProcessors();
+        ShardedStockCounter sharded = new ShardedStockCounter(MEMORY_STOCK, shards);
+        run("分片 x" + shards, MEMORY_STOCK, MEMORY_ATTEMPTS_PER_THREAD, () -> sharded.tryTake(1));
+        assertEquals(0, sharded.available());
+        assertEquals(-MEMORY_STOCK, sharded.drainPending());
+
+        // 数据库做法：每个请求一条条件更新，售罄后的请求也要打到数据库
+        Long foodId = newFood(DB_STOCK);
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        run("数据库更新", DB_STOCK, DB_ATTEMPTS_PER_THREAD, () -> {
+            try {
+                return jdbc.update("update foods set stock = stock - 1 where id = ? and stock >= 1", foodId) == 1;
+            } catch (RuntimeException e) {
+                // 锁等待超时算作抢失败
+                return false;
+            }
+        });
+        assertEquals(0, foodRepository.findById(foodId).orElseThrow().getStock());
+    }
+
+    /**
+     * 所有线程同时开抢，每个线程发 attempts 次请求；断言售出份数等于库存，打印每毫秒处理的请求数。
+     */
+    private void run(String name, int stock, int attempts, BooleanSupplier take) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch ready = new CountDownLatch(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        AtomicInteger sold = new AtomicInteger();
+        for (int i = 0; i < THREADS; i++) {
+            pool.execute(() -> {
+                ready.countDown();
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                int mine = 0;
+                for (int n = 0; n < attempts; n++) {
+                    if (take.getAsBoolean()) {
+                        mine++;
+                    }
+                }
+                sold.addAndGet(mine);
+            });
+        }
+        ready.await();
+        long begin = System.nanoTime();
+        start.countDown();
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(120, TimeUnit.SECONDS));
+        long elapsed = System.nanoTime() - begin;
+
+        assertEquals(stock, sold.get(), name + " 售出份数");
+        double rate = (double) THREADS * attempts * 1e6 / elapsed;
+        System.out.printf("%-12s %d 线程 x %d 次请求，库存 %d：%.0f 次/毫秒%n", name, THREADS, attempts, stock, rate);
+    }
+
+    private Long newFood(int stock) {
+        Food f = new Food();
+        f.setName("爆款");
+        f.setCanteenId(1L);
+        f.setPriceCent(990);
+        f.setStock(stock);
+        f.setOnShelf(true);
+        f.setFlashSale(true);
+        f.setCreatedAt(Instant.now());
+        f.setUpdatedAt(Instant.now());
+        return foodRepository.save(f).getId();
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.service.event.FoodChangedEvent;
+import com.example.sdhucanteendrone.service.event.FoodsImportedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 菜品搜索索引：中文双字切分、拼音首字母、相关度排序、过滤条件与增量维护。
+ */
+class FoodSearchIndexImplTest {
+
+    private static final Long CANTEEN = 1L;
+
+    private FoodRepository repository;
+    private FoodSearchIndexImpl index;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(FoodRepository.class);
+        when(repository.findAll()).thenReturn(List.of(
+                food(1L, "番茄炒蛋", 10L, true, "酸甜下饭"),
+                food(2L, "番茄牛腩", 10L, true, null),
+                food(3L, "西红柿鸡蛋面", 20L, true, "番茄汤底"),
+                food(4L, "宫保鸡丁", 10L, false, null),
+                food(5L, "番茄", 30L, true, null),
+                food(6L, "番茄炒蛋", 10L, true, null, 2L)));
+        index = new FoodSearchIndexImpl(repository);
+    }
+
+    @Test
+    void notReadyUntilLoaded() {
+        assertFalse(index.isReady());
+        index.rebuild();
+        assertTrue(index.isReady());
+        assertEquals(6, index.size());
+    }
+
+    @Test
+    void ranksByNameThenInitialsThenDescription() {
+        index.rebuild();
+        // 完全相同 > 前缀（短的在前）> 描述命中；其它食堂的同名菜不出现
+        assertEquals(List.of(5L, 1L, 2L, 3L), index.search(CANTEEN, "番茄", null, null));
+        assertEquals(List.of(1L), index.search(CANTEEN, " 炒蛋 ", null, null));
+        assertEquals(List.of(), index.search(CANTEEN, "炒牛", null, null));
+        // 单字走单字倒排
+        assertEquals(List.of(3L, 4L), index.search(CANTEEN, "鸡", null, null));
+    }
+
+    @Test
+    void matchesPinyinInitials() {
+        index.rebuild();
+        assertEquals("fqcd", FoodSearchIndexImpl.initials("番茄炒蛋"));
+        assertEquals("gbjd", FoodSearchIndexImpl.initials("宫保鸡丁"));
+        assertEquals(List.of(1L), index.search(CANTEEN, "FQCD", null, null));
+        // 首字母前缀同级按菜名长度排
+        assertEquals(List.of(5L, 1L, 2L), index.search(CANTEEN, "fq", null, null));
+    }
+
+    @Test
+    void filtersByCategoryAndShelf() {
+        index.rebuild();
+        assertEquals(List.of(1L, 2L), index.search(CANTEEN, "番茄", 10L, null));
+        assertEquals(List.of(), index.search(CANTEEN, "宫保", null, true));
+        assertEquals(List.of(4L), index.search(CANTEEN, "宫保", null, false));
+    }
+
+    @Test
+    void changeEventReindexesFood() {
+        index.rebuild();
+        when(repository.findById(1L)).thenReturn(Optional.of(food(1L, "土豆丝", 10L, true, null)));
+        index.onFoodChanged(new FoodChangedEvent(1L));
+
+        assertEquals(List.of(5L, 2L, 3L), index.search(CANTEEN, "番茄", null, null));
+        assertEquals(List.of(1L), index.search(CANTEEN, "tds", null, null));
+
+        when(repository.findById(1L)).thenReturn(Optional.empty());
+        index.onFoodChanged(new FoodChangedEvent(1L));
+        assertEquals(List.of(), index.search(CANTEEN, "土豆", null, null));
+        assertEquals(5, index.size());
+    }
+
+    @Test
+    void changesCommittedDuringRebuildAreReplayed() {
+        // 全量快照读出的是旧数据；读的过程中 1 号改名、2 号被删、又导入了 7 号
+        when(repository.findAll()).thenAnswer(inv -> {
+            index.onFoodChanged(new FoodChangedEvent(1L));
+            index.onFoodChanged(new FoodChangedEvent(2L));
+            index.onFoodsImported(new FoodsImportedEvent(CANTEEN, List.of(food(7L, "土豆烧牛肉", 10L, true, null))));
+            return List.of(food(1L, "番茄炒蛋", 10L, true, null), food(2L, "番茄牛腩", 10L, true, null));
+        });
+        when(repository.findAllById(any())).thenReturn(List.of(food(1L, "土豆丝", 10L, true, null)));
+
+        index.rebuild();
+
+        assertTrue(index.isReady());
+        assertEquals(List.of(), index.search(CANTEEN, "番茄", null, null));
+        assertEquals(List.of(1L, 7L), index.search(CANTEEN, "土豆", null, null));
+        assertEquals(2, index.size());
+        // 加载期间只记下 id，完成时一次回查
+        verify(repository, never()).findById(any());
+        verify(repository, times(1)).findAllById(any());
+    }
+
+    @Test
+    void importedFoodsAreIndexedWithoutReloading() {
+        index.rebuild();
+        index.onFoodsImported(new FoodsImportedEvent(CANTEEN, List.of(
+                food(7L, "土豆丝", 10L, true, null), food(8L, "土豆烧牛肉", 10L, true, null))));
+
+        assertEquals(List.of(7L, 8L), index.search(CANTEEN, "土豆", null, null));
+        assertEquals(8, index.size());
+        verify(repository, never()).findById(any());
+    }
+
+    private static Food food(Long id, String name, Long categoryId, boolean onShelf, String description) {
+        return food(id, name, categoryId, onShelf, description, CANTEEN);
+    }
+
+    private static Food food(Long id, String name, Long categoryId, boolean onShelf, String description,
+                             Long canteenId) {
+        Food f = new Food();
+        f.setId(id);
+        f.setCanteenId(canteenId);
+        f.setCategoryId(categoryId);
+        f.setName(name);
+        f.setOnShelf(onShelf);
+        f.setDescription(description);
+        return f;
+    }
+}
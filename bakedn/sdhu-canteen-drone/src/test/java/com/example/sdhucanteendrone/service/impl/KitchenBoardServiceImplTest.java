@@ -0,0 +1,103 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.service.OrderService;
+import com.example.sdhucanteendrone.service.event.OrderChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.clearInvocations;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 后厨看板：启动加载一次，之后按订单变化增量维护，读取不访问数据库。
+ */
+class KitchenBoardServiceImplTest {
+
+    private OrderService orderService;
+    private KitchenBoardServiceImpl board;
+
+    @BeforeEach
+    void setUp() {
+        orderService = mock(OrderService.class);
+        when(orderService.listOrdersByStatus(any())).thenReturn(List.of(
+                summary(1L, 10L, OrderStatus.PENDING),
+                summary(2L, 10L, OrderStatus.CONFIRMED),
+                summary(3L, 20L, OrderStatus.PACKED)));
+        board = new KitchenBoardServiceImpl(orderService);
+        board.rebuild();
+        clearInvocations(orderService);
+    }
+
+    @Test
+    void readsAreServedFromMemory() {
+        OrderDto.KitchenBoard b = board.getBoard(10L);
+
+        assertEquals(2, b.getTotal());
+        assertEquals(1L, b.getPending().get(0).getId());
+        assertEquals(2L, b.getConfirmed().get(0).getId());
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void statusChangesMoveAndRemoveOrdersWithoutReadingTheDatabase() {
+        board.onOrderChanged(new OrderChangedEvent(1L, 1L, 10L, OrderStatus.PENDING, OrderStatus.PACKED, null));
+        board.onOrderChanged(new OrderChangedEvent(2L, 1L, 10L, OrderStatus.CONFIRMED, OrderStatus.SHIPPED, null));
+
+        OrderDto.KitchenBoard b = board.getBoard(10L);
+        assertEquals(1, b.getTotal());
+        assertEquals(1L, b.getPacked().get(0).getId());
+        assertEquals(0, b.getPending().size());
+        verifyNoInteractions(orderService);
+    }
+
+    @Test
+    void newOrdersAreReadOnceAndStaleEventsDoNotMoveStatusBack() {
+        when(orderService.findOrderSummary(4L)).thenReturn(Optional.of(summary(4L, 10L, OrderStatus.PENDING)));
+        board.onOrderChanged(new OrderChangedEvent(4L, 1L, 10L, null, OrderStatus.PENDING, null));
+        verify(orderService).findOrderSummary(4L);
+
+        // 乱序：PACKED 先到，CONFIRMED 后到
+        board.onOrderChanged(new OrderChangedEvent(4L, 1L, 10L, OrderStatus.CONFIRMED, OrderStatus.PACKED, null));
+        board.onOrderChanged(new OrderChangedEvent(4L, 1L, 10L, OrderStatus.PENDING, OrderStatus.CONFIRMED, null));
+
+        OrderDto.KitchenBoard b = board.getBoard(10L);
+        assertEquals(List.of(4L), b.getPacked().stream().map(OrderDto.OrderSummary::getId).toList());
+        verify(orderService, times(1)).findOrderSummary(any());
+    }
+
+    @Test
+    void snapshotReadBeforeCancelDoesNotBringTheOrderBack() {
+        // 取消先处理完，下单事件读到的还是取消前的快照
+        board.onOrderChanged(new OrderChangedEvent(5L, 1L, 10L, OrderStatus.PENDING, OrderStatus.CANCELED, null));
+        when(orderService.findOrderSummary(5L)).thenReturn(Optional.of(summary(5L, 10L, OrderStatus.PENDING)));
+        board.onOrderChanged(new OrderChangedEvent(5L, 1L, 10L, null, OrderStatus.PENDING, null));
+
+        assertEquals(0, board.getBoard(10L).getPending().stream().filter(o -> o.getId() == 5L).count());
+    }
+
+    @Test
+    void callersGetCopies() {
+        board.getBoard(10L).getPending().get(0).setStatus(OrderStatus.CANCELED);
+
+        assertEquals(OrderStatus.PENDING, board.getBoard(10L).getPending().get(0).getStatus());
+    }
+
+    private OrderDto.OrderSummary summary(Long id, Long canteenId, OrderStatus status) {
+        OrderDto.OrderSummary s = new OrderDto.OrderSummary();
+        s.setId(id);
+        s.setCanteenId(canteenId);
+        s.setStatus(status);
+        return s;
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.MenuDto;
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.repository.CanteenRepository;
+import com.example.sdhucanteendrone.repository.FoodBatchRepository;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.repository.MenuCategoryRepository;
+import com.example.sdhucanteendrone.service.FoodSearchIndex;
+import com.example.sdhucanteendrone.service.MenuSnapshotService;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.Mockito.mock;
+
+/**
+ * 菜品整行保存与库存回写并发：只改价格的保存不能把读到的旧库存写回去。
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.dialect=org.hibernate.dialect.H2Dialect")
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class MenuServiceImplTest {
+
+    @Autowired
+    private FoodRepository foodRepository;
+    @Autowired
+    private CanteenRepository canteenRepository;
+    @Autowired
+    private MenuCategoryRepository categoryRepository;
+    @Autowired
+    private DataSource dataSource;
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private StockReservationServiceImpl stockService;
+    private MenuServiceImpl menuService;
+
+    @BeforeEach
+    void setUp() {
+        stockService = new StockReservationServiceImpl(foodRepository,
+                new FoodBatchRepository(new JdbcTemplate(dataSource)));
+        menuService = new MenuServiceImpl(canteenRepository, categoryRepository, foodRepository, stockService,
+                mock(FoodSearchIndex.class), mock(MenuSnapshotService.class), mock(ApplicationEventPublisher.class));
+    }
+
+    @AfterEach
+    void tearDown() {
+        foodRepository.deleteAll();
+    }
+
+    @Test
+    void priceOnlyUpdateDoesNotOverwriteAConcurrentFlush() {
+        Long foodId = newFood(100);
+        assertNull(stockService.tryReserve(Map.of(foodId, 5)));
+
+        MenuDto.FoodUpdateReq req = new MenuDto.FoodUpdateReq();
+        req.setPriceCent(1500);
+        new TransactionTemplate(transactionManager).executeWithoutResult(s -> {
+            // 改价事务先读到 stock = 100，回写在它提交前把 -5 写进库
+            foodRepository.findById(foodId).orElseThrow();
+            CompletableFuture.runAsync(stockService::flush).orTimeout(10, TimeUnit.SECONDS).join();
+            menuService.updateFood(1L, foodId, req);
+        });
+
+        Food food = foodRepository.findById(foodId).orElseThrow();
+        assertEquals(1500, food.getPriceCent());
+        assertEquals(95, food.getStock());
+        assertEquals(95, stockService.getAvailable(foodId));
+    }
+
+    @Test
+    void stockInUpdateRequestIsStillWritten() {
+        Long foodId = newFood(100);
+        assertNull(stockService.tryReserve(Map.of(foodId, 1)));
+
+        MenuDto.FoodUpdateReq req = new MenuDto.FoodUpdateReq();
+        req.setStock(30);
+        new TransactionTemplate(transactionManager).executeWithoutResult(s ->
+                assertEquals(30, menuService.updateFood(1L, foodId, req).getStock()));
+
+        assertEquals(30, foodRepository.findById(foodId).orElseThrow().getStock());
+        assertEquals(30, stockService.getAvailable(foodId));
+        // 管理端设的是绝对值，之前未回写的 -1 一并作废
+        assertEquals(0, stockService.flush());
+    }
+
+    private Long newFood(int stock) {
+        Food f = new Food();
+        f.setName("红烧肉");
+        f.setCanteenId(1L);
+        f.setPriceCent(1200);
+        f.setStock(stock);
+        f.setOnShelf(true);
+        f.setCreatedAt(Instant.now());
+        f.setUpdatedAt(Instant.now());
+        return foodRepository.save(f).getId();
+    }
+}
@@ -0,0 +1,116 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.MenuDto;
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.entity.MenuCategory;
+import com.example.sdhucanteendrone.repository.CanteenRepository;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.repository.MenuCategoryRepository;
+import com.example.sdhucanteendrone.service.event.MenuChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 菜单快照：分组排序、命中后不再查库、变更后重建并递增版本、构建期间有变更不写回。
+ */
+class MenuSnapshotServiceImplTest {
+
+    private static final Long CANTEEN = 1L;
+
+    private CanteenRepository canteenRepository;
+    private MenuCategoryRepository categoryRepository;
+    private FoodRepository foodRepository;
+    private MenuSnapshotServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        canteenRepository = mock(CanteenRepository.class);
+        categoryRepository = mock(MenuCategoryRepository.class);
+        foodRepository = mock(FoodRepository.class);
+        service = new MenuSnapshotServiceImpl(canteenRepository, categoryRepository, foodRepository);
+
+        when(canteenRepository.existsById(CANTEEN)).thenReturn(true);
+        when(categoryRepository.findByCanteenId(CANTEEN)).thenReturn(List.of(
+                category(10L, "主食", 2), category(11L, "热菜", 1)));
+        when(foodRepository.findByCanteenIdAndOnShelfTrue(CANTEEN)).thenReturn(List.of(
+                food(3L, "米饭", 10L), food(1L, "宫保鸡丁", 11L), food(2L, "番茄炒蛋", 11L), food(4L, "酸梅汤", null)));
+    }
+
+    @Test
+    void groupsFoodsUnderSortedCategories() {
+        MenuDto.MenuSnapshot menu = service.get(CANTEEN);
+
+        assertEquals(1, menu.getVersion());
+        List<MenuDto.MenuSection> sections = menu.getSections();
+        assertEquals(List.of("热菜", "主食", "未分类"),
+                sections.stream().map(MenuDto.MenuSection::getCategoryName).toList());
+        assertEquals(List.of(1L, 2L), sections.get(0).getFoods().stream().map(MenuDto.FoodSummary::getId).toList());
+        assertEquals("主食", sections.get(1).getFoods().get(0).getCategoryName());
+        assertNull(sections.get(2).getCategoryId());
+    }
+
+    @Test
+    void servesCachedSnapshotUntilMenuChanges() {
+        MenuDto.MenuSnapshot first = service.get(CANTEEN);
+        assertSame(first, service.get(CANTEEN));
+        verify(foodRepository, times(1)).findByCanteenIdAndOnShelfTrue(CANTEEN);
+
+        service.onMenuChanged(new MenuChangedEvent(CANTEEN));
+        MenuDto.MenuSnapshot second = service.get(CANTEEN);
+        assertEquals(2, second.getVersion());
+        assertSame(second, service.get(CANTEEN));
+        verify(foodRepository, times(2)).findByCanteenIdAndOnShelfTrue(CANTEEN);
+    }
+
+    @Test
+    void changeDuringBuildIsNotOverwrittenByStaleSnapshot() {
+        // 第一次构建查库期间菜单发生变化：该结果不能写回，应重建一次
+        when(foodRepository.findByCanteenIdAndOnShelfTrue(CANTEEN))
+                .thenAnswer(inv -> {
+                    service.invalidate(CANTEEN);
+                    return List.of(food(1L, "宫保鸡丁", 11L));
+                })
+                .thenReturn(List.of(food(1L, "宫保鸡丁", 11L), food(2L, "番茄炒蛋", 11L)));
+
+        MenuDto.MenuSnapshot menu = service.get(CANTEEN);
+        assertEquals(2, menu.getVersion());
+        assertEquals(2, menu.getSections().get(0).getFoods().size());
+        assertSame(menu, service.get(CANTEEN));
+    }
+
+    @Test
+    void unknownCanteenIsNotFound() {
+        assertThrows(BizException.class, () -> service.get(99L));
+    }
+
+    private static MenuCategory category(Long id, String name, int sort) {
+        MenuCategory c = new MenuCategory();
+        c.setId(id);
+        c.setCanteenId(CANTEEN);
+        c.setName(name);
+        c.setSort(sort);
+        return c;
+    }
+
+    private static Food food(Long id, String name, Long categoryId) {
+        Food f = new Food();
+        f.setId(id);
+        f.setCanteenId(CANTEEN);
+        f.setCategoryId(categoryId);
+        f.setName(name);
+        f.setOnShelf(true);
+        return f;
+    }
+}
@@ -0,0 +1,199 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.MenuDto;
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.entity.MenuCategory;
+import com.example.sdhucanteendrone.entity.enums.MenuFileFormat;
+import com.example.sdhucanteendrone.repository.CanteenRepository;
+import com.example.sdhucanteendrone.repository.FoodBatchRepository;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.repository.MenuCategoryRepository;
+import com.example.sdhucanteendrone.service.event.FoodsImportedEvent;
+import com.example.sdhucanteendrone.service.event.MenuChangedEvent;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 菜单批量导入导出：逐行校验（内存重名）、自动建分类、批量写入后发事件，导出后可原样再导入。
+ */
+class MenuTransferServiceImplTest {
+
+    private static final Long CANTEEN = 1L;
+
+    private CanteenRepository canteenRepository;
+    private MenuCategoryRepository categoryRepository;
+    private FoodRepository foodRepository;
+    private FoodBatchRepository foodBatchRepository;
+    private ApplicationEventPublisher eventPublisher;
+    private MenuTransferServiceImpl service;
+
+    /** batchInsertFoods 收到的菜品（调用方会复用 buffer，这里拷贝一份） */
+    private final List<Food> inserted = new ArrayList<>();
+    private long nextId = 100;
+
+    @BeforeEach
+    void setUp() {
+        canteenRepository = mock(CanteenRepository.class);
+        categoryRepository = mock(MenuCategoryRepository.class);
+        foodRepository = mock(FoodRepository.class);
+        foodBatchRepository = mock(FoodBatchRepository.class);
+        eventPublisher = mock(ApplicationEventPublisher.class);
+        service = new MenuTransferServiceImpl(canteenRepository, categoryRepository, foodRepository,
+                foodBatchRepository, new ObjectMapper(), eventPublisher);
+
+        when(canteenRepository.existsById(any())).thenReturn(true);
+        when(categoryRepository.findByCanteenId(CANTEEN)).thenReturn(List.of(category(11L, "热菜", 1)));
+        when(foodRepository.findNamesByCanteenId(CANTEEN)).thenReturn(List.of("米饭"));
+        when(categoryRepository.save(any())).thenAnswer(inv -> {
+            MenuCategory c = inv.getArgument(0);
+            c.setId(nextId++);
+            return c;
+        });
+        doAnswer(inv -> {
+            List<Food> foods = inv.getArgument(0);
+            foods.forEach(f -> f.setId(nextId++));
+            inserted.addAll(foods);
+            return null;
+        }).when(foodBatchRepository).batchInsertFoods(anyList());
+    }
+
+    @Test
+    void csvImportValidatesRowsInMemory() {
+        String csv = """
+                category,categorySort,name,priceCent,stock,onShelf,description
+                热菜,,番茄炒蛋,1200,50,true,"酸甜, 下饭"
+                汤,5,,,,,
+                主食,,米饭,200,,,
+                热菜,,番茄炒蛋,1300,,,
+                ,,酸梅汤,abc,,,
+                ,,"绿豆
+                沙冰",800,,false,
+                """;
+
+        MenuDto.ImportReport report = service.importMenu(CANTEEN, MenuFileFormat.CSV, stream(csv));
+
+        assertEquals(2, report.getCreatedFoods());
+        // 只有"汤"是新分类；"主食"所在行校验失败，不建分类
+        assertEquals(1, report.getCreatedCategories());
+        assertEquals(3, report.getSkippedRows());
+        assertEquals(List.of(4L, 5L, 6L), report.getErrors().stream().map(MenuDto.ImportError::getRow).toList());
+        assertEquals("该菜品名称已存在", report.getErrors().get(1).getMessage());
+
+        assertEquals(List.of("番茄炒蛋", "绿豆\n沙冰"), inserted.stream().map(Food::getName).toList());
+        assertEquals(11L, inserted.get(0).getCategoryId());
+        assertEquals("酸甜, 下饭", inserted.get(0).getDescription());
+        assertFalse(inserted.get(1).getOnShelf());
+        assertEquals(0, inserted.get(1).getStock());
+
+        verify(foodBatchRepository, times(1)).batchInsertFoods(anyList());
+        // 整批一个事件，带上已回填 id 的菜品对象
+        verify(eventPublisher, times(1)).publishEvent(new FoodsImportedEvent(CANTEEN, inserted));
+        verify(eventPublisher, times(1)).publishEvent(new MenuChangedEvent(CANTEEN));
+    }
+
+    @Test
+    void jsonImportBindsOneElementAtATime() {
+        String json = """
+                [{"category": "热菜", "name": "红烧肉", "priceCent": 1800},
+                 {"name": "红烧肉", "priceCent": 1},
+                 {"name": "冰粉", "priceCent": 500, "weightGrams": 0}]
+                """;
+
+        MenuDto.ImportReport report = service.importMenu(CANTEEN, MenuFileFormat.JSON, stream(json));
+
+        assertEquals(1, report.getCreatedFoods());
+        assertEquals(2, report.getSkippedRows());
+        assertEquals(List.of(2L, 3L), report.getErrors().stream().map(MenuDto.ImportError::getRow).toList());
+    }
+
+    @Test
+    void jsonTypeErrorsSkipTheRowLikeCsv() {
+        String json = """
+                [{"name": "酸梅汤", "priceCent": "abc"},
+                 {"name": "冰粉", "priceCent": 500, "onShelf": "maybe"},
+                 {"name": "绿豆沙冰", "priceCent": 800, "stock": {"n": 1}},
+                 {"name": "凉面", "priceCent": "600"}]
+                """;
+
+        MenuDto.ImportReport report = service.importMenu(CANTEEN, MenuFileFormat.JSON, stream(json));
+
+        assertEquals(1, report.getCreatedFoods());
+        assertEquals(List.of("凉面"), inserted.stream().map(Food::getName).toList());
+        assertEquals(3, report.getSkippedRows());
+        assertEquals(List.of(1L, 2L, 3L), report.getErrors().stream().map(MenuDto.ImportError::getRow).toList());
+        assertEquals("酸梅汤", report.getErrors().get(0).getName());
+        assertEquals("priceCent 不是整数：\"abc\"", report.getErrors().get(0).getMessage());
+        assertEquals("onShelf 应为 true / false：\"maybe\"", report.getErrors().get(1).getMessage());
+    }
+
+    @Test
+    void exportedCsvImportsIntoAnotherCanteen() throws Exception {
+        Food braised = food(1L, "红烧肉", 11L);
+        Food noodles = food(2L, "牛肉面, 大碗", null);
+        doAnswer(inv -> {
+            Consumer<Food> consumer = inv.getArgument(1);
+            consumer.accept(braised);
+            consumer.accept(noodles);
+            return null;
+        }).when(foodBatchRepository).streamFoods(eq(CANTEEN), any());
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        service.exportMenu(CANTEEN, MenuFileFormat.CSV).writeTo(out);
+
+        Long other = 2L;
+        when(categoryRepository.findByCanteenId(other)).thenReturn(List.of());
+        when(foodRepository.findNamesByCanteenId(other)).thenReturn(List.of());
+        MenuDto.ImportReport report = service.importMenu(other, MenuFileFormat.CSV,
+                new ByteArrayInputStream(out.toByteArray()));
+
+        assertEquals(1, report.getCreatedCategories());
+        assertEquals(2, report.getCreatedFoods());
+        assertEquals(0, report.getSkippedRows());
+        assertEquals(List.of("红烧肉", "牛肉面, 大碗"), inserted.stream().map(Food::getName).toList());
+    }
+
+    private static ByteArrayInputStream stream(String s) {
+        return new ByteArrayInputStream(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static MenuCategory category(Long id, String name, int sort) {
+        MenuCategory c = new MenuCategory();
+        c.setId(id);
+        c.setCanteenId(CANTEEN);
+        c.setName(name);
+        c.setSort(sort);
+        return c;
+    }
+
+    private static Food food(Long id, String name, Long categoryId) {
+        Food f = new Food();
+        f.setId(id);
+        f.setCanteenId(CANTEEN);
+        f.setCategoryId(categoryId);
+        f.setName(name);
+        f.setPriceCent(1500);
+        f.setStock(20);
+        f.setOnShelf(true);
+        return f;
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 合单效果模拟：同一批订单、同一支机队，比较逐单起飞与合单起飞每小时送达的订单数。
+ * <p>
+ * 派机规则与 DroneDispatchServiceImpl 一致（按食堂 + 楼栋分组、等待窗口、MissionPlanner 装载），
+ * 飞行耗时按距离、每单投递时间和返航整备时间估算。随机种子固定，结果可复现。
+ */
+class MissionBatchingSimulationTest {
+
+    private static final int DRONES = 6;
+    private static final double CAPACITY_KG = 5.0;
+    private static final double SPEED_MPS = 10;
+    private static final int DROP_SECONDS = 60;
+    private static final int TURNAROUND_SECONDS = 120;
+    /** 各楼栋到食堂的距离（米） */
+    private static final int[] BUILDING_DISTANCE_M = {300, 500, 700, 900, 1200, 1500};
+    private static final int HORIZON_SECONDS = 3 * 3600;
+    private static final int TICK_SECONDS = 5;
+    /** 平均每 20 秒打包完成一单（约 180 单/小时，超过逐单配送的运力） */
+    private static final double MEAN_ARRIVAL_SECONDS = 20;
+
+    @Test
+    void batchingRaisesDeliveriesPerHour() {
+        List<SimOrder> demand = demand(new Random(7));
+
+        SimResult single = simulate(demand, 1, 0);
+        SimResult batched = simulate(demand, 4, 60);
+        System.out.printf("逐单起飞：%.1f 单/小时，%d 次起飞；合单起飞：%.1f 单/小时，%d 次起飞%n",
+                single.deliveriesPerHour(), single.flights(), batched.deliveriesPerHour(), batched.flights());
+
+        assertTrue(batched.flights() < batched.delivered());
+        assertTrue(batched.deliveriesPerHour() > single.deliveriesPerHour() * 1.5,
+                "合单 " + batched.deliveriesPerHour() + " 单/小时，逐单 " + single.deliveriesPerHour());
+    }
+
+    @Test
+    void plannerKeepsQueueHeadAndRespectsCapacity() {
+        List<Double> queue = List.of(3.0, 2.5, 1.0, 1.5, 0.5);
+        assertEquals(List.of(3.0, 1.0, 0.5), MissionPlanner.fill(queue, Double::doubleValue, 5.0, 4));
+        assertEquals(List.of(3.0, 1.0), MissionPlanner.fill(queue, Double::doubleValue, 5.0, 2));
+        // 队首即使超重也必装，是否装得下由调用方挑机时保证
+        assertEquals(List.of(6.0), MissionPlanner.fill(List.of(6.0, 1.0), Double::doubleValue, 5.0, 1));
+
+        assertEquals("宿舍1栋", MissionPlanner.destinationKey("宿舍1栋-101"));
+        assertEquals("宿舍1栋", MissionPlanner.destinationKey(" 宿舍1栋 203"));
+        assertEquals("图书馆", MissionPlanner.destinationKey("图书馆"));
+        assertEquals("", MissionPlanner.destinationKey(null));
+    }
+
+    private List<SimOrder> demand(Random random) {
+        List<SimOrder> orders = new ArrayList<>();
+        double t = 0;
+        long id = 1;
+        while (true) {
+            t += -Math.log(1 - random.nextDouble()) * MEAN_ARRIVAL_SECONDS;
+            if (t >= HORIZON_SECONDS) {
+                return orders;
+            }
+            orders.add(new SimOrder(id++, (int) t, random.nextInt(BUILDING_DISTANCE_M.length),
+                    0.5 * (1 + random.nextInt(4))));
+        }
+    }
+
+    private SimResult simulate(List<SimOrder> demand, int maxOrders, int windowSeconds) {
+        int[] freeAt = new int[DRONES];
+        List<SimOrder> waiting = new ArrayList<>();
+        int next = 0;
+        int delivered = 0;
+        int flights = 0;
+
+        for (int t = 0; t < HORIZON_SECONDS; t += TICK_SECONDS) {
+            while (next < demand.size() && demand.get(next).packedAt() <= t) {
+                waiting.add(demand.get(next++));
+            }
+            Map<Integer, List<SimOrder>> groups = waiting.stream().collect(Collectors.groupingBy(
+                    SimOrder::building, LinkedHashMap::new, Collectors.toCollection(ArrayList::new)));
+
+            for (SimOrder head : new ArrayList<>(waiting)) {
+                int drone = freeDrone(freeAt, t);
+                if (drone < 0) {
+                    break;
+                }
+                List<SimOrder> pending = groups.get(head.building());
+                if (pending.isEmpty() || pending.get(0) != head) {
+                    continue;
+                }
+                if (maxOrders > 1 && pending.size() < maxOrders
+                        && MissionPlanner.plannedKg(pending, SimOrder::kg, maxOrders) < CAPACITY_KG
+                        && t - head.packedAt() < windowSeconds) {
+                    pending.clear();
+                    continue;
+                }
+                List<SimOrder> flight = MissionPlanner.fill(pending, SimOrder::kg, CAPACITY_KG, maxOrders);
+                pending.removeAll(flight);
+                waiting.removeAll(flight);
+
+                int oneWay = (int) Math.round(BUILDING_DISTANCE_M[head.building()] / SPEED_MPS);
+                int lastDropAt = t + oneWay + flight.size() * DROP_SECONDS;
+                freeAt[drone] = lastDropAt + oneWay + TURNAROUND_SECONDS;
+                flights++;
+                if (lastDropAt <= HORIZON_SECONDS) {
+                    delivered += flight.size();
+                }
+            }
+        }
+        return new SimResult(delivered, flights, delivered * 3600.0 / HORIZON_SECONDS);
+    }
+
+    private int freeDrone(int[] freeAt, int now) {
+        for (int i = 0; i < freeAt.length; i++) {
+            if (freeAt[i] <= now) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private record SimOrder(long id, int packedAt, int building, double kg) {
+    }
+
+    private record SimResult(int delivered, int flights, double deliveriesPerHour) {
+    }
+}
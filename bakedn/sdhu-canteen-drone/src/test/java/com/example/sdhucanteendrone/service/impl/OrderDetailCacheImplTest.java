@@ -0,0 +1,55 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+/**
+ * 订单详情缓存：命中、失效，以及加载期间被失效时不回写旧快照。
+ */
+class OrderDetailCacheImplTest {
+
+    private final OrderDetailCacheImpl cache = new OrderDetailCacheImpl();
+
+    @Test
+    void secondReadIsServedFromCache() {
+        AtomicInteger loads = new AtomicInteger();
+        OrderDto.OrderDetail first = cache.getOrLoad(1L, id -> detail(id, loads));
+        OrderDto.OrderDetail second = cache.getOrLoad(1L, id -> detail(id, loads));
+
+        assertSame(first, second);
+        assertEquals(1, loads.get());
+        assertEquals(1, cache.stats().getHits());
+        assertEquals(1, cache.stats().getMisses());
+
+        cache.invalidate(1L);
+        cache.getOrLoad(1L, id -> detail(id, loads));
+        assertEquals(2, loads.get());
+        assertEquals(1, cache.stats().getInvalidations());
+    }
+
+    @Test
+    void loadRacingWithInvalidationIsNotCached() {
+        AtomicInteger loads = new AtomicInteger();
+        cache.getOrLoad(1L, id -> {
+            // 加载过程中订单提交了变化
+            cache.invalidate(1L);
+            return detail(id, loads);
+        });
+        cache.getOrLoad(1L, id -> detail(id, loads));
+
+        assertEquals(2, loads.get());
+        assertEquals(0, cache.stats().getHits());
+    }
+
+    private OrderDto.OrderDetail detail(Long id, AtomicInteger loads) {
+        loads.incrementAndGet();
+        OrderDto.OrderDetail d = new OrderDto.OrderDetail();
+        d.setId(id);
+        return d;
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.entity.OrderStatusEvent;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.service.OrderService;
+import com.example.sdhucanteendrone.service.event.OrderChangedEvent;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * SSE 推送：大量空闲订阅连接下，新状态事件能推送到每一个连接。
+ */
+class OrderEventStreamServiceImplTest {
+
+    private static final int SUBSCRIBERS = 5000;
+
+    private final AtomicInteger sent = new AtomicInteger();
+    private final AtomicInteger completed = new AtomicInteger();
+    private CountDownLatch expectedSends;
+    private final CountDownLatch completions = new CountDownLatch(1);
+
+    private OrderService orderService;
+    private OrderEventStreamServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        orderService = mock(OrderService.class);
+        OrderDto.OrderTimeline timeline = new OrderDto.OrderTimeline();
+        timeline.setEvents(List.of(eventDto(1L, OrderStatus.PENDING)));
+        when(orderService.getOrderTimeline(anyLong())).thenReturn(timeline);
+
+        service = new OrderEventStreamServiceImpl(orderService) {
+            @Override
+            SseEmitter createEmitter(long timeout) {
+                return new CountingEmitter();
+            }
+        };
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.shutdown();
+    }
+
+    @Test
+    void pushesToThousandsOfIdleSubscribers() throws Exception {
+        // 每个连接：1 条历史事件 + 1 条实时事件
+        expectedSends = new CountDownLatch(SUBSCRIBERS * 2);
+        List<SseEmitter> emitters = new ArrayList<>(SUBSCRIBERS);
+        for (int i = 0; i < SUBSCRIBERS; i++) {
+            emitters.add(service.subscribe(42L, null));
+        }
+        assertEquals(SUBSCRIBERS, service.subscriberCount());
+
+        service.onOrderChanged(changed(42L, 2L, OrderStatus.CONFIRMED));
+
+        assertTrue(expectedSends.await(30, TimeUnit.SECONDS), "未推送到全部连接");
+        assertEquals(SUBSCRIBERS * 2, sent.get());
+        assertEquals(SUBSCRIBERS, service.subscriberCount());
+    }
+
+    @Test
+    void terminalStatusClosesStreamAndLastEventIdSkipsHistory() throws Exception {
+        expectedSends = new CountDownLatch(1);
+        service.subscribe(7L, 1L);
+
+        service.onOrderChanged(changed(7L, 2L, OrderStatus.DELIVERED));
+
+        assertTrue(expectedSends.await(10, TimeUnit.SECONDS));
+        // complete() 在发送线程写完终态事件之后才调用
+        assertTrue(completions.await(10, TimeUnit.SECONDS), "终态事件后连接未关闭");
+        assertEquals(1, sent.get());
+        assertEquals(1, completed.get());
+        assertEquals(0, service.subscriberCount());
+    }
+
+    @Test
+    void reconnectAfterTerminalEventDoesNotHoldASubscriberSlot() throws Exception {
+        OrderDto.OrderTimeline timeline = new OrderDto.OrderTimeline();
+        timeline.setEvents(List.of(eventDto(1L, OrderStatus.PENDING), eventDto(2L, OrderStatus.DELIVERED)));
+        when(orderService.getOrderTimeline(9L)).thenReturn(timeline);
+
+        // 已收到终态事件后的自动重连：不登记订阅
+        assertNull(service.subscribe(9L, 2L));
+        assertEquals(0, service.subscriberCount());
+        assertEquals(0, sent.get());
+
+        // 终态事件没收到就断线：补发终态事件后关闭
+        expectedSends = new CountDownLatch(1);
+        assertNotNull(service.subscribe(9L, 1L));
+        assertTrue(expectedSends.await(10, TimeUnit.SECONDS));
+        assertTrue(completions.await(10, TimeUnit.SECONDS), "终态事件后连接未关闭");
+        assertEquals(1, sent.get());
+        assertEquals(0, service.subscriberCount());
+    }
+
+    private OrderChangedEvent changed(Long orderId, Long eventId, OrderStatus status) {
+        OrderStatusEvent e = new OrderStatusEvent();
+        e.setId(eventId);
+        e.setOrderId(orderId);
+        e.setCode(status);
+        e.setOccurredAt(Instant.now());
+        e.setCreatedAt(Instant.now());
+        return new OrderChangedEvent(orderId, 1L, 1L, OrderStatus.PENDING, status, e);
+    }
+
+    private OrderDto.OrderStatusEvent eventDto(Long id, OrderStatus status) {
+        OrderDto.OrderStatusEvent dto = new OrderDto.OrderStatusEvent();
+        dto.setId(id);
+        dto.setCode(status);
+        return dto;
+    }
+
+    private class CountingEmitter extends SseEmitter {
+
+        @Override
+        public void send(SseEventBuilder builder) {
+            sent.incrementAndGet();
+            expectedSends.countDown();
+        }
+
+        @Override
+        public void complete() {
+            completed.incrementAndGet();
+            completions.countDown();
+        }
+    }
+}
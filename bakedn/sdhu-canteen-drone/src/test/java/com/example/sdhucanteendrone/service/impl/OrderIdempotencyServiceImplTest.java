@@ -0,0 +1,146 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.Common.BizException;
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.entity.OrderIdempotencyKey;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.repository.OrderIdempotencyKeyRepository;
+import com.example.sdhucanteendrone.service.OrderService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 下单幂等：同一个 key 只下一单，换了请求内容的重放被拒绝，进程内条目有上限。
+ */
+class OrderIdempotencyServiceImplTest {
+
+    private static final int THREADS = 16;
+
+    private OrderService orderService;
+    private OrderIdempotencyKeyRepository keyRepository;
+    private OrderIdempotencyServiceImpl service;
+    private final AtomicLong nextOrderId = new AtomicLong(100);
+
+    @BeforeEach
+    void setUp() {
+        orderService = mock(OrderService.class);
+        keyRepository = mock(OrderIdempotencyKeyRepository.class);
+        when(keyRepository.findById(anyString())).thenReturn(Optional.empty());
+        when(orderService.getOrderDetail(anyLong())).thenAnswer(inv -> detail(inv.getArgument(0)));
+        when(orderService.createOrder(any(), anyString(), anyString())).thenAnswer(inv -> {
+            // 模拟下单耗时，让并发请求都赶上首个请求还在处理中
+            Thread.sleep(50);
+            return detail(nextOrderId.incrementAndGet());
+        });
+        service = new OrderIdempotencyServiceImpl(orderService, keyRepository);
+        ReflectionTestUtils.setField(service, "ttlMinutes", 60L);
+        ReflectionTestUtils.setField(service, "maxEntries", 100);
+        ReflectionTestUtils.setField(service, "waitTimeoutMs", 5000L);
+    }
+
+    @Test
+    void concurrentRequestsWithTheSameKeyCreateOneOrder() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            results.add(pool.submit(() -> {
+                start.await();
+                return service.createOrder("k-1", req(1L, 2)).getId();
+            }));
+        }
+        start.countDown();
+        pool.shutdown();
+        pool.awaitTermination(30, TimeUnit.SECONDS);
+
+        Long first = results.get(0).get();
+        for (Future<Long> f : results) {
+            assertEquals(first, f.get());
+        }
+        verify(orderService, times(1)).createOrder(any(), anyString(), anyString());
+    }
+
+    @Test
+    void sameKeyWithDifferentBodyIsRejected() {
+        service.createOrder("k-2", req(1L, 2));
+
+        BizException e = assertThrows(BizException.class, () -> service.createOrder("k-2", req(1L, 3)));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatusCode());
+        verify(orderService, times(1)).createOrder(any(), anyString(), anyString());
+    }
+
+    @Test
+    void persistedKeyWithDifferentBodyIsRejected() {
+        OrderIdempotencyKey row = new OrderIdempotencyKey();
+        row.setKey("7:k-3");
+        row.setOrderId(42L);
+        row.setRequestHash(OrderIdempotencyServiceImpl.fingerprint(req(1L, 2)));
+        row.setCreatedAt(Instant.now());
+        when(keyRepository.findById("7:k-3")).thenReturn(Optional.of(row));
+
+        // 其它实例用这个 key 下过单：内容不同被拒绝，且不占用本进程的条目；内容相同则重放
+        BizException e = assertThrows(BizException.class, () -> service.createOrder("k-3", req(2L, 2)));
+        assertEquals(HttpStatus.UNPROCESSABLE_ENTITY, e.getStatusCode());
+        assertEquals(42L, service.createOrder("k-3", req(1L, 2)).getId());
+        verify(orderService, never()).createOrder(any(), anyString(), anyString());
+    }
+
+    @Test
+    void oldestCompletedEntriesAreEvictedOverCapacity() {
+        ReflectionTestUtils.setField(service, "maxEntries", 10);
+        for (int i = 0; i < 50; i++) {
+            service.createOrder("k-" + i, req(1L, 1));
+        }
+
+        Map<?, ?> entries = (Map<?, ?>) ReflectionTestUtils.getField(service, "entries");
+        assertTrue(entries.size() <= 10, "entries " + entries.size());
+        // 最近的 key 仍在内存里，重放不再下单
+        service.createOrder("k-49", req(1L, 1));
+        verify(orderService, times(50)).createOrder(any(), anyString(), anyString());
+    }
+
+    private static OrderDto.OrderCreateReq req(Long foodId, int qty) {
+        OrderDto.OrderItemCreateReq item = new OrderDto.OrderItemCreateReq();
+        item.setFoodId(foodId);
+        item.setQty(qty);
+        OrderDto.OrderCreateReq req = new OrderDto.OrderCreateReq();
+        req.setCustomerId(7L);
+        req.setCanteenId(1L);
+        req.setDeliveryMethod(DeliverMethod.MANUAL);
+        req.setDeliveryAddress("宿舍1栋-101");
+        req.setItems(List.of(item));
+        return req;
+    }
+
+    private static OrderDto.OrderDetail detail(Long id) {
+        OrderDto.OrderDetail d = new OrderDto.OrderDetail();
+        d.setId(id);
+        return d;
+    }
+}
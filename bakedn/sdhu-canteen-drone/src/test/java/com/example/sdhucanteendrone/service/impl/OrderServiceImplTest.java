@@ -0,0 +1,126 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.dto.OrderDto;
+import com.example.sdhucanteendrone.entity.Canteen;
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.entity.Order;
+import com.example.sdhucanteendrone.entity.OrderStatusEvent;
+import com.example.sdhucanteendrone.entity.User;
+import com.example.sdhucanteendrone.entity.enums.DeliverMethod;
+import com.example.sdhucanteendrone.entity.enums.OrderStatus;
+import com.example.sdhucanteendrone.repository.CanteenRepository;
+import com.example.sdhucanteendrone.repository.DroneRepository;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import com.example.sdhucanteendrone.repository.MissionRepository;
+import com.example.sdhucanteendrone.repository.OrderBatchRepository;
+import com.example.sdhucanteendrone.repository.OrderIdempotencyKeyRepository;
+import com.example.sdhucanteendrone.repository.OrderItemRepository;
+import com.example.sdhucanteendrone.repository.OrderRepository;
+import com.example.sdhucanteendrone.repository.OrderStatusEventRepository;
+import com.example.sdhucanteendrone.repository.UserRepository;
+import com.example.sdhucanteendrone.service.DeliveryEtaService;
+import com.example.sdhucanteendrone.service.OrderDetailCache;
+import com.example.sdhucanteendrone.service.RouteService;
+import com.example.sdhucanteendrone.service.StockReservationService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * 下单的写入路径：订单主表一条 insert，明细和初始状态事件各一次 JDBC 批量写入。
+ */
+class OrderServiceImplTest {
+
+    private static final Long ORDER_ID = 100L;
+
+    private OrderRepository orderRepository;
+    private OrderStatusEventRepository statusEventRepository;
+    private OrderBatchRepository orderBatchRepository;
+    private OrderServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        orderRepository = mock(OrderRepository.class);
+        statusEventRepository = mock(OrderStatusEventRepository.class);
+        orderBatchRepository = mock(OrderBatchRepository.class);
+        UserRepository userRepository = mock(UserRepository.class);
+        CanteenRepository canteenRepository = mock(CanteenRepository.class);
+        FoodRepository foodRepository = mock(FoodRepository.class);
+        StockReservationService stockReservationService = mock(StockReservationService.class);
+        DeliveryEtaService deliveryEtaService = mock(DeliveryEtaService.class);
+
+        User user = new User();
+        user.setId(1L);
+        Canteen canteen = new Canteen();
+        canteen.setId(10L);
+        Food food = new Food();
+        food.setId(5L);
+        food.setName("红烧肉");
+        food.setCanteenId(10L);
+        food.setPriceCent(1200);
+        food.setOnShelf(true);
+
+        when(userRepository.findById(1L)).thenReturn(Optional.of(user));
+        when(canteenRepository.findById(10L)).thenReturn(Optional.of(canteen));
+        when(foodRepository.findAllById(any())).thenReturn(List.of(food));
+        when(orderRepository.save(any(Order.class))).thenAnswer(inv -> {
+            Order o = inv.getArgument(0);
+            o.setId(ORDER_ID);
+            when(orderRepository.findById(ORDER_ID)).thenReturn(Optional.of(o));
+            return o;
+        });
+        // null 表示库存足够（Mockito 对 Long 默认返回 0）
+        when(stockReservationService.tryReserve(any())).thenReturn(null);
+        when(deliveryEtaService.predictReadyAt(anyLong(), any())).thenReturn(Instant.now());
+
+        service = new OrderServiceImpl(orderRepository, mock(OrderItemRepository.class), statusEventRepository,
+                canteenRepository, userRepository, foodRepository, mock(DroneRepository.class),
+                mock(MissionRepository.class), orderBatchRepository, stockReservationService,
+                mock(OrderIdempotencyKeyRepository.class), mock(OrderDetailCache.class), mock(RouteService.class),
+                deliveryEtaService, mock(ApplicationEventPublisher.class));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void initialStatusEventIsBatchedWithTheItems() {
+        OrderDto.OrderDetail detail = service.createOrder(req(3));
+
+        assertEquals(ORDER_ID, detail.getId());
+        verify(orderRepository, times(1)).save(any(Order.class));
+        verify(orderBatchRepository, times(1)).batchInsertItems(any());
+        // 初始事件不再单独走 JPA save（IDENTITY 主键会立刻 insert 并进入持久化上下文）
+        verify(statusEventRepository, never()).save(any());
+        ArgumentCaptor<List<OrderStatusEvent>> events = ArgumentCaptor.forClass(List.class);
+        verify(orderBatchRepository, times(1)).batchInsertStatusEvents(events.capture());
+        assertEquals(1, events.getValue().size());
+        assertEquals(ORDER_ID, events.getValue().get(0).getOrderId());
+        assertEquals(OrderStatus.PENDING, events.getValue().get(0).getCode());
+    }
+
+    private static OrderDto.OrderCreateReq req(int qty) {
+        OrderDto.OrderItemCreateReq item = new OrderDto.OrderItemCreateReq();
+        item.setFoodId(5L);
+        item.setQty(qty);
+        OrderDto.OrderCreateReq req = new OrderDto.OrderCreateReq();
+        req.setCustomerId(1L);
+        req.setCanteenId(10L);
+        req.setDeliveryMethod(DeliverMethod.MANUAL);
+        req.setDeliveryAddress("宿舍1栋-101");
+        req.setItems(List.of(item));
+        return req;
+    }
+}
@@ -0,0 +1,245 @@
+package com.example.sdhucanteendrone.service.impl;
+
+import com.example.sdhucanteendrone.entity.Food;
+import com.example.sdhucanteendrone.repository.FoodBatchRepository;
+import com.example.sdhucanteendrone.repository.FoodRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+/**
+ * 内存库存账本：高并发抢同一道菜不超卖，回写量与成交量一致。
+ */
+class StockReservationServiceImplTest {
+
+    private FoodRepository foodRepository;
+    private FoodBatchRepository foodBatchRepository;
+    private StockReservationServiceImpl service;
+
+    @BeforeEach
+    void setUp() {
+        foodRepository = mock(FoodRepository.class);
+        foodBatchRepository = mock(FoodBatchRepository.class);
+        service = new StockReservationServiceImpl(foodRepository, foodBatchRepository);
+        when(foodRepository.findById(1L)).thenReturn(Optional.of(food(1L, 100)));
+        when(foodRepository.findById(2L)).thenReturn(Optional.of(food(2L, 1)));
+        Food flash = food(3L, 1000);
+        flash.setFlashSale(true);
+        when(foodRepository.findById(3L)).thenReturn(Optional.of(flash));
+        ReflectionTestUtils.setField(service, "flashShards", 8);
+    }
+
+    @Test
+    void hotDishNeverOversells() throws Exception {
+        int threads = 400;
+        ExecutorService pool = Executors.newFixedThreadPool(64);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger sold = new AtomicInteger();
+
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    if (service.tryReserve(Map.of(1L, 1)) == null) {
+                        sold.incrementAndGet();
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(100, sold.get());
+        assertEquals(0, service.getAvailable(1L));
+
+        assertEquals(1, service.flush());
+        verify(foodBatchRepository).batchAddStock(Map.of(1L, -100));
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    void multiItemReservationIsAllOrNothing() {
+        Map<Long, Integer> cart = new LinkedHashMap<>();
+        cart.put(1L, 3);
+        cart.put(2L, 2);
+
+        assertEquals(2L, service.tryReserve(cart));
+        assertEquals(100, service.getAvailable(1L));
+        assertEquals(1, service.getAvailable(2L));
+
+        cart.put(2L, 1);
+        assertNull(service.tryReserve(cart));
+        service.release(cart);
+        assertEquals(100, service.getAvailable(1L));
+        assertEquals(1, service.getAvailable(2L));
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    void flashSaleShardsConserveStockAcrossStealingAndResharding() throws Exception {
+        int threads = 32;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        CountDownLatch done = new CountDownLatch(threads);
+        // 先抢一份，让计数器按抢购模式加载
+        assertNull(service.tryReserve(Map.of(3L, 1)));
+        AtomicInteger sold = new AtomicInteger(1);
+
+        for (int i = 0; i < threads; i++) {
+            int qty = i % 3 + 1;
+            pool.execute(() -> {
+                try {
+                    start.await();
+                    // 每个线程抢到售罄为止；不同份数混合，主分片不够时要跨分片凑单
+                    for (int miss = 0; miss < 50; ) {
+                        if (service.tryReserve(Map.of(3L, qty)) == null) {
+                            sold.addAndGet(qty);
+                        } else {
+                            miss++;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        start.countDown();
+        // 抢购进行中关闭再开启，分片合并 / 拆分不能丢也不能多出库存
+        service.setFlashSale(3L, false);
+        service.setFlashSale(3L, true);
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(1000 - sold.get(), service.getAvailable(3L));
+        assertEquals(1, service.flush());
+        verify(foodBatchRepository).batchAddStock(Map.of(3L, -sold.get()));
+    }
+
+    @Test
+    void repeatedReshardingKeepsEveryGenerationsPendingDelta() throws Exception {
+        int threads = 16;
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        CountDownLatch done = new CountDownLatch(threads);
+        AtomicInteger sold = new AtomicInteger();
+        assertNull(service.tryReserve(Map.of(3L, 1)));
+        sold.incrementAndGet();
+
+        for (int i = 0; i < threads; i++) {
+            pool.execute(() -> {
+                try {
+                    for (int n = 0; n < 2000; n++) {
+                        if (service.tryReserve(Map.of(3L, 1)) == null) {
+                            sold.incrementAndGet();
+                        }
+                        if (n % 3 == 0) {
+                            service.release(Map.of(3L, 1));
+                            sold.decrementAndGet();
+                        }
+                    }
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        // 扣减进行中连续切换多次：在途线程可能晚于两次切换才记上旧分片的 pendingDelta
+        for (int round = 0; round < 200; round++) {
+            service.setFlashSale(3L, round % 2 == 0);
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        pool.shutdown();
+
+        assertEquals(1000 - sold.get(), service.getAvailable(3L));
+        assertEquals(1, service.flush());
+        verify(foodBatchRepository).batchAddStock(Map.of(3L, -sold.get()));
+    }
+
+    @Test
+    void resetDiscardsPendingDeltaInsideTheSameCounter() {
+        assertNull(service.tryReserve(Map.of(3L, 10)));
+        service.resetStock(3L, 50);
+
+        assertEquals(50, service.getAvailable(3L));
+        // 重置前的净变化量作废，重置后的扣减照常记账
+        assertEquals(0, service.flush());
+        assertNull(service.tryReserve(Map.of(3L, 5)));
+        assertEquals(1, service.flush());
+        verify(foodBatchRepository).batchAddStock(Map.of(3L, -5));
+    }
+
+    @Test
+    void flushIsSkippedWhileAResetTransactionIsOpen() throws Exception {
+        assertNull(service.tryReserve(Map.of(1L, 10)));
+
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            service.resetStock(1L, 30);
+            // 回写由调度线程执行：事务未结束前这一轮跳过，不会把 -10 叠加到管理端写入的 30 上
+            ExecutorService scheduler = Executors.newSingleThreadExecutor();
+            assertEquals(0, scheduler.submit(service::flush).get(5, TimeUnit.SECONDS));
+            scheduler.shutdown();
+            verifyNoInteractions(foodBatchRepository);
+
+            for (TransactionSynchronization sync : TransactionSynchronizationManager.getSynchronizations()) {
+                sync.afterCommit();
+                sync.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(30, service.getAvailable(1L));
+        assertEquals(0, service.flush());
+    }
+
+    @Test
+    void startupRefusesWhileLegacyStockTriggersExist() {
+        when(foodBatchRepository.findStockTriggers()).thenReturn(List.of("trg_order_items_stock"));
+        IllegalStateException e = assertThrows(IllegalStateException.class, service::checkLegacyTriggers);
+        assertTrue(e.getMessage().contains("DROP TRIGGER IF EXISTS `trg_order_items_stock`;"), e.getMessage());
+
+        // 关闭开关后只记日志
+        ReflectionTestUtils.setField(service, "failOnLegacyTriggers", false);
+        service.checkLegacyTriggers();
+
+        when(foodBatchRepository.findStockTriggers()).thenReturn(List.of());
+        ReflectionTestUtils.setField(service, "failOnLegacyTriggers", true);
+        service.checkLegacyTriggers();
+    }
+
+    private Food food(Long id, int stock) {
+        Food f = new Food();
+        f.setId(id);
+        f.setStock(stock);
+        f.setOnShelf(true);
+        return f;
+    }
+}
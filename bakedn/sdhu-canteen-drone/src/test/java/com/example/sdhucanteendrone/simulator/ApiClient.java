@@ -0,0 +1,111 @@
+package com.example.sdhucanteendrone.simulator;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+
+/**
+ * 被测应用的 HTTP 客户端（JDK HttpClient，异步）。
+ * <p>
+ * 成功响应为 Result（code == 0），业务异常由 GlobalExceptionHandler 包装成 success == false，
+ * 两种都按 HTTP 200 返回，这里统一转换成成功 / 失败，并按接口模板记录耗时。
+ * 同时在途的请求数受 maxInFlight 限制，避免把本机端口或被测应用的线程池打满。
+ */
+final class ApiClient {
+
+    private final HttpClient http;
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final String baseUrl;
+    private final Semaphore inFlight;
+    private final ApiStats stats;
+
+    ApiClient(String baseUrl, int maxInFlight, ApiStats stats) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.inFlight = new Semaphore(maxInFlight);
+        this.stats = stats;
+        this.http = HttpClient.newBuilder()
+                .connectTimeout(Duration.ofSeconds(5))
+                .version(HttpClient.Version.HTTP_1_1)
+                .build();
+    }
+
+    /**
+     * 发送请求，返回 Result.data（可能为 null）；业务失败或网络错误时 future 以 ApiException 结束。
+     *
+     * @param endpoint 统计用的接口模板，例如 "POST /api/orders/{id}/status"
+     * @param path     实际路径（含查询参数）
+     * @param body     JSON 请求体，无则为 null
+     */
+    CompletableFuture<JsonNode> call(String endpoint, String method, String path, Object body) {
+        return call(endpoint, method, path, body, Map.of());
+    }
+
+    CompletableFuture<JsonNode> call(String endpoint, String method, String path, Object body,
+                                     Map<String, String> headers) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(baseUrl + path))
+                .timeout(Duration.ofSeconds(30));
+        headers.forEach(builder::header);
+        try {
+            if (body == null) {
+                builder.method(method, HttpRequest.BodyPublishers.noBody());
+            } else {
+                builder.header("Content-Type", "application/json")
+                        .method(method, HttpRequest.BodyPublishers.ofByteArray(mapper.writeValueAsBytes(body)));
+            }
+        } catch (Exception e) {
+            return CompletableFuture.failedFuture(new ApiException(endpoint, "请求序列化失败: " + e.getMessage()));
+        }
+        return send(endpoint, builder);
+    }
+
+    private CompletableFuture<JsonNode> send(String endpoint, HttpRequest.Builder builder) {
+        try {
+            inFlight.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return CompletableFuture.failedFuture(new ApiException(endpoint, "interrupted"));
+        }
+        long start = System.nanoTime();
+        return http.sendAsync(builder.build(), HttpResponse.BodyHandlers.ofByteArray())
+                .handle((resp, error) -> {
+                    inFlight.release();
+                    long micros = (System.nanoTime() - start) / 1_000;
+                    if (error != null) {
+                        stats.record(endpoint, micros, false);
+                        throw new ApiException(endpoint, error.getClass().getSimpleName() + ": " + error.getMessage());
+                    }
+                    JsonNode json = parse(resp.body());
+                    boolean ok = resp.statusCode() / 100 == 2 && json != null
+                            && json.path("code").asInt(-1) == 0;
+                    stats.record(endpoint, micros, ok);
+                    if (!ok) {
+                        String message = json == null ? "HTTP " + resp.statusCode() : json.path("message").asText();
+                        throw new ApiException(endpoint, message);
+                    }
+                    return json.get("data");
+                });
+    }
+
+    private JsonNode parse(byte[] body) {
+        try {
+            return body.length == 0 ? null : mapper.readTree(body);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    static final class ApiException extends RuntimeException {
+
+        ApiException(String endpoint, String message) {
+            super(endpoint + " -> " + message, null, false, false);
+        }
+    }
+}
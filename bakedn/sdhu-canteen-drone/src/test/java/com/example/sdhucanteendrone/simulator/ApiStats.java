@@ -0,0 +1,49 @@
+package com.example.sdhucanteendrone.simulator;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按接口模板统计调用次数、失败次数和耗时。
+ */
+final class ApiStats {
+
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<>();
+
+    void record(String endpoint, long micros, boolean ok) {
+        endpoints.computeIfAbsent(endpoint, k -> new Endpoint()).record(micros, ok);
+    }
+
+    /** 按接口名排序的快照 */
+    Map<String, Endpoint> snapshot() {
+        return new TreeMap<>(endpoints);
+    }
+
+    static final class Endpoint {
+
+        private final LatencySamples micros = new LatencySamples();
+        private long calls;
+        private long errors;
+
+        private synchronized void record(long latencyMicros, boolean ok) {
+            calls++;
+            if (!ok) {
+                errors++;
+            }
+            micros.add(latencyMicros);
+        }
+
+        synchronized long calls() {
+            return calls;
+        }
+
+        synchronized long errors() {
+            return errors;
+        }
+
+        synchronized LatencySamples latencies() {
+            return micros.copy();
+        }
+    }
+}
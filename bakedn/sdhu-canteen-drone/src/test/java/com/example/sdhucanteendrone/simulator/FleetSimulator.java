@@ -0,0 +1,541 @@
+package com.example.sdhucanteendrone.simulator;
+
+import com.example.sdhucanteendrone.simulator.VirtualDrone.SimOrder;
+import com.example.sdhucanteendrone.simulator.VirtualDrone.State;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 本地无人机机队模拟器：对运行中的应用发起真实 HTTP 请求，用于压测和验证派机流程。
+ * <p>
+ * 每个 tick：
+ * 1. 按泊松过程下单（POST /api/orders），食堂确认、出餐后打包（POST /api/orders/{id}/status）
+ * 2. 派机：server 模式轮询订单详情，发现应用已派出的无人机；client 模式自行选机并调用
+ *    assign-drone / start-delivery
+ * 3. 推进每架虚拟无人机：飞往楼栋、送达（mark-delivered）、返航、低电量维护充电、按概率中途故障
+ * 4. 批量上报遥测（POST /api/drones/telemetry）
+ * <p>
+ * 所有模拟状态只在主线程修改；HTTP 回调把后续处理放进 inbox，由主线程在下一个 tick 开头执行。
+ * 结束后输出订单下单 → 送达的延迟分位数和各接口的吞吐、错误数、耗时。
+ * <p>
+ * 用法（应用先在本地启动，数据库已导入 test_data.sql）：
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.example.sdhucanteendrone.simulator.FleetSimulator \
+ *     -Dexec.args="--drones=2000 --ordersPerSecond=20 --durationSeconds=600"
+ * </pre>
+ * 参数见 {@link SimulatorConfig}。
+ */
+public final class FleetSimulator {
+
+    private static final double METERS_PER_DEGREE = 111_320;
+    private static final int MIN_DISPATCH_BATTERY = 30;
+
+    private final SimulatorConfig config;
+    private final ApiStats apiStats = new ApiStats();
+    private final ApiClient api;
+    private final Random random;
+
+    private final Map<Long, VirtualDrone> drones = new LinkedHashMap<>();
+    private final double[][] buildings;
+
+    /** 已下单、尚未送达 / 失败的订单 */
+    private final Map<Long, SimOrder> active = new HashMap<>();
+    /** 已打包、等待派机的订单（先进先出） */
+    private final Deque<SimOrder> awaiting = new ArrayDeque<>();
+    private final PriorityQueue<Timer> timers = new PriorityQueue<>(Comparator.comparingLong(Timer::dueAt));
+    private final ConcurrentLinkedQueue<Runnable> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pendingRequests = new AtomicInteger();
+
+    private final LatencySamples deliveryMillis = new LatencySamples();
+    private final LatencySamples dispatchMillis = new LatencySamples();
+    private long ordersPlaced;
+    private long ordersRejected;
+    private long delivered;
+    private long lostInFlight;
+    private long droneFailures;
+    private long recharges;
+    private long telemetryFrames;
+    private long unexpectedAssignments;
+
+    public static void main(String[] args) throws Exception {
+        new FleetSimulator(SimulatorConfig.parse(args)).run();
+    }
+
+    FleetSimulator(SimulatorConfig config) {
+        this.config = config;
+        this.api = new ApiClient(config.baseUrl, config.maxInFlight, apiStats);
+        this.random = new Random(config.seed);
+        this.buildings = new double[config.buildings][];
+        for (int i = 0; i < config.buildings; i++) {
+            double r = config.campusRadiusM * Math.sqrt(0.1 + 0.9 * random.nextDouble());
+            double a = random.nextDouble() * 2 * Math.PI;
+            buildings[i] = new double[]{r * Math.cos(a), r * Math.sin(a)};
+        }
+    }
+
+    // ============================================================
+    // 主流程
+    // ============================================================
+
+    void run() throws Exception {
+        setup();
+
+        long start = System.nanoTime();
+        long ordersEnd = start + TimeUnit.SECONDS.toNanos(config.durationSeconds);
+        long hardEnd = ordersEnd + TimeUnit.SECONDS.toNanos(config.drainSeconds);
+        long nextArrival = start + nextInterArrivalNanos();
+        long lastTick = start;
+
+        System.out.printf("开始模拟：%d 架无人机，%.1f 单/秒，%d 秒，派机方式 %s%n",
+                drones.size(), config.ordersPerSecond, config.durationSeconds, config.dispatch);
+        while (true) {
+            long now = System.nanoTime();
+            double dtSeconds = (now - lastTick) / 1e9;
+            lastTick = now;
+
+            drainInbox();
+            while (now < ordersEnd && nextArrival <= now) {
+                placeOrder(now);
+                nextArrival += nextInterArrivalNanos();
+            }
+            runDueTimers(now);
+            if (config.dispatch.equals("server")) {
+                pollAssignments();
+            } else {
+                assignLocally();
+            }
+            stepDrones(dtSeconds);
+            sendTelemetry();
+
+            boolean idle = active.isEmpty() && timers.isEmpty() && pendingRequests.get() == 0;
+            if ((now >= ordersEnd && idle) || now >= hardEnd) {
+                break;
+            }
+            long sleepNanos = TimeUnit.MILLISECONDS.toNanos(config.tickMs) - (System.nanoTime() - now);
+            if (sleepNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNanos);
+            }
+        }
+
+        // 等待最后一批请求返回，计入统计
+        long waitUntil = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (pendingRequests.get() > 0 && System.nanoTime() < waitUntil) {
+            TimeUnit.MILLISECONDS.sleep(50);
+            drainInbox();
+        }
+        drainInbox();
+
+        String report = report((System.nanoTime() - start) / 1e9);
+        System.out.println(report);
+        if (config.report != null) {
+            Files.writeString(Path.of(config.report), report);
+        }
+    }
+
+    /**
+     * 写入食堂坐标、补库存、创建虚拟无人机（同步等待完成）。
+     */
+    private void setup() {
+        Map<String, Object> canteen = new HashMap<>();
+        canteen.put("latitude", config.canteenLat);
+        canteen.put("longitude", config.canteenLng);
+        api.call("PATCH /api/canteens/{id}", "PATCH", "/api/canteens/" + config.canteenId, canteen).join();
+
+        if (config.restockTo >= 0) {
+            List<CompletableFuture<JsonNode>> restock = new ArrayList<>();
+            for (Long foodId : config.foodIds) {
+                restock.add(api.call("PATCH /api/canteens/{cid}/menu/foods/{id}/stock", "PATCH",
+                        "/api/canteens/" + config.canteenId + "/menu/foods/" + foodId + "/stock?stock=" + config.restockTo,
+                        null));
+            }
+            CompletableFuture.allOf(restock.toArray(CompletableFuture[]::new)).join();
+        }
+
+        String runId = Long.toString(System.currentTimeMillis() % 1_000_000, 36).toUpperCase();
+        List<CompletableFuture<VirtualDrone>> created = new ArrayList<>();
+        for (int i = 0; i < config.drones; i++) {
+            // 三分之一是 5 kg 大飞机，随机停在食堂周围 200 米内
+            double payloadKg = i % 3 == 0 ? 5.0 : 2.0;
+            double x = (random.nextDouble() - 0.5) * 400;
+            double y = (random.nextDouble() - 0.5) * 400;
+            Map<String, Object> req = new HashMap<>();
+            req.put("code", "SIM-" + runId + "-" + i);
+            req.put("model", "SIM-" + (int) payloadKg + "KG");
+            req.put("maxPayloadKg", payloadKg);
+            req.put("battery", 100);
+            req.put("status", "IDLE");
+            req.put("latitude", latitude(y));
+            req.put("longitude", longitude(x));
+            req.put("note", "fleet simulator");
+            created.add(api.call("POST /api/drones", "POST", "/api/drones", req)
+                    .thenApply(data -> new VirtualDrone(data.path("id").asLong(), payloadKg, x, y)));
+        }
+        for (CompletableFuture<VirtualDrone> f : created) {
+            VirtualDrone d = f.join();
+            drones.put(d.id, d);
+        }
+    }
+
+    // ============================================================
+    // 订单：下单 → 确认 → 打包
+    // ============================================================
+
+    private void placeOrder(long now) {
+        int building = random.nextInt(buildings.length);
+        Map<String, Object> item = new HashMap<>();
+        item.put("foodId", config.foodIds.get(random.nextInt(config.foodIds.size())));
+        item.put("qty", 1 + random.nextInt(3));
+        Map<String, Object> req = new HashMap<>();
+        req.put("customerId", config.customerId);
+        req.put("canteenId", config.canteenId);
+        req.put("deliveryMethod", "DRONE");
+        req.put("deliveryAddress", "模拟" + (building + 1) + "栋-" + (101 + random.nextInt(500)));
+        req.put("items", List.of(item));
+
+        request(api.call("POST /api/orders", "POST", "/api/orders", req,
+                        Map.of("Idempotency-Key", UUID.randomUUID().toString())),
+                data -> {
+                    SimOrder order = new SimOrder(data.path("id").asLong(), building, now);
+                    ordersPlaced++;
+                    active.put(order.id, order);
+                    changeStatus(order, "CONFIRMED", () -> timers.add(new Timer(
+                            System.nanoTime() + TimeUnit.SECONDS.toNanos(config.prepSeconds),
+                            () -> changeStatus(order, "PACKED", () -> {
+                                order.packedAt = System.nanoTime();
+                                awaiting.add(order);
+                            }))));
+                },
+                error -> ordersRejected++);
+    }
+
+    private void changeStatus(SimOrder order, String status, Runnable then) {
+        request(api.call("POST /api/orders/{id}/status", "POST",
+                        "/api/orders/" + order.id + "/status?status=" + status, null),
+                data -> then.run(),
+                error -> active.remove(order.id));
+    }
+
+    private void runDueTimers(long now) {
+        while (!timers.isEmpty() && timers.peek().dueAt() <= now) {
+            timers.poll().action().run();
+        }
+    }
+
+    // ============================================================
+    // 派机
+    // ============================================================
+
+    /**
+     * server 模式：轮询等待中的订单，发现已起飞（SHIPPED）的就交给对应的虚拟无人机。
+     */
+    private void pollAssignments() {
+        int polled = 0;
+        for (SimOrder order : awaiting) {
+            if (polled >= config.pollPerTick) {
+                break;
+            }
+            if (order.polling) {
+                continue;
+            }
+            order.polling = true;
+            polled++;
+            request(api.call("GET /api/orders/{id}", "GET", "/api/orders/" + order.id, null),
+                    data -> {
+                        order.polling = false;
+                        String status = data.path("status").asText();
+                        if (status.equals("SHIPPED") && data.hasNonNull("droneId")) {
+                            awaiting.remove(order);
+                            onShipped(order, data.get("droneId").asLong());
+                        } else if (status.equals("CANCELED")) {
+                            awaiting.remove(order);
+                            active.remove(order.id);
+                        }
+                    },
+                    error -> order.polling = false);
+        }
+    }
+
+    /**
+     * client 模式：按先后顺序给等待中的订单挑最近的空闲无人机，先指派再起飞。
+     */
+    private void assignLocally() {
+        while (!awaiting.isEmpty()) {
+            VirtualDrone drone = nearestIdle();
+            if (drone == null) {
+                return;
+            }
+            SimOrder order = awaiting.poll();
+            drone.state = State.ASSIGNING;
+            String base = "/api/orders/" + order.id;
+            request(api.call("POST /api/orders/{id}/assign-drone", "POST",
+                                    base + "/assign-drone?droneId=" + drone.id, null)
+                            .thenCompose(d -> api.call("POST /api/orders/{id}/start-delivery", "POST",
+                                    base + "/start-delivery", null)),
+                    data -> onShipped(order, drone.id),
+                    error -> {
+                        drone.state = State.IDLE;
+                        awaiting.addFirst(order);
+                    });
+        }
+    }
+
+    private VirtualDrone nearestIdle() {
+        VirtualDrone best = null;
+        double bestDistance = Double.MAX_VALUE;
+        for (VirtualDrone d : drones.values()) {
+            if (d.state == State.IDLE && d.battery >= MIN_DISPATCH_BATTERY) {
+                double distance = Math.hypot(d.x, d.y);
+                if (distance < bestDistance) {
+                    best = d;
+                    bestDistance = distance;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void onShipped(SimOrder order, long droneId) {
+        order.shippedAt = System.nanoTime();
+        dispatchMillis.add(TimeUnit.NANOSECONDS.toMillis(order.shippedAt - order.packedAt));
+
+        VirtualDrone drone = drones.get(droneId);
+        if (drone != null && drone.state == State.OUTBOUND) {
+            // 合单：同一航班的其它订单
+            drone.cargo.add(order);
+            return;
+        }
+        if (drone == null || drone.state == State.CHARGING || drone.state == State.FAILED) {
+            // 派给了非模拟无人机（如种子数据里的），或派给了模拟器认为不可用的无人机：直接送达
+            unexpectedAssignments++;
+            markDelivered(order);
+            return;
+        }
+        // 空闲、返航途中（应用里送达后即空闲）或刚指派的无人机：从当前位置起飞
+        drone.cargo.add(order);
+        drone.state = State.OUTBOUND;
+        drone.targetX = buildings[order.building][0];
+        drone.targetY = buildings[order.building][1];
+        drone.flownMeters = 0;
+        if (random.nextDouble() < config.failureRate) {
+            drone.failAfterMeters = random.nextDouble() * Math.hypot(drone.targetX - drone.x, drone.targetY - drone.y);
+        } else {
+            drone.failAfterMeters = Double.POSITIVE_INFINITY;
+        }
+    }
+
+    // ============================================================
+    // 飞行
+    // ============================================================
+
+    private void stepDrones(double dtSeconds) {
+        double step = config.speedMps * dtSeconds;
+        for (VirtualDrone d : drones.values()) {
+            switch (d.state) {
+                case OUTBOUND -> {
+                    double flown = fly(d, step);
+                    d.flownMeters += flown;
+                    if (d.flownMeters >= d.failAfterMeters) {
+                        fail(d);
+                    } else if (d.arrived()) {
+                        d.cargo.forEach(this::markDelivered);
+                        d.cargo.clear();
+                        d.state = State.RETURNING;
+                        d.targetX = 0;
+                        d.targetY = 0;
+                    }
+                }
+                case RETURNING -> {
+                    fly(d, step);
+                    if (d.arrived()) {
+                        if (d.battery < config.rechargeBelow) {
+                            d.state = State.CHARGING;
+                            recharges++;
+                            setDroneStatus(d, "MAINTENANCE");
+                        } else {
+                            d.state = State.IDLE;
+                        }
+                    }
+                }
+                case CHARGING -> {
+                    d.battery = Math.min(100, d.battery + config.chargePerSecond * dtSeconds);
+                    if (d.battery >= 100) {
+                        d.state = State.IDLE;
+                        setDroneStatus(d, "IDLE");
+                    }
+                }
+                default -> {
+                }
+            }
+        }
+    }
+
+    private double fly(VirtualDrone d, double maxMeters) {
+        double flown = d.flyToward(maxMeters);
+        d.battery = Math.max(0, d.battery - flown / 1000 * config.batteryPerKm);
+        return flown;
+    }
+
+    private void fail(VirtualDrone d) {
+        droneFailures++;
+        lostInFlight += d.cargo.size();
+        d.cargo.forEach(o -> active.remove(o.id));
+        d.cargo.clear();
+        d.state = State.FAILED;
+        setDroneStatus(d, "MAINTENANCE");
+    }
+
+    private void markDelivered(SimOrder order) {
+        request(api.call("POST /api/orders/{id}/mark-delivered", "POST",
+                        "/api/orders/" + order.id + "/mark-delivered", null),
+                data -> {
+                    delivered++;
+                    deliveryMillis.add(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - order.createdAt));
+                    active.remove(order.id);
+                },
+                error -> active.remove(order.id));
+    }
+
+    private void setDroneStatus(VirtualDrone d, String status) {
+        request(api.call("PATCH /api/drones/{id}/status", "PATCH",
+                "/api/drones/" + d.id + "/status?status=" + status, null), data -> {
+        }, error -> {
+        });
+    }
+
+    // ============================================================
+    // 遥测
+    // ============================================================
+
+    private void sendTelemetry() {
+        String reportedAt = Instant.now().toString();
+        List<Map<String, Object>> batch = new ArrayList<>(config.telemetryBatch);
+        for (VirtualDrone d : drones.values()) {
+            if (d.state == State.FAILED) {
+                continue;
+            }
+            Map<String, Object> frame = new HashMap<>();
+            frame.put("droneId", d.id);
+            frame.put("battery", (int) Math.round(d.battery));
+            frame.put("latitude", latitude(d.y));
+            frame.put("longitude", longitude(d.x));
+            frame.put("orderId", d.currentOrderId());
+            frame.put("reportedAt", reportedAt);
+            batch.add(frame);
+            if (batch.size() == config.telemetryBatch) {
+                postTelemetry(batch);
+                batch = new ArrayList<>(config.telemetryBatch);
+            }
+        }
+        if (!batch.isEmpty()) {
+            postTelemetry(batch);
+        }
+    }
+
+    private void postTelemetry(List<Map<String, Object>> frames) {
+        telemetryFrames += frames.size();
+        request(api.call("POST /api/drones/telemetry", "POST", "/api/drones/telemetry", Map.of("frames", frames)),
+                data -> {
+                }, error -> {
+                });
+    }
+
+    // ============================================================
+    // 工具方法
+    // ============================================================
+
+    /**
+     * 发出请求，回调放进 inbox 由主线程执行。
+     */
+    private void request(CompletableFuture<JsonNode> call,
+                         Consumer<JsonNode> onSuccess,
+                         Consumer<Throwable> onError) {
+        pendingRequests.incrementAndGet();
+        call.whenComplete((data, error) -> {
+            Throwable cause = error instanceof CompletionException && error.getCause() != null
+                    ? error.getCause() : error;
+            inbox.add(() -> {
+                if (cause == null) {
+                    onSuccess.accept(data);
+                } else {
+                    onError.accept(cause);
+                }
+            });
+            pendingRequests.decrementAndGet();
+        });
+    }
+
+    private void drainInbox() {
+        Runnable r;
+        while ((r = inbox.poll()) != null) {
+            r.run();
+        }
+    }
+
+    private long nextInterArrivalNanos() {
+        return (long) (-Math.log(1 - random.nextDouble()) / config.ordersPerSecond * 1e9);
+    }
+
+    private double latitude(double yMeters) {
+        return config.canteenLat + yMeters / METERS_PER_DEGREE;
+    }
+
+    private double longitude(double xMeters) {
+        return config.canteenLng + xMeters / (METERS_PER_DEGREE * Math.cos(Math.toRadians(config.canteenLat)));
+    }
+
+    private String report(double elapsedSeconds) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%n===== 机队模拟报告（%.0f 秒，%d 架无人机，派机 %s）=====%n",
+                elapsedSeconds, drones.size(), config.dispatch));
+        sb.append(String.format("订单：下单成功 %d，下单失败 %d，已送达 %d，随故障丢失 %d，未完成 %d%n",
+                ordersPlaced, ordersRejected, delivered, lostInFlight, active.size()));
+        sb.append(String.format("送达速率：%.1f 单/小时%n", delivered * 3600.0 / elapsedSeconds));
+        appendLatency(sb, "下单 → 送达", deliveryMillis);
+        appendLatency(sb, "打包 → 起飞", dispatchMillis);
+        sb.append(String.format("无人机：故障 %d 次，维护充电 %d 次，派给非模拟/不可用无人机 %d 单，遥测 %d 帧%n",
+                droneFailures, recharges, unexpectedAssignments, telemetryFrames));
+
+        sb.append(String.format("%n%-52s %9s %7s %9s %9s %9s%n", "接口", "调用", "失败", "次/秒", "p50(ms)", "p99(ms)"));
+        long totalCalls = 0;
+        for (Map.Entry<String, ApiStats.Endpoint> e : apiStats.snapshot().entrySet()) {
+            ApiStats.Endpoint ep = e.getValue();
+            long[] p = ep.latencies().percentiles();
+            totalCalls += ep.calls();
+            sb.append(String.format("%-52s %9d %7d %9.1f %9.1f %9.1f%n", e.getKey(), ep.calls(), ep.errors(),
+                    ep.calls() / elapsedSeconds, p[0] / 1000.0, p[2] / 1000.0));
+        }
+        sb.append(String.format("合计 %d 次调用，%.1f 次/秒%n", totalCalls, totalCalls / elapsedSeconds));
+        return sb.toString();
+    }
+
+    private void appendLatency(StringBuilder sb, String name, LatencySamples samples) {
+        long[] p = samples.percentiles();
+        sb.append(String.format("%s（%d 单）：平均 %.1fs，p50 %.1fs，p90 %.1fs，p99 %.1fs，最大 %.1fs%n",
+                name, samples.size(), samples.mean() / 1000, p[0] / 1000.0, p[1] / 1000.0, p[2] / 1000.0,
+                p[3] / 1000.0));
+    }
+
+    private record Timer(long dueAt, Runnable action) {
+    }
+}
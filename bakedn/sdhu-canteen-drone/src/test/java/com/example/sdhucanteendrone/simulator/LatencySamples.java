@@ -0,0 +1,55 @@
+package com.example.sdhucanteendrone.simulator;
+
+import java.util.Arrays;
+
+/**
+ * 延迟样本（不做抽样，模拟器的样本量在百万级以内）。非线程安全，由调用方加锁。
+ */
+final class LatencySamples {
+
+    private long[] values = new long[1024];
+    private int size;
+
+    void add(long value) {
+        if (size == values.length) {
+            values = Arrays.copyOf(values, size * 2);
+        }
+        values[size++] = value;
+    }
+
+    int size() {
+        return size;
+    }
+
+    LatencySamples copy() {
+        LatencySamples c = new LatencySamples();
+        c.values = Arrays.copyOf(values, Math.max(size, 1));
+        c.size = size;
+        return c;
+    }
+
+    /**
+     * 返回 {p50, p90, p99, max}；无样本时全为 0。
+     */
+    long[] percentiles() {
+        if (size == 0) {
+            return new long[4];
+        }
+        long[] sorted = Arrays.copyOf(values, size);
+        Arrays.sort(sorted);
+        return new long[]{at(sorted, 0.50), at(sorted, 0.90), at(sorted, 0.99), sorted[size - 1]};
+    }
+
+    double mean() {
+        long sum = 0;
+        for (int i = 0; i < size; i++) {
+            sum += values[i];
+        }
+        return size == 0 ? 0 : (double) sum / size;
+    }
+
+    private static long at(long[] sorted, double p) {
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(index, sorted.length - 1))];
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.sdhucanteendrone.simulator;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 模拟器参数，命令行传 --key=value，未传的取默认值。
+ * <p>
+ * 默认值对应 test_data.sql 中的数据：食堂 1（桃园食堂）、顾客 5、食堂 1 的前 4 个菜品。
+ */
+final class SimulatorConfig {
+
+    /** 被测应用地址 */
+    String baseUrl = "http://localhost:8080";
+    /** 虚拟无人机数量 */
+    int drones = 1000;
+    /** 下单持续时间（秒），之后不再下单，只等待在途订单送达 */
+    int durationSeconds = 300;
+    /** 下单结束后最多再等待的时间（秒） */
+    int drainSeconds = 180;
+    /** 平均每秒下单数（泊松到达） */
+    double ordersPerSecond = 5;
+
+    long canteenId = 1;
+    long customerId = 5;
+    List<Long> foodIds = List.of(1L, 2L, 3L, 4L);
+    /** 开始前把菜品库存补到该值，避免压测中途售罄；小于 0 表示不补 */
+    int restockTo = 1_000_000;
+    /** 出餐时间（秒）：确认后多久打包完成 */
+    int prepSeconds = 20;
+
+    /** 食堂坐标，会写回食堂；楼栋随机分布在 campusRadiusM 以内 */
+    double canteenLat = 36.0;
+    double canteenLng = 117.0;
+    double campusRadiusM = 1500;
+    int buildings = 12;
+
+    /** 飞行速度（米/秒） */
+    double speedMps = 12;
+    /** 每飞行 1 公里消耗的电量（百分点） */
+    double batteryPerKm = 3;
+    /** 返航后电量低于该值即进入维护充电 */
+    int rechargeBelow = 35;
+    /** 充电速度（百分点/秒） */
+    double chargePerSecond = 1;
+    /** 每次起飞发生故障（中途失联）的概率 */
+    double failureRate = 0.005;
+
+    /**
+     * 派机方式：
+     * server - 由应用的自动派机完成，模拟器只轮询订单发现已起飞的无人机
+     * client - 模拟器自行选机，调用 assign-drone / start-delivery
+     */
+    String dispatch = "server";
+    /** 每个 tick 最多轮询的待派机订单数（server 模式） */
+    int pollPerTick = 200;
+
+    /** 仿真步长（毫秒），每步上报一次遥测 */
+    int tickMs = 1000;
+    /** 单批遥测最多帧数，与 canteen.telemetry.max-batch-frames 一致 */
+    int telemetryBatch = 1000;
+    /** 并发 HTTP 请求上限 */
+    int maxInFlight = 64;
+    long seed = 42;
+    /** 报告另存为文件（可选） */
+    String report;
+
+    static SimulatorConfig parse(String[] args) {
+        Map<String, String> kv = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("参数格式应为 --key=value: " + arg);
+            }
+            int eq = arg.indexOf('=');
+            kv.put(arg.substring(2, eq), arg.substring(eq + 1));
+        }
+
+        SimulatorConfig c = new SimulatorConfig();
+        c.baseUrl = kv.getOrDefault("baseUrl", c.baseUrl);
+        c.drones = intArg(kv, "drones", c.drones);
+        c.durationSeconds = intArg(kv, "durationSeconds", c.durationSeconds);
+        c.drainSeconds = intArg(kv, "drainSeconds", c.drainSeconds);
+        c.ordersPerSecond = doubleArg(kv, "ordersPerSecond", c.ordersPerSecond);
+        c.canteenId = longArg(kv, "canteenId", c.canteenId);
+        c.customerId = longArg(kv, "customerId", c.customerId);
+        if (kv.containsKey("foodIds")) {
+            c.foodIds = Arrays.stream(kv.get("foodIds").split(",")).map(String::trim).map(Long::valueOf).toList();
+        }
+        c.restockTo = intArg(kv, "restockTo", c.restockTo);
+        c.prepSeconds = intArg(kv, "prepSeconds", c.prepSeconds);
+        c.canteenLat = doubleArg(kv, "canteenLat", c.canteenLat);
+        c.canteenLng = doubleArg(kv, "canteenLng", c.canteenLng);
+        c.campusRadiusM = doubleArg(kv, "campusRadiusM", c.campusRadiusM);
+        c.buildings = intArg(kv, "buildings", c.buildings);
+        c.speedMps = doubleArg(kv, "speedMps", c.speedMps);
+        c.batteryPerKm = doubleArg(kv, "batteryPerKm", c.batteryPerKm);
+        c.rechargeBelow = intArg(kv, "rechargeBelow", c.rechargeBelow);
+        c.chargePerSecond = doubleArg(kv, "chargePerSecond", c.chargePerSecond);
+        c.failureRate = doubleArg(kv, "failureRate", c.failureRate);
+        c.dispatch = kv.getOrDefault("dispatch", c.dispatch);
+        c.pollPerTick = intArg(kv, "pollPerTick", c.pollPerTick);
+        c.tickMs = intArg(kv, "tickMs", c.tickMs);
+        c.telemetryBatch = intArg(kv, "telemetryBatch", c.telemetryBatch);
+        c.maxInFlight = intArg(kv, "maxInFlight", c.maxInFlight);
+        c.seed = longArg(kv, "seed", c.seed);
+        c.report = kv.get("report");
+
+        if (!c.dispatch.equals("server") && !c.dispatch.equals("client")) {
+            throw new IllegalArgumentException("dispatch 只能是 server 或 client");
+        }
+        if (c.drones <= 0 || c.tickMs <= 0 || c.foodIds.isEmpty() || c.buildings <= 0) {
+            throw new IllegalArgumentException("drones / tickMs / buildings 必须为正数，foodIds 不能为空");
+        }
+        return c;
+    }
+
+    private static int intArg(Map<String, String> kv, String key, int def) {
+        return kv.containsKey(key) ? Integer.parseInt(kv.get(key)) : def;
+    }
+
+    private static long longArg(Map<String, String> kv, String key, long def) {
+        return kv.containsKey(key) ? Long.parseLong(kv.get(key)) : def;
+    }
+
+    private static double doubleArg(Map<String, String> kv, String key, double def) {
+        return kv.containsKey(key) ? Double.parseDouble(kv.get(key)) : def;
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.sdhucanteendrone.simulator;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 一架虚拟无人机。坐标为以食堂为原点的平面坐标（米，x 向东、y 向北）。
+ * 只由模拟器主线程读写。
+ */
+final class VirtualDrone {
+
+    enum State {
+        /** 停在食堂待命 */
+        IDLE,
+        /** client 派机模式下已选中、等待 assign / start 接口返回 */
+        ASSIGNING,
+        /** 飞往楼栋 */
+        OUTBOUND,
+        /** 送达后返航 */
+        RETURNING,
+        /** 维护充电 */
+        CHARGING,
+        /** 中途故障失联，不再上报 */
+        FAILED
+    }
+
+    final long id;
+    final double payloadKg;
+
+    State state = State.IDLE;
+    double x;
+    double y;
+    double battery = 100;
+
+    /** 本次航班承运的订单（合单时多个） */
+    final List<SimOrder> cargo = new ArrayList<>();
+    double targetX;
+    double targetY;
+    /** 本次航班飞到该里程时发生故障；不故障为正无穷 */
+    double failAfterMeters = Double.POSITIVE_INFINITY;
+    double flownMeters;
+
+    VirtualDrone(long id, double payloadKg, double x, double y) {
+        this.id = id;
+        this.payloadKg = payloadKg;
+        this.x = x;
+        this.y = y;
+    }
+
+    /**
+     * 朝目标飞行 maxMeters，返回实际飞行距离；到达后坐标与目标重合。
+     */
+    double flyToward(double maxMeters) {
+        double dx = targetX - x;
+        double dy = targetY - y;
+        double remaining = Math.hypot(dx, dy);
+        if (remaining <= maxMeters) {
+            x = targetX;
+            y = targetY;
+            return remaining;
+        }
+        x += dx / remaining * maxMeters;
+        y += dy / remaining * maxMeters;
+        return maxMeters;
+    }
+
+    boolean arrived() {
+        return x == targetX && y == targetY;
+    }
+
+    Long currentOrderId() {
+        return cargo.isEmpty() ? null : cargo.get(0).id;
+    }
+
+    /**
+     * 模拟器侧记录的订单。
+     */
+    static final class SimOrder {
+
+        final long id;
+        final int building;
+        /** 发出下单请求的时间（System.nanoTime） */
+        final long createdAt;
+        long packedAt;
+        long shippedAt;
+        /** 正在轮询详情，避免重复请求 */
+        boolean polling;
+
+        SimOrder(long id, int building, long createdAt) {
+            this.id = id;
+            this.building = building;
+            this.createdAt = createdAt;
+        }
+    }
+}